@@ -0,0 +1,155 @@
+package codes.nibby.yi.app.components.tree;
+
+import codes.nibby.yi.models.GameModel;
+import codes.nibby.yi.models.GameNode;
+import codes.nibby.yi.models.MoveValidationResult;
+import codes.nibby.yi.models.StandardGameRules;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link GameTreeStructure#reconstruct()}, incremental updates to the structure and
+ * viewport queries on game trees of different shapes. These are the same trees used by
+ * {@code GameTreeStructurePerformanceTest}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameTreeStructureBenchmark {
+
+    public enum TreeShape {
+        /** A single variation with 3000 moves. */
+        LINEAR_3000_NODES,
+
+        /** A 400 move main variation with a one-move branch on 300 of its nodes. */
+        BRANCHES_300,
+
+        /** A 500 move main variation with six five-move branches on each node. */
+        BRANCHES_3000
+    }
+
+    @Param
+    public TreeShape treeShape;
+
+    private GameModel model;
+    private GameTreeStructure structure;
+    private GameNode branchingNode;
+
+    @Setup
+    public void setUp() {
+        switch (treeShape) {
+            case LINEAR_3000_NODES:
+                model = createModelWithMainVariation(3000);
+                break;
+            case BRANCHES_300:
+                model = createModelWithMainVariation(400);
+                for (int i = 0; i < 300; ++i) {
+                    playMoveSomewhereVacant(model);
+                    model.toPreviousNode();
+                    model.toNextNode();
+                }
+                break;
+            case BRANCHES_3000:
+                model = createModelWithMainVariation(500);
+                for (int i = 0; i < 500; ++i) {
+                    for (int j = 0; j < 6; ++j) {
+                        playMoveSomewhereVacant(model);
+                        playMoveSomewhereVacant(model);
+                        playMoveSomewhereVacant(model);
+                        playMoveSomewhereVacant(model);
+                        playMoveSomewhereVacant(model);
+                        model.toPreviousNode(4);
+                    }
+                    model.toPreviousNode(6);
+                    model.toNextNode();
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unsupported tree shape: " + treeShape);
+        }
+
+        structure = new GameTreeStructure();
+        structure.setGameModel(model);
+        model.onNodeAdd().addListener(event -> structure.insertNode(event.getNode()));
+        model.onNodeRemove().addListener(event -> structure.removeNode(event.getNode()));
+
+        int mainVariationLength = 0;
+        for (var node = model.getRootNode(); node != null; node = node.getChildNodeInMainBranch()) {
+            ++mainVariationLength;
+        }
+
+        branchingNode = model.getRootNode();
+        for (int i = 0; i < mainVariationLength / 2; ++i) {
+            branchingNode = branchingNode.getChildNodeInMainBranch();
+        }
+    }
+
+    @Benchmark
+    public GameTreeStructure reconstruct() {
+        structure.reconstruct();
+        return structure;
+    }
+
+    /**
+     * Adds a new variation half way down the main variation and removes it again, updating the
+     * structure incrementally on both edits.
+     */
+    @Benchmark
+    public GameTreeStructure addAndRemoveVariation() {
+        model.setCurrentNode(branchingNode);
+        var variation = model.getEditor().addPass().getMoveNode();
+        model.getEditor().removeNodeSubtree(variation);
+        return structure;
+    }
+
+    /**
+     * Finds the node elements in a viewport sized region half way down the main variation, as is
+     * done every time the tree is rendered.
+     */
+    @Benchmark
+    public List<TreeNodeElement> getNodeElementsInViewport() {
+        int startY = branchingNode.getMoveNumber();
+        return structure.getNodeElementsWithinVerticalRegion(0, startY, 12, startY + 25);
+    }
+
+    private static void playMoveSomewhereVacant(GameModel model) {
+        int w = model.getBoardWidth();
+        int h = model.getBoardHeight();
+
+        var nextNodes = model.getCurrentNode().getChildNodes();
+
+        for (int x = 0; x < w; x++) {
+            seekNext:
+            for (int y = 0; y < h; y++) {
+                for (GameNode nextNode : nextNodes) {
+                    var move = nextNode.getPrimaryMove();
+                    if (move != null && move.getY() == y && move.getX() == x) {
+                        continue seekNext;
+                    }
+                }
+
+                if (model.getEditor().addMove(x, y).getValidationResult() == MoveValidationResult.OK) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private static GameModel createModelWithMainVariation(int nodeCount) {
+        int boardSize = (int) Math.round(Math.sqrt(nodeCount) + 1);
+        var model = new GameModel(boardSize, boardSize, StandardGameRules.CHINESE);
+
+        var moves = model.beginMoveSequence();
+        for (int i = 0; i < nodeCount; ++i) {
+            moves.playMove(i % boardSize, i / boardSize);
+        }
+
+        model.setCurrentNode(model.getRootNode());
+        return model;
+    }
+}
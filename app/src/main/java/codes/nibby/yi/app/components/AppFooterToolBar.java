@@ -7,8 +7,12 @@ import codes.nibby.yi.app.framework.action.AppActionManager;
 import codes.nibby.yi.app.framework.action.AppBasicAction;
 import codes.nibby.yi.app.framework.action.AppSeparatorAction;
 import codes.nibby.yi.app.i18n.TextResource;
+import codes.nibby.yi.models.EventListener;
 import codes.nibby.yi.models.GameModel;
 import codes.nibby.yi.models.GameModelInfo;
+import codes.nibby.yi.models.GameNode;
+import codes.nibby.yi.models.NodeEvent;
+import codes.nibby.yi.models.rules.ScoreCalculator;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Node;
@@ -19,9 +23,11 @@ import javafx.scene.layout.Pane;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.*;
+import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
 import static codes.nibby.yi.app.framework.AppText.MOVE_COUNT;
+import static codes.nibby.yi.app.framework.AppText.SCORE_COUNT;
 
 public final class AppFooterToolBar extends BorderPane implements AppComponent<BorderPane> {
 
@@ -87,6 +93,14 @@ public final class AppFooterToolBar extends BorderPane implements AppComponent<B
     }
 
     private final Label moveLabel = new Label("");
+    private final Label scoreLabel = new Label("");
+    private GameModel gameModel;
+    private ScoreCalculator scoreCalculator;
+
+    private final EventListener<NodeEvent> currentNodeChangeListener = event -> updateMoveInfo(event.getNode());
+    // Stone edits at the current node, and undoing them, change the score without changing the node
+    private final EventListener<NodeEvent> currentNodeDataChangeListener = event -> updateScoreInfo(event.getNode());
+    private final BiConsumer<String, Object> gameInfoChangeListener = this::onGameInfoUpdate;
     private final AppAction editModelInfoAction = new AppBasicAction(AppText.EDIT_GAME_INFO);
     {
         editModelInfoAction.setIcon(AppIcon.PENCIL);
@@ -108,6 +122,7 @@ public final class AppFooterToolBar extends BorderPane implements AppComponent<B
         decorateAsRankLabel(playerWhiteRank);
 
         moveLabel.getStyleClass().add(YiStyleClass.FOREGROUND_DARK.getName());
+        scoreLabel.getStyleClass().add(YiStyleClass.FOREGROUND_DARK_SECONDARY.getName());
         getStyleClass().add(YiStyleClass.BACKGROUND_DARK.getName());
 
         setPrefHeight(35);
@@ -129,6 +144,8 @@ public final class AppFooterToolBar extends BorderPane implements AppComponent<B
         var rightToolBar = new HBox();
         rightToolBar.setAlignment(Pos.CENTER_RIGHT);
         rightToolBar.getChildren().setAll(
+            scoreLabel,
+            createHBoxSpacer(16),
             moveLabel,
             createHBoxSpacer(8)
         );
@@ -179,19 +196,44 @@ public final class AppFooterToolBar extends BorderPane implements AppComponent<B
         playerWhiteRank.setManaged(!whiteRank.isBlank());
         playerWhiteRank.setText(gameModel.getInfo().getPlayerWhiteRank());
 
-        updateMoveInfo(gameModel.getCurrentMoveNumber());
+        updateMoveInfo(gameModel.getCurrentNode());
     }
 
-    private void updateMoveInfo(int moveNumber) {
-        String moveText = MOVE_COUNT.getLocalisedText(moveNumber);
+    private void updateMoveInfo(GameNode currentNode) {
+        String moveText = MOVE_COUNT.getLocalisedText(currentNode.getMoveNumber());
         moveLabel.setText(moveText);
+        updateScoreInfo(currentNode);
     }
 
-    public void setGameModel(@NotNull GameModel newModel) {
-        newModel.getInfo().addChangeListener(this::onGameInfoUpdate);
-        newModel.onCurrentNodeChange().addListener(newValue ->
-            updateMoveInfo(newValue.getNode().getMoveNumber())
+    /*
+     * Counts the board as it stands, without removing dead stones. The calculator is
+     * re-used across updates so that stepping through moves does not allocate scratch
+     * space each time.
+     */
+    private void updateScoreInfo(GameNode currentNode) {
+        var state = gameModel.getGameState(currentNode);
+        var score = scoreCalculator.score(
+            state,
+            gameModel.getRules().getScoringMethod(),
+            gameModel.getInfo().getKomi(),
+            Collections.emptyList()
         );
+        scoreLabel.setText(SCORE_COUNT.getLocalisedText(score.toResultString()));
+    }
+
+    public void setGameModel(@NotNull GameModel newModel) {
+        if (this.gameModel != null) {
+            this.gameModel.getInfo().removeChangeListener(gameInfoChangeListener);
+            this.gameModel.onCurrentNodeChange().removeListener(currentNodeChangeListener);
+            this.gameModel.onCurrentNodeDataUpdate().removeListener(currentNodeDataChangeListener);
+        }
+
+        this.gameModel = newModel;
+        this.scoreCalculator = new ScoreCalculator(newModel.getBoardWidth(), newModel.getBoardHeight());
+
+        newModel.getInfo().addChangeListener(gameInfoChangeListener);
+        newModel.onCurrentNodeChange().addListener(currentNodeChangeListener);
+        newModel.onCurrentNodeDataUpdate().addListener(currentNodeDataChangeListener);
 
         updateGameModelInfo(newModel);
         editModelInfoAction.setAction(context -> {
@@ -220,6 +262,9 @@ public final class AppFooterToolBar extends BorderPane implements AppComponent<B
             case GameModelInfo.KEY_PLAYER_WHITE_RANK:
                 setRankText(playerWhiteRank, newValue.toString());
                 break;
+            case GameModelInfo.KEY_KOMI:
+                updateScoreInfo(gameModel.getCurrentNode());
+                break;
         }
     }
 
@@ -13,6 +13,12 @@ import java.util.Optional;
 
 public final class AppUndoSupport implements AppComponent<Object> {
 
+    /*
+        Edits of the same kind submitted within this interval, such as placing several
+        setup stones in a row, are undone together.
+     */
+    private static final long EDIT_COALESCING_WINDOW_MILLIS = 400;
+
     private final AppAction undo;
     private final AppAction redo;
 
@@ -70,6 +76,7 @@ public final class AppUndoSupport implements AppComponent<Object> {
 
     public void setGameModel(GameModel newGameModel) {
         GameModelUndoSystem undoSystem = newGameModel.getEditor().getUndoSystem();
+        undoSystem.setCoalescingWindowMillis(EDIT_COALESCING_WINDOW_MILLIS);
         newGameModel.onCurrentNodeChange().addListener(e -> refreshState(undoSystem));
         newGameModel.onNodeDataUpdate().addListener(e -> refreshState(undoSystem));
         newGameModel.onNodeAdd().addListener(e -> refreshState(undoSystem));
@@ -1,5 +1,6 @@
 package codes.nibby.yi.app.components.board;
 
+import codes.nibby.yi.app.framework.YiRenderScheduler;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
 import codes.nibby.yi.models.GameModel;
@@ -12,6 +13,7 @@ import codes.nibby.yi.models.GameModel;
 abstract class GameBoardCanvas extends Canvas {
 
     private final GraphicsContext graphics;
+    private final Runnable renderTask;
 
     /**
      * Board manager shared by all game board canvases.
@@ -21,10 +23,17 @@ abstract class GameBoardCanvas extends Canvas {
     GameBoardCanvas(GameBoardManager manager) {
         this.graphics = getGraphicsContext2D();
         this.manager = manager;
+        this.renderTask = () -> renderImpl(graphics, manager);
     }
 
+    /**
+     * Schedules the canvas to be drawn on the next pulse. Requests made before then are
+     * combined, so the canvas is drawn at most once per pulse.
+     *
+     * @param manager Board manager.
+     */
     protected void render(GameBoardManager manager) {
-        renderImpl(graphics, manager);
+        YiRenderScheduler.requestRender(renderTask);
     }
 
     protected abstract void renderImpl(GraphicsContext g, GameBoardManager manager);
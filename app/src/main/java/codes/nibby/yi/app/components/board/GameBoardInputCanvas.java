@@ -41,7 +41,7 @@ final class GameBoardInputCanvas extends GameBoardCanvas {
         if (renderCursor) {
             if (manager.edit.isEditable()) {
                 var editMode = manager.editModeProperty().get();
-                editMode.getMouseCursor().ifPresent(this::setCursor);
+                editMode.getMouseCursor(manager, cursorX, cursorY).ifPresent(this::setCursor);
                 editMode.renderGridCursor(g, manager, cursorX, cursorY);
             } else {
                 setCursor(Cursor.DEFAULT);
@@ -0,0 +1,160 @@
+package codes.nibby.yi.app.components.board;
+
+import codes.nibby.yi.models.GameModel;
+import codes.nibby.yi.models.GameNode;
+import codes.nibby.yi.models.Stone;
+import codes.nibby.yi.models.StoneColor;
+import javafx.scene.canvas.GraphicsContext;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Draws the stones of the position shown on the game board. The canvas keeps the position it
+ * has drawn last, so that when the position changes, only the intersections whose stones have
+ * changed are repainted, rather than the whole board.
+ * <p/>
+ * When stepping forward to a child node, the new position is worked out from the changes made
+ * by that node alone, provided the position drawn for its parent has not been edited since.
+ * Otherwise it is compared against the game state of the node to show.
+ */
+final class GameBoardStoneCanvas extends GameBoardCanvas {
+
+    // Repainting an intersection also repaints its neighbours, so past this proportion of changed
+    // intersections it is faster to repaint the whole board.
+    private static final double MAX_CHANGED_PROPORTION = 1d / 8d;
+
+    private @Nullable GameNode renderedNode = null;
+    // State hash of the rendered node when it was drawn, which changes if its stones are edited
+    private long renderedNodeStateHash = 0L;
+    private StoneColor[] renderedState = null;
+
+    // Stone size, position of the first intersection and canvas size the stones were last drawn with
+    private double[] renderedLayout = null;
+
+    GameBoardStoneCanvas(GameBoardManager manager) {
+        super(manager);
+    }
+
+    @Override
+    protected void renderImpl(GraphicsContext g, GameBoardManager manager) {
+        var nodeToShow = manager.getNodeToShow();
+        var state = getStateToRender(manager, nodeToShow);
+        var layout = getLayout(manager);
+
+        if (renderedState == null || renderedState.length != state.length || !Arrays.equals(renderedLayout, layout)) {
+            renderAllStones(g, manager, state);
+        } else {
+            renderChangedStones(g, manager, state);
+        }
+
+        renderedNode = nodeToShow;
+        renderedNodeStateHash = nodeToShow.getStateHash();
+        renderedState = state;
+        renderedLayout = layout;
+    }
+
+    private StoneColor[] getStateToRender(GameBoardManager manager, GameNode nodeToShow) {
+        if (renderedState != null && renderedNode != null && nodeToShow.getParent() == renderedNode
+                && renderedNode.getStateHash() == renderedNodeStateHash) {
+            // Apply the changes in the same order as the game position does
+            var state = renderedState.clone();
+            int boardWidth = manager.getGameModel().getBoardWidth();
+
+            for (Stone capture : nodeToShow.getCapturesThisTurn()) {
+                state[capture.getPosition(boardWidth)] = StoneColor.NONE;
+            }
+            for (Stone stoneEdit : nodeToShow.getStoneEdits()) {
+                // A suicidal move captures its own stone
+                if (!nodeToShow.getCapturesThisTurn().contains(stoneEdit)) {
+                    state[stoneEdit.getPosition(boardWidth)] = stoneEdit.getColor();
+                }
+            }
+
+            return state;
+        }
+
+        return manager.getGameModel().getGameState(nodeToShow).getBoardPosition().getIntersectionState().clone();
+    }
+
+    private double[] getLayout(GameBoardManager manager) {
+        double[] firstIntersection = manager.size.getStoneRenderPosition(0, 0);
+
+        return new double[] {
+                manager.size.getStoneSizeInPixels(), firstIntersection[0], firstIntersection[1], getWidth(), getHeight()
+        };
+    }
+
+    private void renderAllStones(GraphicsContext g, GameBoardManager manager, StoneColor[] state) {
+        g.clearRect(0, 0, getWidth(), getHeight());
+
+        int boardWidth = manager.getGameModel().getBoardWidth();
+        var style = PresetStoneStyle.getDefaultValue();
+
+        for (int i = 0; i < state.length; ++i) {
+            // TODO: Temporary. Allow rendering custom stone images in the future.
+            style.render(g, manager, state[i], i % boardWidth, i / boardWidth);
+        }
+    }
+
+    /*
+        Clears the bounds of each changed stone, including its shadow, then draws the stones that
+        overlap those bounds again. Only the neighbouring stones can reach into the bounds, and they
+        are drawn in the same order as when the whole board is drawn.
+     */
+    private void renderChangedStones(GraphicsContext g, GameBoardManager manager, StoneColor[] state) {
+        List<Integer> changedPositions = new ArrayList<>();
+        for (int i = 0; i < state.length; ++i) {
+            if (state[i] != renderedState[i]) {
+                changedPositions.add(i);
+            }
+        }
+
+        if (changedPositions.size() > state.length * MAX_CHANGED_PROPORTION) {
+            renderAllStones(g, manager, state);
+            return;
+        }
+
+        int boardWidth = manager.getGameModel().getBoardWidth();
+        int boardHeight = state.length / boardWidth;
+        var style = PresetStoneStyle.getDefaultValue();
+        double padding = style.getPadding(manager);
+        double size = manager.size.getStoneSizeInPixels() + padding * 2;
+
+        for (int position : changedPositions) {
+            int x = position % boardWidth;
+            int y = position / boardWidth;
+            double[] stonePosition = manager.size.getStoneRenderPosition(x, y);
+            double left = stonePosition[0] - padding;
+            double top = stonePosition[1] - padding;
+
+            g.save();
+            g.beginPath();
+            g.rect(left, top, size, size);
+            g.clip();
+            g.clearRect(left, top, size, size);
+
+            for (int neighbourY = Math.max(y - 1, 0); neighbourY <= Math.min(y + 1, boardHeight - 1); ++neighbourY) {
+                for (int neighbourX = Math.max(x - 1, 0); neighbourX <= Math.min(x + 1, boardWidth - 1); ++neighbourX) {
+                    style.render(g, manager, state[neighbourY * boardWidth + neighbourX], neighbourX, neighbourY);
+                }
+            }
+
+            g.restore();
+        }
+    }
+
+    @Override
+    public void onGameModelSet(GameModel newModel, GameBoardManager manager) {
+        renderedNode = null;
+        renderedState = null;
+        renderedLayout = null;
+    }
+
+    @Override
+    public void onGameUpdate(GameModel gameModel, GameBoardManager manager) {
+        render(manager);
+    }
+}
@@ -30,14 +30,23 @@ import java.util.function.Function;
 public final class GameBoardViewer implements YiComponent {
 
     private final YiCanvasContainer container;
+    private final GameBoardStaticCanvas staticCanvas;
+    private final GameBoardStoneCanvas stoneCanvas;
+    private final GameBoardMainCanvas mainCanvas;
     private final GameBoardInputCanvas inputCanvas;
     private final Stack<GameBoardCanvas> content = new Stack<>();
 
     private final GameBoardManager manager = new GameBoardManager();
 
     public GameBoardViewer() {
+        // Each layer is only repainted when something drawn on it has changed
+        staticCanvas = new GameBoardStaticCanvas(manager);
+        stoneCanvas = new GameBoardStoneCanvas(manager);
+        mainCanvas = new GameBoardMainCanvas(manager);
         inputCanvas = new GameBoardInputCanvas(manager);
-        content.push(new GameBoardMainCanvas(manager));
+        content.push(staticCanvas);
+        content.push(stoneCanvas);
+        content.push(mainCanvas);
         content.push(inputCanvas);
 
         container = new YiCanvasContainer(content);
@@ -46,7 +55,7 @@ public final class GameBoardViewer implements YiComponent {
     }
 
     private void addRenderSignalHooks() {
-        manager.addPreviewNodeChangeListener(newPreview -> renderAll());
+        manager.addPreviewNodeChangeListener(newPreview -> renderPosition());
         manager.addShowCoordinateValueListener(newValue -> renderAll());
 
         container.addSizeUpdateListener(newSize -> {
@@ -91,6 +100,19 @@ public final class GameBoardViewer implements YiComponent {
         }
     }
 
+    private void renderStaticLayer() {
+        if (manager.hasGameModel()) {
+            staticCanvas.render(manager);
+        }
+    }
+
+    private void renderPosition() {
+        if (manager.hasGameModel()) {
+            stoneCanvas.render(manager);
+            mainCanvas.render(manager);
+        }
+    }
+
     private final EventListener<NodeEvent> updateAllCanvas = (newCurrentNode) -> update();
 
     /**
@@ -153,6 +175,7 @@ public final class GameBoardViewer implements YiComponent {
      */
     public void setDebugMode(boolean debugMode) {
         this.manager.setDebugMode(debugMode);
+        renderStaticLayer();
     }
 
     /**
@@ -163,6 +186,7 @@ public final class GameBoardViewer implements YiComponent {
      */
     public void setBoardImage(@Nullable Image image) {
         manager.view.boardImage = image;
+        renderStaticLayer();
     }
 
     /**
@@ -173,6 +197,7 @@ public final class GameBoardViewer implements YiComponent {
      */
     public void setBackgroundImage(@Nullable Image image) {
         manager.view.backgroundImage = image;
+        renderStaticLayer();
     }
 
     public @Nullable Image getBackgroundImage() {
@@ -182,6 +207,7 @@ public final class GameBoardViewer implements YiComponent {
     public void setGridColor(Color gridColor) {
         Objects.requireNonNull(gridColor, "gridColor must not be null");
         manager.view.boardGridColor = gridColor;
+        renderStaticLayer();
     }
 
     public GameBoardManager getManager() {
@@ -1,16 +1,30 @@
 package codes.nibby.yi.app.components.board;
 
+import javafx.scene.SnapshotParameters;
+import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.effect.BlurType;
 import javafx.scene.effect.DropShadow;
+import javafx.scene.image.Image;
+import javafx.scene.image.WritableImage;
 import javafx.scene.paint.Color;
 import javafx.scene.paint.CycleMethod;
 import javafx.scene.paint.RadialGradient;
 import javafx.scene.paint.Stop;
 import codes.nibby.yi.models.StoneColor;
 
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Collection of predefined stone textures.
+ * <p/>
+ * Each stone colour is drawn once onto a sprite image, along with its shadow, which is then
+ * copied onto the board for every stone of that colour. Sprites are kept for the few stone sizes
+ * and output scales used most recently, so that boards of different sizes, or on screens with
+ * different output scales, do not keep drawing each other's sprites again.
  */
 public enum PresetStoneStyle {
 
@@ -76,6 +90,16 @@ public enum PresetStoneStyle {
         }
     };
 
+    // Stones are drawn onto this canvas before being copied into a sprite image
+    private static Canvas spriteCanvas = null;
+    private static SnapshotParameters spriteSnapshotParameters = null;
+
+    // Sprite sets are looked up for every stone drawn, so few enough are kept to search in order
+    private static final int MAX_SPRITE_SETS = 4;
+
+    // Ordered from the most to the least recently used
+    private final List<StoneSprites> spriteSets = new ArrayList<>(MAX_SPRITE_SETS);
+
     protected abstract void _render(GraphicsContext g, GameBoardManager manager,
                                     StoneColor color, double x, double y, double size);
 
@@ -90,15 +114,106 @@ public enum PresetStoneStyle {
      */
     public void render(GraphicsContext g, GameBoardManager manager, StoneColor color,
                        int gridX, int gridY) {
+        if (color == StoneColor.NONE) {
+            return;
+        }
+
         double stoneSize = manager.size.getStoneSizeInPixels();
+        double outputScale = getOutputScale(g);
+
+        var sprites = getSprites(manager, stoneSize, outputScale);
+
+        var sprite = sprites.images.get(color);
+        if (sprite == null) {
+            sprite = createSprite(manager, color, sprites);
+            sprites.images.put(color, sprite);
+        }
+
         double[] position = manager.size.getStoneRenderPosition(gridX, gridY);
-        double x = position[0];
-        double y = position[1];
+        double x = position[0] - sprites.padding;
+        double y = position[1] - sprites.padding;
+
+        g.drawImage(sprite, x, y, sprite.getWidth() / outputScale, sprite.getHeight() / outputScale);
+    }
+
+    private StoneSprites getSprites(GameBoardManager manager, double stoneSize, double outputScale) {
+        for (int i = 0; i < spriteSets.size(); ++i) {
+            var sprites = spriteSets.get(i);
+            if (sprites.stoneSize == stoneSize && sprites.outputScale == outputScale) {
+                if (i > 0) {
+                    spriteSets.remove(i);
+                    spriteSets.add(0, sprites);
+                }
+                return sprites;
+            }
+        }
+
+        var sprites = new StoneSprites(stoneSize, outputScale, getPadding(manager));
+        if (spriteSets.size() == MAX_SPRITE_SETS) {
+            spriteSets.remove(MAX_SPRITE_SETS - 1);
+        }
+        spriteSets.add(0, sprites);
+        return sprites;
+    }
+
+    /**
+     * Stones may draw outside of their bounds, such as for their shadows. Repainting the space
+     * around a stone up to this distance from its bounds will erase the stone completely.
+     *
+     * @param manager Game board manager.
+     * @return Distance from each edge of the stone bounds that may be drawn over, in pixels.
+     */
+    public double getPadding(GameBoardManager manager) {
+        return Math.ceil(manager.size.getStoneShadowRadius() + manager.size.getStoneShadowOffset()) + 1;
+    }
+
+    private Image createSprite(GameBoardManager manager, StoneColor color, StoneSprites sprites) {
+        if (spriteCanvas == null) {
+            spriteCanvas = new Canvas();
+            spriteSnapshotParameters = new SnapshotParameters();
+            spriteSnapshotParameters.setFill(Color.TRANSPARENT);
+        }
+
+        double spriteSize = sprites.stoneSize + sprites.padding * 2;
+        int imageSize = (int) Math.ceil(spriteSize * sprites.outputScale);
+
+        spriteCanvas.setWidth(imageSize);
+        spriteCanvas.setHeight(imageSize);
+
+        var g = spriteCanvas.getGraphicsContext2D();
+        g.clearRect(0, 0, imageSize, imageSize);
+        g.setTransform(sprites.outputScale, 0, 0, sprites.outputScale, 0, 0);
+        _render(g, manager, color, sprites.padding, sprites.padding, sprites.stoneSize);
+        g.setTransform(1, 0, 0, 1, 0, 0);
 
-        _render(g, manager, color, x, y, stoneSize);
+        return spriteCanvas.snapshot(spriteSnapshotParameters, new WritableImage(imageSize, imageSize));
+    }
+
+    /*
+        Number of image pixels per pixel on the board, so that sprites stay sharp on high resolution displays.
+     */
+    private static double getOutputScale(GraphicsContext g) {
+        var scene = g.getCanvas().getScene();
+        var window = scene != null ? scene.getWindow() : null;
+
+        return window != null ? window.getOutputScaleX() : 1d;
     }
 
     public static PresetStoneStyle getDefaultValue() {
         return CERAMIC_BICONVEX;
     }
+
+    private static final class StoneSprites {
+
+        private final double stoneSize;
+        private final double outputScale;
+        private final double padding;
+        private final Map<StoneColor, Image> images = new EnumMap<>(StoneColor.class);
+
+        private StoneSprites(double stoneSize, double outputScale, double padding) {
+            this.stoneSize = stoneSize;
+            this.outputScale = outputScale;
+            this.padding = padding;
+        }
+    }
 }
@@ -34,6 +34,18 @@ public abstract class AbstractEditMode {
         return Optional.of(Cursor.HAND);
     }
 
+    /**
+     * Override this to vary the mouse cursor with the intersection under it.
+     *
+     * @param manager Board manager.
+     * @param gridX Cursor logical X position.
+     * @param gridY Cursor logical Y position.
+     * @return Mouse cursor type while over the given intersection.
+     */
+    public Optional<Cursor> getMouseCursor(GameBoardManager manager, int gridX, int gridY) {
+        return getMouseCursor();
+    }
+
     /**
      * Called when mouse is pressed down on the board.
      *
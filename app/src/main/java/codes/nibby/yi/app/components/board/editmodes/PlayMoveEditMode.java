@@ -6,6 +6,8 @@ import javafx.scene.input.MouseButton;
 import codes.nibby.yi.app.components.board.GameBoardManager;
 import codes.nibby.yi.models.GameModel;
 import codes.nibby.yi.models.GameNode;
+import codes.nibby.yi.models.LegalMoveGenerator;
+import codes.nibby.yi.models.LegalMoveMask;
 import codes.nibby.yi.models.MoveValidationResult;
 import codes.nibby.yi.models.StoneColor;
 import codes.nibby.yi.models.editor.edit.MoveEdit;
@@ -14,6 +16,15 @@ import java.util.Optional;
 
 public final class PlayMoveEditMode extends AbstractEditMode {
 
+    // Legal moves at the last hovered node, so that they are only generated once per position.
+    // Stone edits and undoing them change the position without changing the node, but they
+    // always change its state hash.
+    private LegalMoveGenerator legalMoveGenerator = null;
+    private LegalMoveMask legalMoves = null;
+    private GameModel legalMovesModel = null;
+    private GameNode legalMovesNode = null;
+    private long legalMovesStateHash = 0L;
+
     PlayMoveEditMode() {
 
     }
@@ -50,6 +61,35 @@ public final class PlayMoveEditMode extends AbstractEditMode {
         return Optional.of(Cursor.HAND);
     }
 
+    @Override
+    public Optional<Cursor> getMouseCursor(GameBoardManager manager, int gridX, int gridY) {
+        boolean isLegal = getLegalMoves(manager.getGameModel()).isLegal(gridX, gridY);
+        return Optional.of(isLegal ? Cursor.HAND : Cursor.DEFAULT);
+    }
+
+    private LegalMoveMask getLegalMoves(GameModel model) {
+        var currentNode = model.getCurrentNode();
+        boolean isOutdated = legalMoves == null
+                || legalMovesModel != model
+                || legalMovesNode != currentNode
+                || legalMovesStateHash != currentNode.getStateHash()
+                || legalMoves.getColor() != model.getNextTurnStoneColor();
+
+        if (isOutdated) {
+            if (legalMoveGenerator == null
+                    || legalMoveGenerator.getBoardWidth() != model.getBoardWidth()
+                    || legalMoveGenerator.getBoardHeight() != model.getBoardHeight()) {
+                legalMoveGenerator = new LegalMoveGenerator(model.getBoardWidth(), model.getBoardHeight());
+                legalMoves = new LegalMoveMask(model.getBoardWidth(), model.getBoardHeight());
+            }
+            legalMoveGenerator.generate(model, legalMoves);
+            legalMovesModel = model;
+            legalMovesNode = currentNode;
+            legalMovesStateHash = currentNode.getStateHash();
+        }
+        return legalMoves;
+    }
+
     @Override
     public void onMousePress(MouseButton button, GameBoardManager manager, int gridX, int gridY) {
         if (button == MouseButton.PRIMARY) {
@@ -4,8 +4,11 @@ import codes.nibby.yi.app.i18n.TextResource;
 import codes.nibby.yi.app.utilities.GuiUtilities;
 import javafx.geometry.Bounds;
 import javafx.geometry.Rectangle2D;
+import javafx.scene.SnapshotParameters;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.image.WritableImage;
 import javafx.scene.input.KeyEvent;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.input.ScrollEvent;
@@ -18,9 +21,17 @@ import codes.nibby.yi.models.GameNodeType;
 
 import java.util.List;
 
+
 /**
  * Manages the rendering of the game tree.
  *
+ * The tree is drawn in two layers. The bottom layer has every track and node in their plain style,
+ * and is drawn in tiles that are kept in a {@link GameTreeTileCache}, so panning the viewport only
+ * draws the cached tiles at a new position. The top layer redraws the tracks and nodes on the
+ * current variation and the previewed variation in their own style, and is drawn on every frame
+ * for the visible rows only. Since neither variation is part of the tiles, moving the current or
+ * previewed node does not invalidate any tile.
+ *
  * See {@link GameTreeViewer.CanvasInputHandler} for input handling.
  */
 final class GameTreeCanvas extends Canvas {
@@ -29,6 +40,15 @@ final class GameTreeCanvas extends Canvas {
 
     private final GraphicsContext graphics;
 
+    // Rebuilt only when the current or preview node changes, rather than on every frame
+    private TreeNodePath currentPath = TreeNodePath.EMPTY;
+    private TreeNodePath previewPath = TreeNodePath.EMPTY;
+
+    private final GameTreeTileCache tileCache = new GameTreeTileCache();
+    // Tiles are drawn here first, then copied to an image for the tile cache
+    private final Canvas tileCanvas = new Canvas();
+    private final SnapshotParameters tileSnapshotParameters = new SnapshotParameters();
+
     public GameTreeCanvas() {
         graphics = getGraphicsContext2D();
     }
@@ -45,12 +65,18 @@ final class GameTreeCanvas extends Canvas {
     }
 
     public void render(GameTreeViewerSettings settings, GameTreeViewport gameTreeViewport,
-                       List<TreeNodeElement> visibleElements, GameNode currentNode,
+                       GameTreeStructure treeStructure, GameNode currentNode,
                        @Nullable GameNode previewNode,
                        GameTreeElementSize size) {
 
         graphics.setFont(settings.getPreviewTextFont());
-        var currentVariationHistory = currentNode.getMoveHistory();
+
+        if (!currentPath.endsWith(currentNode)) {
+            currentPath = new TreeNodePath(currentNode);
+        }
+        if (!previewPath.endsWith(previewNode)) {
+            previewPath = new TreeNodePath(previewNode);
+        }
 
         graphics.clearRect(0, 0, getWidth(), getHeight());
         graphics.setFill(settings.getBackgroundColor());
@@ -60,20 +86,195 @@ final class GameTreeCanvas extends Canvas {
         graphics.setLineWidth(BRANCH_LINE_WIDTH);
         graphics.setFill(settings.getNodeColor());
 
-        double offsetX = gameTreeViewport.getOffsetX();
-        double offsetY = gameTreeViewport.getOffsetY();
+        // Whole pixels only, otherwise the edges of adjacent tiles are blended with the background
+        double offsetX = Math.round(gameTreeViewport.getOffsetX());
+        double offsetY = Math.round(gameTreeViewport.getOffsetY());
 
         final double gridWidth = size.getGridSize().getWidth();
         final double gridHeight = size.getGridSize().getHeight();
 
-        renderTracks(settings, visibleElements, currentVariationHistory, previewNode, gridWidth, gridHeight, offsetX, offsetY);
-        renderNodes(settings, visibleElements, currentNode, currentVariationHistory, previewNode, gridWidth, gridHeight, offsetX, offsetY);
+        tileCache.setStyle(settings, gridWidth, gridHeight, getOutputScale());
+        renderTiles(settings, treeStructure, gridWidth, gridHeight, offsetX, offsetY);
+
+        int firstVisibleRow = Math.max((int) Math.floor(-offsetY / gridHeight), 0);
+        int lastVisibleRow = (int) Math.floor((getHeight() - offsetY) / gridHeight);
+
+        // The current variation is drawn last so that it is on top where the two variations overlap.
+        // Nodes are drawn after all tracks because every track ends in the middle of a node.
+        renderPathTracks(treeStructure, previewPath, settings.getNodeColor().brighter(), firstVisibleRow,
+                lastVisibleRow, gridWidth, gridHeight, offsetX, offsetY);
+        renderPathTracks(treeStructure, currentPath, settings.getNodeInCurrentVariationColor(), firstVisibleRow,
+                lastVisibleRow, gridWidth, gridHeight, offsetX, offsetY);
+        renderPathNodes(settings, treeStructure, previewPath, currentNode, firstVisibleRow, lastVisibleRow,
+                gridWidth, gridHeight, offsetX, offsetY);
+        renderPathNodes(settings, treeStructure, currentPath, currentNode, firstVisibleRow, lastVisibleRow,
+                gridWidth, gridHeight, offsetX, offsetY);
 
         if (settings.isPreviewPromptEnabled()) {
             renderPreviewPrompt(settings, previewNode);
         }
     }
 
+    /**
+     * Discards all the cached tiles. This should be called whenever the whole tree structure is
+     * laid out again, such as for a new game model or when variations are collapsed.
+     */
+    public void invalidateTiles() {
+        tileCache.invalidateAll();
+    }
+
+    /**
+     * Discards the cached tiles that cover the given regions of the tree structure. This should be
+     * called with the regions returned by {@link GameTreeStructure#insertNode(GameNode)} and
+     * {@link GameTreeStructure#removeNode(GameNode)}.
+     *
+     * @param changedRegions Regions given as { minX, minY, maxX, maxY } in grids.
+     */
+    public void invalidateTiles(List<int[]> changedRegions) {
+        for (int[] region : changedRegions) {
+            // The track leading into a region starts on the grid of the parent, which lies one row
+            // above it and may lie one column to its left.
+            tileCache.invalidateRegion(region[0] - 1, region[1] - 1, region[2], region[3]);
+        }
+    }
+
+    /**
+     * Discards the cached tile that the element is drawn on. This should be called whenever the data
+     * of the node wrapped by the element is changed.
+     */
+    public void invalidateTile(TreeNodeElement element) {
+        tileCache.invalidate(element.getGridX(), element.getGridY());
+    }
+
+    private void renderTiles(GameTreeViewerSettings settings, GameTreeStructure treeStructure,
+                             double gridWidth, double gridHeight, double offsetX, double offsetY) {
+
+        double tileWidth = GameTreeTileCache.TILE_SIZE * gridWidth;
+        double tileHeight = GameTreeTileCache.TILE_SIZE * gridHeight;
+
+        int firstTileX = Math.max((int) Math.floor(-offsetX / tileWidth), 0);
+        int firstTileY = Math.max((int) Math.floor(-offsetY / tileHeight), 0);
+        int lastTileX = Math.min((int) Math.floor((getWidth() - offsetX) / tileWidth),
+                treeStructure.getFurthestHorizontalNode() / GameTreeTileCache.TILE_SIZE);
+        int lastTileY = Math.min((int) Math.floor((getHeight() - offsetY) / tileHeight),
+                treeStructure.getFurthestVerticalNode() / GameTreeTileCache.TILE_SIZE);
+
+        for (int tileX = firstTileX; tileX <= lastTileX; ++tileX) {
+            for (int tileY = firstTileY; tileY <= lastTileY; ++tileY) {
+                var tile = tileCache.getTile(tileX, tileY);
+
+                if (tile == null) {
+                    tile = renderTile(settings, treeStructure, tileX, tileY, gridWidth, gridHeight);
+                    tileCache.putTile(tileX, tileY, tile);
+                }
+
+                graphics.drawImage(tile, tileX * tileWidth + offsetX, tileY * tileHeight + offsetY,
+                        tileWidth, tileHeight);
+            }
+        }
+    }
+
+    private Image renderTile(GameTreeViewerSettings settings, GameTreeStructure treeStructure,
+                             int tileX, int tileY, double gridWidth, double gridHeight) {
+
+        final int tileSize = GameTreeTileCache.TILE_SIZE;
+        final double outputScale = getOutputScale();
+
+        double tileWidth = tileSize * gridWidth;
+        double tileHeight = tileSize * gridHeight;
+        int imageWidth = (int) Math.ceil(tileWidth * outputScale);
+        int imageHeight = (int) Math.ceil(tileHeight * outputScale);
+
+        tileCanvas.setWidth(imageWidth);
+        tileCanvas.setHeight(imageHeight);
+
+        var tileGraphics = tileCanvas.getGraphicsContext2D();
+        tileGraphics.setTransform(outputScale, 0, 0, outputScale, 0, 0);
+        tileGraphics.setFill(settings.getBackgroundColor());
+        tileGraphics.fillRect(0, 0, tileWidth, tileHeight);
+        tileGraphics.setLineWidth(BRANCH_LINE_WIDTH);
+
+        int firstColumn = tileX * tileSize;
+        int firstRow = tileY * tileSize;
+        double offsetX = -firstColumn * gridWidth;
+        double offsetY = -firstRow * gridHeight;
+
+        // Tracks run from a parent to children in the row below and to its right, so the tracks on this tile
+        // belong to nodes up to one row below it, which may be further to the right.
+        var elements = treeStructure.getNodeElementsWithinRegion(firstColumn, firstRow,
+                treeStructure.getFurthestHorizontalNode() + 1, firstRow + tileSize + 1);
+
+        for (var nodeElement : elements) {
+            nodeElement.getParent().ifPresent(parent -> {
+                if (parent.getGridX() < firstColumn + tileSize) {
+                    renderTrack(tileGraphics, nodeElement, parent, settings.getNodeColor(),
+                            gridWidth, gridHeight, offsetX, offsetY);
+                }
+            });
+        }
+
+        for (var nodeElement : elements) {
+            if (nodeElement.getGridX() < firstColumn + tileSize && nodeElement.getGridY() < firstRow + tileSize) {
+                renderNode(tileGraphics, settings, nodeElement, null, TreeNodePath.EMPTY, TreeNodePath.EMPTY,
+                        false, gridWidth, gridHeight, offsetX, offsetY);
+
+                if (treeStructure.hasHiddenVariations(nodeElement)) {
+                    renderCollapsedMarker(tileGraphics, settings, nodeElement, gridWidth, gridHeight, offsetX, offsetY);
+                }
+            }
+        }
+
+        tileGraphics.setTransform(1, 0, 0, 1, 0, 0);
+        tileSnapshotParameters.setFill(settings.getBackgroundColor());
+
+        return tileCanvas.snapshot(tileSnapshotParameters, new WritableImage(imageWidth, imageHeight));
+    }
+
+    private void renderPathTracks(GameTreeStructure treeStructure, TreeNodePath path, Color trackColor,
+                                  int firstVisibleRow, int lastVisibleRow,
+                                  double gridWidth, double gridHeight, double offsetX, double offsetY) {
+
+        // Tracks end in the middle of a node, so the track to a node one row below the viewport is still visible
+        for (int row = Math.max(firstVisibleRow, 1); row <= lastVisibleRow + 1; ++row) {
+            var node = path.getNodeAt(row);
+
+            if (node == null) {
+                break;
+            }
+
+            treeStructure.getTreeNodeElementForNode(node).ifPresent(nodeElement -> {
+                if (path == previewPath && currentPath.contains(nodeElement)) {
+                    return;
+                }
+
+                nodeElement.getParent().ifPresent(parent ->
+                        renderTrack(graphics, nodeElement, parent, trackColor, gridWidth, gridHeight, offsetX, offsetY));
+            });
+        }
+    }
+
+    private void renderPathNodes(GameTreeViewerSettings settings, GameTreeStructure treeStructure, TreeNodePath path,
+                                 GameNode currentNode, int firstVisibleRow, int lastVisibleRow,
+                                 double gridWidth, double gridHeight, double offsetX, double offsetY) {
+
+        for (int row = firstVisibleRow; row <= lastVisibleRow; ++row) {
+            var node = path.getNodeAt(row);
+
+            if (node == null) {
+                break;
+            }
+
+            treeStructure.getTreeNodeElementForNode(node).ifPresent(nodeElement -> {
+                if (path == previewPath && currentPath.contains(nodeElement)) {
+                    return;
+                }
+
+                renderNode(graphics, settings, nodeElement, currentNode, currentPath, previewPath,
+                        nodeElement.isHighlighted(), gridWidth, gridHeight, offsetX, offsetY);
+            });
+        }
+    }
+
     private void renderPreviewPrompt(GameTreeViewerSettings settings, @Nullable GameNode previewNode) {
         final int PROMPT_HEIGHT = 30;
 
@@ -97,184 +298,154 @@ final class GameTreeCanvas extends Canvas {
         }
     }
 
-    private void renderNodes(
+    private void renderNode(
+        GraphicsContext graphics,
         GameTreeViewerSettings settings,
-        List<TreeNodeElement> nodeElements,
-        GameNode currentNode,
-        List<GameNode> currentVariationHistory,
-        @Nullable GameNode previewNode,
+        TreeNodeElement nodeElement,
+        @Nullable GameNode currentNode,
+        TreeNodePath currentPath,
+        TreeNodePath previewPath,
+        boolean isHighlighted,
         double gridWidth,
         double gridHeight,
         double offsetX,
         double offsetY
     ) {
 
-        var previewNodeHistory = previewNode != null ? previewNode.getMoveHistory() : null;
+        double x = nodeElement.getGridX() * gridWidth + offsetX;
+        double y = nodeElement.getGridY() * gridHeight + offsetY;
 
-        for (var nodeElement : nodeElements) {
-            double x = nodeElement.getGridX() * gridWidth + offsetX;
-            double y = nodeElement.getGridY() * gridHeight + offsetY;
+        var nodeColor = settings.getNodeColor();
 
-            var nodeColor = settings.getNodeColor();
+        var node = nodeElement.getNode();
+        var isCurrentNode = node.equals(currentNode);
+        var isPartOfCurrentHistory = currentPath.contains(nodeElement);
+        var isCommented = !node.getComments().isBlank();
+        var isPass = node.getType() == GameNodeType.PASS;
+        var strokeOutlineForCurrentNode = false;
 
-            var node = nodeElement.getNode();
-            var isCurrentNode = node.equals(currentNode);
-            var isPartOfCurrentHistory = currentVariationHistory.contains(node);
-            var isCommented = !node.getComments().isBlank();
-            var isPass = node.getType() == GameNodeType.PASS;
-            var strokeOutlineForCurrentNode = false;
+        if (isCurrentNode) {
+            nodeColor = settings.getCurrentNodeColor();
+        } else if (isPartOfCurrentHistory) {
+            nodeColor = settings.getNodeInCurrentVariationColor();
+        } else if (isPass) {
+            nodeColor = settings.getNodePassColor();
+        }
 
-            if (isCurrentNode) {
-                nodeColor = settings.getCurrentNodeColor();
-            } else if (isPartOfCurrentHistory) {
-                nodeColor = settings.getNodeInCurrentVariationColor();
-            } else if (isPass) {
-                nodeColor = settings.getNodePassColor();
+        if (isCommented) {
+            nodeColor = settings.getNodeWithCommentaryColor();
+            if (isPartOfCurrentHistory) {
+                nodeColor = nodeColor.brighter();
             }
+            strokeOutlineForCurrentNode = true;
+        }
 
-            if (isCommented) {
-                nodeColor = settings.getNodeWithCommentaryColor();
-                if (isPartOfCurrentHistory) {
-                    nodeColor = nodeColor.brighter();
-                }
-                strokeOutlineForCurrentNode = true;
-            }
+        var insets = isCurrentNode ? 3 : 5;
 
-            var insets = isCurrentNode ? 3 : 5;
+        if (node.getType() == GameNodeType.STONE_EDIT) {
+            insets -= 1; // Optical illusion, diamond appears slightly smaller at same insets
+        }
 
-            if (node.getType() == GameNodeType.STONE_EDIT) {
-                insets -= 1; // Optical illusion, diamond appears slightly smaller at same insets
-            }
+        if (!isPartOfCurrentHistory && previewPath.contains(nodeElement)) {
+            nodeColor = nodeColor.brighter();
+            insets -= 1;
+        }
 
-            if (!isPartOfCurrentHistory && previewNodeHistory != null
-                    && previewNodeHistory.contains(node)) {
-                nodeColor = nodeColor.brighter();
-                insets -= 1;
-            }
+        if (isHighlighted) {
+            nodeColor = nodeColor.brighter();
+            insets -= 1;
+        }
 
-            if (nodeElement.isHighlighted()) {
-                nodeColor = nodeColor.brighter();
-                insets -= 1;
-            }
+        graphics.setFill(nodeColor);
+        graphics.setStroke(nodeColor);
 
-            graphics.setFill(nodeColor);
-            graphics.setStroke(nodeColor);
+        var bounds = new Rectangle(x + insets, y + insets, gridWidth - insets * 2, gridHeight - insets * 2);
+        settings.setNodeWithCommentaryColor(GuiUtilities.getColor(74, 110, 145));
 
-            var bounds = new Rectangle(x + insets, y + insets, gridWidth - insets * 2, gridHeight - insets * 2);
-            settings.setNodeWithCommentaryColor(GuiUtilities.getColor(74, 110, 145));
+        if (node.isRoot()) {
+            graphics.fillRect(bounds.getX(), bounds.getY(), bounds.getWidth(), bounds.getHeight());
+            if (isCurrentNode && strokeOutlineForCurrentNode) {
+                graphics.setStroke(settings.getCurrentNodeColor());
+                graphics.strokeRect(bounds.getX(), bounds.getY(), bounds.getWidth(), bounds.getHeight());
+            }
+        } else {
+            switch (node.getType()) {
+                case PASS:
+                    graphics.setFill(settings.getBackgroundColor());
+                    graphics.fillOval(bounds.getX(), bounds.getY(), bounds.getWidth(), bounds.getHeight());
+                    graphics.strokeOval(bounds.getX(), bounds.getY(), bounds.getWidth(), bounds.getHeight());
+                    break;
+                case STONE_EDIT:
+                    // Diamond
+                    var xMid = bounds.getX() + bounds.getWidth() / 2;
+                    var yMid = bounds.getY() + bounds.getHeight() / 2;
+                    double[] xPoints = {
+                            bounds.getX(), xMid, bounds.getX() + bounds.getWidth(), xMid
+                    };
+                    double[] yPoints = {
+                            yMid, bounds.getY(), yMid, bounds.getY() + bounds.getHeight()
+                    };
+
+                    graphics.fillPolygon(xPoints, yPoints, xPoints.length);
+                    if (isCurrentNode && strokeOutlineForCurrentNode) {
+                        graphics.setStroke(settings.getCurrentNodeColor());
+                        graphics.strokePolygon(xPoints, yPoints, xPoints.length);
+                    }
+                    break;
+                default:
+                    graphics.fillOval(bounds.getX(), bounds.getY(), bounds.getWidth(), bounds.getHeight());
 
-            if (node.isRoot()) {
-                graphics.fillRect(bounds.getX(), bounds.getY(), bounds.getWidth(), bounds.getHeight());
-                if (isCurrentNode && strokeOutlineForCurrentNode) {
-                    graphics.setStroke(settings.getCurrentNodeColor());
-                    graphics.strokeRect(bounds.getX(), bounds.getY(), bounds.getWidth(), bounds.getHeight());
-                }
-            } else {
-                switch (node.getType()) {
-                    case PASS:
-                        graphics.setFill(settings.getBackgroundColor());
-                        graphics.fillOval(bounds.getX(), bounds.getY(), bounds.getWidth(), bounds.getHeight());
+                    if (isCurrentNode && strokeOutlineForCurrentNode) {
+                        graphics.setStroke(settings.getCurrentNodeColor());
                         graphics.strokeOval(bounds.getX(), bounds.getY(), bounds.getWidth(), bounds.getHeight());
-                        break;
-                    case STONE_EDIT:
-                        // Diamond
-                        var xMid = bounds.getX() + bounds.getWidth() / 2;
-                        var yMid = bounds.getY() + bounds.getHeight() / 2;
-                        double[] xPoints = {
-                                bounds.getX(), xMid, bounds.getX() + bounds.getWidth(), xMid
-                        };
-                        double[] yPoints = {
-                                yMid, bounds.getY(), yMid, bounds.getY() + bounds.getHeight()
-                        };
-
-                        graphics.fillPolygon(xPoints, yPoints, xPoints.length);
-                        if (isCurrentNode && strokeOutlineForCurrentNode) {
-                            graphics.setStroke(settings.getCurrentNodeColor());
-                            graphics.strokePolygon(xPoints, yPoints, xPoints.length);
-                        }
-                        break;
-                    default:
-                        graphics.fillOval(bounds.getX(), bounds.getY(), bounds.getWidth(), bounds.getHeight());
-
-                        if (isCurrentNode && strokeOutlineForCurrentNode) {
-                            graphics.setStroke(settings.getCurrentNodeColor());
-                            graphics.strokeOval(bounds.getX(), bounds.getY(), bounds.getWidth(), bounds.getHeight());
-                        }
-                        break;
-                }
-
+                    }
+                    break;
             }
+
         }
     }
 
-    private void renderTracks(GameTreeViewerSettings settings, List<TreeNodeElement> nodeElements,
-                              List<GameNode> currentVariationHistory, @Nullable GameNode previewNode,
-                              double gridWidth, double gridHeight, double offsetX, double offsetY) {
-
-        var previewNodeHistory = previewNode != null ? previewNode.getMoveHistory() : null;
-
-        for (int i = nodeElements.size() - 1; i > 0; --i) {
-            var nodeElement = nodeElements.get(i);
-
-            nodeElement.getParent().ifPresent(parent -> {
-                double px = parent.getGridX() * gridWidth;
-                double py = parent.getGridY() * gridHeight;
-
-                double pCenterX = px + gridWidth / 2d + offsetX;
-                double pCenterY = py + gridHeight / 2d + offsetY;
-
-                double x = nodeElement.getGridX() * gridWidth;
-                double y = nodeElement.getGridY() * gridHeight;
-
-                double centerX = x + gridWidth / 2d + offsetX;
-                double centerY = y + gridHeight / 2d + offsetY;
+    /*
+        Draws a small plus sign on the top right corner of a node whose variations are collapsed.
+     */
+    private void renderCollapsedMarker(GraphicsContext graphics, GameTreeViewerSettings settings,
+                                       TreeNodeElement nodeElement, double gridWidth, double gridHeight,
+                                       double offsetX, double offsetY) {
 
-                var parentNode = parent.getNode();
-                var thisNode = nodeElement.getNode();
+        double markerSize = Math.min(gridWidth, gridHeight) / 4d;
+        double centerX = (nodeElement.getGridX() + 1) * gridWidth - markerSize / 2d + offsetX;
+        double centerY = nodeElement.getGridY() * gridHeight + markerSize / 2d + offsetY;
 
-                Color trackColor;
+        graphics.setStroke(settings.getNodeColor());
+        graphics.strokeLine(centerX - markerSize / 2d, centerY, centerX + markerSize / 2d, centerY);
+        graphics.strokeLine(centerX, centerY - markerSize / 2d, centerX, centerY + markerSize / 2d);
+    }
 
-                if (currentVariationHistory.contains(thisNode)) {
-                    trackColor = settings.getNodeInCurrentVariationColor();
-                } else if (previewNodeHistory != null && previewNodeHistory.contains(thisNode)) {
-                    trackColor = settings.getNodeColor().brighter();
-                } else {
-                    trackColor = settings.getNodeColor();
-                }
+    private void renderTrack(GraphicsContext graphics, TreeNodeElement nodeElement, TreeNodeElement parent,
+                             Color trackColor, double gridWidth, double gridHeight, double offsetX, double offsetY) {
 
-                graphics.setStroke(trackColor);
+        double px = parent.getGridX() * gridWidth;
+        double py = parent.getGridY() * gridHeight;
 
-                // No need to re-draw the top branch line since the last child draws it first.
-                // This way we also avoid node branches that are not the current variation drawing over the
-                // current variation branch color.
-                boolean drawBranchLine = false;
+        double pCenterX = px + gridWidth / 2d + offsetX;
+        double pCenterY = py + gridHeight / 2d + offsetY;
 
-                if (currentVariationHistory.contains(parentNode)) {
-                    var parentIndexInHistory = currentVariationHistory.indexOf(parentNode);
-                    var continuationNode = parentIndexInHistory + 1 < currentVariationHistory.size()
-                            ? currentVariationHistory.get(parentIndexInHistory + 1) : null;
+        double x = nodeElement.getGridX() * gridWidth;
+        double y = nodeElement.getGridY() * gridHeight;
 
-                    if (continuationNode != null) {
-                        var continuationOrder = parentNode.getChildOrder(continuationNode);
-                        var thisOrder = parentNode.getChildOrder(thisNode);
+        double centerX = x + gridWidth / 2d + offsetX;
+        double centerY = y + gridHeight / 2d + offsetY;
 
-                        if (thisOrder >= continuationOrder) {
-                            drawBranchLine = true;
-                        }
-                    } else {
-                        drawBranchLine = true;
-                    }
-                } else {
-                    drawBranchLine = true;
-                }
+        graphics.setStroke(trackColor);
+        graphics.strokeLine(pCenterX, pCenterY, centerX, pCenterY);
+        graphics.strokeLine(centerX, pCenterY+BRANCH_LINE_WIDTH, centerX, centerY);
+    }
 
-                if (drawBranchLine) {
-                    graphics.strokeLine(pCenterX, pCenterY, centerX, pCenterY);
-                }
+    private double getOutputScale() {
+        var scene = getScene();
+        var window = scene != null ? scene.getWindow() : null;
 
-                graphics.strokeLine(centerX, pCenterY+BRANCH_LINE_WIDTH, centerX, centerY);
-            });
-        }
+        return window != null ? window.getOutputScaleX() : 1d;
     }
 
     public Rectangle2D getElementBounds(@NotNull TreeNodeElement element,
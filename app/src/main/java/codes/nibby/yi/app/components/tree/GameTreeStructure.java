@@ -12,24 +12,225 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * structure is hosted within a grid space, where (0, 0) is on top left, and denotes the
  * root element of the tree. Elements are enumerated downwards (positive y-axis) and
  * sideways (positive x-axis).
+ *
+ * The structure can be rebuilt in full using {@link #reconstruct()}, or kept up to date
+ * using {@link #insertNode(GameNode)} and {@link #removeNode(GameNode)} as nodes are
+ * added to or removed from the game model. Both approaches produce the same layout, but
+ * the latter only lays out the parts of the tree affected by the change.
+ *
+ * The variations of a node can be collapsed, in which case their subtrees are left out of
+ * the structure entirely. Variations on the path to the current node are never collapsed, so
+ * the structure has to be told about the current node through {@link #setCurrentNode(GameNode)}.
  */
 final class GameTreeStructure {
 
     private GameModel gameModel;
     private final TreeElementManager treeElementManager;
 
+    // Nodes whose variations have been collapsed or expanded explicitly, overriding the collapse
+    // mode and threshold. Held weakly so that nodes removed from the game model can be collected.
+    private final Set<GameNode> collapsedNodes = Collections.newSetFromMap(new WeakHashMap<>());
+    private final Set<GameNode> expandedNodes = Collections.newSetFromMap(new WeakHashMap<>());
+    private boolean collapseAllExceptCurrentPath = false;
+    private int autoCollapseThreshold = 0;
+    private TreeNodePath currentPath = TreeNodePath.EMPTY;
+
     public GameTreeStructure() {
         this.treeElementManager = new TreeElementManager();
     }
 
     public void setGameModel(GameModel model) {
         this.gameModel = model;
+        this.currentPath = new TreeNodePath(model.getCurrentNode());
         reconstruct();
     }
 
     public void reconstruct() {
         treeElementManager.reset();
-        createSubtree(null, gameModel.getRootNode());
+        treeElementManager.addTree(gameModel.getRootNode());
+    }
+
+    private void reconstructIfModelPresent() {
+        if (gameModel != null) {
+            reconstruct();
+        }
+    }
+
+    /**
+     * Updates the structure to include a node that has just been added to the game model,
+     * along with any descendants it was added with. The parent of the node must already
+     * be part of the structure.
+     *
+     * Appending a node to the end of a branch takes constant time when the grid below the
+     * branch is vacant. Otherwise only the branches that may be displaced by the new node
+     * are laid out again.
+     *
+     * @param node The newly added node.
+     * @return Regions of the grid space whose contents may have changed, each given as
+     *         { minX, minY, maxX, maxY }.
+     */
+    public List<int[]> insertNode(GameNode node) {
+        var changedRegions = new ArrayList<int[]>();
+        treeElementManager.insertNode(node, changedRegions);
+        return changedRegions;
+    }
+
+    /**
+     * Updates the structure to exclude a node and its subtree that has just been removed
+     * from the game model. The grids occupied by the removed nodes are freed, and the
+     * branches that may move into the freed space are laid out again.
+     *
+     * @param node The removed node.
+     * @return Regions of the grid space whose contents may have changed, each given as
+     *         { minX, minY, maxX, maxY }.
+     */
+    public List<int[]> removeNode(GameNode node) {
+        var changedRegions = new ArrayList<int[]>();
+        treeElementManager.removeNode(node, changedRegions);
+        return changedRegions;
+    }
+
+    /**
+     * Updates the structure for a change in the current node of the game model. Collapsed
+     * variations that lead to the new current node are shown, and those that only led to the
+     * previous current node are hidden again.
+     *
+     * @param node The new current node.
+     * @return true if the layout of the structure has changed.
+     */
+    public boolean setCurrentNode(GameNode node) {
+        var previousPath = currentPath;
+        currentPath = new TreeNodePath(node);
+
+        if (!isCollapsingVariations()) {
+            return false;
+        }
+
+        // Nodes shared by both paths keep their visibility
+        int firstChangedDepth = 1;
+        while (previousPath.getNodeAt(firstChangedDepth) != null
+                && previousPath.getNodeAt(firstChangedDepth) == currentPath.getNodeAt(firstChangedDepth)) {
+            ++firstChangedDepth;
+        }
+
+        boolean layoutChanged = false;
+        for (var path : List.of(previousPath, currentPath)) {
+            for (int depth = firstChangedDepth; path.getNodeAt(depth) != null; ++depth) {
+                var parentElement = treeElementManager.gameNodeToTreeElement.get(path.getNodeAt(depth - 1));
+
+                if (parentElement != null) {
+                    layoutChanged |= treeElementManager.updateVariationVisibility(parentElement, new ArrayList<>());
+                }
+            }
+        }
+
+        return layoutChanged;
+    }
+
+    /**
+     * Collapses or expands the variations of a node, regardless of the collapse mode and
+     * threshold. A variation on the path to the current node is shown even if it is collapsed.
+     *
+     * @param node Node whose variations to collapse or expand.
+     * @param collapsed true to hide the variations, false to show them.
+     * @return true if the layout of the structure has changed.
+     */
+    public boolean setVariationsCollapsed(GameNode node, boolean collapsed) {
+        if (collapsed) {
+            collapsedNodes.add(node);
+            expandedNodes.remove(node);
+        } else {
+            expandedNodes.add(node);
+            collapsedNodes.remove(node);
+        }
+
+        var nodeElement = treeElementManager.gameNodeToTreeElement.get(node);
+        return nodeElement != null && treeElementManager.updateVariationVisibility(nodeElement, new ArrayList<>());
+    }
+
+    /**
+     *
+     * @return true if the variations of the node are collapsed, either explicitly or because of
+     *         the collapse mode and threshold.
+     */
+    public boolean isVariationsCollapsed(GameNode node) {
+        if (collapsedNodes.contains(node)) {
+            return true;
+        }
+        if (expandedNodes.contains(node)) {
+            return false;
+        }
+
+        return collapseAllExceptCurrentPath
+                || (autoCollapseThreshold > 0 && node.getChildNodes().size() - 1 > autoCollapseThreshold);
+    }
+
+    /**
+     * Sets whether the variations of every node are collapsed unless they are on the path to the
+     * current node. Nodes that have been collapsed or expanded explicitly are not affected.
+     */
+    public void setCollapseAllExceptCurrentPath(boolean collapseAllExceptCurrentPath) {
+        if (this.collapseAllExceptCurrentPath != collapseAllExceptCurrentPath) {
+            this.collapseAllExceptCurrentPath = collapseAllExceptCurrentPath;
+            reconstructIfModelPresent();
+        }
+    }
+
+    public boolean isCollapseAllExceptCurrentPath() {
+        return collapseAllExceptCurrentPath;
+    }
+
+    /**
+     * Sets the number of variations a node may have before they are collapsed automatically.
+     * Nodes that have been collapsed or expanded explicitly are not affected.
+     *
+     * @param autoCollapseThreshold Maximum number of variations to show, or 0 to never collapse
+     *                              variations automatically.
+     */
+    public void setAutoCollapseThreshold(int autoCollapseThreshold) {
+        if (autoCollapseThreshold < 0) {
+            throw new IllegalArgumentException("Invalid auto collapse threshold: " + autoCollapseThreshold);
+        }
+
+        if (this.autoCollapseThreshold != autoCollapseThreshold) {
+            this.autoCollapseThreshold = autoCollapseThreshold;
+            reconstructIfModelPresent();
+        }
+    }
+
+    public int getAutoCollapseThreshold() {
+        return autoCollapseThreshold;
+    }
+
+    /**
+     *
+     * @return true if some variations of the node are not part of the structure because they
+     *         have been collapsed.
+     */
+    public boolean hasHiddenVariations(TreeNodeElement nodeElement) {
+        var children = nodeElement.getNode().getChildNodes();
+
+        for (int i = 1; i < children.size(); ++i) {
+            if (!treeElementManager.gameNodeToTreeElement.containsKey(children.get(i))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /*
+        Whether any variation may currently be hidden. Used to skip visibility checks altogether
+        when nothing is collapsed.
+     */
+    private boolean isCollapsingVariations() {
+        return collapseAllExceptCurrentPath || autoCollapseThreshold > 0 || !collapsedNodes.isEmpty();
+    }
+
+    private boolean isVariationShown(TreeNodeElement parentElement, GameNode variation) {
+        return !isCollapsingVariations()
+                || currentPath.getNodeAt(parentElement.getGridY() + 1) == variation
+                || !isVariationsCollapsed(parentElement.getNode());
     }
 
     /**
@@ -54,23 +255,34 @@ final class GameTreeStructure {
      *    and recursively call createSubtree with it as the parent.
      *
      * Branches are created from the child variation first so that variations closer towards the
-     * root of the tree grows outwards.
+     * root of the tree grows outwards. The order in which the branches are added to the result
+     * is the order in which they are laid out. Collapsed variations are skipped along with their
+     * subtrees.
      */
-    private void createSubtree(TreeNodeElement parentElement, GameNode treeParent) {
-        var nodesToCreateSubtree = new Stack<TreeNodeElement>();
-        var currentNode = treeParent;
+    private void createSubtree(@Nullable TreeNodeElement parentElement, @Nullable TreeBranch parentBranch,
+                                      GameNode treeParent, List<TreeBranch> result) {
+        var branch = new TreeBranch(parentElement, parentBranch);
+        result.add(branch);
 
-        TreeNodeElement lastParent = parentElement;
+        appendSubtree(branch, treeParent, result);
+    }
+
+    /*
+     * Appends the node and its main branch continuations to the end of the branch, then creates
+     * the subtrees for any variations along the way.
+     */
+    private void appendSubtree(TreeBranch branch, GameNode firstNodeToAppend, List<TreeBranch> result) {
+        var nodesToCreateSubtree = new Stack<TreeNodeElement>();
+        var currentNode = firstNodeToAppend;
 
         while (currentNode != null) {
-            var currentNodeElement = treeElementManager.addNode(lastParent, currentNode, treeParent);
+            var currentNodeElement = branch.appendNode(currentNode);
 
             if (currentNode.hasAlternativeVariations()) {
                 // Revisit this later to create its subtree
                 nodesToCreateSubtree.push(currentNodeElement);
             }
 
-            lastParent = currentNodeElement;
             currentNode = currentNode.getChildNodeInMainBranch();
         }
 
@@ -79,10 +291,17 @@ final class GameTreeStructure {
             var variations = branchingPoint.getNode().getChildNodesExcludingMainBranch();
 
             for (var child : variations) {
+                if (!isVariationShown(branchingPoint, child)) {
+                    continue;
+                }
+
+                var variationBranch = new TreeBranch(branchingPoint, branch);
+                result.add(variationBranch);
+
                 // As a MVP I think this recursion is fine. However...
                 // If this starts to throw StackOverflowException, it's probably because the game file has
                 // too many variations. We might have to consider a different approach at that point...
-                createSubtree(branchingPoint, child);
+                appendSubtree(variationBranch, child, result);
             }
         }
     }
@@ -124,20 +343,24 @@ final class GameTreeStructure {
      */
     public List<TreeNodeElement> getNodeElementsWithinVerticalRegion(int startX, int startY, int endX, int endY) {
         var itemsHorizontally = (endY - startY) * 10;
-        var result = new ArrayList<TreeNodeElement>();
 
         // Draw excessively on the horizontal axis so that variations very far away from the current
         // branch still have their branch lines drawn, even when the variation node themselves are
         // out of the viewport.
-        for (int x = startX; x < endX + itemsHorizontally; ++x) {
-            for (int y = startY; y < endY; ++y) {
-                treeElementManager.positionStorage.getElement(x, y).ifPresent(element -> {
-                    if (element instanceof TreeNodeElement) {
-                        result.add(element);
-                    }
-                });
-            }
-        }
+        return getNodeElementsWithinRegion(startX, startY, endX + itemsHorizontally, endY);
+    }
+
+    /**
+     * Retrieves a list of {@link TreeNodeElement} that lie within a rectangular region from
+     * {@code (startX, startY)} inclusive to {@code (endX, endY)} exclusive. Logical grid units
+     * are used.
+     *
+     * @return All the {@link TreeNodeElement} that lie within this region, ordered by column and
+     *         then by row.
+     */
+    public List<TreeNodeElement> getNodeElementsWithinRegion(int startX, int startY, int endX, int endY) {
+        var result = new ArrayList<TreeNodeElement>();
+        treeElementManager.positionStorage.getNodeElementsWithin(startX, startY, endX, endY, result);
 
         return result;
     }
@@ -162,42 +385,488 @@ final class GameTreeStructure {
         return treeElementManager.positionStorage.furthestNodeVertical;
     }
 
-    private static final class TreeElementManager {
+    private final class TreeElementManager {
 
-        private List<TreeElement> allElements = new ArrayList<>();
+        // All branches in the order they are laid out. Each branch is followed by the
+        // branches of its subtree, so a subtree always forms a contiguous run.
+        private final List<TreeBranch> branches = new ArrayList<>();
         private final Map<GameNode, TreeNodeElement> gameNodeToTreeElement = new HashMap<>();
         private TreeElementPositionStorage positionStorage = new TreeElementPositionStorage();
         private TreeElement currentHighlight;
 
         private void reset() {
             positionStorage.clear();
-            allElements.clear();
+            branches.clear();
 
-            allElements = new ArrayList<>();
             positionStorage = new TreeElementPositionStorage();
             gameNodeToTreeElement.clear();
             currentHighlight = null;
         }
 
         /**
-         * Wraps a new node as an element and determine its location in the tree structure.
-         * This is the entry point to the tree structure spacing algorithm.
+         * Creates and lays out the elements for an entire game tree. This is the entry point
+         * to the tree structure spacing algorithm.
          *
-         * @param parentElement The node element of the parent node of <code>nodeToAdd</code>
-         * @param gameNodeToAdd The new node to be added to the position storage.
-         * @param firstNodeInThisBranch The first node in the branch of <code>nodeToAdd</code>
-         * @return A new {@link TreeNodeElement} that wraps the <code>nodeToAdd</code>
+         * @param rootNode Root node of the game tree.
+         */
+        public void addTree(GameNode rootNode) {
+            var newBranches = new ArrayList<TreeBranch>();
+            createSubtree(null, null, rootNode, newBranches);
+            addBranches(0, newBranches);
+
+            layoutBranches(0, new ArrayList<>());
+            updateFurthestNodes();
+        }
+
+        public void insertNode(GameNode nodeToAdd, List<int[]> changedRegions) {
+            if (gameNodeToTreeElement.containsKey(nodeToAdd)) {
+                return;
+            }
+
+            GameNode parentNode = nodeToAdd.getParent();
+            TreeNodeElement parentElement = parentNode != null ? gameNodeToTreeElement.get(parentNode) : null;
+
+            if (parentElement == null) {
+                if (parentNode != null && isCollapsingVariations()) {
+                    return; // The parent is part of a collapsed variation
+                }
+
+                // The structure has fallen out of sync with the game model
+                rebuildSubtree(branches.get(0), changedRegions);
+                return;
+            }
+
+            var parentBranch = positionStorage.getOwner(parentElement);
+            var siblings = parentNode.getChildNodes();
+
+            if (siblings.indexOf(nodeToAdd) > 0) {
+                if (isCollapsingVariations()) {
+                    // The new variation may also push its siblings over the collapse threshold, and
+                    // the parent may now be marked as having hidden variations.
+                    updateVariationVisibility(parentElement, changedRegions);
+                    changedRegions.add(getGridRegion(parentElement));
+                } else {
+                    addVariation(parentBranch, parentElement, nodeToAdd, changedRegions);
+                }
+            } else if (siblings.size() == 1 && parentBranch.getLastElement() == parentElement) {
+                extendBranch(parentBranch, nodeToAdd, changedRegions);
+            } else {
+                // The new node has taken over the main branch from an existing node
+                rebuildSubtree(parentBranch, changedRegions);
+            }
+        }
+
+        private void extendBranch(TreeBranch branch, GameNode nodeToAdd, List<int[]> changedRegions) {
+            int nextRow = branch.getLastRow() + 1;
+
+            // A childless node on a vacant grid cannot displace any other branch, and does not
+            // change the column of its own branch.
+            if (nodeToAdd.getChildNodes().isEmpty() && !positionStorage.isPositionOccupied(branch.column, nextRow)) {
+                var nodeElement = branch.appendNode(nodeToAdd);
+                branch.layoutRegion[3] = nextRow;
+
+                positionStorage.addElement(nodeElement, branch);
+                gameNodeToTreeElement.put(nodeToAdd, nodeElement);
+                changedRegions.add(getGridRegion(nodeElement));
+                return;
+            }
+
+            // Variations branching from the new nodes are deeper than any existing variation in
+            // this branch, so they are laid out first.
+            var newBranches = new ArrayList<TreeBranch>();
+            var newNodeIndex = branch.nodeElements.size();
+            appendSubtree(branch, nodeToAdd, newBranches);
+
+            branch.nodeElements.subList(newNodeIndex, branch.nodeElements.size())
+                    .forEach(nodeElement -> gameNodeToTreeElement.put(nodeElement.getNode(), nodeElement));
+            addBranches(branch.layoutIndex + 1, newBranches);
+
+            branch.needsLayout = true;
+            layoutBranches(branch.layoutIndex, changedRegions);
+            updateFurthestNodes();
+        }
+
+        private void addVariation(TreeBranch parentBranch, TreeNodeElement parentElement, GameNode nodeToAdd,
+                                  List<int[]> changedRegions) {
+            var newBranches = new ArrayList<TreeBranch>();
+            createSubtree(parentElement, parentBranch, nodeToAdd, newBranches);
+
+            int layoutIndex = getLayoutIndexForVariation(parentBranch, parentElement, nodeToAdd);
+            addBranches(layoutIndex, newBranches);
+
+            layoutBranches(layoutIndex, changedRegions);
+            updateFurthestNodes();
+        }
+
+        /*
+            Finds where the subtree of a new variation belongs in the layout order. The subtrees
+            branching from a branch are laid out starting from the deepest branching point, and
+            variations of the same node are laid out in the order they appear.
+         */
+        private int getLayoutIndexForVariation(TreeBranch parentBranch, TreeNodeElement parentElement,
+                                               GameNode variation) {
+            var siblings = parentElement.getNode().getChildNodes();
+            int variationIndex = siblings.indexOf(variation);
+            int parentRow = parentElement.getGridY();
+
+            int index = parentBranch.layoutIndex + 1;
+            for (; index < branches.size(); ++index) {
+                var branch = branches.get(index);
+
+                if (branch.depth <= parentBranch.depth) {
+                    break; // End of the subtree for parentBranch
+                }
+
+                if (branch.parentBranch == parentBranch) {
+                    int branchingRow = branch.parentElement.getGridY();
+
+                    if (branchingRow < parentRow
+                            || (branchingRow == parentRow && siblings.indexOf(branch.getFirstNode()) > variationIndex)) {
+                        break;
+                    }
+                }
+            }
+
+            return index;
+        }
+
+        public void removeNode(GameNode nodeToRemove, List<int[]> changedRegions) {
+            var nodeElement = gameNodeToTreeElement.get(nodeToRemove);
+            if (nodeElement == null) {
+                return;
+            }
+
+            var branch = positionStorage.getOwner(nodeElement);
+
+            if (nodeElement.getParent().isEmpty()) {
+                // Removing the root only removes its children
+                rebuildSubtree(branch, changedRegions);
+                return;
+            }
+
+            if (branch.getFirstNode() == nodeToRemove) {
+                removeSubtree(branch, changedRegions);
+
+                if (isCollapsingVariations()) {
+                    // The remaining variations may have dropped below the collapse threshold, and
+                    // the parent may no longer have hidden variations.
+                    var parentElement = Objects.requireNonNull(branch.parentElement);
+                    updateVariationVisibility(parentElement, changedRegions);
+                    changedRegions.add(getGridRegion(parentElement));
+                }
+                return;
+            }
+
+            var parentNode = nodeElement.getParent().get().getNode();
+            if (!parentNode.getChildNodes().isEmpty()) {
+                // A variation has taken over the main branch from the removed node
+                rebuildSubtree(branch, changedRegions);
+                return;
+            }
+
+            int removedRow = nodeElement.getGridY();
+            int previousLastRow = branch.getLastRow();
+
+            // Variations branching from the removed nodes are laid out straight after this branch,
+            // ahead of those branching from the nodes above.
+            int endOfRemovedVariations = branch.layoutIndex + 1;
+            while (endOfRemovedVariations < branches.size()) {
+                var variation = branches.get(endOfRemovedVariations);
+
+                if (variation.depth <= branch.depth
+                        || (variation.parentBranch == branch && variation.parentElement.getGridY() < removedRow)) {
+                    break;
+                }
+                ++endOfRemovedVariations;
+            }
+            removeBranches(branch.layoutIndex + 1, endOfRemovedVariations, changedRegions);
+
+            var removedElements = branch.nodeElements.subList(removedRow - branch.getFirstRow(), branch.nodeElements.size());
+            for (var removedElement : removedElements) {
+                positionStorage.removeElement(removedElement, branch);
+                forgetNodeElement(removedElement);
+            }
+            removedElements.clear();
+
+            if (removedRow > branch.lastColumnChangeRow) {
+                // None of the removed nodes pushed this branch sideways, so it can stay in its column
+                changedRegions.add(new int[] { branch.column, removedRow, branch.column, previousLastRow });
+                branch.layoutRegion[3] = removedRow - 1;
+            } else {
+                branch.needsLayout = true;
+            }
+
+            layoutBranches(branch.layoutIndex, changedRegions);
+            updateFurthestNodes();
+        }
+
+        /*
+            Shows or hides the variations of a node so that the structure agrees with the current
+            collapse state. A single variation is added or removed on its own, otherwise the
+            subtree of the node's branch is created again.
+         */
+        private boolean updateVariationVisibility(TreeNodeElement parentElement, List<int[]> changedRegions) {
+            var variations = parentElement.getNode().getChildNodes();
+            GameNode changedVariation = null;
+            int changeCount = 0;
+
+            for (int i = 1; i < variations.size(); ++i) {
+                var variation = variations.get(i);
+
+                if (isVariationShown(parentElement, variation) != gameNodeToTreeElement.containsKey(variation)) {
+                    changedVariation = variation;
+                    ++changeCount;
+                }
+            }
+
+            if (changeCount == 1) {
+                var variationElement = gameNodeToTreeElement.get(changedVariation);
+
+                if (variationElement != null) {
+                    removeSubtree(positionStorage.getOwner(variationElement), changedRegions);
+                } else {
+                    addVariation(positionStorage.getOwner(parentElement), parentElement, changedVariation,
+                            changedRegions);
+                }
+            } else if (changeCount > 1) {
+                rebuildSubtree(positionStorage.getOwner(parentElement), changedRegions);
+            }
+
+            return changeCount > 0;
+        }
+
+        private void removeSubtree(TreeBranch branch, List<int[]> changedRegions) {
+            int layoutIndex = branch.layoutIndex;
+
+            removeBranches(layoutIndex, getEndOfSubtree(layoutIndex), changedRegions);
+            layoutBranches(layoutIndex, changedRegions);
+            updateFurthestNodes();
+        }
+
+        /*
+            Discards and creates the entire subtree of a branch again. Used when the main branch
+            of a node has changed, since it changes which nodes belong to which branch.
+         */
+        private void rebuildSubtree(TreeBranch branch, List<int[]> changedRegions) {
+            int layoutIndex = branch.layoutIndex;
+            var firstNode = branch.getFirstNode();
+
+            removeBranches(layoutIndex, getEndOfSubtree(layoutIndex), changedRegions);
+
+            var newBranches = new ArrayList<TreeBranch>();
+            createSubtree(branch.parentElement, branch.parentBranch, firstNode, newBranches);
+            addBranches(layoutIndex, newBranches);
+
+            layoutBranches(layoutIndex, changedRegions);
+            updateFurthestNodes();
+        }
+
+        private int getEndOfSubtree(int layoutIndex) {
+            int depth = branches.get(layoutIndex).depth;
+            int index = layoutIndex + 1;
+
+            while (index < branches.size() && branches.get(index).depth > depth) {
+                ++index;
+            }
+
+            return index;
+        }
+
+        private void addBranches(int layoutIndex, List<TreeBranch> newBranches) {
+            branches.addAll(layoutIndex, newBranches);
+            updateLayoutIndices(layoutIndex);
+
+            for (var branch : newBranches) {
+                for (var nodeElement : branch.nodeElements) {
+                    gameNodeToTreeElement.put(nodeElement.getNode(), nodeElement);
+                }
+            }
+        }
+
+        private void removeBranches(int fromLayoutIndex, int toLayoutIndex, List<int[]> changedRegions) {
+            var branchesToRemove = branches.subList(fromLayoutIndex, toLayoutIndex);
+
+            for (var branch : branchesToRemove) {
+                removeElements(branch);
+                branch.nodeElements.forEach(this::forgetNodeElement);
+
+                if (branch.layoutRegion != null) {
+                    changedRegions.add(branch.layoutRegion);
+                }
+            }
+
+            branchesToRemove.clear();
+            updateLayoutIndices(fromLayoutIndex);
+        }
+
+        private void forgetNodeElement(TreeNodeElement nodeElement) {
+            gameNodeToTreeElement.remove(nodeElement.getNode());
+
+            if (currentHighlight == nodeElement) {
+                currentHighlight = null;
+            }
+        }
+
+        private void updateLayoutIndices(int fromLayoutIndex) {
+            for (int index = fromLayoutIndex; index < branches.size(); ++index) {
+                branches.get(index).layoutIndex = index;
+            }
+        }
+
+        /*
+            Lays out the branches starting from the given position in the layout order. Every
+            branch is placed using only the elements of the branches before it, so the result is
+            the same as laying out the whole tree from scratch.
+
+            A branch only needs to be laid out again if it is new, if it has been displaced, or if
+            the grids it was placed around have changed since. In the last case the changed grids
+            lie within one of the changedRegions, given as { minX, minY, maxX, maxY }.
          */
-        public TreeNodeElement addNode(TreeNodeElement parentElement, GameNode gameNodeToAdd,
-                                       GameNode firstNodeInThisBranch) {
-            var treeNodeElement = positionStorage.addNode(parentElement, gameNodeToAdd, firstNodeInThisBranch);
-            allElements.add(treeNodeElement);
-            gameNodeToTreeElement.put(gameNodeToAdd, treeNodeElement);
+        private void layoutBranches(int fromLayoutIndex, List<int[]> changedRegions) {
+            for (int index = fromLayoutIndex; index < branches.size(); ++index) {
+                var branch = branches.get(index);
+                var previousRegion = branch.layoutRegion;
+
+                if (branch.needsLayout || branch.isParentMoved() || intersectsAny(previousRegion, changedRegions)) {
+                    removeElements(branch);
+                    layoutBranch(branch, changedRegions);
+
+                    if (previousRegion == null || !Arrays.equals(previousRegion, branch.layoutRegion)) {
+                        if (previousRegion != null) {
+                            changedRegions.add(previousRegion);
+                        }
+                        changedRegions.add(branch.layoutRegion);
+                    }
+                }
+            }
+        }
 
-            return treeNodeElement;
+        private int[] getGridRegion(TreeElement element) {
+            return new int[] { element.getGridX(), element.getGridY(), element.getGridX(), element.getGridY() };
+        }
+
+        private boolean intersectsAny(int[] region, List<int[]> changedRegions) {
+            for (int[] changedRegion : changedRegions) {
+                if (region[0] <= changedRegion[2] && changedRegion[0] <= region[2]
+                        && region[1] <= changedRegion[3] && changedRegion[1] <= region[3]) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        /*
+            Determines a suitable column to house all the nodes in the branch such that all the nodes will be
+            displayed in a single column, then reserves the grids for its track line.
+         */
+        private void layoutBranch(TreeBranch branch, List<int[]> changedRegions) {
+            var parentElement = branch.parentElement;
+            int firstColumn = parentElement != null ? parentElement.getGridX() + 1 : 0; // Use first column for root
+            int firstRow = branch.getFirstRow();
+            int lastRow = branch.getLastRow();
+
+            int columnToUse = firstColumn;
+            int lastColumnChangeRow = -1;
+
+            for (int row = firstRow; row <= lastRow; ++row) {
+                while (positionStorage.isPositionOccupiedBefore(columnToUse, row, branch)) {
+                    ++columnToUse;
+                    lastColumnChangeRow = row;
+                }
+            }
+
+            branch.column = columnToUse;
+            branch.lastColumnChangeRow = lastColumnChangeRow;
+            branch.spacerElements.clear();
+
+            if (parentElement != null) {
+                // All columns to the left of this one is unavailable, reserve track line space
+                for (int column = firstColumn; column <= columnToUse; ++column) {
+                    var reservedGridForTrack = new TreeSpacerElement(column, parentElement.getGridY());
+                    addElement(reservedGridForTrack, branch, changedRegions);
+
+                    // Block all internal space between the parent branch and this branch so that new branches
+                    // are created on the outside. This will avoid all sorts of internal collisions.
+                    if (column < columnToUse && !positionStorage.hasNodeElementBefore(column, firstRow, branch)) {
+                        var blockedGridForSubsequentBranches = new TreeSpacerElement(column, firstRow);
+                        addElement(blockedGridForSubsequentBranches, branch, changedRegions);
+                    }
+                }
+            }
+
+            for (var nodeElement : branch.nodeElements) {
+                nodeElement.setGridX(columnToUse);
+                addElement(nodeElement, branch, changedRegions);
+            }
+
+            int topRow = parentElement != null ? parentElement.getGridY() : firstRow;
+            branch.layoutRegion = new int[] { firstColumn, topRow, columnToUse, lastRow };
+            branch.needsLayout = false;
+        }
+
+        private void addElement(TreeElement element, TreeBranch branch, List<int[]> changedRegions) {
+            var owner = positionStorage.getOwner(element.getGridX(), element.getGridY());
+
+            if (owner != null) {
+                if (owner.layoutIndex < branch.layoutIndex) {
+                    if (element instanceof TreeSpacerElement) {
+                        // Track lines may share grids, but the grid remains with the branch laid out first
+                        if (positionStorage.getElement(element.getGridX(), element.getGridY()).isEmpty()) {
+                            branch.spacerElements.add((TreeSpacerElement) element);
+                            return;
+                        }
+                        throw new IllegalStateException("Overwriting existing node element at ("
+                                + element.getGridX() + ", " + element.getGridY() + ")");
+                    }
+
+                    throw new IllegalArgumentException(
+                        "The position at (" + element.getGridX() + ", " + element.getGridY() + ") is already occupied"
+                    );
+                }
+
+                // The grid belongs to a branch that is laid out later, which now has to make way
+                removeElements(owner);
+                owner.needsLayout = true;
+                changedRegions.add(owner.layoutRegion);
+            }
+
+            if (element instanceof TreeSpacerElement) {
+                branch.spacerElements.add((TreeSpacerElement) element);
+            }
+            positionStorage.addElement(element, branch);
+        }
+
+        private void removeElements(TreeBranch branch) {
+            for (var spacerElement : branch.spacerElements) {
+                positionStorage.removeElement(spacerElement, branch);
+            }
+            for (var nodeElement : branch.nodeElements) {
+                positionStorage.removeElement(nodeElement, branch);
+            }
+        }
+
+        private void updateFurthestNodes() {
+            int furthestNodeHorizontal = 0;
+            int furthestNodeVertical = 0;
+
+            for (var branch : branches) {
+                furthestNodeHorizontal = Math.max(furthestNodeHorizontal, branch.layoutRegion[2]);
+                furthestNodeVertical = Math.max(furthestNodeVertical, branch.layoutRegion[3]);
+            }
+
+            positionStorage.furthestNodeHorizontal = furthestNodeHorizontal;
+            positionStorage.furthestNodeVertical = furthestNodeVertical;
         }
 
         public List<TreeElement> getAllElements() {
+            var allElements = new ArrayList<TreeElement>();
+
+            for (var branch : branches) {
+                allElements.addAll(branch.spacerElements);
+                allElements.addAll(branch.nodeElements);
+            }
+
             return allElements;
         }
 
@@ -253,135 +922,175 @@ final class GameTreeStructure {
     }
 
     /**
-     * Maps all the elements displayed on the game tree within an internal grid space,
-     * where (0,0) is the top-left grid reserved for the root node. Subsequent nodes are
-     * mapped downwards (along the Y-axis), and subsequent variations are mapped sideways
-     * (along the X-axis).
+     * A sequence of nodes displayed in a single column, starting with the root node or a
+     * variation, followed by the main branch continuation of each node after it.
      */
-    private static final class TreeElementPositionStorage {
-
-        // Map of <X, <Y, Element>> where (X, Y) denote the grid position of the element
-        private final Map<Integer, Map<Integer, TreeElement>> elementPositions = new HashMap<>();
-        private final Map<GameNode, Integer> branchHeadToColumn = new HashMap<>();
-        private int furthestNodeHorizontal = 0;
-        private int furthestNodeVertical = 0;
-
-        public TreeNodeElement addNode(TreeNodeElement nodeParent, GameNode nodeToAdd,
-                                       GameNode firstNodeInThisBranch) {
-            int[] vacantPosition = prepareForNextNode(nodeParent, nodeToAdd, firstNodeInThisBranch);
-            int x = vacantPosition[0];
-            int y = vacantPosition[1];
+    private static final class TreeBranch {
+
+        private final @Nullable TreeNodeElement parentElement;
+        private final @Nullable TreeBranch parentBranch;
+        private final int depth;
+        private final List<TreeNodeElement> nodeElements = new ArrayList<>();
+        private final List<TreeSpacerElement> spacerElements = new ArrayList<>();
+
+        private int layoutIndex;
+        private int column = -1;
+        private int lastColumnChangeRow = -1;
+        private boolean needsLayout = true;
+
+        // Grids this branch was placed around on its last layout, as { minX, minY, maxX, maxY }
+        private int[] layoutRegion;
+
+        private TreeBranch(@Nullable TreeNodeElement parentElement, @Nullable TreeBranch parentBranch) {
+            this.parentElement = parentElement;
+            this.parentBranch = parentBranch;
+            this.depth = parentBranch != null ? parentBranch.depth + 1 : 0;
+        }
 
-            assertNotOccupied(x, y);
+        private TreeNodeElement appendNode(GameNode node) {
+            var parent = nodeElements.isEmpty() ? parentElement : getLastElement();
+            int gridY = parent != null ? parent.getGridY() + 1 : 0;
 
-            var nodeElement = new TreeNodeElement(nodeParent, nodeToAdd, x, y);
-            addElement(nodeElement);
+            var nodeElement = new TreeNodeElement(parent, node, column, gridY);
+            nodeElements.add(nodeElement);
 
             return nodeElement;
         }
 
-        private void removeNode(TreeElement nodeToRemove) {
-            int x = nodeToRemove.getGridX();
-            int y = nodeToRemove.getGridY();
+        private boolean isParentMoved() {
+            return parentElement != null && layoutRegion != null && parentElement.getGridX() + 1 != layoutRegion[0];
+        }
 
-            if (elementPositions.containsKey(x)) {
-                var elementThere = elementPositions.get(x).get(y);
-                if (elementThere != null && elementThere.equals(nodeToRemove)) {
-                    elementPositions.get(x).remove(y, elementThere);
-                } else {
-                    throw new IllegalStateException("There is a different node at ("
-                            + x + ", " + y + ")");
-                }
+        private @Nullable TreeNodeElement getNodeElement(int gridX, int gridY) {
+            int index = gridY - getFirstRow();
+
+            if (gridX == column && index >= 0 && index < nodeElements.size()) {
+                return nodeElements.get(index);
             }
+
+            return null;
         }
 
-        private void assertNotOccupied(int x, int y) {
-            if (isPositionOccupied(x, y)) {
-                throw new IllegalArgumentException(
-                    "The position at (" + x + ", " + y + ") is already occupied"
-                );
-            }
+        private GameNode getFirstNode() {
+            return nodeElements.get(0).getNode();
         }
 
-        /**
-         * Gets the next nearest vacant position to place the child of this parent element.
-         * The parent must be part of the game tree. If the parent element is null, the
-         * vacant position will be the position of the tree root node.
-         *
-         * This method will change the state of the position storage by adding tracks to
-         * grids that are unsuitable to place new nodes.
-         *
-         * @param parentElement The element to find vacant child node position for
-         * @return An array of size 2, representing the (x, y) position in the element
-         * position space.
-         *
-         * @throws IllegalArgumentException If the element is not part of the position storage.
-         */
-        private int[] prepareForNextNode(@Nullable TreeNodeElement parentElement,
-                                         GameNode nodeToAdd, GameNode firstNodeInThisBranch) {
+        private TreeNodeElement getLastElement() {
+            return nodeElements.get(nodeElements.size() - 1);
+        }
 
-            if (nodeToAdd.equals(firstNodeInThisBranch)
-                    && !branchHeadToColumn.containsKey(firstNodeInThisBranch)) {
+        private int getFirstRow() {
+            return parentElement != null ? parentElement.getGridY() + 1 : 0;
+        }
 
-                computeColumnForNewBranch(parentElement, firstNodeInThisBranch);
-                int columnToUse = branchHeadToColumn.get(firstNodeInThisBranch);
+        private int getLastRow() {
+            return getFirstRow() + nodeElements.size() - 1;
+        }
+    }
 
-                if (parentElement != null) {
-                    // All columns to the left of this one is unavailable, reserve track line space
-                    for (int column = parentElement.getGridX() + 1; column <= columnToUse; ++column) {
-                        var reservedGridForTrack = new TreeSpacerElement(column, parentElement.getGridY());
-                        addElement(reservedGridForTrack);
-
-                        // Block all internal space between the parent branch and this branch so that new branches
-                        // are created on the outside. This will avoid all sorts of internal collisions.
-                        if (column < columnToUse && getElement(column, parentElement.getGridY() + 1).isEmpty()) {
-                            var blockedGridForSubsequentBranches = new TreeSpacerElement(column, parentElement.getGridY() + 1);
-                            addElement(blockedGridForSubsequentBranches);
-                        }
-                    }
-                }
-            }
+    /**
+     * Maps all the elements displayed on the game tree within an internal grid space,
+     * where (0,0) is the top-left grid reserved for the root node. Subsequent nodes are
+     * mapped downwards (along the Y-axis), and subsequent variations are mapped sideways
+     * (along the X-axis).
+     *
+     * Each grid stores the branch that placed an element there rather than the element
+     * itself. A node element can be looked up from its branch, and every other element
+     * is a {@link TreeSpacerElement}.
+     *
+     * The grid space is split into square tiles that are only allocated once an element
+     * is placed inside. Each tile keeps a bit mask of its occupied grids and another of
+     * the grids holding node elements, so that a rectangular region can be searched by
+     * visiting only the tiles it overlaps and the occupied grids within them.
+     */
+    private static final class TreeElementPositionStorage {
 
-            if (parentElement == null) {
-                return new int[] { 0, 0 }; // Root node
-            }
+        // Tiles are 8x8 grids so that a bit mask of every grid in a tile fits in a long
+        private static final int TILE_SIZE_BITS = 3;
+        private static final int TILE_SIZE = 1 << TILE_SIZE_BITS;
+        private static final int TILE_GRID_MASK = TILE_SIZE - 1;
 
-            int nextNodeX = branchHeadToColumn.get(firstNodeInThisBranch);
-            int nextNodeY = parentElement.getGridY() + 1;
+        // Bits for every grid in the first column of a tile
+        private static final long TILE_COLUMN_BITS = 0x0101010101010101L;
 
-            return new int[] { nextNodeX, nextNodeY };
-        }
+        // Tiles indexed by [tileY][tileX], either array is grown on demand
+        private ElementTile[][] tiles = new ElementTile[0][];
+        private int furthestNodeHorizontal = 0;
+        private int furthestNodeVertical = 0;
 
-        private boolean isPositionOccupied(int x, int y) {
-            if(!elementPositions.containsKey(x))
-                return false;
+        private void addElement(TreeElement element, TreeBranch owner) {
+            int x = element.getGridX();
+            int y = element.getGridY();
 
-            return elementPositions.get(x).containsKey(y);
+            var tile = getOrCreateTile(x >> TILE_SIZE_BITS, y >> TILE_SIZE_BITS);
+            int index = getIndexInTile(x, y);
+            long bit = 1L << index;
+
+            tile.owners[index] = owner;
+            tile.occupiedGrids |= bit;
+            if (element instanceof TreeNodeElement) {
+                tile.nodeGrids |= bit;
+            } else {
+                tile.nodeGrids &= ~bit;
+            }
+
+            furthestNodeHorizontal = Math.max(furthestNodeHorizontal, x);
+            furthestNodeVertical = Math.max(furthestNodeVertical, y);
         }
 
-        private void addElement(TreeElement element) {
+        private void removeElement(TreeElement element, TreeBranch owner) {
             int x = element.getGridX();
             int y = element.getGridY();
+            var tile = getTile(x, y);
 
-            elementPositions.putIfAbsent(x, new HashMap<>());
-            var yMap = elementPositions.get(x);
+            if (tile != null) {
+                int index = getIndexInTile(x, y);
 
-            var itemHere = yMap.get(y);
-            if (itemHere instanceof TreeNodeElement) {
-                throw new IllegalStateException("Overwriting existing node element at (" + x + ", " + y + ")");
+                if (tile.owners[index] == owner) {
+                    long bit = 1L << index;
+
+                    tile.owners[index] = null;
+                    tile.occupiedGrids &= ~bit;
+                    tile.nodeGrids &= ~bit;
+
+                    if (tile.occupiedGrids == 0) {
+                        tiles[y >> TILE_SIZE_BITS][x >> TILE_SIZE_BITS] = null;
+                    }
+                }
             }
+        }
 
-            yMap.put(y, element);
+        private @Nullable TreeBranch getOwner(int x, int y) {
+            var tile = getTile(x, y);
+            return tile != null ? tile.owners[getIndexInTile(x, y)] : null;
+        }
 
-            furthestNodeHorizontal = Math.max(furthestNodeHorizontal, x);
-            furthestNodeVertical = Math.max(furthestNodeVertical, y);
+        private TreeBranch getOwner(TreeNodeElement nodeElement) {
+            return Objects.requireNonNull(getOwner(nodeElement.getGridX(), nodeElement.getGridY()));
+        }
+
+        private boolean isPositionOccupied(int x, int y) {
+            return getOwner(x, y) != null;
+        }
+
+        /*
+            Whether the grid is occupied by an element of a branch that is laid out before the given one.
+         */
+        private boolean isPositionOccupiedBefore(int x, int y, TreeBranch branch) {
+            var owner = getOwner(x, y);
+            return owner != null && owner.layoutIndex < branch.layoutIndex;
+        }
+
+        private boolean hasNodeElementBefore(int x, int y, TreeBranch branch) {
+            var owner = getOwner(x, y);
+            return owner != null && owner.layoutIndex < branch.layoutIndex && owner.getNodeElement(x, y) != null;
         }
 
         /**
          * Removes all cached element positions within the storage.
          */
         protected final void clear() {
-            elementPositions.keySet().forEach(xKey -> elementPositions.get(xKey).clear());
+            Arrays.fill(tiles, null);
         }
 
         /**
@@ -393,52 +1102,133 @@ final class GameTreeStructure {
          *         it is not a {@link TreeNodeElement}
          */
         public Optional<TreeNodeElement> getElement(int x, int y) {
-            if (elementPositions.containsKey(x)) {
-                var itemHere = elementPositions.get(x).get(y);
+            var owner = getOwner(x, y);
 
-                if (itemHere instanceof TreeNodeElement) {
-                    return Optional.of((TreeNodeElement) itemHere);
-                }
+            if (owner != null) {
+                return Optional.ofNullable(owner.getNodeElement(x, y));
             }
 
             return Optional.empty();
         }
 
-        /*
-            Determines a suitable column to house all the nodes in the new branch such that all the nodes will be
-            displayed in a single column.
+        /**
+         * Adds every tree node element within the region from {@code (startX, startY)} inclusive
+         * to {@code (endX, endY)} exclusive to the result. Empty grids and spacer elements in the
+         * region are skipped without being visited.
+         *
+         * Elements are added column by column from left to right, and from top to bottom within
+         * each column.
+         *
+         * @param result List to add the node elements to
          */
-        private void computeColumnForNewBranch(@Nullable TreeNodeElement parentElementOfFirstNode, GameNode firstNodeInThisBranch) {
-            int columnToUse = parentElementOfFirstNode != null ? parentElementOfFirstNode.getGridX() + 1 : 0; // Use first column for root
-            int currentGridY = parentElementOfFirstNode != null ? parentElementOfFirstNode.getGridY() + 1 : 0; // Use first row for root
+        private void getNodeElementsWithin(int startX, int startY, int endX, int endY, List<TreeNodeElement> result) {
+            startX = Math.max(startX, 0);
+            startY = Math.max(startY, 0);
+            endX = Math.min(endX, furthestNodeHorizontal + 1);
+            endY = Math.min(endY, tiles.length << TILE_SIZE_BITS);
+
+            if (startX >= endX || startY >= endY) {
+                return;
+            }
 
-            var currentNode = firstNodeInThisBranch;
+            int firstTileY = startY >> TILE_SIZE_BITS;
+            int lastTileY = (endY - 1) >> TILE_SIZE_BITS;
 
-            while (currentNode != null) {
-                while (isPositionOccupied(columnToUse, currentGridY)) {
-                    ++columnToUse;
-                }
+            for (int tileX = startX >> TILE_SIZE_BITS; tileX <= (endX - 1) >> TILE_SIZE_BITS; ++tileX) {
+                int firstGridX = tileX << TILE_SIZE_BITS;
+                int firstColumn = Math.max(startX - firstGridX, 0);
+                int lastColumn = Math.min(endX - firstGridX, TILE_SIZE) - 1;
 
-                var nextMove = currentNode.getChildNodeInMainBranch();
+                for (int column = firstColumn; column <= lastColumn; ++column) {
+                    for (int tileY = firstTileY; tileY <= lastTileY; ++tileY) {
+                        var tile = getTileAt(tileX, tileY);
 
-                if (nextMove != null) {
-                    currentNode = nextMove;
-                    ++currentGridY;
-                } else {
-                    break;
+                        if (tile == null || tile.nodeGrids == 0) {
+                            continue;
+                        }
+
+                        int firstGridY = tileY << TILE_SIZE_BITS;
+                        long rowsInRegion = getBitsBetween(
+                                Math.max(startY - firstGridY, 0) << TILE_SIZE_BITS,
+                                Math.min(endY - firstGridY, TILE_SIZE) << TILE_SIZE_BITS);
+                        long gridsToVisit = tile.nodeGrids & rowsInRegion & (TILE_COLUMN_BITS << column);
+
+                        while (gridsToVisit != 0) {
+                            int index = Long.numberOfTrailingZeros(gridsToVisit);
+                            gridsToVisit &= gridsToVisit - 1;
+
+                            int x = firstGridX + column;
+                            int y = firstGridY + (index >> TILE_SIZE_BITS);
+                            result.add(tile.owners[index].getNodeElement(x, y));
+                        }
+                    }
                 }
             }
+        }
+
+        private @Nullable ElementTile getTile(int x, int y) {
+            if (x < 0 || y < 0) {
+                return null;
+            }
 
+            return getTileAt(x >> TILE_SIZE_BITS, y >> TILE_SIZE_BITS);
+        }
+
+        private @Nullable ElementTile getTileAt(int tileX, int tileY) {
+            if (tileY >= tiles.length) {
+                return null;
+            }
 
-            branchHeadToColumn.put(firstNodeInThisBranch, columnToUse);
+            var tileRow = tiles[tileY];
+            return tileRow != null && tileX < tileRow.length ? tileRow[tileX] : null;
         }
 
-        public int getFurtheristNodeHorizontal() {
-            return furthestNodeHorizontal;
+        private ElementTile getOrCreateTile(int tileX, int tileY) {
+            if (tileY >= tiles.length) {
+                tiles = Arrays.copyOf(tiles, Math.max(tileY + 1, tiles.length * 2));
+            }
+
+            var tileRow = tiles[tileY];
+
+            if (tileRow == null) {
+                tileRow = new ElementTile[tileX + 1];
+                tiles[tileY] = tileRow;
+            } else if (tileX >= tileRow.length) {
+                tileRow = Arrays.copyOf(tileRow, Math.max(tileX + 1, tileRow.length * 2));
+                tiles[tileY] = tileRow;
+            }
+
+            var tile = tileRow[tileX];
+
+            if (tile == null) {
+                tile = new ElementTile();
+                tileRow[tileX] = tile;
+            }
+
+            return tile;
         }
 
-        public int getFurthestNodeVertical() {
-            return furthestNodeVertical;
+        private static int getIndexInTile(int x, int y) {
+            return ((y & TILE_GRID_MASK) << TILE_SIZE_BITS) | (x & TILE_GRID_MASK);
         }
+
+        /*
+            Bits from position 'from' inclusive to 'to' exclusive, where 0 <= from < to <= 64.
+         */
+        private static long getBitsBetween(int from, int to) {
+            long bitsBelowTo = to == Long.SIZE ? -1L : (1L << to) - 1;
+            return bitsBelowTo & (-1L << from);
+        }
+    }
+
+    /*
+        A square section of the grid space. Each bit in the masks stands for the grid at
+        (index % TILE_SIZE, index / TILE_SIZE) within the tile.
+     */
+    private static final class ElementTile {
+        private final TreeBranch[] owners = new TreeBranch[TreeElementPositionStorage.TILE_SIZE
+                * TreeElementPositionStorage.TILE_SIZE];
+        private long occupiedGrids = 0L;
+        private long nodeGrids = 0L;
     }
 }
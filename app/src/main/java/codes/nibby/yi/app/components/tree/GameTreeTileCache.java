@@ -0,0 +1,121 @@
+package codes.nibby.yi.app.components.tree;
+
+import javafx.scene.image.Image;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Stores rendered images of square sections of the game tree, so that the tree does not have to
+ * be drawn again whenever the viewport moves. Each tile covers {@link #TILE_SIZE} by
+ * {@link #TILE_SIZE} grids of the tree structure, and is keyed by the position of its top-left
+ * grid divided by the tile size.
+ *
+ * All tiles are discarded when the style they were drawn with changes. The least recently used
+ * tiles are discarded once the cache holds more than {@link #MAX_CACHED_PIXELS}.
+ *
+ * The cache is not thread-safe. It is only used on the JavaFX application thread: tiles are drawn
+ * while rendering, and invalidated by the model listeners of {@link GameTreeViewer}, which run on
+ * the thread that edits the model. A model shown in a window is only edited on that thread, and
+ * background work such as a game review writes its results through an executor running there.
+ */
+final class GameTreeTileCache {
+
+    /**
+     * Number of grids along each side of a tile.
+     */
+    static final int TILE_SIZE = 8;
+
+    // Roughly 32MB worth of 32-bit pixels
+    private static final long MAX_CACHED_PIXELS = 8L * 1024 * 1024;
+
+    private final Map<Long, Image> tiles = new LinkedHashMap<>(64, 0.75f, true);
+    private long cachedPixels = 0L;
+
+    private @Nullable GameTreeViewerSettings settings = null;
+    private double gridWidth = 0d;
+    private double gridHeight = 0d;
+    private double outputScale = 0d;
+
+    /**
+     * Sets the style that tiles are drawn with, discarding all tiles if it is different to the
+     * style of the tiles already in the cache.
+     *
+     * @param settings Settings the tiles are drawn with
+     * @param gridWidth Width of each grid, can be obtained from {@link GameTreeElementSize#getGridSize()}
+     * @param gridHeight Height of each grid, can be obtained from {@link GameTreeElementSize#getGridSize()}
+     * @param outputScale Number of image pixels per grid unit
+     */
+    public void setStyle(GameTreeViewerSettings settings, double gridWidth, double gridHeight, double outputScale) {
+        if (this.settings != settings || this.gridWidth != gridWidth
+                || this.gridHeight != gridHeight || this.outputScale != outputScale) {
+
+            this.settings = settings;
+            this.gridWidth = gridWidth;
+            this.gridHeight = gridHeight;
+            this.outputScale = outputScale;
+            invalidateAll();
+        }
+    }
+
+    /**
+     *
+     * @return The image of the tile, or {@code null} if it has not been rendered since the cache was last
+     *         invalidated.
+     */
+    public @Nullable Image getTile(int tileX, int tileY) {
+        return tiles.get(getKey(tileX, tileY));
+    }
+
+    public void putTile(int tileX, int tileY, Image image) {
+        var previous = tiles.put(getKey(tileX, tileY), image);
+        if (previous != null) {
+            cachedPixels -= getPixelCount(previous);
+        }
+        cachedPixels += getPixelCount(image);
+
+        var iterator = tiles.values().iterator();
+        while (cachedPixels > MAX_CACHED_PIXELS && tiles.size() > 1) {
+            cachedPixels -= getPixelCount(iterator.next());
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Discards the tile that covers the given grid.
+     */
+    public void invalidate(int gridX, int gridY) {
+        var removed = tiles.remove(getKey(gridX / TILE_SIZE, gridY / TILE_SIZE));
+        if (removed != null) {
+            cachedPixels -= getPixelCount(removed);
+        }
+    }
+
+    /**
+     * Discards every tile that covers part of the given region of grids.
+     */
+    public void invalidateRegion(int minGridX, int minGridY, int maxGridX, int maxGridY) {
+        for (int tileX = Math.max(minGridX, 0) / TILE_SIZE; tileX <= maxGridX / TILE_SIZE; ++tileX) {
+            for (int tileY = Math.max(minGridY, 0) / TILE_SIZE; tileY <= maxGridY / TILE_SIZE; ++tileY) {
+                invalidate(tileX * TILE_SIZE, tileY * TILE_SIZE);
+            }
+        }
+    }
+
+    /**
+     * Discards all tiles.
+     */
+    public void invalidateAll() {
+        tiles.clear();
+        cachedPixels = 0L;
+    }
+
+    private static long getKey(int tileX, int tileY) {
+        return ((long) tileX << 32) | (tileY & 0xFFFFFFFFL);
+    }
+
+    private static long getPixelCount(Image image) {
+        return (long) image.getWidth() * (long) image.getHeight();
+    }
+}
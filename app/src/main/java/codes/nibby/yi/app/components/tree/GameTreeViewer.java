@@ -2,6 +2,7 @@ package codes.nibby.yi.app.components.tree;
 
 import codes.nibby.yi.app.framework.YiCanvasContainer;
 import codes.nibby.yi.app.framework.YiComponent;
+import codes.nibby.yi.app.framework.YiRenderScheduler;
 import codes.nibby.yi.app.framework.property.NullableProperty;
 import codes.nibby.yi.app.framework.property.NullablePropertyListener;
 import javafx.geometry.Rectangle2D;
@@ -36,6 +37,7 @@ public final class GameTreeViewer implements YiComponent {
     private final GameTreeStructure treeStructure = new GameTreeStructure();
     private final GameTreeElementSize elementSize;
     private final NullableProperty<GameNode> highlightedNode = new NullableProperty<>(null);
+    private final Runnable renderTask = this::renderNow;
 
     public GameTreeViewer() {
         canvas = new GameTreeCanvas();
@@ -64,37 +66,63 @@ public final class GameTreeViewer implements YiComponent {
         render();
     }
 
+    /*
+        Schedules the tree to be drawn on the next pulse, so that the many events fired while
+        browsing quickly through the game are drawn at most once per pulse.
+     */
     private void render() {
+        YiRenderScheduler.requestRender(renderTask);
+    }
+
+    private void renderNow() {
         if (gameModel != null && treeStructure != null) {
-            var elements = getVisibleElementsInViewport();
             var currentNode = gameModel.getCurrentNode();
             var previewNode = treeStructure.getHighlightedNodePath();
 
-            canvas.render(settings, viewport, elements, currentNode, previewNode, elementSize);
+            canvas.render(settings, viewport, treeStructure, currentNode, previewNode, elementSize);
         }
     }
 
-    private List<TreeNodeElement> getVisibleElementsInViewport() {
-        var gridWidth = elementSize.getGridSize().getWidth();
-        var gridHeight = elementSize.getGridSize().getHeight();
-        var offsetY = -viewport.getOffsetY();
+    // Only the tiles covering the part of the tree laid out again have to be drawn again
+    private final EventListener<NodeEvent> nodeAddListener =
+            (event) -> invalidateTilesAndRender(treeStructure.insertNode(event.getNode()));
 
-        // Some branches may be very far from their parent, in this case we still want to render it
-        var startX = 0;
-        var startY = (int) Math.floor(offsetY / gridHeight) - 1;
-        var endX = startX + (int) Math.ceil(canvas.getWidth() / gridWidth) + 3;
-        var endY = startY + (int) Math.ceil(canvas.getHeight() / gridHeight) + 3;
+    private final EventListener<NodeEvent> nodeRemoveListener =
+            (event) -> invalidateTilesAndRender(treeStructure.removeNode(event.getNode()));
 
-        return treeStructure.getNodeElementsWithinVerticalRegion(startX, startY, endX, endY);
-    }
+    // Node data is drawn on the cached tiles, such as whether the node has comments
+    private final EventListener<NodeEvent> nodeDataChangeListener = (event) -> invalidateTileForNode(event.getNode());
 
-    private final EventListener<NodeEvent> treeStructureChangeListener = (event) -> {
-        treeStructure.reconstruct();
+    private final EventListener<NodeEvent> currentMoveChangeListener = (event) -> {
+        // Collapsed variations leading to the new current node have to be shown
+        if (treeStructure.setCurrentNode(event.getNode())) {
+            invalidateTiles();
+        }
+        updateCameraAndRender(event.getNode());
+    };
+    private final EventListener<NodeEvent> currentMoveDataChangeListener = (event) -> {
+        // Fired before nodeDataChangeListener, so the tile has to be invalidated here as well
+        invalidateTileForNode(event.getNode());
         render();
     };
 
-    private final EventListener<NodeEvent> currentMoveChangeListener = (event) -> updateCameraAndRender(event.getNode());
-    private final EventListener<NodeEvent> currentMoveDataChangeListener = (event) -> render();
+    private void invalidateTilesAndRender() {
+        invalidateTiles();
+        render();
+    }
+
+    private void invalidateTilesAndRender(List<int[]> changedRegions) {
+        canvas.invalidateTiles(changedRegions);
+        render();
+    }
+
+    private void invalidateTiles() {
+        canvas.invalidateTiles();
+    }
+
+    private void invalidateTileForNode(GameNode node) {
+        treeStructure.getTreeNodeElementForNode(node).ifPresent(canvas::invalidateTile);
+    }
 
     public void setGameModel(@NotNull GameModel model) {
         boolean panToNewNode = false;
@@ -102,13 +130,15 @@ public final class GameTreeViewer implements YiComponent {
         if (this.gameModel != null) {
             this.gameModel.onCurrentNodeChange().removeListener(currentMoveChangeListener);
             this.gameModel.onCurrentNodeDataUpdate().removeListener(currentMoveDataChangeListener);
-            this.gameModel.onNodeAdd().removeListener(treeStructureChangeListener);
-            this.gameModel.onNodeRemove().removeListener(treeStructureChangeListener);
+            this.gameModel.onNodeAdd().removeListener(nodeAddListener);
+            this.gameModel.onNodeRemove().removeListener(nodeRemoveListener);
+            this.gameModel.onNodeDataUpdate().removeListener(nodeDataChangeListener);
             panToNewNode = true;
         }
 
         this.gameModel = model;
         this.treeStructure.setGameModel(model);
+        this.canvas.invalidateTiles();
 
         var currentNode = this.gameModel.getCurrentNode();
         TreeNodeElement currentNodeElement = this.treeStructure.getTreeNodeElementForNode(currentNode).orElseThrow();
@@ -120,12 +150,59 @@ public final class GameTreeViewer implements YiComponent {
 
         this.gameModel.onCurrentNodeChange().addListener(currentMoveChangeListener);
         this.gameModel.onCurrentNodeDataUpdate().addListener(currentMoveDataChangeListener);
-        this.gameModel.onNodeAdd().addListener(treeStructureChangeListener);
-        this.gameModel.onNodeRemove().addListener(treeStructureChangeListener);
+        this.gameModel.onNodeAdd().addListener(nodeAddListener);
+        this.gameModel.onNodeRemove().addListener(nodeRemoveListener);
+        this.gameModel.onNodeDataUpdate().addListener(nodeDataChangeListener);
 
         updateCameraAndRender(model.getCurrentNode());
     }
 
+    /**
+     * Collapses or expands the variations of a node. Collapsed variations and their subtrees
+     * are not displayed, unless they lead to the current node.
+     *
+     * @param node Node whose variations to collapse or expand.
+     * @param collapsed true to hide the variations, false to show them.
+     */
+    public void setVariationsCollapsed(GameNode node, boolean collapsed) {
+        if (treeStructure.setVariationsCollapsed(node, collapsed)) {
+            invalidateTilesAndRender();
+        }
+    }
+
+    public boolean isVariationsCollapsed(GameNode node) {
+        return treeStructure.isVariationsCollapsed(node);
+    }
+
+    /**
+     * Sets whether only the variations on the path to the current node are displayed. Nodes
+     * collapsed or expanded through {@link #setVariationsCollapsed(GameNode, boolean)} keep
+     * their state.
+     */
+    public void setCollapseAllExceptCurrentPath(boolean collapseAllExceptCurrentPath) {
+        treeStructure.setCollapseAllExceptCurrentPath(collapseAllExceptCurrentPath);
+        invalidateTilesAndRender();
+    }
+
+    public boolean isCollapseAllExceptCurrentPath() {
+        return treeStructure.isCollapseAllExceptCurrentPath();
+    }
+
+    /**
+     * Sets the number of variations a node may have before they are collapsed automatically.
+     *
+     * @param threshold Maximum number of variations to display, or 0 to never collapse variations
+     *                  automatically.
+     */
+    public void setAutoCollapseThreshold(int threshold) {
+        treeStructure.setAutoCollapseThreshold(threshold);
+        invalidateTilesAndRender();
+    }
+
+    public int getAutoCollapseThreshold() {
+        return treeStructure.getAutoCollapseThreshold();
+    }
+
     /**
      * Subscribes to current highlighted node update events. Highlighted node may be
      * {@code null} if none is highlighted.
@@ -256,8 +333,16 @@ public final class GameTreeViewer implements YiComponent {
 
                 treeStructure.getNodeElement(x, y).ifPresent(element -> {
                     var selectedNode = element.getNode();
-                    gameModel.setCurrentNode(selectedNode);
-                    highlightedNode.set(null);
+
+                    if (e.isAltDown()) {
+                        // Alt + click toggles the variations of a node
+                        if (selectedNode.hasAlternativeVariations()) {
+                            setVariationsCollapsed(selectedNode, !isVariationsCollapsed(selectedNode));
+                        }
+                    } else {
+                        gameModel.setCurrentNode(selectedNode);
+                        highlightedNode.set(null);
+                    }
                 });
             }
 
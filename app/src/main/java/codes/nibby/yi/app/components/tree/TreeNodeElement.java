@@ -10,7 +10,7 @@ import java.util.Optional;
  */
 final class TreeNodeElement implements TreeElement {
 
-    private final int gridX;
+    private int gridX;
     private final int gridY;
 
     private final TreeNodeElement parent;
@@ -37,6 +37,14 @@ final class TreeNodeElement implements TreeElement {
         return gridX;
     }
 
+    /**
+     * Moves the element to another column. Only {@link GameTreeStructure} should do this,
+     * as part of laying out the tree again.
+     */
+    void setGridX(int gridX) {
+        this.gridX = gridX;
+    }
+
     @Override
     public int getGridY() {
         return gridY;
@@ -0,0 +1,50 @@
+package codes.nibby.yi.app.components.tree;
+
+import org.jetbrains.annotations.Nullable;
+import codes.nibby.yi.models.GameNode;
+
+/**
+ * The nodes from the root of the game tree to an end node, indexed by their depth in the tree.
+ * The depth of a node is the same as the row of its {@link TreeNodeElement}, so whether an element
+ * lies on the path can be checked in constant time while rendering.
+ */
+final class TreeNodePath {
+
+    static final TreeNodePath EMPTY = new TreeNodePath(null);
+
+    private final @Nullable GameNode endNode;
+    private final GameNode[] nodes;
+
+    /**
+     * @param endNode Last node on the path, or {@code null} for a path with no nodes.
+     */
+    TreeNodePath(@Nullable GameNode endNode) {
+        this.endNode = endNode;
+        this.nodes = endNode != null ? endNode.getMoveHistory().toArray(new GameNode[0]) : new GameNode[0];
+    }
+
+    /**
+     *
+     * @return true if this is the path to the given node.
+     */
+    boolean endsWith(@Nullable GameNode node) {
+        return endNode == node;
+    }
+
+    /**
+     *
+     * @return true if the node of the element lies on this path.
+     */
+    boolean contains(TreeNodeElement element) {
+        int depth = element.getGridY();
+        return depth < nodes.length && nodes[depth] == element.getNode();
+    }
+
+    /**
+     *
+     * @return The node on this path at the given depth, or {@code null} if the path is not that long.
+     */
+    @Nullable GameNode getNodeAt(int depth) {
+        return depth >= 0 && depth < nodes.length ? nodes[depth] : null;
+    }
+}
@@ -0,0 +1,151 @@
+package codes.nibby.yi.app.framework;
+
+import codes.nibby.yi.models.GameModel;
+import codes.nibby.yi.models.GameModelImportMonitor;
+import codes.nibby.yi.models.GameModelImporter;
+import javafx.application.Platform;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Loads game documents from files in the background, so that parsing a large file does not
+ * freeze the interface. Several documents may be loaded at once, each on its own worker thread
+ * up to a small limit.
+ * <p/>
+ * The outcome of each load is delivered on the JavaFx application thread. The progress of a load
+ * can be read from its {@link LoadTask} at any time, and a load that is no longer wanted can be
+ * cancelled, in which case neither callback is invoked.
+ */
+public final class AppDocumentLoader {
+
+    private static final int MAX_CONCURRENT_LOADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(MAX_CONCURRENT_LOADS, runnable -> {
+        var thread = new Thread(runnable, "Document loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private AppDocumentLoader() {
+
+    }
+
+    /**
+     * Starts loading a game document in the background.
+     *
+     * @param file File to load.
+     * @param onLoaded Receives the loaded model on the JavaFx application thread.
+     * @param onFailed Receives the reason the file could not be loaded on the JavaFx application thread.
+     * @return Task that reports the progress of the load.
+     */
+    public static LoadTask load(@NotNull Path file,
+                                @NotNull Consumer<GameModel> onLoaded,
+                                @NotNull Consumer<Exception> onFailed) {
+
+        Objects.requireNonNull(file);
+        Objects.requireNonNull(onLoaded);
+        Objects.requireNonNull(onFailed);
+
+        var task = new LoadTask(file);
+        EXECUTOR.execute(() -> {
+            try {
+                var model = GameModelImporter.INSTANCE.fromFile(file, task.monitor);
+                task.complete(null, () -> onLoaded.accept(model));
+            } catch (CancellationException e) {
+                task.complete(null, null);
+            } catch (Exception e) {
+                task.complete(e, () -> onFailed.accept(e));
+            }
+        });
+        return task;
+    }
+
+    /**
+     * Describes why a document could not be loaded in a form that can be shown to users.
+     *
+     * @param file File that failed to load.
+     * @param error Reason the file could not be loaded.
+     * @return Name of the file followed by the reason.
+     */
+    public static String describeFailure(@NotNull Path file, @NotNull Exception error) {
+        String reason = error.getMessage() != null ? error.getMessage() : error.getClass().getSimpleName();
+        return file.getFileName() + ": " + reason;
+    }
+
+    /**
+     * One document being loaded by {@link AppDocumentLoader}.
+     */
+    public static final class LoadTask {
+
+        private final Path file;
+        private final GameModelImportMonitor monitor = new GameModelImportMonitor();
+        private volatile boolean done = false;
+        private volatile Exception failure = null;
+
+        private LoadTask(Path file) {
+            this.file = file;
+        }
+
+        private void complete(@Nullable Exception failure, @Nullable Runnable callback) {
+            Platform.runLater(() -> {
+                this.failure = failure;
+                done = true;
+
+                // The load may have been cancelled after the document was parsed
+                if (callback != null && !isCancelled()) {
+                    callback.run();
+                }
+            });
+        }
+
+        public Path getFile() {
+            return file;
+        }
+
+        /**
+         *
+         * @return Proportion of the file read so far between 0 and 1, or -1 if the load
+         *         has not started yet.
+         */
+        public double getProgress() {
+            return monitor.getProgress();
+        }
+
+        /**
+         * Stops loading the document. Has no effect if the document has already been
+         * delivered.
+         */
+        public void cancel() {
+            monitor.cancel();
+        }
+
+        public boolean isCancelled() {
+            return monitor.isCancelled();
+        }
+
+        /**
+         *
+         * @return {@code true} if the load has finished, been cancelled or failed, and its
+         *         callback has run. Only changes on the JavaFx application thread.
+         */
+        public boolean isDone() {
+            return done;
+        }
+
+        /**
+         *
+         * @return Reason the document could not be loaded, or {@code null} if it has not
+         *         failed. Only changes on the JavaFx application thread.
+         */
+        public @Nullable Exception getFailure() {
+            return failure;
+        }
+    }
+}
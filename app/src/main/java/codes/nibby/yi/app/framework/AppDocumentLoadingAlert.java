@@ -0,0 +1,87 @@
+package codes.nibby.yi.app.framework;
+
+import codes.nibby.yi.app.framework.modal.ModalActionButton;
+import codes.nibby.yi.app.framework.modal.YiModalAlertPane;
+import javafx.animation.AnimationTimer;
+
+import java.util.List;
+
+/**
+ * Shows the progress of documents being loaded by {@link AppDocumentLoader}. The alert closes
+ * itself once every document has been loaded. If any document could not be loaded, it stays
+ * open listing the reasons until dismissed. Closing it earlier cancels the documents that
+ * are still loading.
+ */
+final class AppDocumentLoadingAlert extends YiModalAlertPane {
+
+    private final List<AppDocumentLoader.LoadTask> tasks;
+    private final AnimationTimer progressUpdater;
+
+    AppDocumentLoadingAlert(List<AppDocumentLoader.LoadTask> tasks) {
+        super(tasks.size() == 1 ? "Opening document" : "Opening documents", null,
+                new ModalActionButton[0], null);
+
+        this.tasks = List.copyOf(tasks);
+
+        var cancelButton = ModalActionButton.createCancelButton();
+        setActionButtons(cancelButton);
+        setPrefSize(400, 120 + 20 * Math.min(tasks.size(), 5));
+
+        progressUpdater = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                if (!tasks.stream().allMatch(AppDocumentLoader.LoadTask::isDone)) {
+                    setBodyMessage(describeProgress());
+                } else if (tasks.stream().anyMatch(task -> task.getFailure() != null)) {
+                    showFailures();
+                } else {
+                    close(null);
+                }
+            }
+        };
+        setBodyMessage(describeProgress());
+        progressUpdater.start();
+
+        setCloseCallback(button -> {
+            progressUpdater.stop();
+            this.tasks.forEach(AppDocumentLoader.LoadTask::cancel);
+            return true;
+        });
+    }
+
+    private void showFailures() {
+        progressUpdater.stop();
+
+        setTitle(tasks.size() == 1 ? "Unable to open document" : "Unable to open some documents");
+        setBodyMessage(describeProgress());
+
+        var okButton = ModalActionButton.createOkayButton();
+        setActionButtons(okButton);
+        setDefaultControlButton(okButton);
+    }
+
+    private String describeProgress() {
+        var message = new StringBuilder();
+
+        for (var task : tasks) {
+            double progress = task.getProgress();
+            var failure = task.getFailure();
+            if (failure != null) {
+                message.append(AppDocumentLoader.describeFailure(task.getFile(), failure)).append('\n');
+                continue;
+            }
+
+            message.append(task.getFile().getFileName()).append(": ");
+            if (task.isDone()) {
+                message.append("Done");
+            } else if (progress < 0) {
+                message.append("Waiting");
+            } else {
+                message.append(Math.round(progress * 100)).append("%");
+            }
+            message.append('\n');
+        }
+
+        return message.toString().trim();
+    }
+}
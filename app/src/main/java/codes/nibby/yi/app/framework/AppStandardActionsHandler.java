@@ -6,16 +6,14 @@ import codes.nibby.yi.app.framework.action.AppActionContext;
 import codes.nibby.yi.app.utilities.GameModelUtilities;
 import codes.nibby.yi.models.GameModel;
 import codes.nibby.yi.models.GameModelExporter;
-import codes.nibby.yi.models.GameModelImporter;
-import codes.nibby.yi.models.GameParseException;
 import javafx.stage.FileChooser;
 import codes.nibby.yi.app.framework.modal.ModalActionButton;
 import codes.nibby.yi.app.framework.modal.YiModalAlertPane;
 import codes.nibby.yi.models.docformat.FileFormat;
 
 import java.io.File;
-import java.io.IOException;
 import java.nio.file.Path;
+import java.util.List;
 
 final class AppStandardActionsHandler implements AppStandardActions.ActionHandler {
 
@@ -89,13 +87,7 @@ final class AppStandardActionsHandler implements AppStandardActions.ActionHandle
         fileChooser.setTitle(AppText.MENUITEM_OPEN_GAME.getLocalisedText());
         File selectedFile = fileChooser.showOpenDialog(window.getStage());
         if (selectedFile != null) {
-            try {
-                var importedModel = GameModelImporter.INSTANCE.fromFile(selectedFile.toPath());
-                window.setGameModel(importedModel);
-            } catch (GameParseException | IOException e) {
-                // TODO: Error handling
-                e.printStackTrace();
-            }
+            window.openDocuments(List.of(selectedFile.toPath()));
         }
     }
 
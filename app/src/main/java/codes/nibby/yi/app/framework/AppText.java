@@ -62,6 +62,7 @@ public final class AppText {
     public static final TextResource DEFAULT_WHITE_NAME = standardResource("default.whiteName");
 
     public static final TextResource MOVE_COUNT = standardResource("moveCount");
+    public static final TextResource SCORE_COUNT = standardResource("scoreCount");
     public static final TextResource PREVIEW_MOVE_PROMPT = standardResource("previewMoveText");
 
     public static final TextResource PASS = standardResource("pass");
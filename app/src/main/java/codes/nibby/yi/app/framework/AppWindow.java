@@ -10,7 +10,9 @@ import javafx.scene.Node;
 import javafx.scene.Parent;
 import javafx.scene.image.Image;
 import javafx.scene.layout.BorderPane;
+import javafx.stage.WindowEvent;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import codes.nibby.yi.app.components.board.GameBoardViewer;
 import codes.nibby.yi.app.components.comment.GameCommentViewer;
 import codes.nibby.yi.app.framework.property.Property;
@@ -20,14 +22,16 @@ import codes.nibby.yi.app.utilities.SystemUtilities;
 import codes.nibby.yi.app.components.tree.GameTreeViewer;
 import codes.nibby.yi.app.components.tree.GameTreeViewerSettings;
 import codes.nibby.yi.models.GameModel;
-import codes.nibby.yi.models.GameModelImporter;
-import codes.nibby.yi.models.GameParseException;
+import codes.nibby.yi.models.GameStatePrefetcher;
 import codes.nibby.yi.models.StandardGameRules;
 
-import java.io.IOException;
+import java.io.File;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 /**
  * The main window for interacting with one {@link GameModel}.
@@ -48,6 +52,8 @@ public class AppWindow extends YiWindow {
     private final AppFooterToolBar footerToolBar;
 
     private final Property<GameModel> gameModel = new Property<>(DEFAULT_MODEL);
+    private GameStatePrefetcher statePrefetcher = null;
+    private final List<AppDocumentLoader.LoadTask> documentLoads = new ArrayList<>();
 
     private boolean addedMenuBarOnce = false;
 
@@ -127,7 +133,14 @@ public class AppWindow extends YiWindow {
         setIcons();
 
         ACTIVE_WINDOWS.add(this);
-        getStage().onCloseRequestProperty().addListener(event -> ACTIVE_WINDOWS.remove(this));
+        // Hidden rather than close requested, since closing the window from code does not request it
+        getStage().addEventHandler(WindowEvent.WINDOW_HIDDEN, event -> {
+            ACTIVE_WINDOWS.remove(this);
+            closeStatePrefetcher();
+            // Loaded documents would otherwise be delivered to a closed window
+            documentLoads.forEach(AppDocumentLoader.LoadTask::cancel);
+            documentLoads.clear();
+        });
     }
 
     private void setIcons() {
@@ -164,32 +177,59 @@ public class AppWindow extends YiWindow {
 
     private void enableDragAndDropToOpenFile(GameBoardViewer boardViewer) {
         boardViewer.setDragAndDropBehaviour(files -> {
-            var success = false;
-            if (files.size() == 1) {
-                var file = files.get(0);
-                try {
-                    var importedGameModel = GameModelImporter.INSTANCE.fromFile(file.toPath());
-                    setGameModel(importedGameModel);
-                    success = true;
-                } catch (GameParseException | IOException e) {
-                    // TODO: Handle this in an error dialog so that users know something
-                    //       went wrong with their file rather than throwing a stack trace
-                    //       in their faces.
-                    e.printStackTrace();
-                }
+            if (files.isEmpty()) {
+                return false;
             }
-            return success;
+            openDocuments(files.stream().map(File::toPath).collect(Collectors.toList()));
+            return true;
         });
     }
 
+    /**
+     * Loads game documents in the background while showing their progress in this window.
+     * The first document replaces the game model in this window, and every other document
+     * is opened in a new window. Documents that cannot be loaded are reported in this window,
+     * and documents still loading when this window is closed are cancelled.
+     *
+     * @param files Files to open, must not be empty.
+     */
+    public void openDocuments(@NotNull List<Path> files) {
+        if (files.isEmpty()) {
+            throw new IllegalArgumentException("No files to open");
+        }
+
+        var tasks = new ArrayList<AppDocumentLoader.LoadTask>(files.size());
+        for (int i = 0; i < files.size(); ++i) {
+            Consumer<GameModel> onLoaded = i == 0
+                    ? this::setGameModel
+                    : loadedModel -> new AppWindow(loadedModel).show();
+
+            // Failures are listed by the loading alert once every document has finished
+            tasks.add(AppDocumentLoader.load(files.get(i), onLoaded, error -> { }));
+        }
+        documentLoads.removeIf(AppDocumentLoader.LoadTask::isDone);
+        documentLoads.addAll(tasks);
+        pushModalContent(new AppDocumentLoadingAlert(tasks));
+    }
+
     public void setGameModel(@NotNull GameModel newModel) {
+        closeStatePrefetcher();
         if (this.gameModel.get() != null) {
             this.gameModel.get().dispose();
         }
+        // Browsing the game should not wait for positions to be calculated
+        this.statePrefetcher = new GameStatePrefetcher(newModel);
         this.gameModel.set(newModel);
         this.actionManager.refreshActions();
     }
 
+    private void closeStatePrefetcher() {
+        if (statePrefetcher != null) {
+            statePrefetcher.close();
+            statePrefetcher = null;
+        }
+    }
+
     public @NotNull GameModel getGameModel() {
         Objects.requireNonNull(gameModel.get(), "No game model is set. " +
                 "setGameModel() must be called once before calling getGameModel().");
@@ -308,4 +348,18 @@ public class AppWindow extends YiWindow {
     public static int getActiveWindowCount() {
         return ACTIVE_WINDOWS.size();
     }
+
+    /**
+     *
+     * @return The focused window, or if none is focused, the most recently opened window
+     *         that is still showing. {@code null} if no window is showing.
+     */
+    public static @Nullable AppWindow getLastActiveWindow() {
+        for (var window : ACTIVE_WINDOWS) {
+            if (window.getStage().isFocused()) {
+                return window;
+            }
+        }
+        return ACTIVE_WINDOWS.isEmpty() ? null : ACTIVE_WINDOWS.get(ACTIVE_WINDOWS.size() - 1);
+    }
 }
@@ -0,0 +1,57 @@
+package codes.nibby.yi.app.framework;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Render tasks waiting to be run by {@link YiRenderScheduler} on the next pulse. Each task is held
+ * at most once, in the order it was first requested, so that repeated requests for the same task
+ * are combined into one render.
+ * <p/>
+ * This class is not thread-safe. The scheduler only accesses it while holding its own lock.
+ */
+final class YiPendingRenders {
+
+    private Set<Runnable> tasks = new LinkedHashSet<>();
+
+    /**
+     *
+     * @return {@code true} if the task was not already waiting to be run.
+     */
+    boolean add(Runnable task) {
+        return tasks.add(task);
+    }
+
+    boolean isEmpty() {
+        return tasks.isEmpty();
+    }
+
+    /**
+     * Removes every waiting task. Tasks added afterwards are held for the next pulse, even if they
+     * are among the tasks taken.
+     *
+     * @return The tasks in the order they were first requested.
+     */
+    Set<Runnable> takeAll() {
+        var takenTasks = tasks;
+        tasks = new LinkedHashSet<>();
+        return takenTasks;
+    }
+
+    /**
+     * Runs each task in order. A task that throws does not stop the tasks after it from running.
+     *
+     * @param errorHandler Receives each task that failed and the exception it threw.
+     */
+    static void runAll(Collection<Runnable> tasks, BiConsumer<Runnable, RuntimeException> errorHandler) {
+        for (Runnable task : tasks) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                errorHandler.accept(task, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package codes.nibby.yi.app.framework;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+
+import java.util.Set;
+
+/**
+ * Global scheduler that paints components at most once per JavaFx pulse. Components request a
+ * render whenever their content becomes outdated, and all requests for the same render task made
+ * before the next pulse are combined into one paint. This avoids painting the same canvas several
+ * times when the game model fires many events in quick succession, such as when the user holds
+ * down the next move key.
+ * <p/>
+ * Renders may be requested from any thread, but are always performed on the JavaFx application
+ * thread. The scheduler stops listening for pulses once there is nothing left to paint. A render
+ * task that throws is reported to the uncaught exception handler of the thread, and does not
+ * stop the other tasks of the same pulse.
+ * <p/>
+ * Timing of the rendered frames is recorded in {@link FrameStatistics}, which can be used to
+ * diagnose stutters in the interface.
+ */
+public final class YiRenderScheduler {
+
+    // Frames taking longer than this to render will cause the next pulse to be missed
+    private static final long FRAME_BUDGET_NANOS = 1_000_000_000L / 60;
+
+    private static final Object LOCK = new Object();
+    private static final YiPendingRenders PENDING_RENDERS = new YiPendingRenders();
+    private static boolean isRunning = false;
+    private static FrameStatistics statistics = new FrameStatistics();
+
+    // Only accessed on the JavaFx application thread
+    private static AnimationTimer timer = null;
+    private static long lastFrameTime = -1;
+
+    private YiRenderScheduler() {
+
+    }
+
+    /**
+     * Schedules a render task to be run on the next pulse. Requesting the same task again before
+     * then has no effect, so each component should keep one instance of its render task.
+     *
+     * @param renderTask Task that paints the component.
+     */
+    public static void requestRender(Runnable renderTask) {
+        synchronized (LOCK) {
+            PENDING_RENDERS.add(renderTask);
+            ++statistics.requestCount;
+
+            if (isRunning) {
+                return;
+            }
+            isRunning = true;
+        }
+
+        if (Platform.isFxApplicationThread()) {
+            startTimer();
+        } else {
+            Platform.runLater(YiRenderScheduler::startTimer);
+        }
+    }
+
+    private static void startTimer() {
+        if (timer == null) {
+            timer = new AnimationTimer() {
+                @Override
+                public void handle(long now) {
+                    renderFrame(now);
+                }
+            };
+        }
+
+        lastFrameTime = -1;
+        timer.start();
+    }
+
+    private static void renderFrame(long now) {
+        Set<Runnable> renderTasks;
+
+        synchronized (LOCK) {
+            if (PENDING_RENDERS.isEmpty()) {
+                isRunning = false;
+                timer.stop();
+                return;
+            }
+
+            renderTasks = PENDING_RENDERS.takeAll();
+        }
+
+        long renderStartTime = System.nanoTime();
+        YiPendingRenders.runAll(renderTasks, YiRenderScheduler::reportRenderFailure);
+        long renderTime = System.nanoTime() - renderStartTime;
+
+        synchronized (LOCK) {
+            statistics.addFrame(renderTasks.size(), renderTime, lastFrameTime >= 0 ? now - lastFrameTime : -1);
+        }
+        lastFrameTime = now;
+    }
+
+    private static void reportRenderFailure(Runnable renderTask, RuntimeException e) {
+        var thread = Thread.currentThread();
+        thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+    }
+
+    /**
+     *
+     * @return Timing of the frames rendered since the statistics were last reset.
+     */
+    public static FrameStatistics getStatistics() {
+        synchronized (LOCK) {
+            return new FrameStatistics(statistics);
+        }
+    }
+
+    public static void resetStatistics() {
+        synchronized (LOCK) {
+            statistics = new FrameStatistics();
+        }
+    }
+
+    /**
+     * Timing of the frames rendered by {@link YiRenderScheduler}. The interval between frames
+     * is only measured for frames rendered on consecutive pulses.
+     */
+    public static final class FrameStatistics {
+
+        private long requestCount = 0;
+        private long renderCount = 0;
+        private long frameCount = 0;
+        private long slowFrameCount = 0;
+        private long totalRenderTime = 0;
+        private long maxRenderTime = 0;
+        private long frameIntervalCount = 0;
+        private long totalFrameInterval = 0;
+        private long maxFrameInterval = 0;
+
+        private FrameStatistics() {
+
+        }
+
+        private FrameStatistics(FrameStatistics other) {
+            this.requestCount = other.requestCount;
+            this.renderCount = other.renderCount;
+            this.frameCount = other.frameCount;
+            this.slowFrameCount = other.slowFrameCount;
+            this.totalRenderTime = other.totalRenderTime;
+            this.maxRenderTime = other.maxRenderTime;
+            this.frameIntervalCount = other.frameIntervalCount;
+            this.totalFrameInterval = other.totalFrameInterval;
+            this.maxFrameInterval = other.maxFrameInterval;
+        }
+
+        private void addFrame(int renders, long renderTime, long frameInterval) {
+            renderCount += renders;
+            ++frameCount;
+            totalRenderTime += renderTime;
+            maxRenderTime = Math.max(maxRenderTime, renderTime);
+
+            if (renderTime > FRAME_BUDGET_NANOS) {
+                ++slowFrameCount;
+            }
+
+            if (frameInterval >= 0) {
+                ++frameIntervalCount;
+                totalFrameInterval += frameInterval;
+                maxFrameInterval = Math.max(maxFrameInterval, frameInterval);
+            }
+        }
+
+        /**
+         * @return Number of times a render has been requested. Requests for a task that is
+         *         already scheduled are included.
+         */
+        public long getRequestCount() {
+            return requestCount;
+        }
+
+        /**
+         * @return Number of render tasks that have been run.
+         */
+        public long getRenderCount() {
+            return renderCount;
+        }
+
+        /**
+         * @return Number of pulses on which at least one render task was run.
+         */
+        public long getFrameCount() {
+            return frameCount;
+        }
+
+        /**
+         * @return Number of frames which took longer to render than the time between two pulses
+         *         at 60 frames per second.
+         */
+        public long getSlowFrameCount() {
+            return slowFrameCount;
+        }
+
+        public double getAverageRenderTimeMillis() {
+            return frameCount > 0 ? toMillis(totalRenderTime) / frameCount : 0d;
+        }
+
+        public double getMaxRenderTimeMillis() {
+            return toMillis(maxRenderTime);
+        }
+
+        public double getAverageFrameIntervalMillis() {
+            return frameIntervalCount > 0 ? toMillis(totalFrameInterval) / frameIntervalCount : 0d;
+        }
+
+        public double getMaxFrameIntervalMillis() {
+            return toMillis(maxFrameInterval);
+        }
+
+        private static double toMillis(long nanos) {
+            return nanos / 1_000_000d;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d frames (%d slow), %d renders from %d requests, "
+                            + "render time avg %.2fms max %.2fms, frame interval avg %.2fms max %.2fms",
+                    frameCount, slowFrameCount, renderCount, requestCount,
+                    getAverageRenderTimeMillis(), getMaxRenderTimeMillis(),
+                    getAverageFrameIntervalMillis(), getMaxFrameIntervalMillis());
+        }
+    }
+}
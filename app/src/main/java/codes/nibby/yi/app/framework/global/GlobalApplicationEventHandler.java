@@ -1,23 +1,25 @@
 package codes.nibby.yi.app.framework.global;
 
 
+import codes.nibby.yi.app.framework.AppDocumentLoader;
 import codes.nibby.yi.app.framework.AppWindow;
+import codes.nibby.yi.app.framework.modal.ModalActionButton;
+import codes.nibby.yi.app.framework.modal.YiModalAlertPane;
+import codes.nibby.yi.app.utilities.GameModelUtilities;
+import codes.nibby.yi.models.GameModel;
 import com.sun.glass.ui.Application;
-import javafx.application.Platform;
 import org.jetbrains.annotations.Nullable;
-import codes.nibby.yi.models.GameModel;
-import codes.nibby.yi.models.GameModelImporter;
-import codes.nibby.yi.models.GameParseException;
 
 import java.io.File;
-import java.io.IOException;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Handles desktop application events.
@@ -146,31 +148,68 @@ public final class GlobalApplicationEventHandler {
         OPEN_FILE_QUEUE.add(file);
     }
 
-    private static boolean loadGameModel(File file) {
-        boolean loadedSomething = false;
-        try {
-            GameModel gameModel = GameModelImporter.INSTANCE.fromFile(file.toPath());
-            loadedSomething = true;
-            Platform.runLater(() -> {
-                var window = new AppWindow(gameModel);
-                window.show();
-            });
-        } catch (GameParseException | IOException e) {
-            e.printStackTrace();
+    private static void loadGameModel(File file) {
+        // Parsed in the background, the window is opened on the Fx thread once loaded
+        AppDocumentLoader.load(file.toPath(), GlobalApplicationEventHandler::openWindow,
+                error -> showLoadFailures(List.of(AppDocumentLoader.describeFailure(file.toPath(), error))));
+    }
+
+    private static void openWindow(GameModel gameModel) {
+        var window = new AppWindow(gameModel);
+        window.show();
+    }
+
+    /*
+        Shown in the active window. If no window is showing, such as when every file opened
+        on startup has failed, a window with a new game is opened to show them in instead.
+     */
+    private static void showLoadFailures(List<String> failures) {
+        var window = AppWindow.getLastActiveWindow();
+        if (window == null) {
+            window = new AppWindow(GameModelUtilities.createGameModel());
+            window.show();
         }
-        return loadedSomething;
+
+        var okButton = ModalActionButton.createOkayButton();
+        var alert = new YiModalAlertPane(failures.size() == 1 ? "Unable to open document" : "Unable to open some documents",
+                String.join("\n", failures), new ModalActionButton[] { okButton }, okButton);
+        window.pushModalContent(alert);
     }
 
     public static void loadAllQueuedOpenFiles() {
-        boolean loadedSomething = false;
-        while (!OPEN_FILE_QUEUE.isEmpty()) {
-            File file = OPEN_FILE_QUEUE.poll();
-            loadedSomething |= loadGameModel(file);
+        var files = new ArrayList<File>(OPEN_FILE_QUEUE);
+        OPEN_FILE_QUEUE.clear();
+
+        // Failures are reported together once every file has finished, so that a window is only
+        // opened to show them if none of the files could be opened
+        var failures = new ArrayList<String>();
+        var remainingLoads = new AtomicInteger(files.size());
+        Runnable onLoadFinished = () -> {
+            if (remainingLoads.decrementAndGet() == 0 && !failures.isEmpty()) {
+                showLoadFailures(failures);
+            }
+        };
+
+        for (File file : files) {
+            AppDocumentLoader.load(file.toPath(), gameModel -> {
+                openWindow(gameModel);
+                onLoadFinished.run();
+            }, error -> {
+                failures.add(AppDocumentLoader.describeFailure(file.toPath(), error));
+                onLoadFinished.run();
+            });
         }
 
-        HAS_PRE_INIT_OPEN_FILE_EVENT.set(loadedSomething);
+        HAS_PRE_INIT_OPEN_FILE_EVENT.set(!files.isEmpty());
     }
 
+    /**
+     *
+     * @return {@code true} if files were requested to be opened before the application
+     *         finished initializing. They are loaded in the background, so their windows may
+     *         not be showing yet. If none of them can be loaded, a window with a new game is
+     *         opened to report the failures.
+     */
     public static boolean hasPreInitializationOpenFileEvent() {
         return HAS_PRE_INIT_OPEN_FILE_EVENT.get();
     }
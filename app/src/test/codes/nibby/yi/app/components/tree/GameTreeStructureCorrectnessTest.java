@@ -6,11 +6,16 @@ import codes.nibby.yi.models.GameModel;
 import codes.nibby.yi.models.GameNode;
 import codes.nibby.yi.models.rules.GameRulesHandler;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Optional;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
@@ -20,6 +25,8 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 //       to understand at a glance the difference between the actual structure produced and the expected structure.
 public final class GameTreeStructureCorrectnessTest {
 
+    private GameTreeStructure incrementalStructure;
+
     private static final class TestingRules extends GameRulesHandler {
 
         @Override
@@ -42,7 +49,7 @@ public final class GameTreeStructureCorrectnessTest {
 
     @Test
     public void testLinearSequence() {
-        var model = new GameModel(3, 3, new TestingRules());
+        var model = createModel();
         model.beginMoveSequence()
                 .playMove(0, 0)
                 .playMove(0, 1)
@@ -59,7 +66,7 @@ public final class GameTreeStructureCorrectnessTest {
 
     @Test
     public void testWithOneSideBranch() {
-        var model = new GameModel(3, 3, new TestingRules());
+        var model = createModel();
         model.beginMoveSequence()
                 .playMove(0, 0)
                 .playMove(0, 1);
@@ -95,7 +102,7 @@ public final class GameTreeStructureCorrectnessTest {
 
     @Test
     public void testWithThreeSideBranch() {
-        var model = new GameModel(3, 3, new TestingRules());
+        var model = createModel();
         model.beginMoveSequence()
                 .playMove(0, 0)
                 .playMove(0, 1);
@@ -127,7 +134,7 @@ public final class GameTreeStructureCorrectnessTest {
 
     @Test
     public void testBranches_createNewVariationDownstream_PushesParentVariationsOutwards() {
-        var model = new GameModel(3, 3, new TestingRules());
+        var model = createModel();
 
         // Setup test
         model.beginMoveSequence()
@@ -169,7 +176,7 @@ public final class GameTreeStructureCorrectnessTest {
 
     @Test
     public void testColumnAdjust_LongTrackBelow_AncestorVariationDoesNotIntersect() {
-        var model = new GameModel(3, 3, new TestingRules());
+        var model = createModel();
 
         // Build main branch
         model.beginMoveSequence()
@@ -229,7 +236,7 @@ public final class GameTreeStructureCorrectnessTest {
 
     @Test
     public void testColumnAdjust_LongAncestorBranches_FindsNewColumnOnRight() {
-        var model = new GameModel(3, 3, new TestingRules());
+        var model = createModel();
 
         // Build main branch
         model.beginMoveSequence()
@@ -351,7 +358,7 @@ public final class GameTreeStructureCorrectnessTest {
         //  |    |   |
         // [x]  [x] [x]
         //
-        var model = new GameModel(3, 3, new TestingRules());
+        var model = createModel();
 
         // Build main branch
         model.beginMoveSequence()
@@ -406,12 +413,425 @@ public final class GameTreeStructureCorrectnessTest {
         testTreeStructure(model, expectedStructure); // Sanity check
     }
 
-    private void testTreeStructure(GameModel model, String[] expectedStructure) {
-        boolean[][] grids = generateExpectedGridSpace(expectedStructure);
-        boolean[][] actualGrid = new boolean[grids.length][grids[0].length];
+    @Test
+    public void testRemoveVariation_FreesGridsForOtherBranches() {
+        var model = createModel();
+
+        // Build main branch
+        model.beginMoveSequence()
+                .playMove(0, 0)
+                .playMove(0, 1)
+                .playMove(0, 2)
+                .playMove(1, 0)
+                .playMove(1 ,1);
+
+        model.toPreviousNode(3);
+        model.beginMoveSequence().playMove(2, 2);
+        var variationToRemove = model.getCurrentNode();
+        model.toPreviousNode();
+        model.toNextNode(2);
+        model.beginMoveSequence().playMove(2, 1);
+        model.toPreviousNode();
+        model.beginMoveSequence().playMove(1, 2);
+
+        String[] expectedInitialStructure = {
+                "x  ",
+                "x  ",
+                "x  ",
+                "xx ",
+                "x  ",
+                "xxx",
+        };
+        testTreeStructure(model, expectedInitialStructure); // Sanity check
+
+        model.getEditor().removeNodeSubtree(variationToRemove);
+
+        String[] expectedStructure = {
+                "x  ",
+                "x  ",
+                "x  ",
+                "x  ",
+                "x  ",
+                "xxx",
+        };
+        testTreeStructure(model, expectedStructure);
+    }
+
+    @Test
+    public void testRemoveEndOfBranch_BranchMovesBackInwards() {
+        var model = createModel();
+
+        // Build main branch
+        model.beginMoveSequence()
+                .playMove(0, 0)
+                .playMove(0, 1)
+                .playMove(0, 2)
+                .playMove(1, 0)
+                .playMove(1 ,1);
+
+        model.toPreviousNode();
+        model.beginMoveSequence().playMove(2, 2);
+        model.toPreviousNode();
+        model.beginMoveSequence().playMove(2, 1);
+        model.toPreviousNode();
+        model.beginMoveSequence().playMove(2, 0);
+
+        // Create a wide horizontal track
+        model.toPreviousNode(2);
+        model.beginMoveSequence().playMove(1, 1);
+
+        model.toPreviousNode(3);
+        model.beginMoveSequence().playMove(0, 2).playMove(0, 1);
+
+        String[] expectedInitialStructure = {
+                "x     ",
+                "x     ",
+                "x    x",
+                "x    x",
+                "x   x ",
+                "xxxx  ",
+        };
+        testTreeStructure(model, expectedInitialStructure); // Sanity check
+
+        // The last node pushed its branch past the track below, so the branch should move back once it is removed
+        model.getEditor().removeNodeSubtree(model.getCurrentNode());
+
+        String[] expectedStructure = {
+                "x    ",
+                "x    ",
+                "xx   ",
+                "x    ",
+                "x   x",
+                "xxxx ",
+        };
+        testTreeStructure(model, expectedStructure);
+    }
+
+    @Test
+    public void testRemoveMainBranch_VariationBecomesMainBranch() {
+        var model = createModel();
+        model.beginMoveSequence()
+                .playMove(0, 0)
+                .playMove(0, 1)
+                .playMove(0, 2);
+
+        model.toPreviousNode(2);
+        model.beginMoveSequence().playMove(2, 2).playMove(2, 1);
+        model.toPreviousNode(2);
+
+        String[] expectedInitialStructure = {
+                "x ",
+                "x ",
+                "xx",
+                "xx",
+        };
+        testTreeStructure(model, expectedInitialStructure); // Sanity check
+
+        model.getEditor().removeNodeSubtree(model.getCurrentNode().getChildNodeInMainBranch());
+
+        String[] expectedStructure = {
+                "x ",
+                "x ",
+                "x ",
+                "x ",
+        };
+        testTreeStructure(model, expectedStructure);
+    }
+
+    @Test
+    public void testRandomEdits_IncrementalStructureMatchesReconstructed() {
+        var model = new GameModel(5, 5, new TestingRules());
+        var random = new Random(5);
+
+        var structure = new GameTreeStructure();
+        structure.setGameModel(model);
+        model.onNodeAdd().addListener(event -> structure.insertNode(event.getNode()));
+        model.onNodeRemove().addListener(event -> structure.removeNode(event.getNode()));
+
+        for (int edit = 0; edit < 1000; ++edit) {
+            var nodes = new ArrayList<>(structure.getNodeElements());
+            var node = nodes.get(random.nextInt(nodes.size())).getNode();
+
+            if (random.nextInt(5) == 0 && !node.isRoot()) {
+                model.getEditor().removeNodeSubtree(node);
+            } else {
+                model.setCurrentNode(node);
+                model.getEditor().addMove(random.nextInt(5), random.nextInt(5));
+            }
+
+            var reconstructedStructure = new GameTreeStructure();
+            reconstructedStructure.setGameModel(model);
+            assertSameLayout(reconstructedStructure, structure);
+        }
+    }
+
+    @Test
+    public void testRandomEdits_ChangedRegionsCoverEveryMovedNode() {
+        var model = new GameModel(5, 5, new TestingRules());
+        var random = new Random(17);
+
+        var structure = new GameTreeStructure();
+        structure.setGameModel(model);
+        var changedRegions = new ArrayList<int[]>();
+        model.onNodeAdd().addListener(event -> changedRegions.addAll(structure.insertNode(event.getNode())));
+        model.onNodeRemove().addListener(event -> changedRegions.addAll(structure.removeNode(event.getNode())));
+
+        for (int edit = 0; edit < 1000; ++edit) {
+            var nodes = new ArrayList<>(structure.getNodeElements());
+            var node = nodes.get(random.nextInt(nodes.size())).getNode();
+            var positionsBefore = getNodePositions(structure);
+            changedRegions.clear();
+
+            if (random.nextInt(5) == 0 && !node.isRoot()) {
+                model.getEditor().removeNodeSubtree(node);
+            } else {
+                model.setCurrentNode(node);
+                model.getEditor().addMove(random.nextInt(5), random.nextInt(5));
+            }
+
+            var positionsAfter = getNodePositions(structure);
+            var allNodes = new HashSet<>(positionsBefore.keySet());
+            allNodes.addAll(positionsAfter.keySet());
+
+            for (var changedNode : allNodes) {
+                var before = positionsBefore.get(changedNode);
+                var after = positionsAfter.get(changedNode);
+
+                if (!Arrays.equals(before, after)) {
+                    for (var position : Arrays.asList(before, after)) {
+                        if (position != null) {
+                            assertTrue(isInAnyRegion(position[0], position[1], changedRegions),
+                                    "Node at (" + position[0] + ", " + position[1] + ") changed outside of the changed regions");
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // Position of each node and of its parent, since the track to the parent is drawn with the node
+    private HashMap<GameNode, int[]> getNodePositions(GameTreeStructure structure) {
+        var positions = new HashMap<GameNode, int[]>();
+
+        for (TreeNodeElement element : structure.getNodeElements()) {
+            var parent = element.getParent();
+            positions.put(element.getNode(), new int[] {
+                    element.getGridX(), element.getGridY(),
+                    parent.map(TreeNodeElement::getGridX).orElse(-1), parent.map(TreeNodeElement::getGridY).orElse(-1)
+            });
+        }
+
+        return positions;
+    }
+
+    private boolean isInAnyRegion(int x, int y, Collection<int[]> regions) {
+        for (int[] region : regions) {
+            if (region[0] <= x && x <= region[2] && region[1] <= y && y <= region[3]) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Test
+    public void testNodeElementsWithinRegion_ReturnsEveryNodeInRegionInOrder() {
+        var model = new GameModel(5, 5, new TestingRules());
+        var random = new Random(41);
+
+        var structure = new GameTreeStructure();
+        structure.setGameModel(model);
+        model.onNodeAdd().addListener(event -> structure.insertNode(event.getNode()));
+        model.onNodeRemove().addListener(event -> structure.removeNode(event.getNode()));
+
+        for (int edit = 0; edit < 500; ++edit) {
+            var nodes = new ArrayList<>(structure.getNodeElements());
+            var node = nodes.get(random.nextInt(nodes.size())).getNode();
+
+            if (random.nextInt(5) == 0 && !node.isRoot()) {
+                model.getEditor().removeNodeSubtree(node);
+            } else {
+                model.setCurrentNode(node);
+                model.getEditor().addMove(random.nextInt(5), random.nextInt(5));
+            }
+        }
+
+        for (TreeNodeElement element : structure.getNodeElements()) {
+            assertEquals(Optional.of(element), structure.getNodeElement(element.getGridX(), element.getGridY()));
+        }
+
+        for (int query = 0; query < 200; ++query) {
+            int startX = random.nextInt(20) - 2;
+            int startY = random.nextInt(60) - 2;
+            int endX = startX + random.nextInt(10);
+            int endY = startY + random.nextInt(20);
+
+            // The region is widened to the right by ten times its height, so that far away variations are included
+            int regionEndX = endX + (endY - startY) * 10;
+            var expectedElements = new HashSet<TreeNodeElement>();
+            for (TreeNodeElement element : structure.getNodeElements()) {
+                if (element.getGridX() >= startX && element.getGridX() < regionEndX
+                        && element.getGridY() >= startY && element.getGridY() < endY) {
+                    expectedElements.add(element);
+                }
+            }
+
+            var elements = structure.getNodeElementsWithinVerticalRegion(startX, startY, endX, endY);
+            assertEquals(expectedElements.size(), elements.size(), "Node element count in region");
+            assertEquals(expectedElements, new HashSet<>(elements));
+
+            // Tracks are rendered in reverse order, so the current variation must come before variations to its right
+            for (int i = 1; i < elements.size(); ++i) {
+                var previous = elements.get(i - 1);
+                var element = elements.get(i);
+                assertTrue(previous.getGridX() < element.getGridX()
+                        || previous.getGridX() == element.getGridX() && previous.getGridY() < element.getGridY(),
+                        "Node elements are not ordered by column then row");
+            }
+        }
+    }
+
+    @Test
+    public void testCollapsedVariation_LeftOutUnlessOnCurrentPath() {
+        var model = createModel();
+        model.beginMoveSequence()
+                .playMove(0, 0)
+                .playMove(0, 1);
+
+        model.toPreviousNode();
+        var branchingNode = model.getCurrentNode();
+
+        model.beginMoveSequence()
+                .playMove(0, 2)
+                .playMove(0, 1);
+        var variationNode = model.getCurrentNode();
+        model.setCurrentNode(model.getRootNode());
 
         var structure = new GameTreeStructure();
         structure.setGameModel(model);
+        assertTrue(structure.setVariationsCollapsed(branchingNode, true));
+
+        // Only the main branch remains
+        assertEquals(3, structure.getNodeElements().size());
+        for (TreeNodeElement element : structure.getNodeElements()) {
+            assertEquals(0, element.getGridX());
+        }
+        assertTrue(structure.getTreeNodeElementForNode(variationNode).isEmpty());
+        assertEquals(3, structure.getNodeElementsWithinRegion(0, 0, 10, 10).size());
+        assertTrue(structure.hasHiddenVariations(structure.getTreeNodeElementForNode(branchingNode).orElseThrow()));
+        assertEquals(0, structure.getFurthestHorizontalNode());
+
+        // Variations leading to the current node are always shown
+        model.setCurrentNode(variationNode);
+        assertTrue(structure.setCurrentNode(variationNode));
+        assertTrue(structure.getTreeNodeElementForNode(variationNode).isPresent());
+
+        model.setCurrentNode(model.getRootNode());
+        assertTrue(structure.setCurrentNode(model.getRootNode()));
+        assertTrue(structure.getTreeNodeElementForNode(variationNode).isEmpty());
+
+        assertTrue(structure.setVariationsCollapsed(branchingNode, false));
+        assertSameLayout(incrementalStructure, structure);
+    }
+
+    @Test
+    public void testRandomEditsWithCollapsedVariations_IncrementalStructureMatchesReconstructed() {
+        var model = new GameModel(5, 5, new TestingRules());
+        var random = new Random(44);
+        var collapsedNodes = new HashMap<GameNode, Boolean>();
+
+        var structure = new GameTreeStructure();
+        structure.setAutoCollapseThreshold(2);
+        structure.setGameModel(model);
+        model.onNodeAdd().addListener(event -> structure.insertNode(event.getNode()));
+        model.onNodeRemove().addListener(event -> structure.removeNode(event.getNode()));
+        model.onCurrentNodeChange().addListener(event -> structure.setCurrentNode(event.getNode()));
+
+        for (int edit = 0; edit < 1000; ++edit) {
+            var nodes = new ArrayList<>(structure.getNodeElements());
+            var node = nodes.get(random.nextInt(nodes.size())).getNode();
+            int action = random.nextInt(10);
+
+            if (action == 0 && !node.isRoot()) {
+                model.getEditor().removeNodeSubtree(node);
+            } else if (action == 1) {
+                boolean collapsed = random.nextBoolean();
+                collapsedNodes.put(node, collapsed);
+                structure.setVariationsCollapsed(node, collapsed);
+            } else if (action == 2) {
+                model.setCurrentNode(node);
+            } else {
+                model.setCurrentNode(node);
+                model.getEditor().addMove(random.nextInt(5), random.nextInt(5));
+            }
+
+            var reconstructedStructure = new GameTreeStructure();
+            reconstructedStructure.setAutoCollapseThreshold(2);
+            collapsedNodes.forEach(reconstructedStructure::setVariationsCollapsed);
+            reconstructedStructure.setGameModel(model);
+            assertSameLayout(reconstructedStructure, structure);
+            assertTrue(structure.getTreeNodeElementForNode(model.getCurrentNode()).isPresent());
+        }
+
+        // Switching modes lays out the whole tree again with every other variation collapsed
+        structure.setCollapseAllExceptCurrentPath(true);
+        for (TreeNodeElement element : structure.getNodeElements()) {
+            var node = element.getNode();
+            var parent = node.getParent();
+
+            if (parent != null && parent.getChildNodeInMainBranch() != node
+                    && !Boolean.FALSE.equals(collapsedNodes.get(parent))) {
+                assertTrue(model.getCurrentNode().getMoveHistory().contains(node),
+                        "Collapsed variation is shown: '" + node + "'");
+            }
+        }
+    }
+
+    /*
+     * Creates a model along with a tree structure that is updated incrementally as nodes are added to or
+     * removed from it, so that every test checks both ways of building the structure.
+     */
+    private GameModel createModel() {
+        var model = new GameModel(3, 3, new TestingRules());
+
+        incrementalStructure = new GameTreeStructure();
+        incrementalStructure.setGameModel(model);
+        model.onNodeAdd().addListener(event -> incrementalStructure.insertNode(event.getNode()));
+        model.onNodeRemove().addListener(event -> incrementalStructure.removeNode(event.getNode()));
+
+        return model;
+    }
+
+    private void testTreeStructure(GameModel model, String[] expectedStructure) {
+        var structure = new GameTreeStructure();
+        structure.setGameModel(model);
+        testTreeStructure(model, structure, expectedStructure);
+
+        if (incrementalStructure != null) {
+            testTreeStructure(model, incrementalStructure, expectedStructure);
+            assertSameLayout(structure, incrementalStructure);
+        }
+    }
+
+    private void assertSameLayout(GameTreeStructure expected, GameTreeStructure actual) {
+        assertEquals(expected.getNodeElements().size(), actual.getNodeElements().size(), "Node element count");
+
+        for (TreeNodeElement expectedElement : expected.getNodeElements()) {
+            var node = expectedElement.getNode();
+            var actualElement = actual.getTreeNodeElementForNode(node);
+
+            assertTrue(actualElement.isPresent(), "Cannot find corresponding tree element for node '" + node + "'");
+            assertEquals(expectedElement.getGridX(), actualElement.get().getGridX(), "Column of node '" + node + "'");
+            assertEquals(expectedElement.getGridY(), actualElement.get().getGridY(), "Row of node '" + node + "'");
+        }
+
+        assertEquals(expected.getFurthestHorizontalNode(), actual.getFurthestHorizontalNode(), "Furthest horizontal node");
+        assertEquals(expected.getFurthestVerticalNode(), actual.getFurthestVerticalNode(), "Furthest vertical node");
+    }
+
+    private void testTreeStructure(GameModel model, GameTreeStructure structure, String[] expectedStructure) {
+        boolean[][] grids = generateExpectedGridSpace(expectedStructure);
+        boolean[][] actualGrid = new boolean[grids.length][grids[0].length];
 
         // Probe the entire structure to check if it complies
         for (int x = 0; x < grids.length; ++x) {
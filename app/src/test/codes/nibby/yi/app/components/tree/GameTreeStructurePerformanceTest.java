@@ -10,7 +10,7 @@ import codes.nibby.yi.models.rules.GameRulesHandler;
 
 import java.util.concurrent.TimeUnit;
 
-// TODO: Move me into a performance test source set
+// Coarse regression guard only. Use GameTreeStructureBenchmark (src/jmh) to measure changes.
 public final class GameTreeStructurePerformanceTest {
 
     @Test
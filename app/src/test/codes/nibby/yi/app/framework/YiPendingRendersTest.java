@@ -0,0 +1,71 @@
+package codes.nibby.yi.app.framework;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public final class YiPendingRendersTest {
+
+    @Test
+    public void testRepeatedRequestsAreCombined() {
+        var pendingRenders = new YiPendingRenders();
+        Runnable first = () -> { };
+        Runnable second = () -> { };
+
+        Assertions.assertTrue(pendingRenders.add(first));
+        Assertions.assertTrue(pendingRenders.add(second));
+        Assertions.assertFalse(pendingRenders.add(first));
+
+        Assertions.assertEquals(List.of(first, second), new ArrayList<>(pendingRenders.takeAll()));
+    }
+
+    @Test
+    public void testTasksAreTakenInOrderOfFirstRequest() {
+        var pendingRenders = new YiPendingRenders();
+        var tasks = new ArrayList<Runnable>();
+        for (int i = 0; i < 10; ++i) {
+            // Each task captures its index so that every task is a distinct instance
+            int index = i;
+            Runnable task = () -> Assertions.assertTrue(index >= 0);
+            tasks.add(task);
+            pendingRenders.add(task);
+        }
+        pendingRenders.add(tasks.get(5));
+        pendingRenders.add(tasks.get(0));
+
+        Assertions.assertEquals(tasks, new ArrayList<>(pendingRenders.takeAll()));
+    }
+
+    @Test
+    public void testTakeAllLeavesQueueEmptyForNextPulse() {
+        var pendingRenders = new YiPendingRenders();
+        Runnable task = () -> { };
+        pendingRenders.add(task);
+
+        var taken = pendingRenders.takeAll();
+        Assertions.assertTrue(pendingRenders.isEmpty());
+
+        // A task may request another render while it is being run
+        Assertions.assertTrue(pendingRenders.add(task));
+        Assertions.assertEquals(1, taken.size());
+        Assertions.assertEquals(List.of(task), new ArrayList<>(pendingRenders.takeAll()));
+    }
+
+    @Test
+    public void testFailingTaskDoesNotStopOtherTasks() {
+        var ranTasks = new ArrayList<String>();
+        var failedTasks = new ArrayList<Runnable>();
+        Runnable failingTask = () -> {
+            ranTasks.add("failing");
+            throw new IllegalStateException("Render failed");
+        };
+        Runnable nextTask = () -> ranTasks.add("next");
+
+        YiPendingRenders.runAll(List.of(failingTask, nextTask), (task, e) -> failedTasks.add(task));
+
+        Assertions.assertEquals(List.of("failing", "next"), ranTasks);
+        Assertions.assertEquals(List.of(failingTask), failedTasks);
+    }
+}
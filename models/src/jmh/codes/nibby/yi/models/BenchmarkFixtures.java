@@ -0,0 +1,52 @@
+package codes.nibby.yi.models;
+
+import codes.nibby.yi.models.docformat.FileFormat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Loads the SGF files bundled with the unit tests for use in benchmarks.
+ */
+public final class BenchmarkFixtures {
+
+    private BenchmarkFixtures() {
+
+    }
+
+    /**
+     * @param fileName Name of the file in the {@code /sgf} resource directory.
+     * @return Contents of the file.
+     */
+    public static String readSgf(String fileName) {
+        try (InputStream inputStream = BenchmarkFixtures.class.getResourceAsStream("/sgf/" + fileName)) {
+            if (inputStream == null) {
+                throw new IllegalArgumentException("No such fixture: " + fileName);
+            }
+            return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @param fileName Name of the file in the {@code /sgf} resource directory.
+     * @return Game model parsed from the file.
+     */
+    public static GameModel loadSgf(String fileName) throws GameParseException {
+        return GameModelImporter.INSTANCE.fromString(readSgf(fileName), FileFormat.SGF);
+    }
+
+    /**
+     * @return The last node in the main variation of the game tree.
+     */
+    public static GameNode getLastNodeInMainBranch(GameModel model) {
+        GameNode node = model.getRootNode();
+        while (node.getChildNodeInMainBranch() != null) {
+            node = node.getChildNodeInMainBranch();
+        }
+        return node;
+    }
+}
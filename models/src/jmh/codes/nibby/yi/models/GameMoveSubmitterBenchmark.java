@@ -0,0 +1,53 @@
+package codes.nibby.yi.models;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of validating a move and creating its node, without adding it to the
+ * game tree. Each invocation tries the next intersection on the board, so the results
+ * cover legal moves as well as occupied and suicide points.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameMoveSubmitterBenchmark {
+
+    @Param({"standard.sgf", "igsGame.sgf"})
+    public String fixture;
+
+    private GameModel model;
+    private GameNode parentNode;
+    private List<Stone> proposedMoves;
+    private int nextMoveIndex;
+
+    @Setup
+    public void setUp() throws GameParseException {
+        model = BenchmarkFixtures.loadSgf(fixture);
+        parentNode = BenchmarkFixtures.getLastNodeInMainBranch(model);
+        model.setCurrentNode(parentNode);
+
+        var color = model.getNextTurnStoneColor();
+        proposedMoves = new ArrayList<>();
+        for (int y = 0; y < model.getBoardHeight(); ++y) {
+            for (int x = 0; x < model.getBoardWidth(); ++x) {
+                proposedMoves.add(new Stone(x, y, color));
+            }
+        }
+        nextMoveIndex = 0;
+    }
+
+    @Benchmark
+    public MoveValidationResult validateAndCreateMoveNode() {
+        var proposedMove = proposedMoves.get(nextMoveIndex);
+        nextMoveIndex = (nextMoveIndex + 1) % proposedMoves.size();
+
+        return GameMoveSubmitter.INSTANCE.createMoveNode(model, parentNode, proposedMove, false).getFirst();
+    }
+}
@@ -0,0 +1,44 @@
+package codes.nibby.yi.models;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link GameModel#getGameState(GameNode)}, which rebuilds the board position by
+ * applying every delta from the root to the requested node.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameStateBenchmark {
+
+    @Param({"standard.sgf", "igsGame.sgf", "1000_nodes.sgf"})
+    public String fixture;
+
+    private GameModel model;
+    private GameNode lastNode;
+    private GameNode middleNode;
+
+    @Setup
+    public void setUp() throws GameParseException {
+        model = BenchmarkFixtures.loadSgf(fixture);
+        lastNode = BenchmarkFixtures.getLastNodeInMainBranch(model);
+
+        var history = lastNode.getMoveHistory();
+        middleNode = history.get(history.size() / 2);
+    }
+
+    @Benchmark
+    public GameState gameStateAtEndOfMainBranch() {
+        return model.getGameState(lastNode);
+    }
+
+    @Benchmark
+    public GameState gameStateAtMiddleOfMainBranch() {
+        return model.getGameState(middleNode);
+    }
+}
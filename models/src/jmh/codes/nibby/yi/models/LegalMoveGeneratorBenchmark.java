@@ -0,0 +1,47 @@
+package codes.nibby.yi.models;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link LegalMoveGenerator} in the middle of a real game, both with the full
+ * repetition check against the game history and on a primitive board as used by playouts.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LegalMoveGeneratorBenchmark {
+
+    @Param({"standard.sgf", "igsGame.sgf"})
+    public String fixture;
+
+    private GameModel model;
+    private LegalMoveGenerator generator;
+    private LegalMoveMask mask;
+    private byte[] board;
+    private StoneColor nextTurn;
+
+    @Setup
+    public void setUp() throws GameParseException {
+        model = BenchmarkFixtures.loadSgf(fixture);
+        model.setCurrentNode(BenchmarkFixtures.getLastNodeInMainBranch(model));
+        generator = new LegalMoveGenerator(model.getBoardWidth(), model.getBoardHeight());
+        mask = new LegalMoveMask(model.getBoardWidth(), model.getBoardHeight());
+        board = model.getCurrentGameState().getBoardPosition().copyStoneIndices(new byte[model.getIntersectionCount()]);
+        nextTurn = model.getNextTurnStoneColor();
+    }
+
+    @Benchmark
+    public LegalMoveMask generateForModel() {
+        return generator.generate(model, mask);
+    }
+
+    @Benchmark
+    public LegalMoveMask generateForPrimitiveBoard() {
+        return generator.generate(board, nextTurn, false, -1, mask);
+    }
+}
@@ -0,0 +1,68 @@
+package codes.nibby.yi.models;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares replaying the main variation of a game record one move at a time against
+ * replaying it as one batch with {@link MoveSequence#playMoves(int[])}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoveBatchBenchmark {
+
+    @Param({"standard.sgf", "igsGame.sgf"})
+    public String fixture;
+
+    private int boardWidth;
+    private int boardHeight;
+    private int[] encodedMoves;
+
+    @Setup
+    public void setUp() throws GameParseException {
+        var model = BenchmarkFixtures.loadSgf(fixture);
+        boardWidth = model.getBoardWidth();
+        boardHeight = model.getBoardHeight();
+
+        var moves = new ArrayList<Integer>();
+        for (GameNode node : BenchmarkFixtures.getLastNodeInMainBranch(model).getMoveHistory()) {
+            var move = node.getPrimaryMove();
+            if (node.getType() == GameNodeType.PASS) {
+                moves.add(MoveSequence.PASS);
+            } else if (node.getType() == GameNodeType.MOVE_PLAYED && move != null) {
+                moves.add(MoveSequence.Companion.encodeMove(move.getX(), move.getY(), boardWidth));
+            } else if (node.getType() != GameNodeType.ROOT) {
+                // Stone edits cannot be replayed as moves, stop here
+                break;
+            }
+        }
+        encodedMoves = moves.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    @Benchmark
+    public GameModel playMovesIndividually() {
+        var model = new GameModel(boardWidth, boardHeight, StandardGameRules.CHINESE);
+        var editor = model.getEditor();
+        for (int move : encodedMoves) {
+            if (move == MoveSequence.PASS) {
+                editor.addPass();
+            } else {
+                editor.addMove(move % boardWidth, move / boardWidth);
+            }
+        }
+        return model;
+    }
+
+    @Benchmark
+    public GameModel playMovesInBatch() {
+        var model = new GameModel(boardWidth, boardHeight, StandardGameRules.CHINESE);
+        model.getEditor().addMoves(encodedMoves);
+        return model;
+    }
+}
@@ -0,0 +1,57 @@
+package codes.nibby.yi.models;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures incremental state hash updates on a 19x19 board, both for a plain move and for
+ * a move that captures a group of stones.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ZobristHasherBenchmark {
+
+    private static final int BOARD_SIZE = 19;
+
+    private ZobristHasher hasher;
+    private long lastStateHash;
+    private Set<Stone> singleMoveUpdate;
+    private Set<Stone> captureUpdate;
+
+    @Setup
+    public void setUp() {
+        hasher = new ZobristHasher(BOARD_SIZE, BOARD_SIZE);
+        lastStateHash = hasher.computeEmptyPositionHash(BOARD_SIZE, BOARD_SIZE);
+
+        singleMoveUpdate = Set.of(new Stone(3, 3, StoneColor.BLACK));
+
+        // A move capturing a string of six stones
+        captureUpdate = new HashSet<>();
+        captureUpdate.add(new Stone(9, 8, StoneColor.BLACK));
+        for (int x = 3; x < 9; ++x) {
+            captureUpdate.add(new Stone(x, 9, StoneColor.NONE));
+        }
+    }
+
+    @Benchmark
+    public long updateHashForMove() {
+        return hasher.computeUpdateHash(lastStateHash, singleMoveUpdate);
+    }
+
+    @Benchmark
+    public long updateHashForCapture() {
+        return hasher.computeUpdateHash(lastStateHash, captureUpdate);
+    }
+
+    @Benchmark
+    public long emptyPositionHash() {
+        return hasher.computeEmptyPositionHash(BOARD_SIZE, BOARD_SIZE);
+    }
+}
@@ -0,0 +1,40 @@
+package codes.nibby.yi.models.analysis;
+
+import codes.nibby.yi.models.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link PlayoutSimulator} from the middle of a real game. Comparing the thread
+ * counts shows how well the playouts scale across cores.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlayoutSimulatorBenchmark {
+
+    private static final int TOTAL_PLAYOUTS = 256;
+
+    @Param({"1", "2", "4"})
+    public int threadCount;
+
+    private PlayoutSimulator simulator;
+    private GameModel model;
+    private GameNode node;
+
+    @Setup
+    public void setUp() throws GameParseException {
+        model = BenchmarkFixtures.loadSgf("standard.sgf");
+        node = BenchmarkFixtures.getLastNodeInMainBranch(model);
+        simulator = new PlayoutSimulator(TOTAL_PLAYOUTS / threadCount, threadCount, 0L);
+    }
+
+    @Benchmark
+    public PlayoutResult simulate() {
+        return simulator.simulate(model, node);
+    }
+}
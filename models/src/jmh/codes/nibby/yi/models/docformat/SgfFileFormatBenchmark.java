@@ -0,0 +1,51 @@
+package codes.nibby.yi.models.docformat;
+
+import codes.nibby.yi.models.BenchmarkFixtures;
+import codes.nibby.yi.models.GameModel;
+import codes.nibby.yi.models.GameModelExporter;
+import codes.nibby.yi.models.GameModelImporter;
+import codes.nibby.yi.models.GameParseException;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures parsing and writing each of the SGF files bundled with the unit tests.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SgfFileFormatBenchmark {
+
+    @Param({
+        "1000_nodes.sgf", "blink.sgf", "branches.sgf", "escapedSymbols.sgf", "handicap.sgf",
+        "igsGame.sgf", "linear.sgf", "ogsHandicap.sgf", "ogsLinear.sgf", "spaceInTagData.sgf",
+        "standard.sgf", "twoPasses.sgf"
+    })
+    public String fixture;
+
+    private String sgfData;
+    private GameModel model;
+
+    @Setup
+    public void setUp() throws GameParseException {
+        sgfData = BenchmarkFixtures.readSgf(fixture);
+        model = GameModelImporter.INSTANCE.fromString(sgfData, FileFormat.SGF);
+    }
+
+    @Benchmark
+    public GameModel importSgf() throws GameParseException {
+        return GameModelImporter.INSTANCE.fromString(sgfData, FileFormat.SGF);
+    }
+
+    @Benchmark
+    public int exportSgf() {
+        var outputStream = new ByteArrayOutputStream(sgfData.length());
+        GameModelExporter.INSTANCE.toOutputStream(model, outputStream, FileFormat.SGF);
+        return outputStream.size();
+    }
+}
@@ -0,0 +1,45 @@
+package codes.nibby.yi.models.rules;
+
+import codes.nibby.yi.models.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link ScoreCalculator} against the final position of a real game, which is
+ * the intended use case for verifying game results in bulk.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScoreCalculatorBenchmark {
+
+    @Param({"standard.sgf", "igsGame.sgf"})
+    public String fixture;
+
+    private ScoreCalculator calculator;
+    private GameState finalState;
+    private byte[] board;
+
+    @Setup
+    public void setUp() throws GameParseException {
+        GameModel model = BenchmarkFixtures.loadSgf(fixture);
+        finalState = model.getGameState(BenchmarkFixtures.getLastNodeInMainBranch(model));
+        board = finalState.getBoardPosition().copyStoneIndices(new byte[model.getIntersectionCount()]);
+        calculator = new ScoreCalculator(model.getBoardWidth(), model.getBoardHeight());
+    }
+
+    @Benchmark
+    public GameScore scorePrimitiveBoard() {
+        return calculator.score(board, ScoringMethod.AREA, 7.5f, 0, 0, null);
+    }
+
+    @Benchmark
+    public GameScore scoreGameState() {
+        return calculator.score(finalState, ScoringMethod.AREA, 7.5f, Collections.emptyList());
+    }
+}
@@ -5,5 +5,7 @@ module codes.nibby.yi.models {
     exports codes.nibby.yi.models.editor;
     exports codes.nibby.yi.models.docformat;
     exports codes.nibby.yi.models.rules;
+    exports codes.nibby.yi.models.analysis;
+    exports codes.nibby.yi.models.engine;
     exports codes.nibby.yi.models.editor.edit;
 }
\ No newline at end of file
@@ -0,0 +1,30 @@
+package codes.nibby.yi.models
+
+/**
+ * Determines how an [EventHook] hands events over to a listener that is registered with
+ * an executor. See [EventHook.addListener].
+ */
+enum class EventDeliveryPolicy {
+
+    /**
+     * Events are delivered on the thread that fired them, before [EventHook.fireEvent]
+     * returns. The executor is not used. This is the behaviour of listeners registered
+     * without an executor.
+     */
+    INLINE,
+
+    /**
+     * Every event is delivered on the listener executor in the order it was fired. The
+     * listener is never invoked concurrently with itself, even if the executor is backed
+     * by a thread pool.
+     */
+    ASYNC_ORDERED,
+
+    /**
+     * Only the most recent event is delivered on the listener executor. Events fired while
+     * an earlier one is still waiting to be delivered replace it. This is useful for
+     * expensive observers that only care about the latest model state, such as layout or
+     * autosave.
+     */
+    LATEST_ONLY
+}
@@ -1,38 +1,172 @@
 package codes.nibby.yi.models
 
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.Executor
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicReference
+
 /**
  * The super class for providing model events to outgoing sources.
  * Each [EventHook] provides a single type of event source to subscribe to.
+ *
+ * By default listeners are notified on the thread that fires the event. Listeners that
+ * perform expensive work can instead be registered with an [Executor] and an
+ * [EventDeliveryPolicy] so that they do not hold up the thread mutating the model.
+ *
+ * Listeners may be added or removed from any thread, including from within a listener
+ * that is currently being notified.
  */
 abstract class EventHook<EventType> {
 
-    private var listeners: HashSet<EventListener<EventType>> = HashSet()
+    // Copy-on-write so that firing an event never observes a listener list that is
+    // being modified, and never needs to lock. Writes are rare compared to reads.
+    private val registrations = CopyOnWriteArrayList<ListenerRegistration<EventType>>()
 
     /**
      * Sends an event message to all existing listeners.
      */
     internal fun fireEvent(event: EventType) {
-        listeners.forEach { listener -> listener.onEvent(event) }
+        registrations.forEach { registration -> registration.deliver(event) }
     }
 
     /**
-     * Subscribe a new listener to this event.
+     * Subscribe a new listener to this event. The listener is notified on the thread
+     * that fires the event.
      */
     fun addListener(listener: EventListener<EventType>) {
-        listeners.add(listener)
+        addListener(listener, null, EventDeliveryPolicy.INLINE)
+    }
+
+    /**
+     * Subscribe a new listener to this event which will be notified using the given
+     * executor. See [EventDeliveryPolicy] for how events are handed over to the executor.
+     *
+     * If the listener is already subscribed to this hook, its existing subscription is
+     * replaced. Events that were queued under the old subscription but not yet delivered
+     * are discarded.
+     *
+     * @param listener Listener to be notified.
+     * @param executor Executor used to notify the listener. This must be non-null
+     * unless [policy] is [EventDeliveryPolicy.INLINE].
+     * @param policy How events are delivered to the listener.
+     */
+    fun addListener(listener: EventListener<EventType>, executor: Executor?, policy: EventDeliveryPolicy) {
+        if (policy != EventDeliveryPolicy.INLINE && executor == null) {
+            throw IllegalArgumentException("An executor is required for delivery policy $policy")
+        }
+
+        synchronized(registrations) {
+            removeListener(listener)
+            registrations.add(ListenerRegistration(listener, executor, policy))
+        }
     }
 
     /**
-     * Removes an existing listener from this event hook.
+     * Removes an existing listener from this event hook. Any events that have not yet
+     * been delivered to an asynchronous listener will be discarded.
      */
     fun removeListener(listener: EventListener<EventType>) {
-        listeners.remove(listener)
+        synchronized(registrations) {
+            val registration = registrations.firstOrNull { it.listener == listener }
+
+            registration?.let {
+                it.isActive = false
+                registrations.remove(it)
+            }
+        }
     }
 
     /**
      * Removes all listeners registered to this event hook.
      */
     fun removeAllListeners() {
-        listeners.clear()
+        synchronized(registrations) {
+            registrations.forEach { it.isActive = false }
+            registrations.clear()
+        }
+    }
+
+    /**
+     * Binds one listener to its delivery preferences, and holds the events waiting to be
+     * delivered on the listener executor.
+     */
+    private class ListenerRegistration<EventType>(val listener: EventListener<EventType>,
+                                                  private val executor: Executor?,
+                                                  private val policy: EventDeliveryPolicy) {
+
+        @Volatile
+        var isActive = true
+
+        // Used by ASYNC_ORDERED
+        private val pendingEvents = ConcurrentLinkedQueue<EventType>()
+
+        // Used by LATEST_ONLY. Events are boxed so that a null event type is still
+        // distinguishable from having nothing to deliver.
+        private val latestEvent = AtomicReference<PendingEvent<EventType>?>(null)
+
+        // Ensures at most one drain task is queued on the executor at a time, which
+        // is what keeps delivery ordered and non-concurrent for this listener.
+        private val drainScheduled = AtomicBoolean(false)
+
+        fun deliver(event: EventType) {
+            when (policy) {
+                EventDeliveryPolicy.INLINE -> listener.onEvent(event)
+                EventDeliveryPolicy.ASYNC_ORDERED -> {
+                    pendingEvents.add(event)
+                    scheduleDrain()
+                }
+                EventDeliveryPolicy.LATEST_ONLY -> {
+                    latestEvent.set(PendingEvent(event))
+                    scheduleDrain()
+                }
+            }
+        }
+
+        private fun scheduleDrain() {
+            if (drainScheduled.compareAndSet(false, true)) {
+                try {
+                    executor!!.execute { drain() }
+                } catch (e: RuntimeException) {
+                    drainScheduled.set(false)
+                    throw e
+                }
+            }
+        }
+
+        private fun drain() {
+            try {
+                while (isActive) {
+                    val event = takeNextEvent() ?: break
+                    listener.onEvent(event.value)
+                }
+            } finally {
+                drainScheduled.set(false)
+
+                // An event may have arrived after the loop exited but before the flag was
+                // cleared, in which case the firing thread will not have scheduled a drain.
+                if (isActive && hasPendingEvent()) {
+                    scheduleDrain()
+                }
+            }
+        }
+
+        private fun takeNextEvent(): PendingEvent<EventType>? {
+            return if (policy == EventDeliveryPolicy.LATEST_ONLY) {
+                latestEvent.getAndSet(null)
+            } else {
+                pendingEvents.poll()?.let { PendingEvent(it) }
+            }
+        }
+
+        private fun hasPendingEvent(): Boolean {
+            return if (policy == EventDeliveryPolicy.LATEST_ONLY) {
+                latestEvent.get() != null
+            } else {
+                pendingEvents.isNotEmpty()
+            }
+        }
     }
+
+    private class PendingEvent<EventType>(val value: EventType)
 }
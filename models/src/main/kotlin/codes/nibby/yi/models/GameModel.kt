@@ -5,6 +5,8 @@ import codes.nibby.yi.models.editor.GameModelEditor
 import codes.nibby.yi.models.rules.GameRulesHandler
 import java.nio.file.Path
 import java.util.*
+import java.util.concurrent.locks.ReentrantReadWriteLock
+import java.util.function.Supplier
 import kotlin.collections.ArrayList
 
 /**
@@ -15,6 +17,17 @@ import kotlin.collections.ArrayList
  * //TODO: Explain the GameStateUpdate system
  * //TODO: Explain organisation internally, esp. how state is calculated and retrieved
  * //TODO: Explain how to submit moves
+ *
+ * Thread safety: the model is guarded by a read/write lock. All edits made through
+ * [editor] and changes to [currentNode] hold the write lock, while [getGameState] holds
+ * the read lock. Threads other than the editing thread that want to traverse the game tree
+ * (for example, [GameNode.getChildNodes]) or read several values that must be consistent
+ * with each other should do so inside [withReadLock].
+ *
+ * Events raised by edits are held until the outermost write lock is released, and are then
+ * delivered on the editing thread. Listeners are therefore never called while the write lock
+ * is held, and may take other locks or wait on threads that read the model. A series of edits
+ * made inside one [withWriteLock] notifies listeners only after the last edit.
  */
 class GameModel(val boardWidth: Int,
                 val boardHeight: Int,
@@ -22,20 +35,34 @@ class GameModel(val boardWidth: Int,
                 val stateHasher: GameStateHasher
 ) {
 
+    private val modelLock = ReentrantReadWriteLock()
+
+    // Events raised while the write lock is held, in the order they were raised. Only
+    // accessed by the thread holding the write lock.
+    private val pendingEvents = ArrayList<Runnable>()
+
     internal val gameTree = GameTree(stateHasher.computeEmptyPositionHash(boardWidth, boardHeight))
+
+    @Volatile
     var currentNode = gameTree.rootNode
         set(value) {
-            if (!gameTree.isDescendant(value))
-                throw IllegalArgumentException("Node does not belong to the model game tree")
+            withWriteLock {
+                if (!gameTree.isDescendant(value))
+                    throw IllegalArgumentException("Node does not belong to the model game tree")
 
-            field = value
-            internalCurrentNodeUpdate(value)
-            currentNodeChangeEventHook.fireEvent(NodeEvent(value))
+                field = value
+                internalCurrentNodeUpdate(value)
+                fireEvent(currentNodeChangeEventHook, NodeEvent(value))
+            }
         }
 
+    @Volatile
     internal var playedMoveHistory: List<GameNode> = LinkedList()
-    private var stateHashHistory: List<Long> = LinkedList()
-    private var stateCache = WeakHashMap<Long, GameState>()
+    @Volatile
+    internal var positionHistory = PositionHistory()
+        private set
+    // Shared by concurrent readers holding the read lock
+    private val stateCache = GameStateCache(STATE_CACHE_SIZE)
     val editor = GameModelEditor(this)
 
     var lastSavePath: Path? = null
@@ -64,13 +91,126 @@ class GameModel(val boardWidth: Int,
             it.delta.type == GameNodeType.MOVE_PLAYED
                 || it.delta.type == GameNodeType.PASS
         }
-        if (nodeHistory.size > 1) {
-            // Only count non-root and primary move updates for unique state
-            val uniqueStateHistory = nodeHistory.subList(1, nodeHistory.size)
-                    .filter { node -> node.getType() == GameNodeType.MOVE_PLAYED }
-            this.stateHashHistory = uniqueStateHistory.map { node -> node.getStateHash() }
+        this.positionHistory = PositionHistory.fromNodes(nodeHistory, this)
+    }
+
+    /**
+     * Runs the action while holding the read lock of this model. The game tree and node
+     * data will not be modified by another thread until the action completes, so it is
+     * safe to traverse the tree and compute game states from any thread.
+     *
+     * Editing the model from within the action is not allowed, as the read lock cannot
+     * be upgraded to a write lock.
+     *
+     * @return The value returned by the action.
+     */
+    fun <T> withReadLock(action: Supplier<T>): T {
+        val readLock = modelLock.readLock()
+        readLock.lock()
+        try {
+            return action.get()
+        } finally {
+            readLock.unlock()
+        }
+    }
+
+    /**
+     * Runs the action while holding the write lock of this model. No other thread can read
+     * or edit the model until the action completes. Edits made through [editor] already
+     * acquire the write lock, so this method is only needed to make a series of edits
+     * appear atomic to other threads.
+     *
+     * The write lock is re-entrant, and the thread holding it may also read the model.
+     * Listeners of the edits are notified once the outermost write lock is released. Every
+     * pending event is delivered even if a listener throws; the first failure is rethrown
+     * afterwards, with any later ones attached to it as suppressed exceptions.
+     *
+     * @return The value returned by the action.
+     * @throws IllegalStateException If the current thread is holding only the read lock.
+     */
+    fun <T> withWriteLock(action: Supplier<T>): T {
+        check(modelLock.isWriteLockedByCurrentThread || modelLock.readHoldCount == 0) {
+            "Cannot edit the game model while holding its read lock"
+        }
+
+        val writeLock = modelLock.writeLock()
+        writeLock.lock()
+        var actionFailure: Throwable? = null
+        try {
+            return action.get()
+        } catch (e: Throwable) {
+            actionFailure = e
+            throw e
+        } finally {
+            val eventsToFire = if (modelLock.writeHoldCount == 1) takePendingEvents() else emptyList()
+            writeLock.unlock()
+            firePendingEvents(eventsToFire, actionFailure)
+        }
+    }
+
+    /**
+     * Runs every pending event, so that one failing listener does not keep the others from
+     * hearing about the edit. If the action itself failed, listener failures are attached to
+     * that failure instead of replacing it.
+     */
+    private fun firePendingEvents(events: List<Runnable>, actionFailure: Throwable?) {
+        var firstFailure = actionFailure
+        for (event in events) {
+            try {
+                event.run()
+            } catch (e: Throwable) {
+                if (firstFailure == null) {
+                    firstFailure = e
+                } else {
+                    firstFailure.addSuppressed(e)
+                }
+            }
+        }
+        if (firstFailure != null && firstFailure !== actionFailure) {
+            throw firstFailure
+        }
+    }
+
+    /**
+     * Notifies the listeners of an event hook. If the current thread holds the write lock, the
+     * event is delivered once the outermost write lock is released, so that listeners never
+     * run while the model is locked.
+     */
+    internal fun <EventType> fireEvent(hook: EventHook<EventType>, event: EventType) {
+        if (modelLock.isWriteLockedByCurrentThread) {
+            pendingEvents.add(Runnable { hook.fireEvent(event) })
         } else {
-            this.stateHashHistory = ArrayList()
+            hook.fireEvent(event)
+        }
+    }
+
+    private fun takePendingEvents(): List<Runnable> {
+        if (pendingEvents.isEmpty()) {
+            return emptyList()
+        }
+        val events = ArrayList(pendingEvents)
+        pendingEvents.clear()
+        return events
+    }
+
+    /**
+     * Captures the game tree and current node as an immutable [GameModelSnapshot]. This
+     * operation takes constant time regardless of the size of the game tree. The snapshot
+     * can be read from any thread without holding the model lock, while edits to this
+     * model continue.
+     *
+     * Nodes edited while the snapshot is open keep their previous version, so the snapshot
+     * should be closed as soon as it is no longer read.
+     *
+     * @return A snapshot of the current state of this model.
+     */
+    fun snapshot(): GameModelSnapshot {
+        // The read lock is enough to guarantee no edit is in progress while the epoch changes
+        return withReadLock {
+            val epochs = gameTree.snapshotEpochs
+            epochs.beginSnapshot { epoch ->
+                GameModelSnapshot(this, epochs, gameTree.rootNode, currentNode, epoch)
+            }
         }
     }
 
@@ -84,15 +224,18 @@ class GameModel(val boardWidth: Int,
      */
     @Suppress("FunctionName") // Using underscore to denote non-standard operation
     internal fun _setRootNode(rootNode: GameNode) {
-        if (gameTree.rootNode.getChildNodes().isNotEmpty()) {
-            throw IllegalStateException("Cannot set root node after it has descendants. " +
-                    "This operation should be performed before adding any additional nodes.")
-        }
+        withWriteLock {
+            if (gameTree.rootNode.getChildNodes().isNotEmpty()) {
+                throw IllegalStateException("Cannot set root node after it has descendants. " +
+                        "This operation should be performed before adding any additional nodes.")
+            }
 
-        val updateCurrentMove = currentNode == gameTree.rootNode
-        gameTree.rootNode = rootNode
-        if (updateCurrentMove) {
-            currentNode = rootNode
+            val updateCurrentMove = currentNode == gameTree.rootNode
+            gameTree.rootNode = rootNode
+            invalidateGameStates()
+            if (updateCurrentMove) {
+                currentNode = rootNode
+            }
         }
     }
 
@@ -118,48 +261,80 @@ class GameModel(val boardWidth: Int,
 
     /**
      * The game state is dynamically calculated if it does not exist, otherwise it will be
-     * cached for a period of time for performance.
+     * cached for a period of time for performance. States are calculated from the state of
+     * the nearest ancestor that is still cached, so stepping through the game tree one node
+     * at a time only applies the changes of that node.
      *
      * @return The [GameState] at a given node position.
      */
     fun getGameState(gameNode: GameNode): GameState {
+        return withReadLock { computeGameState(gameNode) }
+    }
+
+    /**
+     * @return true if the [GameState] at the given node is cached and will be returned by
+     * [getGameState] without being calculated again.
+     */
+    fun isGameStateCached(gameNode: GameNode): Boolean {
+        return stateCache.contains(gameNode)
+    }
+
+    private fun computeGameState(gameNode: GameNode): GameState {
         if (!gameTree.isDescendant(gameNode))
             throw IllegalArgumentException("Game node is not part of this move tree")
 
-        if (gameNode.getType() == GameNodeType.MOVE_PLAYED) {
-            this.stateCache[gameNode.getStateHash()]?.let {
-                return it
-            }
+        this.stateCache.get(gameNode)?.let {
+            return it
         }
 
-        // Only perform state resolution if we don't have a cached position
-        val positionState = GamePosition(boardWidth, boardHeight)
+        // Collect the nodes whose delta has to be applied, up to the nearest cached ancestor
+        val nodesToApply = ArrayList<GameNode>()
+        var ancestorState: GameState? = null
+        var node: GameNode? = gameNode
+
+        while (node != null) {
+            nodesToApply.add(node)
+            node = node.parent
+            ancestorState = node?.let { this.stateCache.get(it) }
 
-        var prisonersWhite = 0
-        var prisonersBlack = 0
+            if (ancestorState != null) {
+                break
+            }
+        }
 
-        val annotations: Collection<Annotation>
+        // Only perform state resolution if we don't have a cached position
+        val positionState = ancestorState?.boardPosition?.copy() ?: GamePosition(boardWidth, boardHeight)
 
-        // Build the board state by traversing the history and apply the delta from root up to gameNode
-        val pathToRoot = gameNode.getMoveHistory()
+        var prisonersWhite = ancestorState?.prisonersWhite ?: 0
+        var prisonersBlack = ancestorState?.prisonersBlack ?: 0
 
-        pathToRoot.forEach { node ->
-            val captures = node.getCapturesThisTurn()
+        // Build the board state by applying the delta from the ancestor (or root) down to gameNode
+        for (i in nodesToApply.lastIndex downTo 0) {
+            val nodeToApply = nodesToApply[i]
+            val captures = nodeToApply.getCapturesThisTurn()
 
-            positionState.apply(node.delta)
-            prisonersWhite += captures.filter { capture -> capture.color == StoneColor.BLACK }.count()
-            prisonersBlack += captures.filter { capture -> capture.color == StoneColor.WHITE }.count()
+            positionState.apply(nodeToApply.delta)
+            prisonersWhite += captures.count { capture -> capture.color == StoneColor.BLACK }
+            prisonersBlack += captures.count { capture -> capture.color == StoneColor.WHITE }
         }
 
-        annotations = pathToRoot[pathToRoot.lastIndex].getAnnotations()
+        val annotations: Collection<Annotation> = gameNode.getAnnotations()
 
         val gameState = GameState(this, positionState, gameNode, prisonersWhite,
                 prisonersBlack, annotations)
-        this.stateCache[gameNode.getStateHash()] = gameState
+        this.stateCache.put(gameNode, gameState)
 
         return gameState
     }
 
+    /**
+     * Discards all cached game states. Must be called by edits that change the position at
+     * an existing node, since the states of that node and its descendants are now outdated.
+     */
+    internal fun invalidateGameStates() {
+        stateCache.clear()
+    }
+
     /**
      *
      * @return Set of all annotations on the current node.
@@ -184,6 +359,17 @@ class GameModel(val boardWidth: Int,
         return rules.getStoneColorForTurn(playedMoveHistory.size, info.getHandicapCount() > 0)
     }
 
+    /**
+     * Finds every intersection where the player to move can legally play at the current
+     * node, as a bitmask. Callers that generate moves repeatedly should keep their own
+     * [LegalMoveGenerator] instead, which reuses its working memory.
+     *
+     * @return Legal moves for [getNextTurnStoneColor].
+     */
+    fun getLegalMoves(): LegalMoveMask {
+        return LegalMoveGenerator(boardWidth, boardHeight).generate(this)
+    }
+
     /**
      *
      * @return Total number of intersections on this game board.
@@ -194,7 +380,7 @@ class GameModel(val boardWidth: Int,
      * Returns a copy of the state hash history that led up to the current state.
      */
     fun getStateHashHistory(): List<Long> {
-        return ArrayList(stateHashHistory)
+        return ArrayList(positionHistory.getPositionHashes())
     }
 
     /**
@@ -243,18 +429,20 @@ class GameModel(val boardWidth: Int,
      * @return The node this method arrived at (which will be the new current node).
      */
     fun toPreviousNode(steps: Int): GameNode {
-        var newPosition = currentNode
-
-        for (i in 0 until steps) {
-            if (newPosition.parent != null) {
-                newPosition = newPosition.parent!!
-            } else {
-                break
+        return withWriteLock {
+            var newPosition = currentNode
+
+            for (i in 0 until steps) {
+                if (newPosition.parent != null) {
+                    newPosition = newPosition.parent!!
+                } else {
+                    break
+                }
             }
-        }
-        currentNode = newPosition
+            currentNode = newPosition
 
-        return newPosition
+            newPosition
+        }
     }
 
     /**
@@ -275,18 +463,20 @@ class GameModel(val boardWidth: Int,
      * @return The node that this method arrived at (which will be the new current node).
      */
     fun toNextNode(steps: Int): GameNode {
-        var newPosition = currentNode
-
-        for (i in 0 until steps) {
-            if (newPosition.children.isNotEmpty()) {
-                newPosition = newPosition.children[0]
-            } else {
-                break
+        return withWriteLock {
+            var newPosition = currentNode
+
+            for (i in 0 until steps) {
+                if (newPosition.children.isNotEmpty()) {
+                    newPosition = newPosition.children[0]
+                } else {
+                    break
+                }
             }
-        }
-        currentNode = newPosition
+            currentNode = newPosition
 
-        return newPosition
+            newPosition
+        }
     }
 
     /**
@@ -370,4 +560,12 @@ class GameModel(val boardWidth: Int,
 
         onNodeDataUpdate().addListener(currentNodeDataUpdateEventEmitter)
     }
-}
\ No newline at end of file
+
+    companion object {
+        /**
+         * Number of game states kept by each model. This should comfortably hold the states
+         * computed by a [GameStatePrefetcher] around the current node.
+         */
+        const val STATE_CACHE_SIZE = 512
+    }
+}
@@ -0,0 +1,97 @@
+package codes.nibby.yi.models
+
+import java.io.FilterInputStream
+import java.io.InputStream
+import java.util.concurrent.CancellationException
+
+/**
+ * Tracks the progress of a [GameModel] being imported by [GameModelImporter], and allows the
+ * import to be cancelled. The import runs on one thread while other threads, such as the UI
+ * thread, read its progress and cancel it.
+ *
+ * A monitor is meant to be used for one import only.
+ */
+class GameModelImportMonitor {
+
+    /**
+     * Number of bytes of the file read by the importer so far.
+     */
+    @Volatile
+    var bytesRead = 0L
+        private set
+
+    /**
+     * Size of the file being imported in bytes, or -1 if the import has not started.
+     */
+    @Volatile
+    var totalBytes = -1L
+        internal set
+
+    @Volatile
+    var isCancelled = false
+        private set
+
+    /**
+     * Requests the import to stop. The importer stops the next time it reads from the file,
+     * and throws a [CancellationException].
+     */
+    fun cancel() {
+        isCancelled = true
+    }
+
+    /**
+     * @return Proportion of the file read so far between 0 and 1, or -1 if the size of the
+     * file is not yet known.
+     */
+    fun getProgress(): Double {
+        val total = totalBytes
+        return when {
+            total > 0 -> minOf(1.0, bytesRead.toDouble() / total)
+            total == 0L -> 1.0
+            else -> -1.0
+        }
+    }
+
+    internal fun addBytesRead(count: Long) {
+        if (count > 0) {
+            bytesRead += count
+        }
+    }
+
+    internal fun checkCancelled() {
+        if (isCancelled) {
+            throw CancellationException("Import cancelled")
+        }
+    }
+
+    /**
+     * Counts the bytes read from the file being imported, and stops the import once it has
+     * been cancelled.
+     */
+    internal class MonitoredInputStream(input: InputStream,
+                                        private val monitor: GameModelImportMonitor) : FilterInputStream(input) {
+
+        override fun read(): Int {
+            monitor.checkCancelled()
+            val value = super.read()
+            if (value >= 0) {
+                monitor.addBytesRead(1)
+            }
+            return value
+        }
+
+        override fun read(b: ByteArray, off: Int, len: Int): Int {
+            monitor.checkCancelled()
+            val count = super.read(b, off, len)
+            monitor.addBytesRead(count.toLong())
+            return count
+        }
+
+        override fun skip(n: Long): Long {
+            monitor.checkCancelled()
+            val count = super.skip(n)
+            monitor.addBytesRead(count)
+            return count
+        }
+    }
+}
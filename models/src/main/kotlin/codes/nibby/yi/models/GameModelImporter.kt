@@ -61,6 +61,24 @@ object GameModelImporter {
      */
     @Throws(GameParseException::class, IOException::class)
     fun fromFile(filePath: Path): GameModel {
+        return fromFile(filePath, null as GameModelImportMonitor?)
+    }
+
+    /**
+     * Parses a given file as a [GameModel] in the same way as [fromFile], while reporting the
+     * progress of the import to a monitor. This is intended for loading large files in the
+     * background, where the import may be cancelled through the monitor.
+     *
+     * @param filePath The path to the game model data file.
+     * @param monitor Receives the number of bytes read, may be null.
+     * @return [GameModel] that represents the game data in the file.
+     *
+     * @throws GameParseException If the file is corrupted, or a fatal file format error occurs.
+     * @throws IOException Issues with identifying or setting up the input stream for the file.
+     * @throws java.util.concurrent.CancellationException If the import is cancelled through the monitor.
+     */
+    @Throws(GameParseException::class, IOException::class)
+    fun fromFile(filePath: Path, monitor: GameModelImportMonitor?): GameModel {
         val name = filePath.fileName.toString()
         val extensionDot = name.lastIndexOf(".")
         val formats: Set<FileFormat>
@@ -76,7 +94,7 @@ object GameModelImporter {
         return when {
             formats.size == 1 -> {
                 val format = formats.iterator().next()
-                fromFileImpl(filePath, format.getHandler())
+                fromFileImpl(filePath, format.getHandler(), monitor)
             }
             formats.size > 1 -> {
                 throw GameParseException("File conforms to more than 1 format: $formats")
@@ -99,13 +117,17 @@ object GameModelImporter {
      */
     @Throws(GameParseException::class, IOException::class)
     fun fromFile(filePath: Path, format: FileFormat): GameModel {
-        return fromFileImpl(filePath, format.getHandler())
+        return fromFileImpl(filePath, format.getHandler(), null)
     }
 
     @Throws(GameParseException::class, IOException::class)
-    private fun fromFileImpl(filePath: Path, handler: FileFormatHandler): GameModel {
-        val inputStream = Files.newInputStream(filePath, StandardOpenOption.READ)
-        return handler.doImport(inputStream.bufferedReader(Charsets.UTF_8))
+    private fun fromFileImpl(filePath: Path, handler: FileFormatHandler, monitor: GameModelImportMonitor?): GameModel {
+        var inputStream = Files.newInputStream(filePath, StandardOpenOption.READ)
+        if (monitor != null) {
+            monitor.totalBytes = Files.size(filePath)
+            inputStream = GameModelImportMonitor.MonitoredInputStream(inputStream, monitor)
+        }
+        return inputStream.bufferedReader(Charsets.UTF_8).use { handler.doImport(it) }
     }
 
     private fun getRecognizedFormats(formatEvaluator: Function<FileFormat, Boolean>): Set<FileFormat> {
@@ -0,0 +1,102 @@
+package codes.nibby.yi.models
+
+import codes.nibby.yi.models.rules.GameRulesHandler
+
+/**
+ * An immutable view of a [GameModel] as it was when [GameModel.snapshot] was called.
+ * Edits made to the model afterwards are not visible through the snapshot, so it can be
+ * handed to other threads (for example, to save or analyse the game) without copying the
+ * game tree and without holding the model lock.
+ *
+ * Taking a snapshot does not copy any node. Instead, nodes that are edited while the
+ * snapshot is open keep their previous version around, so the memory cost of a snapshot
+ * grows with the amount of changes made after it, not with the size of the game tree.
+ * Older versions are released once the snapshot is closed, after which the snapshot
+ * must no longer be read.
+ */
+class GameModelSnapshot internal constructor(private val model: GameModel,
+                                             private val snapshotEpochs: SnapshotEpochs,
+                                             rootNode: GameNode,
+                                             currentNode: GameNode,
+                                             internal val epoch: Long) : AutoCloseable {
+
+    @Volatile
+    var isClosed = false
+        private set
+
+    val boardWidth = model.boardWidth
+    val boardHeight = model.boardHeight
+    val rules: GameRulesHandler = model.rules
+    val stateHasher: GameStateHasher = model.stateHasher
+
+    /** Komi of the game at the time of the snapshot. */
+    val komi = model.info.getKomi()
+
+    /** Number of handicap stones at the time of the snapshot. */
+    val handicapCount = model.info.getHandicapCount()
+
+    /** Root of the game tree at the time of the snapshot. */
+    val rootNode = GameNodeSnapshot(this, rootNode)
+
+    /** The current node of the model at the time of the snapshot. */
+    val currentNode = GameNodeSnapshot(this, currentNode)
+
+    /**
+     * Computes the game state at a node in this snapshot. This is the snapshot equivalent
+     * of [GameModel.getGameState].
+     *
+     * Note that [GameState.representedNode] refers to the live node in the game model,
+     * whose data may have been edited since the snapshot was taken.
+     *
+     * @return The [GameState] at the given node as of this snapshot.
+     */
+    fun getGameState(node: GameNodeSnapshot): GameState {
+        if (node.snapshot != this) {
+            throw IllegalArgumentException("Node does not belong to this snapshot")
+        }
+        checkOpen()
+
+        val position = GamePosition(boardWidth, boardHeight)
+        var prisonersWhite = 0
+        var prisonersBlack = 0
+        val pathToRoot = node.getMoveHistory()
+
+        pathToRoot.forEach { pathNode ->
+            val delta = pathNode.version.delta
+            position.apply(delta)
+            prisonersWhite += delta.captures.count { capture -> capture.color == StoneColor.BLACK }
+            prisonersBlack += delta.captures.count { capture -> capture.color == StoneColor.WHITE }
+        }
+
+        return GameState(model, position, node.gameNode, prisonersWhite, prisonersBlack, node.getAnnotations())
+    }
+
+    /**
+     * @return The [StoneColor] for the stone that will be played on the turn after the
+     * given node.
+     */
+    fun getNextTurnStoneColor(node: GameNodeSnapshot): StoneColor {
+        val movesPlayed = node.getMoveHistory().count {
+            it.getType() == GameNodeType.MOVE_PLAYED || it.getType() == GameNodeType.PASS
+        }
+        return rules.getStoneColorForTurn(movesPlayed, handicapCount > 0)
+    }
+
+    internal fun checkOpen() {
+        if (isClosed) {
+            throw IllegalStateException("Snapshot is closed")
+        }
+    }
+
+    /**
+     * Releases the node versions kept for this snapshot. Closing a snapshot more than once
+     * has no effect.
+     */
+    @Synchronized
+    override fun close() {
+        if (!isClosed) {
+            isClosed = true
+            snapshotEpochs.endSnapshot(epoch)
+        }
+    }
+}
@@ -186,36 +186,18 @@ internal object GameMoveSubmitter {
         }
 
         val newStateHash = gameModel.stateHasher.computeUpdateHash(currentNode.getStateHash(), stoneUpdates)
-        val stateHashHistory = gameModel.getStateHashHistory()
 
         if (!ignoreRules) {
-            // Check if this new state repeats past board positions
-            if (stateHashHistory.contains(newStateHash)) {
-                // Determine the reason of repetition. The two important distinction is
-                // an illegal ko recapture vs generic position repeat. An illegal ko
-                // recapture is an immediate repetition of currentNode.parent state
-                // (2 states ago from the perspective of the new node) Whereas a generic
-                // position repeat is a repetition of any state other than a ko recapture.
-                val newStatePosition = stateHashHistory.size
-                val repeatHashPosition = stateHashHistory.indexOf(newStateHash)
-
-                if (newStatePosition - repeatHashPosition == 2) {
-                    // Lastly, make sure we're trying to capture 1 opponent stone this
-                    // turn and during opponent's capture, it's also 1 stone, and
-                    // that captured stone is at the same location we're trying to play.
-                    val lastKoRecaptureCapturedStones = currentNode.getCapturesThisTurn()
-
-                    // Be as concise as possible because edge case 1x1 board self-capture
-                    // can also result in the same conditions and it does not qualify as
-                    // a ko recapture.
-                    if (lastKoRecaptureCapturedStones.size == 1
-                            && lastKoRecaptureCapturedStones.iterator().next() == proposedMove
-                            && currentNode.getPrimaryMove()!!.color == proposedMove.color.getOpponent()) {
-                        return Pair(MoveValidationResult.ERROR_KO_RECAPTURE, null)
-                    }
-                }
-
-                return Pair(MoveValidationResult.ERROR_POSITION_REPEAT, null)
+            // Check if this new state repeats a past board position forbidden by the rules.
+            // A repeat is reported as an illegal ko recapture rather than a generic position
+            // repeat if it re-creates the position before the opponent's last move.
+            val repetitionResult = gameModel.positionHistory.checkRepetition(
+                    gameModel.rules.getRepetitionPolicy(),
+                    newStateHash,
+                    proposedMove.color.getOpponent()) { isKoRecaptureShape(currentNode, proposedMove) }
+
+            if (repetitionResult != MoveValidationResult.OK) {
+                return Pair(repetitionResult, null)
             }
         }
 
@@ -227,6 +209,19 @@ internal object GameMoveSubmitter {
         return Pair(MoveValidationResult.OK, update)
     }
 
+    /**
+     * Tests whether the proposed move captures the stone played on the last node, which
+     * itself captured a single stone at the proposed location.
+     */
+    internal fun isKoRecaptureShape(lastNode: GameNode, proposedMove: Stone): Boolean {
+        // Be as concise as possible because edge case 1x1 board self-capture can also
+        // result in the same conditions and it does not qualify as a ko recapture.
+        val lastCaptures = lastNode.getCapturesThisTurn()
+        return lastCaptures.size == 1
+                && lastCaptures.iterator().next() == proposedMove
+                && lastNode.getPrimaryMove()?.color == proposedMove.color.getOpponent()
+    }
+
     private fun addStringIfNotVisitedAlready(x: Int, y: Int, strings: HashSet<StoneString>,
                                              gameModel: GameModel, testPosition: Array<StoneColor?>) {
         // Check if this intersection is already part of an existing string
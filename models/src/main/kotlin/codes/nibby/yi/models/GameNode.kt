@@ -10,8 +10,28 @@ import kotlin.collections.ArrayList
 /**
  * Represents a node on the [GameTree]. Data on the node can be manipulated using setter
  * methods in [GameModel]. Getters in this class always return an immutable collection.
+ *
+ * The hierarchy and delta of the node are stored in a [NodeVersion]. Edits replace the
+ * version with a modified copy if a [GameModelSnapshot] may still be reading it, so that
+ * snapshots keep seeing the node as it was when they were taken.
  */
-class GameNode constructor(val delta: StateDelta) {
+class GameNode constructor(delta: StateDelta) {
+
+    @Volatile
+    private var version = NodeVersion(0L, null, ArrayList(), delta)
+
+    // Epochs of the model whose game tree this node was added to. Until then, no snapshot
+    // can read the node, so edits never need to keep its older versions.
+    @Volatile
+    private var snapshotEpochs: SnapshotEpochs? = null
+
+    // Older versions still visible to open snapshots, in ascending epoch order. Replaced
+    // rather than modified so that snapshot readers never observe a partial update.
+    @Volatile
+    private var versionHistory: List<NodeVersion> = emptyList()
+
+    val delta: StateDelta
+        get() = version.delta
 
     init {
         if (getType() == GameNodeType.ROOT) {
@@ -24,14 +44,21 @@ class GameNode constructor(val delta: StateDelta) {
     /** Reference to the root of the tree this node belongs to. */
     internal var root: GameNode? = null
 
-    var parent: GameNode? = null
-        internal set
+    var parent: GameNode?
+        get() = version.parent
+        internal set(value) {
+            versionForEdit().parent = value
+        }
 
-    internal var children: ArrayList<GameNode> = ArrayList()
+    /** Read-only view of the children. Use [childrenForEdit] to modify the list. */
+    internal val children: List<GameNode>
+        get() = version.children
 
     var moveNumber: Int = 0
         internal set
 
+    // Volatile because concurrent readers of the game model may populate the cache
+    @Volatile
     private var cachedMoveHistory: LinkedList<GameNode>? = null
 
     /**
@@ -180,24 +207,25 @@ class GameNode constructor(val delta: StateDelta) {
 
     internal fun addStoneEdit(stoneState: Stone, stateHasher: GameStateHasher,
                               boardWidth: Int, boardHeight: Int) {
-        delta.stoneEdits.add(stoneState)
+        deltaForEdit().stoneEdits.add(stoneState)
         recomputeStateHash(stateHasher, boardWidth, boardHeight)
     }
 
     internal fun addStoneEdits(stoneStates: Collection<Stone>, stateHasher: GameStateHasher,
                                boardWidth: Int, boardHeight: Int) {
-        stoneStates.forEach { stoneState -> delta.stoneEdits.add(stoneState) }
+        val stoneEdits = deltaForEdit().stoneEdits
+        stoneStates.forEach { stoneState -> stoneEdits.add(stoneState) }
         recomputeStateHash(stateHasher, boardWidth, boardHeight)
     }
 
     internal fun removeStoneEdit(stoneEdit: Stone, stateHasher: GameStateHasher,
                                  boardWidth: Int, boardHeight: Int) {
-        delta.stoneEdits.remove(stoneEdit)
+        deltaForEdit().stoneEdits.remove(stoneEdit)
         recomputeStateHash(stateHasher, boardWidth, boardHeight)
     }
 
     internal fun addAnnotation(annotation: Annotation) {
-        delta.annotations.add(annotation)
+        deltaForEdit().annotations.add(annotation)
     }
 
     internal fun addAnnotations(annotations: Collection<Annotation>) {
@@ -205,7 +233,7 @@ class GameNode constructor(val delta: StateDelta) {
     }
 
     internal fun removeAnnotation(annotation: Annotation) {
-        delta.annotations.remove(annotation)
+        deltaForEdit().annotations.remove(annotation)
     }
 
     internal fun removeAnnotations(annotations: Collection<Annotation>) {
@@ -259,7 +287,7 @@ class GameNode constructor(val delta: StateDelta) {
     }
 
     internal fun setComments(comments: String) {
-        delta.comments = comments
+        deltaForEdit().comments = comments
     }
 
     /**
@@ -283,7 +311,7 @@ class GameNode constructor(val delta: StateDelta) {
                     "It must only contain letters and/or numbers.")
         }
 
-        delta.metadata[key] = value
+        deltaForEdit().metadata[key] = value
     }
 
     /**
@@ -339,7 +367,7 @@ class GameNode constructor(val delta: StateDelta) {
                 else stateHasher.computeEmptyPositionHash(boardWidth, boardHeight)
 
         val newHash = stateHasher.computeUpdateHash(lastHash, delta.stoneEdits)
-        delta.stateHash = newHash
+        deltaForEdit().stateHash = newHash
     }
 
     /**
@@ -351,9 +379,125 @@ class GameNode constructor(val delta: StateDelta) {
         if (!isRoot() && parent == null) {
             GameTree.traverseSubtree(this) { nodeToErase ->
                 nodeToErase.parent = null
-                nodeToErase.children.clear()
-                nodeToErase.delta.dispose()
+                nodeToErase.childrenForEdit().clear()
+                nodeToErase.deltaForEdit().dispose()
+            }
+        }
+    }
+
+    /**
+     * @return The children list of the current version, which is safe to modify.
+     */
+    internal fun childrenForEdit(): ArrayList<GameNode> = versionForEdit().children
+
+    /**
+     * @return The delta of the current version, which is safe to modify.
+     */
+    internal fun deltaForEdit(): StateDelta = versionForEdit().delta
+
+    /**
+     * Returns the current version of this node so that it can be modified. If an open
+     * snapshot may be reading the current version, it is preserved in the version history
+     * and a copy is returned instead.
+     */
+    private fun versionForEdit(): NodeVersion {
+        val current = version
+        val epochs = snapshotEpochs
+
+        if (epochs == null || !epochs.isVisibleToOpenSnapshot(current.epoch)) {
+            return current
+        }
+
+        // Guards the history against a closing snapshot pruning it at the same time
+        synchronized(this) {
+            val copy = current.copyForEpoch(epochs.getCurrentEpoch())
+            // The history must be published before the new version, so that a snapshot reader
+            // that observes the new version can always find the one it needs in the history.
+            setVersionHistory(pruneVersionHistory(versionHistory + current, copy))
+            version = copy
+            return copy
+        }
+    }
+
+    /**
+     * Makes this node part of the snapshots of a model, once it is added to the game tree
+     * of that model. Nodes that already belong to the model are left unchanged, so that
+     * nodes added back after being removed keep the versions open snapshots still read.
+     *
+     * @return false if the node was already attached to the given epochs.
+     * @throws IllegalStateException If the node belongs to the game tree of another model.
+     */
+    internal fun attachToSnapshotEpochs(epochs: SnapshotEpochs): Boolean {
+        val attachedEpochs = snapshotEpochs
+        if (attachedEpochs === epochs) {
+            return false
+        }
+        if (attachedEpochs != null) {
+            throw IllegalStateException("Node belongs to the game tree of another model")
+        }
+
+        // No snapshot of the model can have read this node yet
+        version = version.rebaseToEpoch(epochs.getCurrentEpoch())
+        snapshotEpochs = epochs
+        return true
+    }
+
+    /**
+     * Discards versions that are no longer visible to any open snapshot. Called when
+     * snapshots are closed, so that the history does not wait for the next edit of
+     * this node to be pruned.
+     */
+    internal fun pruneVersionHistory() {
+        synchronized(this) {
+            setVersionHistory(pruneVersionHistory(versionHistory, version))
+        }
+    }
+
+    /**
+     * A version is not visible once every open snapshot is at least as new as its successor.
+     */
+    private fun pruneVersionHistory(history: List<NodeVersion>, newest: NodeVersion): List<NodeVersion> {
+        val oldestOpenEpoch = snapshotEpochs?.getOldestOpenEpoch() ?: Long.MAX_VALUE
+        var firstVisible = 0
+
+        while (firstVisible < history.size) {
+            val successor = if (firstVisible + 1 < history.size) history[firstVisible + 1] else newest
+            if (successor.epoch > oldestOpenEpoch) {
+                break
             }
+            ++firstVisible
         }
+
+        return if (firstVisible == 0) history else history.subList(firstVisible, history.size).toList()
+    }
+
+    private fun setVersionHistory(history: List<NodeVersion>) {
+        // Only nodes attached to a model's epochs can have a history
+        val epochs = snapshotEpochs!!
+        if (history.isEmpty() && versionHistory.isNotEmpty()) {
+            epochs.removeNodeWithHistory(this)
+        } else if (history.isNotEmpty() && versionHistory.isEmpty()) {
+            epochs.addNodeWithHistory(this)
+        }
+        versionHistory = history
+    }
+
+    /**
+     * @return The version of this node visible to a snapshot taken at the given epoch,
+     * or null if the node was created after the snapshot.
+     */
+    internal fun getVersion(epoch: Long): NodeVersion? {
+        val current = version
+        if (current.epoch <= epoch) {
+            return current
+        }
+
+        val history = versionHistory
+        for (i in history.indices.reversed()) {
+            if (history[i].epoch <= epoch) {
+                return history[i]
+            }
+        }
+        return null
     }
 }
\ No newline at end of file
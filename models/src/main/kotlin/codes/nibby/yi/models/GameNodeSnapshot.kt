@@ -0,0 +1,126 @@
+package codes.nibby.yi.models
+
+import java.util.*
+
+/**
+ * A read-only view of a [GameNode] as part of a [GameModelSnapshot]. The data returned
+ * by this class does not change even if the underlying node is edited afterwards.
+ *
+ * Node views are created on demand, so two views of the same node in the same snapshot
+ * are equal but not necessarily the same instance.
+ *
+ * @param snapshot The snapshot this view belongs to.
+ * @param gameNode The live node in the game model. Its current data may differ from
+ * this view.
+ */
+class GameNodeSnapshot internal constructor(internal val snapshot: GameModelSnapshot,
+                                            val gameNode: GameNode) {
+
+    internal val version: NodeVersion
+
+    init {
+        // Versions of a closed snapshot may already have been discarded
+        snapshot.checkOpen()
+        version = gameNode.getVersion(snapshot.epoch)
+                ?: throw IllegalArgumentException("Node was created after the snapshot was taken")
+    }
+
+    val parent: GameNodeSnapshot?
+        get() = version.parent?.let { GameNodeSnapshot(snapshot, it) }
+
+    val moveNumber: Int
+        get() = gameNode.moveNumber
+
+    /**
+     * @return true if this node is the top-level ancestor of the game tree.
+     */
+    fun isRoot(): Boolean = gameNode.isRoot()
+
+    /**
+     * @return All possible variations from this node.
+     */
+    fun getChildNodes(): List<GameNodeSnapshot> {
+        return version.children.map { GameNodeSnapshot(snapshot, it) }
+    }
+
+    /**
+     * @return The next move in the main branch if it exists, otherwise null.
+     */
+    fun getChildNodeInMainBranch(): GameNodeSnapshot? {
+        return version.children.firstOrNull()?.let { GameNodeSnapshot(snapshot, it) }
+    }
+
+    /**
+     * @return A chain of nodes that led up to this node, starting from the root node.
+     */
+    fun getMoveHistory(): List<GameNodeSnapshot> {
+        val path = LinkedList<GameNodeSnapshot>()
+        var node: GameNodeSnapshot? = this
+
+        while (node != null) {
+            path.addFirst(node)
+            node = node.parent
+        }
+        return path
+    }
+
+    /**
+     * @see GameNode.getType
+     */
+    fun getType(): GameNodeType = version.delta.type
+
+    /**
+     * @see GameNode.getPrimaryMove
+     */
+    fun getPrimaryMove(): Stone? = version.delta.primaryMove
+
+    /**
+     * @see GameNode.getCapturesThisTurn
+     */
+    fun getCapturesThisTurn(): Collection<Stone> = Collections.unmodifiableSet(version.delta.captures)
+
+    /**
+     * @see GameNode.getStateHash
+     */
+    fun getStateHash(): Long = version.delta.stateHash
+
+    /**
+     * @see GameNode.getStoneEdits
+     */
+    fun getStoneEdits(): Collection<Stone> = Collections.unmodifiableSet(version.delta.stoneEdits)
+
+    /**
+     * @see GameNode.getAnnotations
+     */
+    fun getAnnotations(): Collection<Annotation> = Collections.unmodifiableSet(version.delta.annotations)
+
+    /**
+     * @see GameNode.getComments
+     */
+    fun getComments(): String = version.delta.comments
+
+    /**
+     * @see GameNode.getMetadataKeys
+     */
+    fun getMetadataKeys(): Set<String> = Collections.unmodifiableSet(version.delta.metadata.keys)
+
+    /**
+     * @see GameNode.getMetadataMultiValue
+     */
+    fun getMetadataMultiValue(key: String): List<String> = version.delta.metadata.getOrDefault(key, listOf())
+
+    override fun equals(other: Any?): Boolean {
+        if (other is GameNodeSnapshot) {
+            return other.snapshot == snapshot && other.gameNode == gameNode
+        }
+        return false
+    }
+
+    override fun hashCode(): Int {
+        return Objects.hash(snapshot, gameNode)
+    }
+
+    override fun toString(): String {
+        return "Snapshot node ($moveNumber): ${version.delta}"
+    }
+}
@@ -3,7 +3,7 @@ package codes.nibby.yi.models
 /**
  * Describes the board position at a particular [GameState].
  */
-class GamePosition(private val boardWidth: Int, boardHeight: Int) {
+class GamePosition(val boardWidth: Int, val boardHeight: Int) {
 
     init {
         if (boardWidth < 1 || boardHeight < 1)
@@ -21,8 +21,22 @@ class GamePosition(private val boardWidth: Int, boardHeight: Int) {
             StoneColor.NONE
         }
 
-        // Apply stone updates
-        update.stoneEdits.forEach { intersectionState[it.x + it.y * boardWidth] = it.color }
+        // Apply stone updates. A suicidal move captures the stone it plays, so it must not be
+        // placed back on the board.
+        update.stoneEdits.forEach {
+            if (!update.captures.contains(it)) {
+                intersectionState[it.x + it.y * boardWidth] = it.color
+            }
+        }
+    }
+
+    /**
+     * @return A new position with the same stones as this one.
+     */
+    internal fun copy(): GamePosition {
+        val copy = GamePosition(boardWidth, boardHeight)
+        intersectionState.copyInto(copy.intersectionState)
+        return copy
     }
 
     /**
@@ -45,4 +59,24 @@ class GamePosition(private val boardWidth: Int, boardHeight: Int) {
     fun getStoneColorAt(position: Int): StoneColor {
         return intersectionState[position]
     }
-}
\ No newline at end of file
+
+    /**
+     * Copies the [index][StoneColor.index] of the stone color at every intersection into a
+     * primitive array, using the same one variable position as [getStoneColorAt]. This is
+     * the board representation used by fast evaluators such as
+     * [ScoreCalculator][codes.nibby.yi.models.rules.ScoreCalculator].
+     *
+     * @param destination Array to write to, must be at least as large as the board.
+     * @return The destination array.
+     */
+    fun copyStoneIndices(destination: ByteArray = ByteArray(intersectionState.size)): ByteArray {
+        if (destination.size < intersectionState.size) {
+            throw IllegalArgumentException("Destination size ${destination.size} is smaller than " +
+                    "the board size ${intersectionState.size}")
+        }
+        for (i in intersectionState.indices) {
+            destination[i] = intersectionState[i].index
+        }
+        return destination
+    }
+}
@@ -0,0 +1,37 @@
+package codes.nibby.yi.models
+
+/**
+ * A bounded store of the [GameState] computed at each node. Nodes are compared by identity,
+ * so each entry belongs to exactly one node. When the cache is full, the least recently
+ * used entry is evicted.
+ *
+ * Entries are not updated when the game tree is edited. Edits that change the position at a
+ * node, such as adding stone edits, must [clear] the cache.
+ *
+ * This class is thread-safe.
+ *
+ * @param maxEntries Number of states held before the least recently used are evicted.
+ */
+internal class GameStateCache(val maxEntries: Int) {
+
+    // GameNode does not override equals, so lookups are by identity as documented above
+    private val entries = LruMap<GameNode, GameState>(maxEntries)
+
+    fun get(node: GameNode): GameState? = synchronized(entries) { entries[node] }
+
+    fun put(node: GameNode, state: GameState) {
+        synchronized(entries) {
+            entries[node] = state
+        }
+    }
+
+    fun contains(node: GameNode): Boolean = synchronized(entries) { entries.containsKey(node) }
+
+    fun size(): Int = synchronized(entries) { entries.size }
+
+    fun clear() {
+        synchronized(entries) {
+            entries.clear()
+        }
+    }
+}
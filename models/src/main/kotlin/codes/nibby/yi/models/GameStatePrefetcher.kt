@@ -0,0 +1,139 @@
+package codes.nibby.yi.models
+
+import java.util.concurrent.Executor
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+
+/**
+ * Computes the [GameState] of the nodes around the current node of a model in the background,
+ * so that browsing the game does not have to wait for states to be calculated. Once computed,
+ * states are held in the state cache of the model and returned by [GameModel.getGameState].
+ *
+ * Whenever the current node changes, the prefetcher computes the states of:
+ *  1. The current node and the next [distance] nodes along its main variation
+ *  2. The previous [distance] nodes leading to the current node
+ *  3. The first [distance] nodes of each other variation branching from the current node
+ *
+ * Work for an earlier current node is abandoned as soon as the current node changes again, so
+ * holding down the next move key never queues up work for positions that have been passed.
+ *
+ * The number of states prefetched should stay well below [GameModel.STATE_CACHE_SIZE], otherwise
+ * prefetched states will evict each other.
+ *
+ * @param model Model to prefetch game states for.
+ * @param distance Number of nodes to prefetch in each direction from the current node.
+ * @param executor Executor to compute the states on. If null, the prefetcher uses its own
+ * background thread, which is stopped by [close].
+ */
+class GameStatePrefetcher @JvmOverloads constructor(private val model: GameModel,
+                                                    val distance: Int = DEFAULT_DISTANCE,
+                                                    executor: Executor? = null) : AutoCloseable {
+
+    private val ownExecutor: ExecutorService? = if (executor == null) {
+        Executors.newSingleThreadExecutor { runnable ->
+            Thread(runnable, "Game state prefetcher").apply { isDaemon = true }
+        }
+    } else {
+        null
+    }
+    private val prefetchExecutor: Executor = executor ?: ownExecutor!!
+
+    private val currentNodeListener = object : EventListener<NodeEvent> {
+        override fun onEvent(event: NodeEvent) {
+            prefetchAround(event.node)
+        }
+    }
+
+    @Volatile
+    private var isClosed = false
+
+    init {
+        if (distance < 0) {
+            throw IllegalArgumentException("Distance must be >= 0: $distance")
+        }
+
+        // Only the latest current node matters, earlier events are dropped if they are still waiting
+        model.onCurrentNodeChange().addListener(currentNodeListener, prefetchExecutor,
+                EventDeliveryPolicy.LATEST_ONLY)
+
+        val initialNode = model.currentNode
+        prefetchExecutor.execute { prefetchAround(initialNode) }
+    }
+
+    private fun prefetchAround(targetNode: GameNode) {
+        if (isStale(targetNode)) {
+            return
+        }
+
+        val nodesToPrefetch = model.withReadLock { getNodesToPrefetch(targetNode) }
+
+        for (node in nodesToPrefetch) {
+            if (isStale(targetNode)) {
+                return
+            }
+
+            try {
+                // Each state takes the read lock separately so that edits are not held up
+                model.getGameState(node)
+            } catch (e: IllegalArgumentException) {
+                // The node has been removed from the game tree since the plan was made
+                return
+            }
+        }
+    }
+
+    private fun isStale(targetNode: GameNode): Boolean {
+        return isClosed || model.currentNode !== targetNode
+    }
+
+    /*
+        Ordered so that each state can be calculated from one that was calculated before it.
+        The previous nodes are computed from the furthest back so that only the first of them
+        may have to be calculated from the root.
+     */
+    private fun getNodesToPrefetch(targetNode: GameNode): List<GameNode> {
+        val nodes = ArrayList<GameNode>()
+
+        nodes.add(targetNode)
+        addMainVariation(targetNode, nodes)
+
+        val previousNodes = ArrayList<GameNode>()
+        var previous = targetNode.parent
+        while (previous != null && previousNodes.size < distance) {
+            previousNodes.add(previous)
+            previous = previous.parent
+        }
+        nodes.addAll(previousNodes.asReversed())
+
+        if (distance > 0) {
+            for (variation in targetNode.getChildNodesExcludingMainBranch()) {
+                nodes.add(variation)
+                addMainVariation(variation, nodes, distance - 1)
+            }
+        }
+
+        return nodes.filter { !model.isGameStateCached(it) }
+    }
+
+    private fun addMainVariation(fromNode: GameNode, nodes: MutableList<GameNode>, count: Int = distance) {
+        var node = fromNode
+        for (i in 0 until count) {
+            node = node.getChildNodes().firstOrNull() ?: break
+            nodes.add(node)
+        }
+    }
+
+    /**
+     * Stops prefetching states for the model. States that have already been computed remain
+     * in the state cache of the model.
+     */
+    override fun close() {
+        isClosed = true
+        model.onCurrentNodeChange().removeListener(currentNodeListener)
+        ownExecutor?.shutdownNow()
+    }
+
+    companion object {
+        const val DEFAULT_DISTANCE = 16
+    }
+}
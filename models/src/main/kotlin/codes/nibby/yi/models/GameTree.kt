@@ -3,7 +3,20 @@ package codes.nibby.yi.models
 import java.util.*
 import java.util.function.Consumer
 
-open class GameTree constructor(internal var rootNode: GameNode) {
+open class GameTree constructor(rootNode: GameNode) {
+
+    /** Snapshot epochs of the model this tree belongs to, shared by every node added to it. */
+    internal val snapshotEpochs = SnapshotEpochs()
+
+    internal var rootNode: GameNode = rootNode
+        set(value) {
+            attachSubtree(value)
+            field = value
+        }
+
+    init {
+        attachSubtree(rootNode)
+    }
 
     constructor(emptyStateHash: Long) : this(GameNode(StateDelta.forRootNode(emptyStateHash)))
 
@@ -23,7 +36,8 @@ open class GameTree constructor(internal var rootNode: GameNode) {
         if (parent == child)
             throw IllegalArgumentException("A node cannot be a parent of itself")
 
-        parent.children.add(child)
+        attachSubtree(child)
+        parent.childrenForEdit().add(child)
         child.parent = parent
 
         child.root = rootNode
@@ -55,7 +69,7 @@ open class GameTree constructor(internal var rootNode: GameNode) {
     fun removeNode(node: GameNode) {
         checkValidNodeRemoval(node)
 
-        node.parent?.children?.remove(node)
+        node.parent?.childrenForEdit()?.remove(node)
         node.children.forEach { child -> child.parent = null }
         node.root = null
     }
@@ -70,7 +84,7 @@ open class GameTree constructor(internal var rootNode: GameNode) {
     fun removeNodeShallow(node: GameNode) {
         checkValidNodeRemoval(node)
 
-        node.parent?.children?.remove(node)
+        node.parent?.childrenForEdit()?.remove(node)
         node.parent = null
     }
 
@@ -99,12 +113,25 @@ open class GameTree constructor(internal var rootNode: GameNode) {
         }
 
         if (!node.isRoot()) {
-            node.parent?.children?.remove(node)
+            node.parent?.childrenForEdit()?.remove(node)
             node.parent = null
         }
 
         node.children.forEach { child -> child.parent = null; removeNodeSubtree(child); }
-        node.children.clear()
+        node.childrenForEdit().clear()
+    }
+
+    // Nodes added back to the tree are already attached along with their subtree, so only
+    // the subtrees of newly attached nodes are visited
+    private fun attachSubtree(node: GameNode) {
+        val unprocessed = Stack<GameNode>()
+        unprocessed.push(node)
+        while (unprocessed.isNotEmpty()) {
+            val nodeToProcess = unprocessed.pop()
+            if (nodeToProcess.attachToSnapshotEpochs(snapshotEpochs)) {
+                unprocessed.addAll(nodeToProcess.children)
+            }
+        }
     }
 
     /**
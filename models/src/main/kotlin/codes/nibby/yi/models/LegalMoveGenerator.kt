@@ -0,0 +1,297 @@
+package codes.nibby.yi.models
+
+import codes.nibby.yi.models.rules.RepetitionPolicy
+import java.util.Collections
+
+/**
+ * Finds every intersection where the player to move can legally play, without submitting
+ * a move for each one.
+ *
+ * The liberties of each chain on the board are counted once per position. Each empty
+ * intersection is then judged from its four neighbours alone: a move is legal if it has
+ * an empty neighbour, joins a friendly chain with another liberty, or captures an
+ * opponent chain in atari. Only moves that could repeat a position have their resulting
+ * state hash computed and checked against the [PositionHistory] of the game.
+ *
+ * Instances keep their working arrays between calls and are not thread-safe. A
+ * generator may be reused for any number of positions of the same board size, which
+ * makes it suitable for tight loops such as playouts.
+ */
+class LegalMoveGenerator(val boardWidth: Int, val boardHeight: Int) {
+
+    init {
+        if (boardWidth < 1 || boardHeight < 1)
+            throw IllegalArgumentException("Invalid board dimensions: $boardWidth x $boardHeight")
+    }
+
+    private val intersectionCount = boardWidth * boardHeight
+    private val board = ByteArray(intersectionCount)
+
+    // Four neighbours per intersection, -1 where the neighbour is off the board
+    private val neighbours = IntArray(intersectionCount * 4)
+
+    // Chain of the stone at each intersection, or -1 if the intersection is empty
+    private val chainIds = IntArray(intersectionCount)
+    private val chainLiberties = IntArray(intersectionCount)
+    // Stones of each chain as a linked list: chainHeads[chain] -> nextStones[stone] -> ...
+    private val chainHeads = IntArray(intersectionCount)
+    private val nextStones = IntArray(intersectionCount)
+    private val stack = IntArray(intersectionCount)
+
+    // Reused when collecting the distinct chains next to one intersection
+    private val adjacentChains = IntArray(4)
+
+    init {
+        for (position in 0 until intersectionCount) {
+            val x = position % boardWidth
+            val y = position / boardWidth
+            neighbours[position * 4] = if (y > 0) position - boardWidth else -1
+            neighbours[position * 4 + 1] = if (y < boardHeight - 1) position + boardWidth else -1
+            neighbours[position * 4 + 2] = if (x > 0) position - 1 else -1
+            neighbours[position * 4 + 3] = if (x < boardWidth - 1) position + 1 else -1
+        }
+    }
+
+    /**
+     * Generates the legal moves for the player to move at the current node of the game
+     * model. Takes suicide, ko and the repetition policy of the game rules into account.
+     *
+     * @param destination Mask to write the result to.
+     * @return The destination mask.
+     */
+    @JvmOverloads
+    fun generate(model: GameModel, destination: LegalMoveMask = LegalMoveMask(boardWidth, boardHeight)): LegalMoveMask {
+        checkDimensions(model.boardWidth, model.boardHeight)
+        checkDimensions(destination.boardWidth, destination.boardHeight)
+
+        return model.withReadLock {
+            val node = model.currentNode
+            val color = model.getNextTurnStoneColor()
+            model.getGameState(node).boardPosition.copyStoneIndices(board)
+
+            generate(color, model.rules.allowSuicideMoves(), -1, destination) { position, stoneUpdates ->
+                isRepetitionAllowed(model, node, Stone(position % boardWidth, position / boardWidth, color), stoneUpdates)
+            }
+        }
+    }
+
+    /**
+     * Generates the legal moves on a board without any game history. Only a simple ko is
+     * checked for, through [koPosition].
+     *
+     * @param board Stone color [index][StoneColor.index] at each intersection in the one
+     * variable form, see [GamePosition.copyStoneIndices].
+     * @param color Color of the player to move.
+     * @param allowSuicide Whether moves that capture their own chain are legal.
+     * @param koPosition Position in the one variable form where the player may not
+     * recapture a ko, or -1 if there is none.
+     * @param destination Mask to write the result to.
+     * @return The destination mask.
+     */
+    @JvmOverloads
+    fun generate(board: ByteArray, color: StoneColor, allowSuicide: Boolean, koPosition: Int = -1,
+                 destination: LegalMoveMask = LegalMoveMask(boardWidth, boardHeight)): LegalMoveMask {
+        if (board.size < intersectionCount) {
+            throw IllegalArgumentException("Board size ${board.size} is smaller than $intersectionCount")
+        }
+        checkDimensions(destination.boardWidth, destination.boardHeight)
+
+        board.copyInto(this.board, endIndex = intersectionCount)
+        return generate(color, allowSuicide, koPosition, destination, null)
+    }
+
+    /*
+     * repetitionCheck receives the position of a candidate move and a lazy supplier of the
+     * stones it adds and removes, and returns false if the resulting position is forbidden.
+     */
+    private fun generate(color: StoneColor, allowSuicide: Boolean, koPosition: Int, destination: LegalMoveMask,
+                         repetitionCheck: ((Int, () -> Set<Stone>) -> Boolean)?): LegalMoveMask {
+        if (color == StoneColor.NONE) {
+            throw IllegalArgumentException("Color must be either black or white")
+        }
+        destination.clear()
+        destination.color = color
+        computeChains()
+
+        val friendly = color.index
+        val opponent = color.getOpponent().index
+
+        for (position in 0 until intersectionCount) {
+            if (board[position] != EMPTY) {
+                continue
+            }
+
+            var hasLiberty = false
+            var captures = false
+            for (i in position * 4 until position * 4 + 4) {
+                val neighbour = neighbours[i]
+                if (neighbour < 0) {
+                    continue
+                }
+                val neighbourColor = board[neighbour]
+                if (neighbourColor == EMPTY) {
+                    hasLiberty = true
+                } else {
+                    val liberties = chainLiberties[chainIds[neighbour]]
+                    if (neighbourColor == friendly && liberties > 1) {
+                        hasLiberty = true
+                    } else if (neighbourColor == opponent && liberties == 1) {
+                        captures = true
+                    }
+                }
+            }
+
+            val isSuicide = !hasLiberty && !captures
+            if (isSuicide && !allowSuicide) {
+                continue
+            }
+            if (position == koPosition && captures) {
+                continue
+            }
+            if (repetitionCheck != null
+                    && !repetitionCheck(position) { getStoneUpdates(position, color, captures, isSuicide) }) {
+                continue
+            }
+            destination.set(position)
+        }
+        return destination
+    }
+
+    private fun isRepetitionAllowed(model: GameModel, node: GameNode, move: Stone,
+                                    stoneUpdates: () -> Set<Stone>): Boolean {
+        val policy = model.rules.getRepetitionPolicy()
+        val updates = stoneUpdates()
+
+        // Without a capture, the move cannot re-create the position before the last move,
+        // which is all that simple ko forbids.
+        if (policy == RepetitionPolicy.SIMPLE_KO && updates.size == 1 && move in updates) {
+            return true
+        }
+
+        val newStateHash = model.stateHasher.computeUpdateHash(node.getStateHash(), updates)
+        val result = model.positionHistory.checkRepetition(policy, newStateHash, move.color.getOpponent()) {
+            GameMoveSubmitter.isKoRecaptureShape(node, move)
+        }
+        return result == MoveValidationResult.OK
+    }
+
+    /*
+     * Stones added and removed by playing at the position, in the same form as the state
+     * update built by GameMoveSubmitter.
+     */
+    private fun getStoneUpdates(position: Int, color: StoneColor, captures: Boolean, isSuicide: Boolean): Set<Stone> {
+        val move = Stone(position % boardWidth, position / boardWidth, color)
+        if (!captures && !isSuicide) {
+            return Collections.singleton(move)
+        }
+
+        // A capture removes the adjacent opponent chains in atari. A suicide removes the
+        // adjacent friendly chains, which are all in atari, and never places the move.
+        val removedColor = if (captures) color.getOpponent() else color
+        val updates = HashSet<Stone>()
+        if (captures) {
+            updates.add(move)
+        }
+
+        val chainCount = collectAdjacentChains(position, removedColor.index)
+        for (i in 0 until chainCount) {
+            val chain = adjacentChains[i]
+            if (chainLiberties[chain] != 1) {
+                continue
+            }
+            var stone = chainHeads[chain]
+            while (stone >= 0) {
+                updates.add(Stone(stone % boardWidth, stone / boardWidth, removedColor))
+                stone = nextStones[stone]
+            }
+        }
+        return updates
+    }
+
+    /**
+     * Labels every chain on the board and counts its distinct liberties.
+     */
+    private fun computeChains() {
+        chainIds.fill(-1)
+        var chainCount = 0
+
+        for (start in 0 until intersectionCount) {
+            val color = board[start]
+            if (color == EMPTY || chainIds[start] >= 0) {
+                continue
+            }
+
+            val chain = chainCount++
+            chainLiberties[chain] = 0
+            chainHeads[chain] = -1
+            var stackSize = 0
+            stack[stackSize++] = start
+            chainIds[start] = chain
+
+            while (stackSize > 0) {
+                val stone = stack[--stackSize]
+                nextStones[stone] = chainHeads[chain]
+                chainHeads[chain] = stone
+
+                for (i in stone * 4 until stone * 4 + 4) {
+                    val neighbour = neighbours[i]
+                    if (neighbour >= 0 && board[neighbour] == color && chainIds[neighbour] < 0) {
+                        chainIds[neighbour] = chain
+                        stack[stackSize++] = neighbour
+                    }
+                }
+            }
+        }
+
+        // Each empty intersection is one liberty of every distinct chain next to it
+        for (position in 0 until intersectionCount) {
+            if (board[position] == EMPTY) {
+                val adjacentCount = collectAdjacentChains(position, ANY_COLOR)
+                for (i in 0 until adjacentCount) {
+                    chainLiberties[adjacentChains[i]]++
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the distinct chains next to the position into [adjacentChains].
+     *
+     * @param colorIndex Only collect chains of this color, or [ANY_COLOR].
+     * @return Number of chains collected.
+     */
+    private fun collectAdjacentChains(position: Int, colorIndex: Byte): Int {
+        var count = 0
+        for (i in position * 4 until position * 4 + 4) {
+            val neighbour = neighbours[i]
+            if (neighbour < 0 || board[neighbour] == EMPTY
+                    || (colorIndex != ANY_COLOR && board[neighbour] != colorIndex)) {
+                continue
+            }
+            val chain = chainIds[neighbour]
+            var isDuplicate = false
+            for (j in 0 until count) {
+                if (adjacentChains[j] == chain) {
+                    isDuplicate = true
+                    break
+                }
+            }
+            if (!isDuplicate) {
+                adjacentChains[count++] = chain
+            }
+        }
+        return count
+    }
+
+    private fun checkDimensions(width: Int, height: Int) {
+        if (width != boardWidth || height != boardHeight) {
+            throw IllegalArgumentException("Board size $width x $height does not match " +
+                    "the generator size $boardWidth x $boardHeight")
+        }
+    }
+
+    private companion object {
+        val EMPTY = StoneColor.NONE.index
+        const val ANY_COLOR: Byte = -1
+    }
+}
@@ -0,0 +1,76 @@
+package codes.nibby.yi.models
+
+/**
+ * A bitmask of the intersections where a move is legal, as produced by
+ * [LegalMoveGenerator]. Positions use the one variable form x + y * boardWidth.
+ *
+ * A mask can be passed back to the generator to be overwritten, which avoids allocating a
+ * new mask on every call.
+ */
+class LegalMoveMask(val boardWidth: Int, val boardHeight: Int) {
+
+    init {
+        if (boardWidth < 1 || boardHeight < 1)
+            throw IllegalArgumentException("Invalid board dimensions: $boardWidth x $boardHeight")
+    }
+
+    private val words = LongArray((boardWidth * boardHeight + 63) ushr 6)
+
+    /**
+     * The color of the player the legal moves were generated for.
+     */
+    var color = StoneColor.NONE
+        internal set
+
+    /**
+     * @return true if the player can play at the given co-ordinate.
+     */
+    fun isLegal(x: Int, y: Int): Boolean {
+        if (x < 0 || x >= boardWidth || y < 0 || y >= boardHeight) {
+            return false
+        }
+        return isLegal(x + y * boardWidth)
+    }
+
+    /**
+     * @return true if the player can play at the given position in the one variable form.
+     */
+    fun isLegal(position: Int): Boolean {
+        return words[position ushr 6] and (1L shl position) != 0L
+    }
+
+    /**
+     * @return Number of intersections where the player can play.
+     */
+    fun getLegalMoveCount(): Int {
+        return words.sumOf { java.lang.Long.bitCount(it) }
+    }
+
+    /**
+     * @return Positions of the legal moves in the one variable form, in ascending order.
+     */
+    fun getLegalPositions(): IntArray {
+        val positions = IntArray(getLegalMoveCount())
+        var count = 0
+        for (wordIndex in words.indices) {
+            var word = words[wordIndex]
+            while (word != 0L) {
+                positions[count++] = (wordIndex shl 6) + java.lang.Long.numberOfTrailingZeros(word)
+                word = word and (word - 1)
+            }
+        }
+        return positions
+    }
+
+    internal fun set(position: Int) {
+        words[position ushr 6] = words[position ushr 6] or (1L shl position)
+    }
+
+    internal fun clear() {
+        words.fill(0L)
+    }
+
+    override fun toString(): String {
+        return "$color legal moves: ${getLegalMoveCount()}"
+    }
+}
@@ -0,0 +1,25 @@
+package codes.nibby.yi.models
+
+/**
+ * A map that holds at most [maxEntries] entries, evicting the least recently used entry when
+ * a new one would exceed the limit. Both reads and writes count as a use.
+ *
+ * Like [LinkedHashMap], this class is not thread-safe. Callers that share it between threads
+ * must synchronize on it, including for reads, since a read reorders the entries.
+ *
+ * @param maxEntries Number of entries held before the least recently used are evicted.
+ */
+internal class LruMap<K, V>(val maxEntries: Int) : LinkedHashMap<K, V>(16, 0.75f, true) {
+
+    init {
+        if (maxEntries < 1) {
+            throw IllegalArgumentException("Max entries must be >= 1: $maxEntries")
+        }
+    }
+
+    // Iteration runs from the least to the most recently used entry, so the eldest is the
+    // one to evict
+    override fun removeEldestEntry(eldest: MutableMap.MutableEntry<K, V>): Boolean {
+        return size > maxEntries
+    }
+}
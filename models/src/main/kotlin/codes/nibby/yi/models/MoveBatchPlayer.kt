@@ -0,0 +1,271 @@
+package codes.nibby.yi.models
+
+/**
+ * Plays a batch of encoded moves from the current node of a [GameModel] while keeping
+ * its own board position and state hash history up to date, rather than rebuilding them
+ * from the game tree after every move like [GameMoveSubmitter] does.
+ *
+ * The validation rules are the same as [GameMoveSubmitter.createMoveNode], and the nodes
+ * created are identical to the ones created by playing the moves one at a time.
+ *
+ * Nodes are appended to the game tree directly without emitting events or changing the
+ * current node. The caller is responsible for both once the batch completes, and must
+ * hold the model write lock throughout.
+ *
+ * @see codes.nibby.yi.models.editor.GameModelEditor.addMoves
+ */
+internal class MoveBatchPlayer(private val model: GameModel) {
+
+    private val boardWidth = model.boardWidth
+    private val boardHeight = model.boardHeight
+    private val intersectionCount = boardWidth * boardHeight
+    private val hasHandicap = model.info.getHandicapCount() > 0
+
+    // Stone color index (see StoneColor.index) at each intersection
+    private val board = ByteArray(intersectionCount)
+    private val positionHistory = model.positionHistory.copy()
+    private val repetitionPolicy = model.rules.getRepetitionPolicy()
+    private var movesPlayedCount = model.playedMoveHistory.size
+
+    // Scratch space for flood filling strings of stones. An intersection has been visited
+    // by the current fill if its entry in visitStamps equals currentStamp.
+    private val visitStamps = IntArray(intersectionCount)
+    private var currentStamp = 0
+    private val fillStack = IntArray(intersectionCount)
+    private val capturedPositions = IntArray(intersectionCount)
+    private var capturedCount = 0
+
+    var lastNode: GameNode = model.currentNode
+        private set
+
+    /** The first node created by this batch, or null if all moves re-used existing nodes. */
+    var firstNewNode: GameNode? = null
+        private set
+
+    init {
+        val position = model.getGameState(lastNode).boardPosition
+        for (i in 0 until intersectionCount) {
+            board[i] = position.getStoneColorAt(i).index
+        }
+    }
+
+    /**
+     * Plays the moves in sequence until one of them is rejected.
+     *
+     * @param encodedMoves Moves encoded using [MoveSequence.encodeMove], or [MoveSequence.PASS].
+     */
+    fun playAll(encodedMoves: IntArray): MoveBatchResult {
+        val results = ByteArray(encodedMoves.size) { MoveBatchResult.NOT_ATTEMPTED }
+        var movesPlayed = 0
+
+        for (i in encodedMoves.indices) {
+            val result = play(encodedMoves[i])
+            results[i] = result.ordinal.toByte()
+
+            if (result != MoveValidationResult.OK) {
+                break
+            }
+            movesPlayed++
+        }
+
+        return MoveBatchResult(results, movesPlayed, lastNode)
+    }
+
+    private fun play(encodedMove: Int): MoveValidationResult {
+        if (encodedMove == MoveSequence.PASS) {
+            playPass()
+            return MoveValidationResult.OK
+        }
+        if (encodedMove < 0 || encodedMove >= intersectionCount) {
+            return MoveValidationResult.ERROR_POSITION_OUT_OF_BOUNDS
+        }
+
+        val x = encodedMove % boardWidth
+        val y = encodedMove / boardWidth
+
+        // Same as GameModelEditor.addMove, a child with identical co-ordinates is re-used
+        findChild { it.getPrimaryMove()?.let { move -> move.x == x && move.y == y } ?: false }?.let {
+            continueToExistingNode(it)
+            return MoveValidationResult.OK
+        }
+
+        val color = model.rules.getStoneColorForTurn(movesPlayedCount, hasHandicap)
+        if (board[encodedMove] != StoneColor.NONE.index) {
+            return MoveValidationResult.ERROR_NON_EMPTY_INTERSECTION
+        }
+
+        val opponentIndex = color.getOpponent().index
+        board[encodedMove] = color.index
+        capturedCount = 0
+
+        forEachNeighbour(encodedMove) { neighbour ->
+            if (board[neighbour] == opponentIndex) {
+                captureIfNoLiberties(neighbour)
+            }
+        }
+
+        val capturedColor: StoneColor
+        var moveIsSuicidal = false
+        if (capturedCount == 0) {
+            captureIfNoLiberties(encodedMove)
+            moveIsSuicidal = capturedCount > 0
+
+            if (moveIsSuicidal && !model.rules.allowSuicideMoves()) {
+                return MoveValidationResult.ERROR_MOVE_SUICIDAL
+            }
+            capturedColor = color
+        } else {
+            capturedColor = color.getOpponent()
+        }
+
+        val proposedMove = Stone(x, y, color)
+        val captures = HashSet<Stone>(capturedCount * 2)
+        for (i in 0 until capturedCount) {
+            val position = capturedPositions[i]
+            captures.add(Stone(position % boardWidth, position / boardWidth, capturedColor))
+        }
+
+        // See GameMoveSubmitter for why a suicidal move is not part of the hash update
+        val stoneUpdates = HashSet<Stone>(captures)
+        if (moveIsSuicidal) {
+            stoneUpdates.remove(proposedMove)
+        } else {
+            stoneUpdates.add(proposedMove)
+        }
+        val newStateHash = model.stateHasher.computeUpdateHash(lastNode.getStateHash(), stoneUpdates)
+
+        val repetitionResult = positionHistory.checkRepetition(repetitionPolicy, newStateHash, color.getOpponent()) {
+            GameMoveSubmitter.isKoRecaptureShape(lastNode, proposedMove)
+        }
+        if (repetitionResult != MoveValidationResult.OK) {
+            return repetitionResult
+        }
+
+        val newNode = GameNode(StateDelta.forProposedMove(proposedMove, captures, newStateHash))
+        appendToTree(newNode)
+        positionHistory.addMove(newStateHash, color.getOpponent())
+        movesPlayedCount++
+        return MoveValidationResult.OK
+    }
+
+    private fun playPass() {
+        val existingPass = findChild { it.getType() == GameNodeType.PASS }
+        if (existingPass != null) {
+            continueToExistingNode(existingPass)
+        } else {
+            appendToTree(GameMoveSubmitter.createPassNode(lastNode))
+            recordPass()
+        }
+    }
+
+    private fun recordPass() {
+        val passColor = model.rules.getStoneColorForTurn(movesPlayedCount, hasHandicap)
+        positionHistory.addPass(lastNode.getStateHash(), passColor.getOpponent())
+        movesPlayedCount++
+    }
+
+    private inline fun findChild(predicate: (GameNode) -> Boolean): GameNode? {
+        for (child in lastNode.children) {
+            if (predicate(child)) {
+                return child
+            }
+        }
+        return null
+    }
+
+    private fun continueToExistingNode(node: GameNode) {
+        val captures = node.getCapturesThisTurn()
+        captures.forEach { board[it.getPosition(boardWidth)] = StoneColor.NONE.index }
+        node.getStoneEdits().forEach {
+            // Same as GamePosition.apply, a suicidal move leaves no stone behind
+            if (!captures.contains(it)) {
+                board[it.getPosition(boardWidth)] = it.color.index
+            }
+        }
+
+        lastNode = node
+        when (node.getType()) {
+            GameNodeType.MOVE_PLAYED -> {
+                positionHistory.addMove(node.getStateHash(), node.getPrimaryMove()!!.color.getOpponent())
+                movesPlayedCount++
+            }
+            GameNodeType.PASS -> recordPass()
+            else -> { }
+        }
+    }
+
+    private fun appendToTree(node: GameNode) {
+        model.gameTree.appendNode(lastNode, node)
+        if (firstNewNode == null) {
+            firstNewNode = node
+        }
+        lastNode = node
+    }
+
+    /**
+     * Flood fills the string of stones at the given position. If the string has no
+     * liberties, it is removed from the board and its stones are added to
+     * [capturedPositions].
+     */
+    private fun captureIfNoLiberties(startPosition: Int) {
+        val color = board[startPosition]
+        val stamp = ++currentStamp
+        val stringStart = capturedCount
+        var stackSize = 0
+
+        fillStack[stackSize++] = startPosition
+        visitStamps[startPosition] = stamp
+
+        while (stackSize > 0) {
+            val position = fillStack[--stackSize]
+            capturedPositions[capturedCount++] = position
+
+            val x = position % boardWidth
+            val y = position / boardWidth
+            for (direction in 0 until 4) {
+                val neighbour = neighbourOf(x, y, direction)
+                if (neighbour < 0 || visitStamps[neighbour] == stamp) {
+                    continue
+                }
+                val neighbourColor = board[neighbour]
+                if (neighbourColor == StoneColor.NONE.index) {
+                    // Found a liberty, the string survives
+                    capturedCount = stringStart
+                    return
+                }
+                if (neighbourColor == color) {
+                    visitStamps[neighbour] = stamp
+                    fillStack[stackSize++] = neighbour
+                }
+            }
+        }
+
+        for (i in stringStart until capturedCount) {
+            board[capturedPositions[i]] = StoneColor.NONE.index
+        }
+    }
+
+    private inline fun forEachNeighbour(position: Int, action: (Int) -> Unit) {
+        val x = position % boardWidth
+        val y = position / boardWidth
+        for (direction in 0 until 4) {
+            val neighbour = neighbourOf(x, y, direction)
+            if (neighbour >= 0) {
+                action(neighbour)
+            }
+        }
+    }
+
+    /**
+     * @return Position of the adjacent intersection in the given direction (0 to 3), or -1
+     * if it is outside the board.
+     */
+    private fun neighbourOf(x: Int, y: Int, direction: Int): Int {
+        return when (direction) {
+            0 -> if (y > 0) x + (y - 1) * boardWidth else -1
+            1 -> if (y < boardHeight - 1) x + (y + 1) * boardWidth else -1
+            2 -> if (x > 0) x - 1 + y * boardWidth else -1
+            else -> if (x < boardWidth - 1) x + 1 + y * boardWidth else -1
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package codes.nibby.yi.models
+
+/**
+ * Represents the result of submitting a batch of moves using
+ * [GameModelEditor.addMoves][codes.nibby.yi.models.editor.GameModelEditor.addMoves].
+ *
+ * Moves in a batch depend on the moves before them, so the batch stops at the first move
+ * that is not [MoveValidationResult.OK]. Moves after it are not attempted.
+ *
+ * @param validationResults The outcome of each move in the batch, in submission order.
+ * Each entry is the [ordinal][MoveValidationResult.ordinal] of a [MoveValidationResult],
+ * or [NOT_ATTEMPTED] for moves after the first rejected move.
+ * @param movesPlayed Number of moves in the batch that have been played.
+ * @param lastNode The node of the last move that has been played. If no move has been
+ * played, this is the node the batch started from.
+ */
+class MoveBatchResult internal constructor(val validationResults: ByteArray,
+                                           val movesPlayed: Int,
+                                           val lastNode: GameNode) {
+
+    /**
+     * @return true if every move in the batch has been played.
+     */
+    fun isComplete(): Boolean = movesPlayed == validationResults.size
+
+    /**
+     * @return The outcome of the move at the given position in the batch, or null if the
+     * move was not attempted because an earlier move was rejected.
+     */
+    fun getValidationResult(moveIndex: Int): MoveValidationResult? {
+        val result = validationResults[moveIndex]
+        return if (result == NOT_ATTEMPTED) null else MoveValidationResult.values()[result.toInt()]
+    }
+
+    override fun toString(): String {
+        val rejection = if (isComplete()) "" else " rejected: ${getValidationResult(movesPlayed)}"
+        return "played: $movesPlayed/${validationResults.size}$rejection node: $lastNode"
+    }
+
+    companion object {
+        /** Marks a move that was not attempted in [validationResults]. */
+        const val NOT_ATTEMPTED: Byte = -1
+    }
+}
@@ -29,4 +29,37 @@ class MoveSequence constructor(private val game: GameModel) {
         game.editor.addPass()
         return this
     }
+
+    /**
+     * Plays a series of moves in one batch using
+     * [GameModelEditor.addMoves][codes.nibby.yi.models.editor.GameModelEditor.addMoves],
+     * which is much faster than calling [playMove] for each move. If any move cannot be
+     * played, a [GameRulesException] is thrown. Moves before it remain played.
+     *
+     * @param encodedMoves Moves encoded using [encodeMove], or [PASS] for a pass.
+     */
+    fun playMoves(encodedMoves: IntArray): MoveSequence {
+        val result = game.editor.addMoves(encodedMoves)
+        if (!result.isComplete()) {
+            val failedMove = encodedMoves[result.movesPlayed]
+            val validationResult = result.getValidationResult(result.movesPlayed)!!
+            throw GameRulesException(validationResult, "Cannot play move " +
+                    "(${failedMove % game.boardWidth}, ${failedMove / game.boardWidth}) " +
+                    "at node position ${game.currentNode.moveNumber}: $validationResult")
+        }
+        return this
+    }
+
+    companion object {
+        /** Encoded value of a pass in the moves supplied to [playMoves]. */
+        const val PASS = -1
+
+        /**
+         * Encodes a move for use with [playMoves].
+         *
+         * @return Index of the intersection on the game board, calculated using
+         * x + y * boardWidth.
+         */
+        fun encodeMove(x: Int, y: Int, boardWidth: Int): Int = x + y * boardWidth
+    }
 }
\ No newline at end of file
@@ -0,0 +1,125 @@
+package codes.nibby.yi.models
+
+import java.util.*
+
+/**
+ * Holds the parts of a [GameNode] that can change after the node is created. A node
+ * keeps older versions around only for as long as a [GameModelSnapshot] might read them,
+ * which is what allows [GameModel.snapshot] to run in constant time.
+ *
+ * A version is never modified once a snapshot that can see it exists. Instead, the node
+ * copies the version and modifies the copy. See [GameNode.versionForEdit].
+ *
+ * @param epoch The snapshot epoch of the node's model this version was created in. A snapshot
+ * taken at epoch `e` sees the latest version of each node whose epoch is less than or equal
+ * to `e`.
+ */
+internal class NodeVersion(val epoch: Long,
+                           var parent: GameNode?,
+                           val children: ArrayList<GameNode>,
+                           val delta: StateDelta) {
+
+    /**
+     * @return A mutable copy of this version for the given epoch.
+     */
+    fun copyForEpoch(epoch: Long): NodeVersion {
+        return NodeVersion(epoch, parent, ArrayList(children), delta.copy())
+    }
+
+    /**
+     * @return This version moved to the given epoch without copying its data. Only safe
+     * while no snapshot can be reading this version.
+     */
+    fun rebaseToEpoch(epoch: Long): NodeVersion {
+        return NodeVersion(epoch, parent, children, delta)
+    }
+}
+
+/**
+ * Keeps track of the snapshot epoch counter of one game model, and which of its epochs are
+ * still read by open [GameModelSnapshot] instances. Each model has its own epochs, held by
+ * its [GameTree], so snapshots of one model never cause nodes of another to keep versions.
+ *
+ * Nodes that keep older versions for open snapshots are registered here. When a snapshot
+ * is closed, the versions that no remaining snapshot can see are discarded, so that nodes
+ * removed from the game tree do not stay reachable through the versions of their former
+ * parents.
+ */
+internal class SnapshotEpochs {
+
+    @Volatile
+    private var currentEpoch = 0L
+    private val openSnapshotEpochs = TreeSet<Long>()
+    private val nodesWithHistory: MutableSet<GameNode> = Collections.newSetFromMap(IdentityHashMap())
+
+    // Bounds of the open snapshot epochs, read without the lock when nodes are edited
+    @Volatile
+    private var newestOpenEpoch = -1L
+    @Volatile
+    private var oldestOpenEpoch = Long.MAX_VALUE
+
+    fun getCurrentEpoch(): Long = currentEpoch
+
+    /**
+     * Closes the current epoch and registers the snapshot that reads it. Any edits made
+     * after this call belong to the next epoch.
+     *
+     * @param snapshotFactory Creates the snapshot for the epoch it is allowed to see.
+     * @return The new snapshot.
+     */
+    @Synchronized
+    fun beginSnapshot(snapshotFactory: (Long) -> GameModelSnapshot): GameModelSnapshot {
+        val snapshotEpoch = currentEpoch++
+        val snapshot = snapshotFactory(snapshotEpoch)
+
+        openSnapshotEpochs.add(snapshotEpoch)
+        updateOpenEpochBounds()
+        return snapshot
+    }
+
+    /**
+     * Unregisters the snapshot taken at the given epoch, and discards the versions that
+     * are no longer visible to any open snapshot.
+     */
+    fun endSnapshot(snapshotEpoch: Long) {
+        val nodesToPrune = synchronized(this) {
+            openSnapshotEpochs.remove(snapshotEpoch)
+            updateOpenEpochBounds()
+            ArrayList(nodesWithHistory)
+        }
+
+        // Pruned outside the lock, as each node takes its own lock first
+        nodesToPrune.forEach { it.pruneVersionHistory() }
+    }
+
+    private fun updateOpenEpochBounds() {
+        newestOpenEpoch = if (openSnapshotEpochs.isEmpty()) -1L else openSnapshotEpochs.last()
+        oldestOpenEpoch = if (openSnapshotEpochs.isEmpty()) Long.MAX_VALUE else openSnapshotEpochs.first()
+    }
+
+    /**
+     * @return true if an open snapshot may be reading a version created in the given epoch.
+     */
+    fun isVisibleToOpenSnapshot(versionEpoch: Long): Boolean {
+        return versionEpoch <= newestOpenEpoch
+    }
+
+    /**
+     * @return Epoch of the oldest open snapshot, or [Long.MAX_VALUE] if there is none.
+     */
+    fun getOldestOpenEpoch(): Long = oldestOpenEpoch
+
+    /**
+     * Registers a node whose version history is no longer empty, so that the history is
+     * pruned once the snapshots reading it are closed.
+     */
+    @Synchronized
+    fun addNodeWithHistory(node: GameNode) {
+        nodesWithHistory.add(node)
+    }
+
+    @Synchronized
+    fun removeNodeWithHistory(node: GameNode) {
+        nodesWithHistory.remove(node)
+    }
+}
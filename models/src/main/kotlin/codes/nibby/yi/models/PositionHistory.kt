@@ -0,0 +1,114 @@
+package codes.nibby.yi.models
+
+import codes.nibby.yi.models.rules.RepetitionPolicy
+
+/**
+ * The positions that occurred on the way to a node, indexed so that each
+ * [RepetitionPolicy] can be checked in constant time.
+ *
+ * Two indices are kept. The positional index holds the state hash after each played move.
+ * The situational index combines each state hash with the player to move next, and also
+ * includes passes, since a pass hands the same position to the other player.
+ */
+internal class PositionHistory private constructor(private val positions: StateHashIndex,
+                                                   private val situations: StateHashIndex) {
+
+    constructor() : this(StateHashIndex(), StateHashIndex())
+
+    /** Number of positions created by played moves. */
+    val size: Int
+        get() = positions.size
+
+    /**
+     * Records the position created by a played move.
+     *
+     * @param nextTurn Color of the player to move after this move.
+     */
+    fun addMove(stateHash: Long, nextTurn: StoneColor) {
+        positions.add(stateHash)
+        situations.add(getSituationalHash(stateHash, nextTurn))
+    }
+
+    /**
+     * Records a pass, which leaves the position unchanged but gives the turn to the
+     * other player.
+     *
+     * @param nextTurn Color of the player to move after the pass.
+     */
+    fun addPass(stateHash: Long, nextTurn: StoneColor) {
+        situations.add(getSituationalHash(stateHash, nextTurn))
+    }
+
+    /**
+     * Checks whether a move producing the given position is forbidden as a repetition.
+     *
+     * @param newStateHash State hash of the position after the move.
+     * @param nextTurn Color of the player to move after the move.
+     * @param isKoShape Tests whether the move captures a single stone that was itself the
+     * last move and captured a single stone, i.e. whether it is a ko recapture if the
+     * position repeats. Only evaluated when the position would repeat the one before the
+     * last move.
+     */
+    fun checkRepetition(policy: RepetitionPolicy, newStateHash: Long, nextTurn: StoneColor,
+                        isKoShape: () -> Boolean): MoveValidationResult {
+
+        val repeatsPositionBeforeLastMove = positions.size >= 2 && positions[positions.size - 2] == newStateHash
+        if (repeatsPositionBeforeLastMove && isKoShape()) {
+            return MoveValidationResult.ERROR_KO_RECAPTURE
+        }
+
+        val isRepeat = when (policy) {
+            RepetitionPolicy.SIMPLE_KO -> false
+            RepetitionPolicy.POSITIONAL_SUPERKO -> newStateHash in positions
+            RepetitionPolicy.SITUATIONAL_SUPERKO -> getSituationalHash(newStateHash, nextTurn) in situations
+        }
+        return if (isRepeat) MoveValidationResult.ERROR_POSITION_REPEAT else MoveValidationResult.OK
+    }
+
+    fun copy(): PositionHistory = PositionHistory(positions.copy(), situations.copy())
+
+    /**
+     * @return State hashes of the positions created by played moves, oldest first.
+     */
+    fun getPositionHashes(): List<Long> = positions.toList()
+
+    fun getSituationalHash(stateHash: Long, nextTurn: StoneColor): Long {
+        return if (nextTurn == StoneColor.WHITE) stateHash xor WHITE_TO_MOVE_HASH else stateHash
+    }
+
+    companion object {
+        // Mixed into the state hash when white is to move. Any fixed value works as long as
+        // it is unlikely to equal the difference between two position hashes.
+        private const val WHITE_TO_MOVE_HASH = -0x61c8864680b583ebL
+
+        /**
+         * Builds the history of the positions leading up to (and including) the last node
+         * in the list.
+         *
+         * @param nodeHistory Nodes from the root to the current node.
+         */
+        fun fromNodes(nodeHistory: List<GameNode>, gameModel: GameModel): PositionHistory {
+            val history = PositionHistory()
+            val hasHandicap = gameModel.info.getHandicapCount() > 0
+            var turnsPlayed = 0
+
+            // The root position is excluded, so that a move can re-create the empty board
+            for (i in 1 until nodeHistory.size) {
+                val node = nodeHistory[i]
+                when (node.getType()) {
+                    GameNodeType.MOVE_PLAYED -> {
+                        history.addMove(node.getStateHash(), node.getPrimaryMove()!!.color.getOpponent())
+                        turnsPlayed++
+                    }
+                    GameNodeType.PASS -> {
+                        val passColor = gameModel.rules.getStoneColorForTurn(turnsPlayed, hasHandicap)
+                        history.addPass(node.getStateHash(), passColor.getOpponent())
+                        turnsPlayed++
+                    }
+                    else -> { }
+                }
+            }
+            return history
+        }
+    }
+}
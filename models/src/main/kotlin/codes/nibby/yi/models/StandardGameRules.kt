@@ -1,8 +1,11 @@
 package codes.nibby.yi.models
 
+import codes.nibby.yi.models.rules.AgaRulesHandler
 import codes.nibby.yi.models.rules.ChineseRulesHandler
 import codes.nibby.yi.models.rules.GameRulesHandler
+import codes.nibby.yi.models.rules.JapaneseRulesHandler
 import codes.nibby.yi.models.rules.NewZealandRulesHandler
+import codes.nibby.yi.models.rules.TrompTaylorRulesHandler
 import java.util.*
 
 /**
@@ -21,6 +24,25 @@ enum class StandardGameRules(val rulesHandler: GameRulesHandler) {
             return rulesetName.equals("new zealand", ignoreCase = true)
                     || rulesetName.equals("nz", ignoreCase = true)
         }
+    },
+
+    JAPANESE(JapaneseRulesHandler()) {
+        override fun isRuleset(rulesetName: String): Boolean {
+            return rulesetName.equals("japanese", ignoreCase = true)
+                    || rulesetName.equals("jp", ignoreCase = true)
+        }
+    },
+
+    AGA(AgaRulesHandler()) {
+        override fun isRuleset(rulesetName: String): Boolean = rulesetName.equals("aga", ignoreCase = true)
+    },
+
+    TROMP_TAYLOR(TrompTaylorRulesHandler()) {
+        override fun isRuleset(rulesetName: String): Boolean {
+            return rulesetName.equals("tromp-taylor", ignoreCase = true)
+                    || rulesetName.equals("tromp taylor", ignoreCase = true)
+                    || rulesetName.equals("tt", ignoreCase = true)
+        }
     };
 
     /**
@@ -48,6 +48,23 @@ class StateDelta {
         }
     }
 
+    /**
+     * @return A copy of this delta whose collections can be modified independently.
+     */
+    internal fun copy(): StateDelta {
+        val copy = StateDelta(type, primaryMove, captures, stateHash, HashSet(stoneEdits), HashSet(annotations))
+        // The constructor adds the primary move to the stone edits, which may not be
+        // the case for this delta if it has since been edited.
+        primaryMove?.let {
+            if (!stoneEdits.contains(it)) {
+                copy.stoneEdits.remove(it)
+            }
+        }
+        copy.metadata.putAll(metadata)
+        copy.comments = comments
+        return copy
+    }
+
     internal fun dispose() {
         primaryMove = null
         stoneEdits.clear()
@@ -0,0 +1,130 @@
+package codes.nibby.yi.models
+
+/**
+ * An append-only history of game state hashes that supports constant time lookup of
+ * whether (and where) a hash has occurred before. Used to detect repeated positions
+ * without scanning the entire history on every move.
+ *
+ * Hashes are stored in primitive arrays to avoid boxing every entry.
+ *
+ * @param initialHistory Hashes to populate the index with, oldest first.
+ */
+internal class StateHashIndex(initialHistory: List<Long> = emptyList()) {
+
+    private var history = LongArray(maxOf(MIN_CAPACITY, initialHistory.size * 2))
+
+    // Open addressing table mapping a hash to the index of its first occurrence in history.
+    // A slot is empty when its index is EMPTY_SLOT.
+    private var tableKeys = LongArray(tableSizeFor(history.size))
+    private var tableIndices = IntArray(tableKeys.size) { EMPTY_SLOT }
+
+    var size = 0
+        private set
+
+    init {
+        initialHistory.forEach { add(it) }
+    }
+
+    /**
+     * Appends a state hash to the end of the history.
+     */
+    fun add(stateHash: Long) {
+        if (size == history.size) {
+            history = history.copyOf(size * 2)
+        }
+        history[size] = stateHash
+
+        if ((size + 1) * 2 > tableKeys.size) {
+            rehash(tableKeys.size * 2)
+        }
+        insertIfAbsent(stateHash, size)
+        size++
+    }
+
+    /**
+     * @return The hash at the given position in the history, where 0 is the oldest.
+     */
+    operator fun get(index: Int): Long {
+        if (index < 0 || index >= size) {
+            throw IndexOutOfBoundsException("Index: $index, size: $size")
+        }
+        return history[index]
+    }
+
+    operator fun contains(stateHash: Long): Boolean = indexOf(stateHash) >= 0
+
+    /**
+     * @return An independent copy of this index.
+     */
+    fun copy(): StateHashIndex {
+        val copy = StateHashIndex()
+        copy.history = history.copyOf()
+        copy.tableKeys = tableKeys.copyOf()
+        copy.tableIndices = tableIndices.copyOf()
+        copy.size = size
+        return copy
+    }
+
+    /**
+     * @return The hashes in this index, oldest first.
+     */
+    fun toList(): List<Long> = history.asList().subList(0, size)
+
+    /**
+     * @return Position of the first occurrence of the hash in the history, or -1 if the
+     * hash is not part of the history.
+     */
+    fun indexOf(stateHash: Long): Int {
+        val mask = tableKeys.size - 1
+        var slot = slotFor(stateHash, mask)
+
+        while (tableIndices[slot] != EMPTY_SLOT) {
+            if (tableKeys[slot] == stateHash) {
+                return tableIndices[slot]
+            }
+            slot = (slot + 1) and mask
+        }
+        return -1
+    }
+
+    private fun insertIfAbsent(stateHash: Long, historyIndex: Int) {
+        val mask = tableKeys.size - 1
+        var slot = slotFor(stateHash, mask)
+
+        while (tableIndices[slot] != EMPTY_SLOT) {
+            if (tableKeys[slot] == stateHash) {
+                return // Keep the first occurrence
+            }
+            slot = (slot + 1) and mask
+        }
+        tableKeys[slot] = stateHash
+        tableIndices[slot] = historyIndex
+    }
+
+    private fun rehash(newTableSize: Int) {
+        tableKeys = LongArray(newTableSize)
+        tableIndices = IntArray(newTableSize) { EMPTY_SLOT }
+        for (i in 0 until size) {
+            insertIfAbsent(history[i], i)
+        }
+    }
+
+    private fun slotFor(stateHash: Long, mask: Int): Int {
+        // Spread the bits in case the hasher does not produce uniformly distributed values
+        val mixed = stateHash * -7046029254386353131L
+        return (mixed xor (mixed ushr 32)).toInt() and mask
+    }
+
+    private companion object {
+        const val MIN_CAPACITY = 16
+        const val EMPTY_SLOT = -1
+
+        fun tableSizeFor(capacity: Int): Int {
+            var size = MIN_CAPACITY * 2
+            while (size < capacity * 2) {
+                size = size shl 1
+            }
+            return size
+        }
+    }
+}
@@ -1,10 +1,14 @@
 package codes.nibby.yi.models
 
-import kotlin.random.Random
+import java.util.Random
 
 /**
  * A simple XOR state hasher for [GameState].
  * <p/>
+ * The random values are generated from a fixed seed for each board size, so the same
+ * position has the same hash in every game model and across program runs. This allows
+ * hashes to be stored, such as in an [codes.nibby.yi.models.analysis.AnalysisCache].
+ * <p/>
  * See https://en.wikipedia.org/wiki/Zobrist_hashing for more information.
  */
 class ZobristHasher constructor(private val boardWidth: Int, boardHeight: Int) :
@@ -15,14 +19,15 @@ class ZobristHasher constructor(private val boardWidth: Int, boardHeight: Int) :
 
     init {
         val usedNumbers: HashSet<Long> = HashSet()
+        val random = Random(HASH_SEED + boardWidth * MAX_BOARD_DIMENSION + boardHeight)
 
         for (state in StoneColor.values().indices) {
             for (index in 0 until intersectionCount) {
-                var uniqueStateHash = Random.nextLong()
+                var uniqueStateHash = random.nextLong()
                 var retries = 0
 
                 while (usedNumbers.contains(uniqueStateHash)) {
-                    uniqueStateHash = Random.nextLong()
+                    uniqueStateHash = random.nextLong()
                     ++retries
 
                     // Don't expect this to happen at all, but it's part of the core code and
@@ -68,4 +73,11 @@ class ZobristHasher constructor(private val boardWidth: Int, boardHeight: Int) :
     private fun getHashValue(color: StoneColor, position: Int): Long {
         return hashLookup[color.index * intersectionCount + position]
     }
+
+    private companion object {
+        // Changing these, or the generator, invalidates every hash that has been stored.
+        // java.util.Random is used because its sequence for a seed is fixed by its spec.
+        const val HASH_SEED = 0x5969L
+        const val MAX_BOARD_DIMENSION = 1024L
+    }
 }
\ No newline at end of file
@@ -0,0 +1,230 @@
+package codes.nibby.yi.models.analysis
+
+import codes.nibby.yi.models.GameNode
+import codes.nibby.yi.models.LruMap
+import codes.nibby.yi.models.StoneColor
+import java.io.IOException
+import java.nio.BufferUnderflowException
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.StandardCopyOption
+import java.nio.file.StandardOpenOption
+import kotlin.math.roundToInt
+
+/**
+ * A bounded store of [PositionAnalysis] so that positions which have already been analysed
+ * are not analysed again when they are revisited.
+ *
+ * Analyses are keyed by the state hash of the position (see [GameNode.getStateHash]) and
+ * the player to move, so transpositions share an entry across nodes and across games.
+ * When the cache is full, the least recently used entry is evicted.
+ *
+ * The cache can be written to a file with [save] and read back with [load]. Each reads or
+ * writes the whole file in one buffer rather than streaming it entry by entry, and neither
+ * keeps the file open afterwards. Ownership maps are stored in the file as one byte per
+ * intersection, which is precise to within 0.01.
+ *
+ * This class is thread-safe.
+ *
+ * @param maxEntries Number of positions held before the least recently used are evicted.
+ */
+class AnalysisCache @JvmOverloads constructor(val maxEntries: Int = DEFAULT_MAX_ENTRIES) {
+
+    // Saved from the least to the most recently used entry, so that loading a file into a
+    // smaller cache keeps the most recent analyses
+    private val entries = LruMap<CacheKey, PositionAnalysis>(maxEntries)
+
+    private var hitCount = 0L
+    private var missCount = 0L
+
+    /**
+     * @return The analysis of the position at the node with the given player to move, or
+     * null if it has not been cached.
+     */
+    fun get(node: GameNode, nextTurn: StoneColor): PositionAnalysis? = get(node.getStateHash(), nextTurn)
+
+    fun get(stateHash: Long, nextTurn: StoneColor): PositionAnalysis? {
+        val key = CacheKey(stateHash, getTurnIndex(nextTurn))
+        synchronized(entries) {
+            val analysis = entries[key]
+            if (analysis == null) missCount++ else hitCount++
+            return analysis
+        }
+    }
+
+    /**
+     * Stores the analysis of the position at the node, replacing any existing analysis of
+     * the same position.
+     */
+    fun put(node: GameNode, nextTurn: StoneColor, analysis: PositionAnalysis) {
+        put(node.getStateHash(), nextTurn, analysis)
+    }
+
+    fun put(stateHash: Long, nextTurn: StoneColor, analysis: PositionAnalysis) {
+        val key = CacheKey(stateHash, getTurnIndex(nextTurn))
+        synchronized(entries) {
+            entries[key] = analysis
+        }
+    }
+
+    fun remove(stateHash: Long, nextTurn: StoneColor) {
+        val key = CacheKey(stateHash, getTurnIndex(nextTurn))
+        synchronized(entries) {
+            entries.remove(key)
+        }
+    }
+
+    fun size(): Int = synchronized(entries) { entries.size }
+
+    fun clear() {
+        synchronized(entries) {
+            entries.clear()
+            hitCount = 0
+            missCount = 0
+        }
+    }
+
+    /**
+     * @return Number of lookups that found an analysis since the cache was created or
+     * cleared.
+     */
+    fun getHitCount(): Long = synchronized(entries) { hitCount }
+
+    /**
+     * @return Number of lookups that found nothing since the cache was created or cleared.
+     */
+    fun getMissCount(): Long = synchronized(entries) { missCount }
+
+    /**
+     * Writes every entry to a file, replacing the file if it exists. Entries are written
+     * from least to most recently used, so that [load] restores the eviction order.
+     */
+    @Throws(IOException::class)
+    fun save(file: Path) {
+        val snapshot = synchronized(entries) { ArrayList(entries.entries) }
+
+        var fileSize = HEADER_SIZE.toLong()
+        snapshot.forEach { fileSize += ENTRY_SIZE + (it.value.ownership?.size ?: 0) }
+        val buffer = ByteBuffer.allocate(Math.toIntExact(fileSize))
+
+        // Written aside and moved into place so that a failed save leaves the old file intact
+        val tempFile = file.resolveSibling(file.fileName.toString() + ".tmp")
+        buffer.putInt(FILE_MAGIC)
+        buffer.putInt(FILE_VERSION)
+        buffer.putInt(snapshot.size)
+
+        for ((key, analysis) in snapshot) {
+            buffer.putLong(key.stateHash)
+            buffer.put(key.turnIndex)
+            buffer.putFloat(analysis.blackWinRate)
+            buffer.putFloat(analysis.blackScoreLead)
+            buffer.putInt(analysis.visits)
+
+            val ownership = analysis.ownership
+            buffer.putInt(ownership?.size ?: NO_OWNERSHIP)
+            ownership?.forEach { buffer.put(encodeOwnership(it)) }
+        }
+        buffer.flip()
+
+        // Written through the channel rather than a mapping, because a file cannot be
+        // replaced on some platforms while a mapping of it is still open
+        FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE).use { channel ->
+            while (buffer.hasRemaining()) {
+                channel.write(buffer)
+            }
+            channel.force(false)
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING)
+    }
+
+    companion object {
+        const val DEFAULT_MAX_ENTRIES = 4096
+
+        private const val FILE_MAGIC = 0x59494143 // "YIAC"
+        private const val FILE_VERSION = 1
+        private const val HEADER_SIZE = 12
+
+        // Hash, turn, win rate, score lead, visits and ownership length
+        private const val ENTRY_SIZE = 8 + 1 + 4 + 4 + 4 + 4
+        private const val NO_OWNERSHIP = -1
+
+        /**
+         * Reads a cache written by [save]. If the file holds more than [maxEntries] entries,
+         * the least recently used are dropped.
+         *
+         * @throws IOException If the file cannot be read or is not an analysis cache.
+         */
+        @JvmStatic
+        @JvmOverloads
+        @Throws(IOException::class)
+        fun load(file: Path, maxEntries: Int = DEFAULT_MAX_ENTRIES): AnalysisCache {
+            val cache = AnalysisCache(maxEntries)
+
+            // Copied out in full so that the file is closed before the cache is used
+            val buffer = ByteBuffer.wrap(Files.readAllBytes(file))
+            try {
+                readEntries(buffer, cache)
+            } catch (e: BufferUnderflowException) {
+                throw IOException("Analysis cache file is truncated: $file", e)
+            } catch (e: IllegalArgumentException) {
+                throw IOException("Analysis cache file is corrupt: $file", e)
+            }
+            return cache
+        }
+
+        private fun readEntries(buffer: ByteBuffer, cache: AnalysisCache) {
+            if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != FILE_MAGIC) {
+                throw IOException("Not an analysis cache file")
+            }
+            val version = buffer.getInt()
+            if (version != FILE_VERSION) {
+                throw IOException("Unsupported analysis cache version: $version")
+            }
+
+            val entryCount = buffer.getInt()
+            repeat(entryCount) {
+                val stateHash = buffer.getLong()
+                val turnIndex = buffer.get()
+                val blackWinRate = buffer.getFloat()
+                val blackScoreLead = buffer.getFloat()
+                val visits = buffer.getInt()
+
+                val ownershipSize = buffer.getInt()
+                if (ownershipSize < NO_OWNERSHIP || ownershipSize > buffer.remaining()) {
+                    throw IOException("Invalid ownership map size: $ownershipSize")
+                }
+                val ownership = if (ownershipSize == NO_OWNERSHIP) null else FloatArray(ownershipSize) {
+                    decodeOwnership(buffer.get())
+                }
+
+                cache.entries[CacheKey(stateHash, turnIndex)] = PositionAnalysis(blackWinRate, blackScoreLead,
+                        visits, ownership)
+            }
+        }
+
+        private fun getTurnIndex(nextTurn: StoneColor): Byte {
+            if (nextTurn != StoneColor.BLACK && nextTurn != StoneColor.WHITE) {
+                throw IllegalArgumentException("Next turn must be either black or white")
+            }
+            return nextTurn.index
+        }
+
+        private fun encodeOwnership(value: Float): Byte {
+            return (value.coerceIn(-1f, 1f) * Byte.MAX_VALUE).roundToInt().toByte()
+        }
+
+        private fun decodeOwnership(value: Byte): Float = value.toFloat() / Byte.MAX_VALUE
+    }
+
+    private class CacheKey(val stateHash: Long, val turnIndex: Byte) {
+
+        override fun equals(other: Any?): Boolean {
+            return other is CacheKey && stateHash == other.stateHash && turnIndex == other.turnIndex
+        }
+
+        override fun hashCode(): Int = stateHash.hashCode() * 31 + turnIndex
+    }
+}
@@ -0,0 +1,172 @@
+package codes.nibby.yi.models.analysis
+
+/**
+ * Finds the chains of one color that are unconditionally alive using Benson's algorithm,
+ * i.e. chains that cannot be captured even if their owner passes every turn.
+ *
+ * The board is divided into chains of the given color and regions, where a region is a
+ * connected set of intersections that are either empty or occupied by the opponent. A
+ * region is vital to a chain if every empty intersection in the region is a liberty of
+ * that chain. Chains with fewer than two vital regions are discarded, along with every
+ * region that borders a discarded chain, until nothing else changes. The chains left are
+ * unconditionally alive.
+ *
+ * Results are reported on padded positions of the [CompactBoard] being analyzed.
+ */
+internal class BensonAnalyzer(private val board: CompactBoard) {
+
+    private val cells = board.cells
+    private val chainIds = IntArray(cells.size)
+    private val regionIds = IntArray(cells.size)
+    private val fillStack = IntArray(cells.size)
+
+    /**
+     * @param color Index of the color whose chains to analyze.
+     * @param aliveStones Set to true at every stone of an unconditionally alive chain.
+     * @param ownedArea Set to true at every intersection of a region that the opponent
+     * cannot live in, because the region is surrounded by unconditionally alive chains and
+     * each of its empty intersections is adjacent to one of them. Opponent stones in these
+     * regions are dead.
+     */
+    fun analyze(color: Byte, aliveStones: BooleanArray, ownedArea: BooleanArray) {
+        val chainCount = label(chainIds) { it == color }
+        val regionCount = label(regionIds) { it != color && it != CompactBoard.EDGE }
+        if (chainCount == 0 || regionCount == 0) {
+            return
+        }
+
+        // Relationship between each region and chain, indexed by region * chainCount + chain
+        val borders = BooleanArray(regionCount * chainCount)
+        val libertiesInRegion = IntArray(regionCount * chainCount)
+
+        val emptyPointCount = IntArray(regionCount)
+        val emptyPointsNextToChain = IntArray(regionCount)
+        val adjacentChains = IntArray(4)
+
+        for (position in board.firstPosition..board.lastPosition) {
+            val region = regionIds[position]
+            if (region < 0) {
+                continue
+            }
+            val isEmpty = cells[position] == CompactBoard.EMPTY
+            var adjacentChainCount = 0
+
+            for (offset in board.neighbourOffsets) {
+                val chain = chainIds[position + offset]
+                if (chain < 0 || adjacentChains.contains(chain, adjacentChainCount)) {
+                    continue
+                }
+                adjacentChains[adjacentChainCount++] = chain
+                borders[region * chainCount + chain] = true
+                if (isEmpty) {
+                    libertiesInRegion[region * chainCount + chain]++
+                }
+            }
+
+            if (isEmpty) {
+                emptyPointCount[region]++
+                if (adjacentChainCount > 0) {
+                    emptyPointsNextToChain[region]++
+                }
+            }
+        }
+
+        val chainAlive = BooleanArray(chainCount) { true }
+        val regionHealthy = BooleanArray(regionCount) { true }
+        var changed = true
+
+        while (changed) {
+            changed = false
+
+            for (chain in 0 until chainCount) {
+                if (!chainAlive[chain]) {
+                    continue
+                }
+                var vitalRegions = 0
+                for (region in 0 until regionCount) {
+                    val index = region * chainCount + chain
+                    if (regionHealthy[region] && borders[index]
+                            && libertiesInRegion[index] == emptyPointCount[region]) {
+                        vitalRegions++
+                    }
+                }
+                if (vitalRegions < 2) {
+                    chainAlive[chain] = false
+                    changed = true
+                }
+            }
+
+            for (region in 0 until regionCount) {
+                if (!regionHealthy[region]) {
+                    continue
+                }
+                for (chain in 0 until chainCount) {
+                    if (borders[region * chainCount + chain] && !chainAlive[chain]) {
+                        regionHealthy[region] = false
+                        changed = true
+                        break
+                    }
+                }
+            }
+        }
+
+        val regionOwned = BooleanArray(regionCount) { region ->
+            regionHealthy[region]
+                    && emptyPointsNextToChain[region] == emptyPointCount[region]
+                    && (0 until chainCount).any { borders[region * chainCount + it] }
+        }
+
+        for (position in board.firstPosition..board.lastPosition) {
+            val chain = chainIds[position]
+            if (chain >= 0 && chainAlive[chain]) {
+                aliveStones[position] = true
+            }
+            val region = regionIds[position]
+            if (region >= 0 && regionOwned[region]) {
+                ownedArea[position] = true
+            }
+        }
+    }
+
+    /**
+     * Assigns an id to each connected group of intersections that satisfy the predicate.
+     * Intersections outside any group are set to -1.
+     *
+     * @return Number of groups found.
+     */
+    private inline fun label(ids: IntArray, predicate: (Byte) -> Boolean): Int {
+        ids.fill(-1)
+        var groupCount = 0
+
+        for (position in board.firstPosition..board.lastPosition) {
+            if (ids[position] >= 0 || !predicate(cells[position])) {
+                continue
+            }
+            val id = groupCount++
+            var stackSize = 0
+            fillStack[stackSize++] = position
+            ids[position] = id
+
+            while (stackSize > 0) {
+                val current = fillStack[--stackSize]
+                for (offset in board.neighbourOffsets) {
+                    val neighbour = current + offset
+                    if (ids[neighbour] < 0 && predicate(cells[neighbour])) {
+                        ids[neighbour] = id
+                        fillStack[stackSize++] = neighbour
+                    }
+                }
+            }
+        }
+        return groupCount
+    }
+
+    private fun IntArray.contains(value: Int, length: Int): Boolean {
+        for (i in 0 until length) {
+            if (this[i] == value) {
+                return true
+            }
+        }
+        return false
+    }
+}
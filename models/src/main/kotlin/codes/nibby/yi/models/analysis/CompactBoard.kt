@@ -0,0 +1,253 @@
+package codes.nibby.yi.models.analysis
+
+import codes.nibby.yi.models.StoneColor
+
+/**
+ * A mutable board position stored as one byte per intersection, surrounded by a border of
+ * [EDGE] so that adjacent intersections can be visited without bounds checks. Intended
+ * for evaluators that play a large number of moves, such as random playouts, where
+ * building a [codes.nibby.yi.models.GamePosition] for every move would be too slow.
+ *
+ * Positions used by this class are padded positions, see [toPadded] and [toUnpadded] for
+ * conversion from the one variable form used elsewhere in the models.
+ *
+ * Only simple ko is tracked, superko and move history are outside the scope of this class.
+ * Instances are not thread-safe.
+ */
+internal class CompactBoard(val boardWidth: Int, val boardHeight: Int) {
+
+    init {
+        if (boardWidth < 1 || boardHeight < 1)
+            throw IllegalArgumentException("Invalid board dimensions: $boardWidth x $boardHeight")
+    }
+
+    val paddedWidth = boardWidth + 2
+    val cells = ByteArray(paddedWidth * (boardHeight + 2))
+
+    /** Offsets from a padded position to its four adjacent intersections. */
+    val neighbourOffsets = intArrayOf(-paddedWidth, paddedWidth, -1, 1)
+
+    /** Offsets from a padded position to its four diagonal intersections. */
+    private val diagonalOffsets = intArrayOf(-paddedWidth - 1, -paddedWidth + 1, paddedWidth - 1, paddedWidth + 1)
+
+    /**
+     * Position where the next player may not play because it would immediately recapture
+     * a ko, or -1 if there is no such position.
+     */
+    var koPosition = -1
+        private set
+
+    /**
+     * Whether a move may capture its own chain, as allowed by some rulesets. A suicide of a
+     * single stone leaves the position unchanged and is always rejected.
+     */
+    var allowSuicide = false
+
+    // Scratch space for flood filling chains. A position has been visited by the current
+    // fill if its stamp equals currentStamp.
+    private val visitStamps = IntArray(cells.size)
+    private var currentStamp = 0
+    private val fillStack = IntArray(cells.size)
+
+    init {
+        cells.fill(EDGE)
+    }
+
+    /**
+     * Replaces the current position.
+     *
+     * @param board Stone color [index][StoneColor.index] at each intersection in the one
+     * variable form, see [codes.nibby.yi.models.GamePosition.copyStoneIndices].
+     */
+    fun load(board: ByteArray) {
+        if (board.size < boardWidth * boardHeight) {
+            throw IllegalArgumentException("Board size ${board.size} is smaller than $boardWidth x $boardHeight")
+        }
+        for (y in 0 until boardHeight) {
+            System.arraycopy(board, y * boardWidth, cells, (y + 1) * paddedWidth + 1, boardWidth)
+        }
+        koPosition = -1
+    }
+
+    fun copyFrom(other: CompactBoard) {
+        check(other.boardWidth == boardWidth && other.boardHeight == boardHeight) {
+            "Board size mismatch: ${other.boardWidth} x ${other.boardHeight}"
+        }
+        System.arraycopy(other.cells, 0, cells, 0, cells.size)
+        koPosition = other.koPosition
+        allowSuicide = other.allowSuicide
+    }
+
+    fun toPadded(position: Int): Int = (position / boardWidth + 1) * paddedWidth + position % boardWidth + 1
+
+    fun toUnpadded(paddedPosition: Int): Int {
+        return (paddedPosition / paddedWidth - 1) * boardWidth + paddedPosition % paddedWidth - 1
+    }
+
+    /** First padded position that is on the board. */
+    val firstPosition: Int
+        get() = paddedWidth + 1
+
+    /** Last padded position that is on the board. */
+    val lastPosition: Int
+        get() = cells.size - paddedWidth - 2
+
+    /**
+     * Plays a stone and removes any opponent chains left without liberties.
+     *
+     * @param paddedPosition Position to play at.
+     * @param color Index of the color to play, either [BLACK] or [WHITE].
+     * @return false if the move is illegal because the position is occupied, is the
+     * [koPosition] or the move is suicidal and [allowSuicide] is false. In which case the
+     * board is unchanged.
+     */
+    fun play(paddedPosition: Int, color: Byte): Boolean {
+        if (cells[paddedPosition] != EMPTY || paddedPosition == koPosition) {
+            return false
+        }
+
+        val opponent = opponentOf(color)
+        val playedIntoOpponentEye = isSurroundedBy(paddedPosition, opponent)
+        cells[paddedPosition] = color
+
+        var capturedCount = 0
+        var lastCapturedPosition = -1
+        for (offset in neighbourOffsets) {
+            val neighbour = paddedPosition + offset
+            if (cells[neighbour] == opponent && !hasLiberty(neighbour)) {
+                capturedCount += removeChain(neighbour)
+                lastCapturedPosition = neighbour
+            }
+        }
+
+        if (capturedCount == 0 && !hasLiberty(paddedPosition)) {
+            if (!allowSuicide || playedIntoOpponentEye) {
+                cells[paddedPosition] = EMPTY
+                return false
+            }
+            removeChain(paddedPosition)
+            koPosition = -1
+            return true
+        }
+
+        koPosition = if (capturedCount == 1 && playedIntoOpponentEye) lastCapturedPosition else -1
+        return true
+    }
+
+    /**
+     * Skips a turn, which lifts any ko restriction.
+     */
+    fun pass() {
+        koPosition = -1
+    }
+
+    /**
+     * Tests whether an empty position looks like an eye of the given color: all adjacent
+     * intersections are that color and enough diagonals are controlled that the opponent
+     * cannot make it false. Filling such a point is almost never a good move.
+     */
+    fun isEyeLike(paddedPosition: Int, color: Byte): Boolean {
+        if (!isSurroundedBy(paddedPosition, color)) {
+            return false
+        }
+
+        val opponent = opponentOf(color)
+        var opponentDiagonals = 0
+        var touchesEdge = false
+        for (offset in diagonalOffsets) {
+            when (cells[paddedPosition + offset]) {
+                opponent -> opponentDiagonals++
+                EDGE -> touchesEdge = true
+            }
+        }
+        return if (touchesEdge) opponentDiagonals == 0 else opponentDiagonals < 2
+    }
+
+    /**
+     * @return true if every adjacent intersection is either the given color or the edge
+     * of the board.
+     */
+    fun isSurroundedBy(paddedPosition: Int, color: Byte): Boolean {
+        for (offset in neighbourOffsets) {
+            val neighbour = cells[paddedPosition + offset]
+            if (neighbour != color && neighbour != EDGE) {
+                return false
+            }
+        }
+        return true
+    }
+
+    /**
+     * @return true if the chain containing the stone at the given position has at least
+     * one liberty.
+     */
+    fun hasLiberty(paddedPosition: Int): Boolean {
+        val color = cells[paddedPosition]
+        val stamp = nextStamp()
+        var stackSize = 0
+        fillStack[stackSize++] = paddedPosition
+        visitStamps[paddedPosition] = stamp
+
+        while (stackSize > 0) {
+            val current = fillStack[--stackSize]
+            for (offset in neighbourOffsets) {
+                val neighbour = current + offset
+                val neighbourColor = cells[neighbour]
+                if (neighbourColor == EMPTY) {
+                    return true
+                }
+                if (neighbourColor == color && visitStamps[neighbour] != stamp) {
+                    visitStamps[neighbour] = stamp
+                    fillStack[stackSize++] = neighbour
+                }
+            }
+        }
+        return false
+    }
+
+    /**
+     * Removes the chain containing the stone at the given position.
+     *
+     * @return Number of stones removed.
+     */
+    private fun removeChain(paddedPosition: Int): Int {
+        val color = cells[paddedPosition]
+        var stackSize = 0
+        var removedCount = 0
+        fillStack[stackSize++] = paddedPosition
+        cells[paddedPosition] = EMPTY
+
+        while (stackSize > 0) {
+            val current = fillStack[--stackSize]
+            removedCount++
+            for (offset in neighbourOffsets) {
+                val neighbour = current + offset
+                if (cells[neighbour] == color) {
+                    cells[neighbour] = EMPTY
+                    fillStack[stackSize++] = neighbour
+                }
+            }
+        }
+        return removedCount
+    }
+
+    private fun nextStamp(): Int {
+        if (currentStamp == Int.MAX_VALUE) {
+            visitStamps.fill(0)
+            currentStamp = 0
+        }
+        return ++currentStamp
+    }
+
+    companion object {
+        // Same as the StoneColor indices, duplicated as constants for the inner loops
+        const val EMPTY: Byte = 0
+        const val BLACK: Byte = 1
+        const val WHITE: Byte = 2
+
+        /** Marks the border surrounding the board. */
+        const val EDGE: Byte = 4
+
+        fun opponentOf(color: Byte): Byte = (BLACK + WHITE - color).toByte()
+    }
+}
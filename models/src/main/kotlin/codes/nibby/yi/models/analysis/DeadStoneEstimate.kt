@@ -0,0 +1,59 @@
+package codes.nibby.yi.models.analysis
+
+import codes.nibby.yi.models.Stone
+
+/**
+ * Life and death status of the stones on a board, as produced by [DeadStoneEstimator].
+ *
+ * @param boardWidth Width of the estimated board.
+ * @param boardHeight Height of the estimated board.
+ * @param deadStones Stones estimated to be dead.
+ * @param unconditionalStatus For each intersection in the one variable form, true if the
+ * status of the stone there has been proven by Benson's algorithm rather than estimated
+ * through playouts.
+ * @param ownership For each intersection in the one variable form, a value between -1
+ * (always owned by white) and 1 (always owned by black) at the end of the playouts. Null if
+ * no playouts were run.
+ * @param playoutsRun Number of playouts used to estimate the stones that could not be
+ * proven alive or dead.
+ */
+class DeadStoneEstimate internal constructor(val boardWidth: Int,
+                                             val boardHeight: Int,
+                                             val deadStones: Set<Stone>,
+                                             private val unconditionalStatus: BooleanArray,
+                                             private val ownership: FloatArray?,
+                                             val playoutsRun: Int) {
+
+    /**
+     * @return true if there is a dead stone at the given co-ordinate.
+     */
+    fun isDead(x: Int, y: Int): Boolean {
+        return deadStones.any { it.x == x && it.y == y }
+    }
+
+    /**
+     * @return true if the status of the stone at the given co-ordinate (alive or dead) is
+     * certain, rather than an estimate.
+     */
+    fun isUnconditional(x: Int, y: Int): Boolean = unconditionalStatus[x + y * boardWidth]
+
+    /**
+     * @return Ownership of the intersection at the end of the playouts, from -1 (white) to
+     * 1 (black), or null if no playouts were run.
+     */
+    fun getOwnership(x: Int, y: Int): Float? = ownership?.get(x + y * boardWidth)
+
+    /**
+     * Returns the dead stones as a mask that can be passed directly to
+     * [ScoreCalculator.score][codes.nibby.yi.models.rules.ScoreCalculator.score].
+     */
+    fun getDeadStoneMask(): BooleanArray {
+        val mask = BooleanArray(boardWidth * boardHeight)
+        deadStones.forEach { mask[it.getPosition(boardWidth)] = true }
+        return mask
+    }
+
+    override fun toString(): String {
+        return "dead stones: ${deadStones.size}, playouts: $playoutsRun"
+    }
+}
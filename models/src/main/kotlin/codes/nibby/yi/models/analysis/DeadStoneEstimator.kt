@@ -0,0 +1,200 @@
+package codes.nibby.yi.models.analysis
+
+import codes.nibby.yi.models.GameModel
+import codes.nibby.yi.models.GameState
+import codes.nibby.yi.models.Stone
+import codes.nibby.yi.models.StoneColor
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.ForkJoinPool
+
+/**
+ * Estimates which stones are dead at the end of a game.
+ *
+ * Stones that are provably alive, or provably dead inside the opponent's unconditional
+ * territory, are found first using Benson's algorithm. The status of the remaining chains
+ * is estimated by running random playouts from the position and checking who ends up
+ * owning each chain. Playouts are split between [parallelism] tasks on the [executor].
+ *
+ * The result can be passed to the scoring engine, see [DeadStoneEstimate.getDeadStoneMask].
+ *
+ * Each call to [estimate] allocates its own working state, so one estimator may be used by
+ * multiple threads at once.
+ *
+ * @param playoutCount Number of playouts used for chains that Benson's algorithm cannot
+ * decide. A value of 0 only reports the unconditional results.
+ * @param parallelism Number of tasks to split the playouts between.
+ * @param deadThreshold A chain is considered dead if it is owned by the opponent at the
+ * end of more than this fraction of the playouts.
+ * @param seed Seed for the random playouts. Estimating the same position with the same
+ * seed and parallelism gives the same result.
+ * @param executor Runs the playout tasks.
+ */
+class DeadStoneEstimator @JvmOverloads constructor(
+        val playoutCount: Int = DEFAULT_PLAYOUT_COUNT,
+        val parallelism: Int = Runtime.getRuntime().availableProcessors(),
+        val deadThreshold: Float = DEFAULT_DEAD_THRESHOLD,
+        private val seed: Long = System.nanoTime(),
+        private val executor: ExecutorService = ForkJoinPool.commonPool()) {
+
+    init {
+        if (playoutCount < 0)
+            throw IllegalArgumentException("Playout count must be >= 0")
+        if (parallelism < 1)
+            throw IllegalArgumentException("Parallelism must be >= 1")
+        if (deadThreshold < 0f || deadThreshold >= 1f)
+            throw IllegalArgumentException("Dead threshold must be between 0 (inclusive) and 1 (exclusive)")
+    }
+
+    /**
+     * Estimates the dead stones at the current node of the game model.
+     */
+    fun estimate(model: GameModel): DeadStoneEstimate {
+        val (state, nextTurn) = model.withReadLock {
+            Pair(model.getCurrentGameState(), model.getNextTurnStoneColor())
+        }
+        return estimate(state, nextTurn)
+    }
+
+    /**
+     * Estimates the dead stones in the board position of a game state.
+     *
+     * @param nextTurn Color of the player to move next, which moves first in the playouts.
+     */
+    fun estimate(state: GameState, nextTurn: StoneColor): DeadStoneEstimate {
+        val position = state.boardPosition
+        return estimate(position.copyStoneIndices(), position.boardWidth, position.boardHeight, nextTurn)
+    }
+
+    /**
+     * Estimates the dead stones on a board.
+     *
+     * @param board Stone color [index][StoneColor.index] at each intersection in the one
+     * variable form, see [codes.nibby.yi.models.GamePosition.copyStoneIndices].
+     * @param nextTurn Color of the player to move next, which moves first in the playouts.
+     */
+    fun estimate(board: ByteArray, boardWidth: Int, boardHeight: Int, nextTurn: StoneColor): DeadStoneEstimate {
+        if (nextTurn == StoneColor.NONE) {
+            throw IllegalArgumentException("Next turn must be either black or white")
+        }
+
+        val compactBoard = CompactBoard(boardWidth, boardHeight)
+        compactBoard.load(board)
+
+        val paddedSize = compactBoard.cells.size
+        val aliveStones = BooleanArray(paddedSize)
+        val blackArea = BooleanArray(paddedSize)
+        val whiteArea = BooleanArray(paddedSize)
+        val analyzer = BensonAnalyzer(compactBoard)
+        analyzer.analyze(CompactBoard.BLACK, aliveStones, blackArea)
+        analyzer.analyze(CompactBoard.WHITE, aliveStones, whiteArea)
+
+        val cells = compactBoard.cells
+        val unconditionalStatus = BooleanArray(boardWidth * boardHeight)
+        val deadStones = HashSet<Stone>()
+        var hasUndecidedStones = false
+
+        for (position in unconditionalStatus.indices) {
+            val paddedPosition = compactBoard.toPadded(position)
+            val color = cells[paddedPosition]
+            if (color == CompactBoard.EMPTY) {
+                continue
+            }
+            val opponentArea = if (color == CompactBoard.BLACK) whiteArea else blackArea
+            when {
+                aliveStones[paddedPosition] -> unconditionalStatus[position] = true
+                opponentArea[paddedPosition] -> {
+                    unconditionalStatus[position] = true
+                    deadStones.add(createStone(position, boardWidth, color))
+                }
+                else -> hasUndecidedStones = true
+            }
+        }
+
+        var ownership: FloatArray? = null
+        var playoutsRun = 0
+        if (hasUndecidedStones && playoutCount > 0) {
+            val ownershipCounts = runPlayouts(compactBoard, nextTurn.index)
+            ownership = ownershipCounts
+            playoutsRun = playoutCount
+            addDeadChainsFromPlayouts(compactBoard, unconditionalStatus, ownershipCounts, deadStones)
+        }
+
+        return DeadStoneEstimate(boardWidth, boardHeight, deadStones, unconditionalStatus, ownership, playoutsRun)
+    }
+
+    /**
+     * Runs [playoutCount] playouts split between [parallelism] tasks.
+     *
+     * @return Ownership of each intersection in the one variable form, from -1 (white) to
+     * 1 (black).
+     */
+    private fun runPlayouts(initialBoard: CompactBoard, firstColor: Byte): FloatArray {
+        val taskCount = minOf(parallelism, playoutCount)
+        val playoutsPerTask = IntArray(taskCount) {
+            playoutCount / taskCount + if (it < playoutCount % taskCount) 1 else 0
+        }
+        // Komi does not affect ownership
+        return PlayoutSimulator.runPlayouts(initialBoard, firstColor, 0f, playoutsPerTask, seed, executor).ownership
+    }
+
+    /*
+     * Decides whole chains rather than individual stones, so that a chain is never reported
+     * as partially dead.
+     */
+    private fun addDeadChainsFromPlayouts(board: CompactBoard,
+                                          unconditionalStatus: BooleanArray,
+                                          ownership: FloatArray,
+                                          deadStones: MutableSet<Stone>) {
+        val cells = board.cells
+        val visited = BooleanArray(cells.size)
+        val chain = IntArray(cells.size)
+
+        for (position in unconditionalStatus.indices) {
+            val start = board.toPadded(position)
+            val color = cells[start]
+            if (color == CompactBoard.EMPTY || unconditionalStatus[position] || visited[start]) {
+                continue
+            }
+
+            var chainSize = 0
+            var queuedCount = 1
+            chain[0] = start
+            visited[start] = true
+            while (queuedCount > chainSize) {
+                val current = chain[chainSize++]
+                for (offset in board.neighbourOffsets) {
+                    val neighbour = current + offset
+                    if (cells[neighbour] == color && !visited[neighbour]) {
+                        visited[neighbour] = true
+                        chain[queuedCount++] = neighbour
+                    }
+                }
+            }
+
+            // Fraction of playouts where the opponent ended up owning the chain, averaged
+            // over its stones. Ownership ranges from -1 (white) to 1 (black).
+            val sign = if (color == CompactBoard.BLACK) -1f else 1f
+            var opponentOwnership = 0f
+            for (i in 0 until chainSize) {
+                opponentOwnership += (1f + sign * ownership[board.toUnpadded(chain[i])]) / 2f
+            }
+            opponentOwnership /= chainSize
+
+            if (opponentOwnership > deadThreshold) {
+                for (i in 0 until chainSize) {
+                    deadStones.add(createStone(board.toUnpadded(chain[i]), board.boardWidth, color))
+                }
+            }
+        }
+    }
+
+    private fun createStone(position: Int, boardWidth: Int, colorIndex: Byte): Stone {
+        val color = if (colorIndex == CompactBoard.BLACK) StoneColor.BLACK else StoneColor.WHITE
+        return Stone(position % boardWidth, position / boardWidth, color)
+    }
+
+    companion object {
+        const val DEFAULT_PLAYOUT_COUNT = 400
+        const val DEFAULT_DEAD_THRESHOLD = 0.5f
+    }
+}
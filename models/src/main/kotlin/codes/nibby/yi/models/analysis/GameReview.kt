@@ -0,0 +1,126 @@
+package codes.nibby.yi.models.analysis
+
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Progress of a review started by [GameReviewer.start]. All methods may be called from any
+ * thread while the review is running.
+ *
+ * @param totalPositions Number of positions the review will analyse.
+ */
+class GameReview internal constructor(val totalPositions: Int) {
+
+    private val completedPositions = AtomicInteger()
+    private val cachedPositions = AtomicInteger()
+    private val skippedPositions = AtomicInteger()
+
+    private val startTimeNanos = System.nanoTime()
+    @Volatile
+    private var endTimeNanos = 0L
+
+    @Volatile
+    private var stopped = false
+    @Volatile
+    private var cancelled = false
+    @Volatile
+    private var failure: Throwable? = null
+
+    private val completion = CompletableFuture<Void>()
+
+    /**
+     * @return Number of positions analysed so far, including those found in the cache.
+     */
+    fun getCompletedPositions(): Int = completedPositions.get()
+
+    /**
+     * @return Number of completed positions whose analysis was found in the cache rather
+     * than computed.
+     */
+    fun getCachedPositions(): Int = cachedPositions.get()
+
+    /**
+     * @return Number of positions not analysed because their node was removed from the game
+     * tree during the review.
+     */
+    fun getSkippedPositions(): Int = skippedPositions.get()
+
+    /**
+     * @return Fraction of the positions completed or skipped, between 0 and 1.
+     */
+    fun getProgress(): Double {
+        val finishedPositions = getCompletedPositions() + getSkippedPositions()
+        return if (totalPositions == 0) 1.0 else finishedPositions.toDouble() / totalPositions
+    }
+
+    /**
+     * @return Time spent on the review so far, or in total once it has finished.
+     */
+    fun getElapsedMillis(): Long {
+        val endTime = if (isDone()) endTimeNanos else System.nanoTime()
+        return TimeUnit.NANOSECONDS.toMillis(endTime - startTimeNanos)
+    }
+
+    /**
+     * @return Average number of positions completed per second since the review started.
+     */
+    fun getPositionsPerSecond(): Double {
+        val elapsedMillis = getElapsedMillis()
+        return if (elapsedMillis == 0L) 0.0 else getCompletedPositions() * 1000.0 / elapsedMillis
+    }
+
+    fun isDone(): Boolean = completion.isDone
+
+    /**
+     * Stops the review after the positions being analysed have been written. Results that
+     * have already been written to the game model are kept.
+     */
+    fun cancel() {
+        cancelled = true
+        stopped = true
+    }
+
+    /**
+     * @return Completes once every result has been written to the game model and no
+     * further edits will be made by the review. Completes exceptionally if the review
+     * failed, or is cancelled if [cancel] was called.
+     */
+    fun getCompletion(): CompletableFuture<Void> = completion
+
+    internal fun isStopped(): Boolean = stopped
+
+    internal fun positionCompleted(fromCache: Boolean) {
+        completedPositions.incrementAndGet()
+        if (fromCache) {
+            cachedPositions.incrementAndGet()
+        }
+    }
+
+    internal fun positionSkipped() {
+        skippedPositions.incrementAndGet()
+    }
+
+    internal fun fail(cause: Throwable) {
+        synchronized(this) {
+            if (failure == null) {
+                failure = cause
+            }
+        }
+        stopped = true
+    }
+
+    internal fun finish() {
+        endTimeNanos = System.nanoTime()
+        val cause = failure
+        when {
+            cause != null -> completion.completeExceptionally(cause)
+            cancelled -> completion.cancel(false)
+            else -> completion.complete(null)
+        }
+    }
+
+    override fun toString(): String {
+        return "${getCompletedPositions()} / $totalPositions positions, ${getPositionsPerSecond()} per second"
+    }
+}
@@ -0,0 +1,311 @@
+package codes.nibby.yi.models.analysis
+
+import codes.nibby.yi.models.GameModel
+import codes.nibby.yi.models.GameNode
+import codes.nibby.yi.models.GameNodeType
+import codes.nibby.yi.models.StoneColor
+import java.util.*
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executor
+import java.util.concurrent.Executors
+
+/**
+ * Analyses every position of a game with random playouts, and stores the results in the
+ * metadata of each node (see [GameNode.putMetadata]) under [METADATA_BLACK_WIN_RATE],
+ * [METADATA_BLACK_SCORE_LEAD] and [METADATA_VISITS].
+ *
+ * A review runs as a pipeline. One thread walks the nodes in the review scope and copies
+ * the board of each into a bounded queue, blocking while the queue is full, so only a
+ * handful of boards exist at any time however large the game is. A pool of workers takes
+ * positions from the queue and analyses each on a single thread, so positions are
+ * analysed side by side on all workers. Results are written to the game model in batches
+ * of [batchSize] to limit how often the model write lock is taken.
+ *
+ * Each batch is written on the executor given to [start]. Writing a batch notifies the
+ * node data listeners of the model on that thread, so a model shown in the interface
+ * should be reviewed with the interface thread as the executor.
+ *
+ * If an [analysisCache] is given, positions found in it are not analysed again and new
+ * results are added to it.
+ *
+ * @param playoutsPerPosition Number of playouts run for each position.
+ * @param workerCount Number of positions analysed at the same time.
+ * @param batchSize Number of results written to the game model at once.
+ * @param seed Seed for the playouts. A position reviewed with the same seed always gets
+ * the same result.
+ */
+class GameReviewer @JvmOverloads constructor(
+        val playoutsPerPosition: Int = DEFAULT_PLAYOUTS_PER_POSITION,
+        val workerCount: Int = Runtime.getRuntime().availableProcessors(),
+        val batchSize: Int = DEFAULT_BATCH_SIZE,
+        private val seed: Long = System.nanoTime(),
+        private val analysisCache: AnalysisCache? = null) {
+
+    init {
+        if (playoutsPerPosition < 1)
+            throw IllegalArgumentException("Playouts per position must be >= 1")
+        if (workerCount < 1)
+            throw IllegalArgumentException("Worker count must be >= 1")
+        if (batchSize < 1)
+            throw IllegalArgumentException("Batch size must be >= 1")
+    }
+
+    /**
+     * Starts reviewing the game on background threads and returns immediately. The game
+     * model must be editable.
+     *
+     * Nodes are collected when the review starts, so nodes added afterwards are not
+     * reviewed. Edits made to the game model during the review are safe. Positions that
+     * change while waiting to be analysed may be analysed as they were, and nodes removed
+     * from the game tree before their results are written are skipped.
+     *
+     * @param resultExecutor Executor that writes the results to the game model, and so
+     * notifies the node data listeners of the model. For a model shown in the interface,
+     * this should run on the interface thread. The review is complete once every result
+     * has been written.
+     * @param scope Nodes to review.
+     * @return Progress of the review.
+     */
+    @JvmOverloads
+    fun start(model: GameModel, resultExecutor: Executor, scope: ReviewScope = ReviewScope.MAIN_LINE): GameReview {
+        val positions = model.withReadLock { collectPositions(model, scope) }
+        val review = GameReview(positions.size)
+
+        Thread({ runReview(model, positions, review, resultExecutor) }, "Game review").apply {
+            isDaemon = true
+            start()
+        }
+        return review
+    }
+
+    private fun collectPositions(model: GameModel, scope: ReviewScope): List<ReviewPosition> {
+        val positions = ArrayList<ReviewPosition>()
+        val hasHandicap = model.info.getHandicapCount() > 0
+
+        // Depth first with the first child visited first, so the main line is reviewed
+        // before any variation.
+        val unvisited = ArrayDeque<ReviewPosition>()
+        unvisited.push(ReviewPosition(model.getRootNode(), 0))
+
+        while (unvisited.isNotEmpty()) {
+            val position = unvisited.pop()
+            positions.add(position)
+
+            val node = position.node
+            val type = node.getType()
+            val turnsPlayed = if (type == GameNodeType.MOVE_PLAYED || type == GameNodeType.PASS) {
+                position.turnsPlayed + 1
+            } else {
+                position.turnsPlayed
+            }
+            val children = node.getChildNodes()
+            val nodesToVisit = if (scope == ReviewScope.MAIN_LINE) children.take(1) else children
+
+            for (child in nodesToVisit.asReversed()) {
+                unvisited.push(ReviewPosition(child, turnsPlayed))
+            }
+            position.nextTurn = model.rules.getStoneColorForTurn(turnsPlayed, hasHandicap)
+        }
+        return positions
+    }
+
+    private fun runReview(model: GameModel, positions: List<ReviewPosition>, review: GameReview,
+                          resultExecutor: Executor) {
+        val queue = ArrayBlockingQueue<ReviewTask>(workerCount * QUEUED_POSITIONS_PER_WORKER)
+        val writer = ResultWriter(model, resultExecutor)
+        val workersDone = CountDownLatch(workerCount)
+        val workers = Executors.newFixedThreadPool(workerCount) { runnable ->
+            Thread(runnable, "Game review worker").apply { isDaemon = true }
+        }
+
+        repeat(workerCount) {
+            workers.execute {
+                try {
+                    analyzeTasks(model, queue, writer, review)
+                } finally {
+                    workersDone.countDown()
+                }
+            }
+        }
+
+        try {
+            for (position in positions) {
+                if (review.isStopped()) {
+                    break
+                }
+                val board = ByteArray(model.getIntersectionCount())
+                val stateHash = model.withReadLock {
+                    if (isInGameTree(model, position.node)) {
+                        model.getGameState(position.node).boardPosition.copyStoneIndices(board)
+                        position.node.getStateHash()
+                    } else {
+                        null
+                    }
+                }
+
+                if (stateHash == null) {
+                    review.positionSkipped()
+                } else {
+                    queue.put(ReviewTask(position.node, position.nextTurn, stateHash, board))
+                }
+            }
+        } catch (e: Exception) {
+            review.fail(e)
+        } finally {
+            // Workers keep taking tasks until they see the end marker, even after a failure,
+            // so the queue always has room for it.
+            repeat(workerCount) { queue.put(END_OF_REVIEW) }
+            workersDone.await()
+            workers.shutdown()
+
+            try {
+                writer.flush()
+                writer.awaitWrites()
+            } catch (e: CompletionException) {
+                review.fail(e.cause ?: e)
+            } catch (e: Exception) {
+                review.fail(e)
+            }
+            review.finish()
+        }
+    }
+
+    private fun analyzeTasks(model: GameModel, queue: ArrayBlockingQueue<ReviewTask>,
+                             writer: ResultWriter, review: GameReview) {
+        val board = CompactBoard(model.boardWidth, model.boardHeight)
+        board.allowSuicide = model.rules.allowSuicideMoves()
+        val komi = model.info.getKomi()
+        val playoutsPerTask = intArrayOf(playoutsPerPosition)
+
+        while (true) {
+            val task = queue.take()
+            if (task === END_OF_REVIEW) {
+                break
+            }
+            if (review.isStopped()) {
+                continue
+            }
+
+            try {
+                var analysis = analysisCache?.get(task.stateHash, task.nextTurn)
+                val fromCache = analysis != null
+
+                if (analysis == null) {
+                    board.load(task.board)
+                    analysis = PlayoutSimulator.runPlayouts(board, task.nextTurn.index, komi, playoutsPerTask,
+                            seed xor task.stateHash, null).toPositionAnalysis()
+                    analysisCache?.put(task.stateHash, task.nextTurn, analysis)
+                }
+                writer.add(task.node!!, analysis)
+                review.positionCompleted(fromCache)
+            } catch (e: Exception) {
+                review.fail(e)
+            }
+        }
+    }
+
+    /**
+     * Collects results from the workers and writes them to the game model in batches on the
+     * result executor.
+     */
+    private inner class ResultWriter(private val model: GameModel, private val executor: Executor) {
+
+        private val pendingResults = LinkedHashMap<GameNode, Map<String, List<String>>>()
+        private val writes = ArrayList<CompletableFuture<Void>>()
+
+        fun add(node: GameNode, analysis: PositionAnalysis) {
+            val metadata = mapOf(
+                    METADATA_BLACK_WIN_RATE to listOf(String.format(Locale.ROOT, "%.4f", analysis.blackWinRate)),
+                    METADATA_BLACK_SCORE_LEAD to listOf(String.format(Locale.ROOT, "%.1f", analysis.blackScoreLead)),
+                    METADATA_VISITS to listOf(analysis.visits.toString())
+            )
+
+            val batch = synchronized(pendingResults) {
+                pendingResults[node] = metadata
+                if (pendingResults.size < batchSize) {
+                    return
+                }
+                takePendingResults()
+            }
+            write(batch)
+        }
+
+        fun flush() {
+            write(synchronized(pendingResults) { takePendingResults() })
+        }
+
+        private fun takePendingResults(): Map<GameNode, Map<String, List<String>>> {
+            val batch = LinkedHashMap(pendingResults)
+            pendingResults.clear()
+            return batch
+        }
+
+        /**
+         * Waits for every batch handed to the executor to be written.
+         *
+         * @throws CompletionException If a batch could not be written.
+         */
+        fun awaitWrites() {
+            val allWrites = synchronized(writes) { CompletableFuture.allOf(*writes.toTypedArray()) }
+            allWrites.join()
+        }
+
+        private fun write(batch: Map<GameNode, Map<String, List<String>>>) {
+            if (batch.isNotEmpty()) {
+                val write = CompletableFuture.runAsync({ writeToModel(batch) }, executor)
+                synchronized(writes) {
+                    writes.add(write)
+                }
+            }
+        }
+
+        // Nodes may have been removed while their results were waiting to be written
+        private fun writeToModel(batch: Map<GameNode, Map<String, List<String>>>) {
+            model.withWriteLock {
+                val batchInTree = batch.filterKeys { isInGameTree(model, it) }
+                if (batchInTree.isNotEmpty()) {
+                    model.editor.putMetadata(batchInTree)
+                }
+            }
+        }
+    }
+
+    private class ReviewPosition(val node: GameNode, val turnsPlayed: Int) {
+        lateinit var nextTurn: StoneColor
+    }
+
+    // The node is only null for the end of review marker
+    private class ReviewTask(val node: GameNode?, val nextTurn: StoneColor, val stateHash: Long, val board: ByteArray)
+
+    companion object {
+        const val DEFAULT_PLAYOUTS_PER_POSITION = 500
+        const val DEFAULT_BATCH_SIZE = 16
+
+        /** Metadata key for the estimated win rate of black, between 0 and 1. */
+        const val METADATA_BLACK_WIN_RATE = "YBWR"
+
+        /** Metadata key for the estimated points black leads by, including komi. */
+        const val METADATA_BLACK_SCORE_LEAD = "YBSL"
+
+        /** Metadata key for the number of playouts behind the estimates. */
+        const val METADATA_VISITS = "YVIS"
+
+        private const val QUEUED_POSITIONS_PER_WORKER = 2
+
+        private val END_OF_REVIEW = ReviewTask(null, StoneColor.NONE, 0, ByteArray(0))
+
+        /*
+            Nodes in a removed subtree still refer to the root of the tree, so the node is
+            checked to still lead up to the root instead. Must be called with the model lock held.
+         */
+        private fun isInGameTree(model: GameModel, node: GameNode): Boolean {
+            var ancestor = node
+            while (true) {
+                ancestor = ancestor.parent ?: return ancestor === model.getRootNode()
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package codes.nibby.yi.models.analysis
+
+import codes.nibby.yi.models.StoneColor
+
+/**
+ * Aggregated outcome of the playouts run by a [PlayoutSimulator].
+ *
+ * @param boardWidth Width of the simulated board.
+ * @param boardHeight Height of the simulated board.
+ * @param playoutCount Number of playouts run.
+ * @param komi Komi used to decide the winner of each playout.
+ * @param blackWins Number of playouts won by black. A drawn playout counts as half a win
+ * for each player.
+ * @param totalAreaDifference Sum over all playouts of the area owned by black minus the
+ * area owned by white, before komi.
+ * @param ownership For each intersection in the one variable form, a value between -1
+ * (always owned by white) and 1 (always owned by black) at the end of the playouts.
+ */
+class PlayoutResult internal constructor(val boardWidth: Int,
+                                         val boardHeight: Int,
+                                         val playoutCount: Int,
+                                         val komi: Float,
+                                         val blackWins: Double,
+                                         private val totalAreaDifference: Long,
+                                         internal val ownership: FloatArray) {
+
+    /**
+     * @return Fraction of the playouts won by black, between 0 and 1. If no playouts were
+     * run, returns 0.5.
+     */
+    fun getBlackWinRate(): Double = if (playoutCount == 0) 0.5 else blackWins / playoutCount
+
+    /**
+     * @return Fraction of the playouts won by white, between 0 and 1. If no playouts were
+     * run, returns 0.5.
+     */
+    fun getWhiteWinRate(): Double = 1.0 - getBlackWinRate()
+
+    /**
+     * @return Win rate of the given player, see [getBlackWinRate].
+     */
+    fun getWinRate(color: StoneColor): Double {
+        return when (color) {
+            StoneColor.BLACK -> getBlackWinRate()
+            StoneColor.WHITE -> getWhiteWinRate()
+            else -> throw IllegalArgumentException("Color must be either black or white")
+        }
+    }
+
+    /**
+     * @return Average score of black minus the score of white at the end of the playouts,
+     * including komi. Positive values favour black.
+     */
+    fun getMeanScoreMargin(): Double {
+        if (playoutCount == 0) {
+            return 0.0
+        }
+        return totalAreaDifference.toDouble() / playoutCount - komi
+    }
+
+    /**
+     * @return Ownership of the intersection at the end of the playouts, from -1 (white) to
+     * 1 (black).
+     */
+    fun getOwnership(x: Int, y: Int): Float = ownership[x + y * boardWidth]
+
+    /**
+     * @return A copy of the ownership of every intersection in the one variable form, see
+     * [getOwnership].
+     */
+    fun getOwnershipMap(): FloatArray = ownership.copyOf()
+
+    /**
+     * @return Summary of this result that can be stored in an [AnalysisCache].
+     */
+    fun toPositionAnalysis(): PositionAnalysis {
+        return PositionAnalysis(getBlackWinRate().toFloat(), getMeanScoreMargin().toFloat(), playoutCount, ownership)
+    }
+
+    override fun toString(): String {
+        return "playouts: $playoutCount, black win rate: ${getBlackWinRate()}, margin: ${getMeanScoreMargin()}"
+    }
+}
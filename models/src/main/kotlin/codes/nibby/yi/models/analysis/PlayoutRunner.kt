@@ -0,0 +1,116 @@
+package codes.nibby.yi.models.analysis
+
+import java.util.SplittableRandom
+
+/**
+ * Plays random moves on a [CompactBoard] until both players pass. A player passes once no
+ * legal move is left other than filling one of their own eyes, so playouts end with every
+ * surviving chain owning its eyes, which makes the final position easy to count.
+ *
+ * Instances are not thread-safe. Each thread needs its own board and runner.
+ */
+internal class PlayoutRunner(private val board: CompactBoard) {
+
+    private val firstPosition = board.firstPosition
+    private val positionRange = board.lastPosition - board.firstPosition + 1
+
+    /**
+     * Upper bound on the number of moves in a playout, which guards against rare
+     * sequences that keep capturing and refilling the same area.
+     */
+    var maxMoves = board.boardWidth * board.boardHeight * 3
+
+    /**
+     * Plays out the current board position.
+     *
+     * @param firstColor Index of the color to move first.
+     * @return Number of turns taken, including passes.
+     */
+    fun play(firstColor: Byte, random: SplittableRandom): Int {
+        var color = firstColor
+        var consecutivePasses = 0
+        var turns = 0
+
+        while (consecutivePasses < 2 && turns < maxMoves) {
+            if (playRandomMove(color, random)) {
+                consecutivePasses = 0
+            } else {
+                board.pass()
+                consecutivePasses++
+            }
+            color = CompactBoard.opponentOf(color)
+            turns++
+        }
+        return turns
+    }
+
+    /**
+     * Adds one to the count of each intersection owned by black or white in the current
+     * position. An intersection is owned by the color of the stone on it, or by the color
+     * of all its adjacent stones if it is empty.
+     *
+     * @param blackOwned Counts for black in the one variable form.
+     * @param whiteOwned Counts for white in the one variable form.
+     * @return Number of intersections owned by black minus those owned by white, which is
+     * the area score of the position before komi.
+     */
+    fun accumulateOwnership(blackOwned: IntArray, whiteOwned: IntArray): Int {
+        val cells = board.cells
+        var position = 0
+        var areaDifference = 0
+
+        for (y in 0 until board.boardHeight) {
+            var paddedPosition = (y + 1) * board.paddedWidth + 1
+            for (x in 0 until board.boardWidth) {
+                when (cells[paddedPosition]) {
+                    CompactBoard.BLACK -> {
+                        blackOwned[position]++
+                        areaDifference++
+                    }
+                    CompactBoard.WHITE -> {
+                        whiteOwned[position]++
+                        areaDifference--
+                    }
+                    else -> {
+                        val black = board.isSurroundedBy(paddedPosition, CompactBoard.BLACK)
+                        val white = board.isSurroundedBy(paddedPosition, CompactBoard.WHITE)
+                        // Both are true only when all neighbours are the edge of the board
+                        if (black && !white) {
+                            blackOwned[position]++
+                            areaDifference++
+                        } else if (white && !black) {
+                            whiteOwned[position]++
+                            areaDifference--
+                        }
+                    }
+                }
+                paddedPosition++
+                position++
+            }
+        }
+        return areaDifference
+    }
+
+    /**
+     * Plays at a random legal position that does not fill an eye of the player.
+     *
+     * @return false if there is no such position.
+     */
+    private fun playRandomMove(color: Byte, random: SplittableRandom): Boolean {
+        val cells = board.cells
+        var position = firstPosition + random.nextInt(positionRange)
+        val lastPosition = firstPosition + positionRange
+
+        for (i in 0 until positionRange) {
+            if (cells[position] == CompactBoard.EMPTY
+                    && !board.isEyeLike(position, color)
+                    && board.play(position, color)) {
+                return true
+            }
+            if (++position == lastPosition) {
+                position = firstPosition
+            }
+        }
+        return false
+    }
+}
@@ -0,0 +1,183 @@
+package codes.nibby.yi.models.analysis
+
+import codes.nibby.yi.models.GameModel
+import codes.nibby.yi.models.GameNode
+import codes.nibby.yi.models.GameNodeType
+import codes.nibby.yi.models.StoneColor
+import codes.nibby.yi.models.rules.GameRulesHandler
+import java.util.SplittableRandom
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.ForkJoinPool
+
+/**
+ * Estimates the win rate and ownership of a position by running random playouts from it.
+ * This gives a quick, rough evaluation without a neural network engine.
+ *
+ * The position is copied into a compact board, which each task then copies again before
+ * every playout. Moves are picked at random, except that players never fill their own
+ * eyes, and a playout ends when both players pass. Every task owns its board, random
+ * number generator and counters, which are only combined once all tasks are done, so the
+ * simulation scales with the number of threads available to the [executor].
+ *
+ * Playouts are counted using area scoring regardless of the ruleset, since the prisoners
+ * taken during a random playout say little about the position. Suicide is allowed in the
+ * playouts if the ruleset allows it.
+ *
+ * Each call to [simulate] allocates its own working state, so one simulator may be used
+ * by multiple threads at once.
+ *
+ * @param playoutsPerThread Number of playouts run by each task.
+ * @param threadCount Number of tasks to run.
+ * @param seed Seed for the random playouts. Simulating the same position with the same
+ * seed and thread count gives the same result.
+ * @param executor Runs the playout tasks.
+ */
+class PlayoutSimulator @JvmOverloads constructor(
+        val playoutsPerThread: Int = DEFAULT_PLAYOUTS_PER_THREAD,
+        val threadCount: Int = Runtime.getRuntime().availableProcessors(),
+        private val seed: Long = System.nanoTime(),
+        private val executor: ExecutorService = ForkJoinPool.commonPool()) {
+
+    init {
+        if (playoutsPerThread < 0)
+            throw IllegalArgumentException("Playouts per thread must be >= 0")
+        if (threadCount < 1)
+            throw IllegalArgumentException("Thread count must be >= 1")
+    }
+
+    /**
+     * Simulates the position at the current node of the game model, using the komi in
+     * the game information.
+     */
+    fun simulate(model: GameModel): PlayoutResult = simulate(model, model.currentNode)
+
+    /**
+     * Simulates the position at any node of the game model, using the komi in the game
+     * information.
+     */
+    fun simulate(model: GameModel, node: GameNode): PlayoutResult {
+        val board = ByteArray(model.getIntersectionCount())
+        val nextTurn = model.withReadLock {
+            model.getGameState(node).boardPosition.copyStoneIndices(board)
+            getNextTurn(model, node)
+        }
+        return simulate(board, model.boardWidth, model.boardHeight, nextTurn, model.rules, model.info.getKomi())
+    }
+
+    /**
+     * Simulates a board position.
+     *
+     * @param board Stone color [index][StoneColor.index] at each intersection in the one
+     * variable form, see [codes.nibby.yi.models.GamePosition.copyStoneIndices].
+     * @param nextTurn Color of the player to move next, which moves first in the playouts.
+     * @param rules Decides whether suicide is allowed in the playouts.
+     * @param komi Points given to white, defaults to the komi of the rules.
+     */
+    @JvmOverloads
+    fun simulate(board: ByteArray, boardWidth: Int, boardHeight: Int, nextTurn: StoneColor,
+                 rules: GameRulesHandler, komi: Float = rules.getDefaultKomi()): PlayoutResult {
+        if (nextTurn == StoneColor.NONE) {
+            throw IllegalArgumentException("Next turn must be either black or white")
+        }
+
+        val initialBoard = CompactBoard(boardWidth, boardHeight)
+        initialBoard.load(board)
+        initialBoard.allowSuicide = rules.allowSuicideMoves()
+
+        val playoutsPerTask = IntArray(threadCount) { playoutsPerThread }
+        return runPlayouts(initialBoard, nextTurn.index, komi, playoutsPerTask, seed, executor)
+    }
+
+    private fun getNextTurn(model: GameModel, node: GameNode): StoneColor {
+        val turnsPlayed = node.getMoveHistory().count {
+            it.getType() == GameNodeType.MOVE_PLAYED || it.getType() == GameNodeType.PASS
+        }
+        return model.rules.getStoneColorForTurn(turnsPlayed, model.info.getHandicapCount() > 0)
+    }
+
+    private class PlayoutTaskResult(val blackOwned: IntArray, val whiteOwned: IntArray) {
+        var blackWins = 0.0
+        var totalAreaDifference = 0L
+    }
+
+    companion object {
+        const val DEFAULT_PLAYOUTS_PER_THREAD = 250
+
+        /**
+         * Runs one task per entry of [playoutsPerTask] on the executor, each with its own
+         * random number generator split from [seed].
+         *
+         * @param initialBoard Shared between tasks, which only read from it.
+         * @param executor Runs the tasks, or null to run them on the calling thread.
+         */
+        internal fun runPlayouts(initialBoard: CompactBoard, firstColor: Byte, komi: Float,
+                                 playoutsPerTask: IntArray, seed: Long, executor: ExecutorService?): PlayoutResult {
+            val seedSource = SplittableRandom(seed)
+            val tasks = ArrayList<Callable<PlayoutTaskResult>>(playoutsPerTask.size)
+
+            for (playouts in playoutsPerTask) {
+                val random = seedSource.split()
+                tasks.add(Callable { runPlayoutTask(initialBoard, firstColor, komi, playouts, random) })
+            }
+
+            val intersectionCount = initialBoard.boardWidth * initialBoard.boardHeight
+            val blackOwned = IntArray(intersectionCount)
+            val whiteOwned = IntArray(intersectionCount)
+            var blackWins = 0.0
+            var totalAreaDifference = 0L
+
+            val results = if (executor == null) {
+                tasks.map { it.call() }
+            } else {
+                executor.invokeAll(tasks).map { future ->
+                    try {
+                        future.get()
+                    } catch (e: ExecutionException) {
+                        throw e.cause ?: e
+                    }
+                }
+            }
+
+            for (result in results) {
+                for (i in 0 until intersectionCount) {
+                    blackOwned[i] += result.blackOwned[i]
+                    whiteOwned[i] += result.whiteOwned[i]
+                }
+                blackWins += result.blackWins
+                totalAreaDifference += result.totalAreaDifference
+            }
+
+            val playoutCount = playoutsPerTask.sum()
+            val ownership = FloatArray(intersectionCount) {
+                if (playoutCount == 0) 0f else (blackOwned[it] - whiteOwned[it]).toFloat() / playoutCount
+            }
+            return PlayoutResult(initialBoard.boardWidth, initialBoard.boardHeight, playoutCount, komi,
+                    blackWins, totalAreaDifference, ownership)
+        }
+
+        private fun runPlayoutTask(initialBoard: CompactBoard, firstColor: Byte, komi: Float,
+                                   playouts: Int, random: SplittableRandom): PlayoutTaskResult {
+            val workBoard = CompactBoard(initialBoard.boardWidth, initialBoard.boardHeight)
+            val runner = PlayoutRunner(workBoard)
+
+            val intersectionCount = initialBoard.boardWidth * initialBoard.boardHeight
+            val result = PlayoutTaskResult(IntArray(intersectionCount), IntArray(intersectionCount))
+            repeat(playouts) {
+                workBoard.copyFrom(initialBoard)
+                runner.play(firstColor, random)
+
+                val areaDifference = runner.accumulateOwnership(result.blackOwned, result.whiteOwned)
+                val margin = areaDifference - komi
+                result.blackWins += when {
+                    margin > 0f -> 1.0
+                    margin == 0f -> 0.5
+                    else -> 0.0
+                }
+                result.totalAreaDifference += areaDifference
+            }
+            return result
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package codes.nibby.yi.models.analysis
+
+import codes.nibby.yi.models.StoneColor
+
+/**
+ * Summary of the analysis of one position, independent of what produced it. This is the
+ * value stored in an [AnalysisCache].
+ *
+ * All values are from the perspective of black so that analyses produced for either side
+ * to move can be compared directly.
+ *
+ * @param blackWinRate Estimated win rate of black, between 0 and 1.
+ * @param blackScoreLead Estimated points black leads by, including komi. Negative values
+ * favour white.
+ * @param visits Amount of work behind the estimate, such as engine visits or playouts.
+ * @param ownership For each intersection in the one variable form, a value between -1
+ * (white) and 1 (black), or null if ownership was not analysed.
+ */
+class PositionAnalysis @JvmOverloads constructor(val blackWinRate: Float,
+                                                 val blackScoreLead: Float,
+                                                 val visits: Int,
+                                                 ownership: FloatArray? = null) {
+
+    internal val ownership: FloatArray? = ownership?.copyOf()
+
+    init {
+        if (blackWinRate.isNaN() || blackWinRate < 0f || blackWinRate > 1f) {
+            throw IllegalArgumentException("Win rate must be between 0 and 1: $blackWinRate")
+        }
+        if (visits < 0) {
+            throw IllegalArgumentException("Visits must be >= 0: $visits")
+        }
+    }
+
+    /**
+     * @return Estimated win rate of the given player, between 0 and 1.
+     */
+    fun getWinRate(color: StoneColor): Float {
+        return when (color) {
+            StoneColor.BLACK -> blackWinRate
+            StoneColor.WHITE -> 1f - blackWinRate
+            else -> throw IllegalArgumentException("Color must be either black or white")
+        }
+    }
+
+    fun hasOwnership(): Boolean = ownership != null
+
+    /**
+     * @return Ownership of the intersection at the position in the one variable form, or
+     * 0 if ownership was not analysed.
+     */
+    fun getOwnership(position: Int): Float = ownership?.get(position) ?: 0f
+
+    /**
+     * @return A copy of the ownership map, or null if ownership was not analysed.
+     */
+    fun getOwnershipMap(): FloatArray? = ownership?.copyOf()
+
+    override fun toString(): String {
+        return "black win rate: $blackWinRate, black lead: $blackScoreLead, visits: $visits"
+    }
+}
@@ -0,0 +1,16 @@
+package codes.nibby.yi.models.analysis
+
+/**
+ * Which nodes of the game tree a [GameReviewer] analyses.
+ */
+enum class ReviewScope {
+    /**
+     * The root node and every node following the first child from it.
+     */
+    MAIN_LINE,
+
+    /**
+     * Every node in the game tree.
+     */
+    ALL_VARIATIONS,
+}
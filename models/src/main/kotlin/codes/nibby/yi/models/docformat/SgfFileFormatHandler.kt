@@ -233,7 +233,7 @@ internal class SgfFileFormatHandler : FileFormatHandler {
             parseHelperStones(nodeData, gameNode, gameModel)
             parseAnnotations(nodeData, gameNode, gameModel)
 
-            gameNode.delta.comments = nodeData.getOrDefault(SGF_COMMENT, listOf(""))[0]
+            gameNode.setComments(nodeData.getOrDefault(SGF_COMMENT, listOf(""))[0])
             gameNode.putMetadata(nodeData.getAsHashMap())
 
             return gameNode
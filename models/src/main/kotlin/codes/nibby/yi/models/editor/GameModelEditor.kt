@@ -24,14 +24,16 @@ class GameModelEditor(private val model: GameModel) {
      */
     fun recordAndApplyUndoable(edit: GameModelEdit) {
         checkModelEditable()
-        try {
-            val isSuccessful = edit.performChanges(model)
+        model.withWriteLock {
+            try {
+                val isSuccessful = edit.performChanges(model)
 
-            if (isSuccessful) {
-                undoSystem.record(edit)
+                if (isSuccessful) {
+                    undoSystem.record(edit)
+                }
+            } catch (ex: GameModelEditException) {
+                throw GameModelEditException("Failed to perform changes: $edit", edit)
             }
-        } catch (ex: GameModelEditException) {
-            throw GameModelEditException("Failed to perform changes: $edit", edit)
         }
     }
 
@@ -55,56 +57,92 @@ class GameModelEditor(private val model: GameModel) {
 
     fun addMove(parent: GameNode, x: Int, y: Int): MoveSubmitResult {
         checkModelEditable()
+        return model.withWriteLock {
+            var identicalExistingMove: GameNode? = null
 
-        var identicalExistingMove: GameNode? = null
+            for (child in parent.children) {
+                child.getPrimaryMove()?.let {
+                    val moveX = it.x
+                    val moveY = it.y
 
-        for (child in parent.children) {
-            child.getPrimaryMove()?.let {
-                val moveX = it.x
-                val moveY = it.y
+                    if (moveX == x && moveY == y) {
+                        identicalExistingMove = child
+                    }
+                }
 
-                if (moveX == x && moveY == y) {
-                    identicalExistingMove = child
+                if (identicalExistingMove != null) {
+                    break
                 }
             }
 
-            if (identicalExistingMove != null) {
-                break
-            }
-        }
+            val validationResult: MoveValidationResult
+            val node: GameNode?
+            val movePlayed: Boolean
+            val reusedExistingNode: Boolean
 
-        val validationResult: MoveValidationResult
-        val node: GameNode?
-        val movePlayed: Boolean
-        val reusedExistingNode: Boolean
+            if (identicalExistingMove == null) {
+                val validationAndNewNode = GameMoveSubmitter.createMoveNode(
+                    model,
+                    parent,
+                    Stone(x, y, model.getNextTurnStoneColor())
+                )
 
-        if (identicalExistingMove == null) {
-            val validationAndNewNode = GameMoveSubmitter.createMoveNode(
-                model,
-                parent,
-                Stone(x, y, model.getNextTurnStoneColor())
-            )
+                validationResult = validationAndNewNode.first
+                node = validationAndNewNode.second
 
-            validationResult = validationAndNewNode.first
-            node = validationAndNewNode.second
+                if (validationResult == MoveValidationResult.OK) {
+                    addNode(node!!) // New node should not be null if validation result checks out
+                }
 
-            if (validationResult == MoveValidationResult.OK) {
-                addNode(node!!) // New node should not be null if validation result checks out
-            }
+                movePlayed = validationResult == MoveValidationResult.OK
+                reusedExistingNode = false
+                model.isModified = true
+            } else {
+                model.currentNode =identicalExistingMove!!
 
-            movePlayed = validationResult == MoveValidationResult.OK
-            reusedExistingNode = false
-            model.isModified = true
-        } else {
-            model.currentNode =identicalExistingMove!!
+                validationResult = MoveValidationResult.OK
+                node = identicalExistingMove
+                movePlayed = true
+                reusedExistingNode = true
+            }
 
-            validationResult = MoveValidationResult.OK
-            node = identicalExistingMove
-            movePlayed = true
-            reusedExistingNode = true
+            MoveSubmitResult(validationResult, node, movePlayed, reusedExistingNode)
         }
+    }
+
+    /**
+     * Plays a sequence of moves from the current node. This produces the same game tree as
+     * calling [addMove] (or [addPass]) for each move, but is considerably faster for long
+     * sequences such as replaying a game record, because the board position and state
+     * history are maintained incrementally instead of being rebuilt for every move.
+     *
+     * The batch stops at the first move that is not legal. Moves before it remain played.
+     *
+     * Instead of emitting events for every move, this method emits at most one
+     * [GameModel.onNodeAdd] event for the first node created by the batch (all other new
+     * nodes are its descendants), followed by one [GameModel.onCurrentNodeChange] event
+     * for the last node played.
+     *
+     * @param encodedMoves Moves encoded using [MoveSequence.encodeMove], or
+     * [MoveSequence.PASS] for a pass.
+     * @return The result of the request. See [MoveBatchResult] for more information.
+     */
+    fun addMoves(encodedMoves: IntArray): MoveBatchResult {
+        checkModelEditable()
+        return model.withWriteLock {
+            val player = MoveBatchPlayer(model)
+            val result = player.playAll(encodedMoves)
+
+            player.firstNewNode?.let {
+                model.fireEvent(model.onNodeAdd(), NodeEvent(it))
+                model.isModified = true
+            }
+            if (result.lastNode != model.currentNode) {
+                model.currentNode = result.lastNode
+            }
 
-        return MoveSubmitResult(validationResult, node, movePlayed, reusedExistingNode)
+            result
+        }
     }
 
     /**
@@ -138,12 +176,14 @@ class GameModelEditor(private val model: GameModel) {
                                  stoneColor: StoneColor
     ): MoveSubmitResult {
         checkModelEditable()
-        val validationAndNewNode = GameMoveSubmitter.createMoveNode(model,
-            parent, Stone(x, y, stoneColor), ignoreRules = true)
-        val newNode: GameNode? = validationAndNewNode.second
-        addNode(parent, newNode!!)
+        return model.withWriteLock {
+            val validationAndNewNode = GameMoveSubmitter.createMoveNode(model,
+                parent, Stone(x, y, stoneColor), ignoreRules = true)
+            val newNode: GameNode? = validationAndNewNode.second
+            addNode(parent, newNode!!)
 
-        return MoveSubmitResult(MoveValidationResult.OK, newNode, true)
+            MoveSubmitResult(MoveValidationResult.OK, newNode, true)
+        }
     }
 
     /**
@@ -151,25 +191,27 @@ class GameModelEditor(private val model: GameModel) {
      */
     fun addPass(): MoveSubmitResult {
         checkModelEditable()
-        var existingContinuation: GameNode? = null
+        return model.withWriteLock {
+            var existingContinuation: GameNode? = null
 
-        for (child in model.currentNode.children) {
-            if (child.getType() == GameNodeType.PASS) {
-                existingContinuation = child
+            for (child in model.currentNode.children) {
+                if (child.getType() == GameNodeType.PASS) {
+                    existingContinuation = child
+                }
             }
-        }
 
-        return if (existingContinuation != null) {
-            model.currentNode = existingContinuation
-            MoveSubmitResult(
-                MoveValidationResult.OK, existingContinuation,
-                isPlayed = true, isReusingExistingNode = true)
-        } else {
-            val newNode = GameMoveSubmitter.createPassNode(model.currentNode)
-            addNode(newNode)
-            MoveSubmitResult(
-                MoveValidationResult.OK, newNode,
-                isPlayed = true, isReusingExistingNode = false)
+            if (existingContinuation != null) {
+                model.currentNode = existingContinuation
+                MoveSubmitResult(
+                    MoveValidationResult.OK, existingContinuation,
+                    isPlayed = true, isReusingExistingNode = true)
+            } else {
+                val newNode = GameMoveSubmitter.createPassNode(model.currentNode)
+                addNode(newNode)
+                MoveSubmitResult(
+                    MoveValidationResult.OK, newNode,
+                    isPlayed = true, isReusingExistingNode = false)
+            }
         }
     }
 
@@ -188,9 +230,11 @@ class GameModelEditor(private val model: GameModel) {
      */
     fun addStoneEditNode(): GameNode {
         checkModelEditable()
-        val node = GameMoveSubmitter.createStoneEditNode(model.currentNode)
-        addNode(node)
-        return node
+        return model.withWriteLock {
+            val node = GameMoveSubmitter.createStoneEditNode(model.currentNode)
+            addNode(node)
+            node
+        }
     }
 
     /**
@@ -213,9 +257,28 @@ class GameModelEditor(private val model: GameModel) {
      */
     fun setComment(nodeToEdit: GameNode, comment: String) {
         checkModelEditable()
-        nodeToEdit.setComments(comment)
-        model.onNodeDataUpdate().fireEvent(NodeEvent(nodeToEdit))
-        model.isModified = true
+        model.withWriteLock {
+            nodeToEdit.setComments(comment)
+            model.fireEvent(model.onNodeDataUpdate(), NodeEvent(nodeToEdit))
+            model.isModified = true
+        }
+    }
+
+    /**
+     * Stores metadata on a batch of nodes in this model while holding the write lock once,
+     * so that readers see either none or all of the batch.
+     *
+     * This method emits an [GameModel.onNodeDataUpdate] event for each node in the batch.
+     *
+     * @param metadataByNode Metadata to store on each node, see [GameNode.putMetadata].
+     */
+    fun putMetadata(metadataByNode: Map<GameNode, Map<String, List<String>>>) {
+        checkModelEditable()
+        model.withWriteLock {
+            metadataByNode.forEach { (node, metadata) -> node.putMetadata(metadata) }
+            metadataByNode.keys.forEach { node -> model.fireEvent(model.onNodeDataUpdate(), NodeEvent(node)) }
+            model.isModified = true
+        }
     }
 
     /**
@@ -246,9 +309,12 @@ class GameModelEditor(private val model: GameModel) {
      */
     fun addStoneEdits(nodeToEdit: GameNode, stoneEdits: Collection<Stone>) {
         checkModelEditable()
-        nodeToEdit.addStoneEdits(stoneEdits, model.stateHasher, model.boardWidth, model.boardHeight)
-        model.onNodeDataUpdate().fireEvent(NodeEvent(nodeToEdit))
-        model.isModified = true
+        model.withWriteLock {
+            nodeToEdit.addStoneEdits(stoneEdits, model.stateHasher, model.boardWidth, model.boardHeight)
+            model.invalidateGameStates()
+            model.fireEvent(model.onNodeDataUpdate(), NodeEvent(nodeToEdit))
+            model.isModified = true
+        }
     }
 
     /**
@@ -259,9 +325,12 @@ class GameModelEditor(private val model: GameModel) {
      */
     fun removeStoneEdit(nodeToEdit: GameNode, stoneEdit: Stone) {
         checkModelEditable()
-        nodeToEdit.removeStoneEdit(stoneEdit, model.stateHasher, model.boardWidth, model.boardHeight)
-        model.onNodeDataUpdate().fireEvent(NodeEvent(nodeToEdit))
-        model.isModified = true
+        model.withWriteLock {
+            nodeToEdit.removeStoneEdit(stoneEdit, model.stateHasher, model.boardWidth, model.boardHeight)
+            model.invalidateGameStates()
+            model.fireEvent(model.onNodeDataUpdate(), NodeEvent(nodeToEdit))
+            model.isModified = true
+        }
     }
 
     /**
@@ -290,9 +359,11 @@ class GameModelEditor(private val model: GameModel) {
      */
     fun addAnnotations(nodeToEdit: GameNode, annotations: Collection<Annotation>) {
         checkModelEditable()
-        nodeToEdit.addAnnotations(annotations)
-        model.onNodeDataUpdate().fireEvent(NodeEvent(nodeToEdit))
-        model.isModified = true
+        model.withWriteLock {
+            nodeToEdit.addAnnotations(annotations)
+            model.fireEvent(model.onNodeDataUpdate(), NodeEvent(nodeToEdit))
+            model.isModified = true
+        }
     }
 
     /**
@@ -312,20 +383,22 @@ class GameModelEditor(private val model: GameModel) {
      */
     fun removeAnnotation(nodeToEdit: GameNode, x: Int, y: Int) {
         checkModelEditable()
-        val annotationsToRemove = HashSet<Annotation>()
+        model.withWriteLock {
+            val annotationsToRemove = HashSet<Annotation>()
 
-        val annotations = nodeToEdit.getAnnotations()
-        for (annotation in annotations) {
-            val onThisPoint = annotation.isOccupyingPosition(x, y)
+            val annotations = nodeToEdit.getAnnotations()
+            for (annotation in annotations) {
+                val onThisPoint = annotation.isOccupyingPosition(x, y)
 
-            if (onThisPoint) {
-                annotationsToRemove.add(annotation)
+                if (onThisPoint) {
+                    annotationsToRemove.add(annotation)
+                }
             }
-        }
 
-        model.currentNode.removeAnnotations(annotationsToRemove)
-        model.onNodeDataUpdate().fireEvent(NodeEvent(nodeToEdit))
-        model.isModified = true
+            model.currentNode.removeAnnotations(annotationsToRemove)
+            model.fireEvent(model.onNodeDataUpdate(), NodeEvent(nodeToEdit))
+            model.isModified = true
+        }
     }
 
     /**
@@ -345,9 +418,11 @@ class GameModelEditor(private val model: GameModel) {
      */
     fun removeAnnotation(nodeToEdit: GameNode, annotation: Annotation) {
         checkModelEditable()
-        nodeToEdit.removeAnnotation(annotation)
-        model.onNodeDataUpdate().fireEvent(NodeEvent(nodeToEdit))
-        model.isModified = true
+        model.withWriteLock {
+            nodeToEdit.removeAnnotation(annotation)
+            model.fireEvent(model.onNodeDataUpdate(), NodeEvent(nodeToEdit))
+            model.isModified = true
+        }
     }
 
     /**
@@ -358,9 +433,11 @@ class GameModelEditor(private val model: GameModel) {
      */
     fun removeAnnotations(nodeToEdit: GameNode, annotations: Collection<Annotation>) {
         checkModelEditable()
-        nodeToEdit.removeAnnotations(annotations)
-        model.onNodeDataUpdate().fireEvent(NodeEvent(nodeToEdit))
-        model.isModified = true
+        model.withWriteLock {
+            nodeToEdit.removeAnnotations(annotations)
+            model.fireEvent(model.onNodeDataUpdate(), NodeEvent(nodeToEdit))
+            model.isModified = true
+        }
     }
 
     /**
@@ -374,13 +451,15 @@ class GameModelEditor(private val model: GameModel) {
      */
     fun removeNodeSubtree(node: GameNode) {
         checkModelEditable()
+        model.withWriteLock {
+            val newCurrentMove: GameNode? = getNewCurrentNodeAfterNodeRemoval(node)
+            model.gameTree.removeNodeSubtree(node)
+            model.invalidateGameStates()
+            model.fireEvent(model.onNodeRemove(), NodeEvent(node))
+            newCurrentMove?.let { model.currentNode = it }
 
-        val newCurrentMove: GameNode? = getNewCurrentNodeAfterNodeRemoval(node)
-        model.gameTree.removeNodeSubtree(node)
-        model.onNodeRemove().fireEvent(NodeEvent(node))
-        newCurrentMove?.let { model.currentNode = it }
-
-        model.isModified = true
+            model.isModified = true
+        }
     }
 
     /**
@@ -404,13 +483,15 @@ class GameModelEditor(private val model: GameModel) {
         }
 
         checkModelEditable()
+        model.withWriteLock {
+            val newCurrentMove: GameNode? = getNewCurrentNodeAfterNodeRemoval(node)
+            model.gameTree.removeNodeShallow(node)
+            model.invalidateGameStates()
+            model.fireEvent(model.onNodeRemove(), NodeEvent(node))
+            newCurrentMove?.let { model.currentNode = it }
 
-        val newCurrentMove: GameNode? = getNewCurrentNodeAfterNodeRemoval(node)
-        model.gameTree.removeNodeShallow(node)
-        model.onNodeRemove().fireEvent(NodeEvent(node))
-        newCurrentMove?.let { model.currentNode = it }
-
-        model.isModified = true
+            model.isModified = true
+        }
     }
 
     private fun getNewCurrentNodeAfterNodeRemoval(nodeToRemove: GameNode): GameNode? {
@@ -453,9 +534,11 @@ class GameModelEditor(private val model: GameModel) {
      */
     fun addNode(parent: GameNode, child: GameNode) {
         checkModelEditable()
-        appendNode(parent, child)
-        model.currentNode = child
-        model.isModified = true
+        model.withWriteLock {
+            appendNode(parent, child)
+            model.currentNode = child
+            model.isModified = true
+        }
     }
 
     /**
@@ -485,9 +568,11 @@ class GameModelEditor(private val model: GameModel) {
      */
     fun appendNode(parent: GameNode, child: GameNode) {
         checkModelEditable()
-        model.gameTree.appendNode(parent, child)
-        model.onNodeAdd().fireEvent(NodeEvent(child))
-        model.isModified = true
+        model.withWriteLock {
+            model.gameTree.appendNode(parent, child)
+            model.fireEvent(model.onNodeAdd(), NodeEvent(child))
+            model.isModified = true
+        }
     }
 
     internal fun checkModelEditable() {
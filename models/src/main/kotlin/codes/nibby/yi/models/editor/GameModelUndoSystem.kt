@@ -1,27 +1,77 @@
 package codes.nibby.yi.models.editor
 
 import codes.nibby.yi.models.GameModel
+import codes.nibby.yi.models.editor.edit.CompoundEdit
 import codes.nibby.yi.models.editor.edit.GameModelEdit
 import codes.nibby.yi.models.editor.edit.GameModelMergeableEdit
-import java.util.*
+import java.util.function.LongSupplier
 
 /**
  * Enables undoable changes to a [GameModel].
  *
+ * The edit history is bounded both by the number of edits ([maxHistorySize]) and by the
+ * estimated memory retained by those edits ([maxHistoryMemory]). Once either limit is
+ * exceeded, the oldest edits are discarded first. See [GameModelEdit.estimateRetainedSize].
+ *
+ * Edits submitted in rapid succession can also be grouped into one undoable action by
+ * setting a [coalescingWindowMillis]. See [GameModelEdit.canCoalesceWith].
+ *
  * @param model Game model to provide undo support to
  */
 class GameModelUndoSystem(private val model: GameModel) {
 
-    private val editHistory = Stack<GameModelEdit>()
-    var maxHistorySize: Int = 50
+    private val editHistory = UndoHistoryBuffer(DEFAULT_MAX_HISTORY_SIZE)
+
+    /**
+     * Maximum number of undoable edits to keep. Lowering this value discards the oldest
+     * edits that no longer fit, the rest of the history is preserved.
+     */
+    var maxHistorySize: Int = DEFAULT_MAX_HISTORY_SIZE
         set(value) {
             if (value < 0) {
                 throw IllegalArgumentException("Max history size must be >= 0")
             }
-            editHistory.clear()
+            model.withWriteLock {
+                field = value
+                pruneHistorySize()
+                editHistory.setMaxCapacity(value)
+            }
+        }
+
+    /**
+     * Maximum estimated memory (in bytes) retained by the edit history. The most recent
+     * edit is always kept even if it exceeds the budget on its own, so that it can still be
+     * undone.
+     */
+    var maxHistoryMemory: Long = DEFAULT_MAX_HISTORY_MEMORY
+        set(value) {
+            if (value < 0) {
+                throw IllegalArgumentException("Max history memory must be >= 0")
+            }
+            model.withWriteLock {
+                field = value
+                pruneHistorySize()
+            }
+        }
+
+    /**
+     * Consecutive edits recorded within this many milliseconds of each other are undone
+     * as one action, provided the newer edit supports it through
+     * [GameModelEdit.canCoalesceWith]. A value of 0 disables coalescing.
+     */
+    var coalescingWindowMillis: Long = 0
+        set(value) {
+            if (value < 0) {
+                throw IllegalArgumentException("Coalescing window must be >= 0")
+            }
             field = value
         }
 
+    /**
+     * Source of the current time in milliseconds, used to determine the coalescing window.
+     */
+    internal var timeSource = LongSupplier { System.nanoTime() / 1_000_000 }
+
     var positionInHistory: Int = 0
         private set
 
@@ -57,9 +107,11 @@ class GameModelUndoSystem(private val model: GameModel) {
             )
         }
         if (positionInHistory >= 0) {
-            val editToUndo: GameModelEdit = editHistory[positionInHistory]
-            editToUndo.rollbackChanges(model)
-            positionInHistory--
+            model.withWriteLock {
+                val editToUndo: GameModelEdit = editHistory[positionInHistory].edit
+                editToUndo.rollbackChanges(model)
+                positionInHistory--
+            }
         }
     }
 
@@ -81,9 +133,11 @@ class GameModelUndoSystem(private val model: GameModel) {
             )
         }
 
-        val editToApply = editHistory[positionInHistory + 1]
-        editToApply.performChanges(model)
-        positionInHistory++
+        model.withWriteLock {
+            val editToApply = editHistory[positionInHistory + 1].edit
+            editToApply.performChanges(model)
+            positionInHistory++
+        }
     }
 
     /**
@@ -91,10 +145,13 @@ class GameModelUndoSystem(private val model: GameModel) {
      * to the [GameModel] so far undoable.
      */
     fun clearEditHistory() {
-        for (item in editHistory) {
-            item.dispose()
+        model.withWriteLock {
+            for (i in 0 until editHistory.size) {
+                editHistory[i].edit.dispose()
+            }
+            editHistory.clear()
+            positionInHistory = 0
         }
-        editHistory.clear()
     }
 
     /**
@@ -102,6 +159,11 @@ class GameModelUndoSystem(private val model: GameModel) {
      */
     fun getEditHistorySize(): Int = editHistory.size
 
+    /**
+     * @return Estimated memory (in bytes) retained by the current edit history.
+     */
+    fun getEditHistoryRetainedSize(): Long = editHistory.retainedSize
+
     /**
      * Records a new [GameModelEdit] to the edit history and adjusts the current undo
      * position to the new edit.
@@ -109,57 +171,112 @@ class GameModelUndoSystem(private val model: GameModel) {
      * If undo support is disabled, this method does nothing.
      */
     internal fun record(edit: GameModelEdit) {
-        if (!mergeWithCurrentTopOfStackIfPossible(edit)) {
-            pushChangeToEditHistory(edit)
+        val currentTime = timeSource.asLong
+        if (!mergeWithCurrentTopOfStackIfPossible(edit, currentTime)
+                && !coalesceWithCurrentTopOfStackIfPossible(edit, currentTime)) {
+            pushChangeToEditHistory(edit, currentTime)
         }
+        pruneHistorySize()
     }
 
-    private fun mergeWithCurrentTopOfStackIfPossible(edit: GameModelEdit): Boolean {
-        var actuallyMerged = false
-        val canPossiblyMerge = !editHistory.isEmpty()
-                && edit is GameModelMergeableEdit
-                && editHistory.peek() is GameModelMergeableEdit
+    private fun mergeWithCurrentTopOfStackIfPossible(edit: GameModelEdit, currentTime: Long): Boolean {
+        val topOfStack = getTopOfStackIfCurrent() ?: return false
+        val canPossiblyMerge = edit is GameModelMergeableEdit
+                && topOfStack.edit is GameModelMergeableEdit
 
         if (canPossiblyMerge) {
             val mergeableEdit = edit as GameModelMergeableEdit
-            val mergeableTopOfStack = editHistory.peek() as GameModelMergeableEdit
+            val mergeableTopOfStack = topOfStack.edit as GameModelMergeableEdit
             if (mergeableTopOfStack.canMergeWith(mergeableEdit)) {
                 mergeableTopOfStack.mergeWith(mergeableEdit)
-                actuallyMerged = true
+                topOfStack.lastUpdateTime = currentTime
+                editHistory.updateRetainedSize(topOfStack, topOfStack.edit.estimateRetainedSize())
+                return true
             }
         }
 
-        return actuallyMerged
+        return false
+    }
+
+    private fun coalesceWithCurrentTopOfStackIfPossible(edit: GameModelEdit, currentTime: Long): Boolean {
+        if (coalescingWindowMillis <= 0) {
+            return false
+        }
+        val topOfStack = getTopOfStackIfCurrent() ?: return false
+        if (currentTime - topOfStack.lastUpdateTime > coalescingWindowMillis) {
+            return false
+        }
+
+        val editOnTop = topOfStack.edit
+        val previousEdit = if (editOnTop is CompoundEdit) editOnTop.getLastEdit() else editOnTop
+        if (!edit.canCoalesceWith(previousEdit)) {
+            return false
+        }
+
+        val compoundEdit = if (editOnTop is CompoundEdit) editOnTop else CompoundEdit(editOnTop)
+        compoundEdit.append(edit)
+        topOfStack.edit = compoundEdit
+        topOfStack.lastUpdateTime = currentTime
+        editHistory.updateRetainedSize(topOfStack, compoundEdit.estimateRetainedSize())
+        return true
     }
 
-    private fun pushChangeToEditHistory(edit: GameModelEdit) {
+    /**
+     * @return The newest entry in the edit history, provided it is also the current
+     * position (i.e. there is nothing to redo), otherwise null.
+     */
+    private fun getTopOfStackIfCurrent(): UndoHistoryBuffer.Entry? {
+        if (editHistory.isEmpty() || positionInHistory != editHistory.lastIndex) {
+            return null
+        }
+        return editHistory.last()
+    }
+
+    private fun pushChangeToEditHistory(edit: GameModelEdit, currentTime: Long) {
         discardEditsNewerThanCurrentPosition()
-        editHistory.push(edit)
-        positionInHistory = editHistory.indexOf(edit)
-        pruneHistorySize()
+        if (maxHistorySize == 0) {
+            edit.dispose()
+            return
+        }
+        if (editHistory.isFull()) {
+            discardOldestEdit()
+        }
+        editHistory.addLast(UndoHistoryBuffer.Entry(edit, edit.estimateRetainedSize(), currentTime))
+        positionInHistory = editHistory.lastIndex
     }
 
     private fun discardEditsNewerThanCurrentPosition() {
-        if (positionInHistory < editHistory.size - 1) {
-            // Discard the existing edit history
-            val originalSize: Int = editHistory.size
-            for (i in positionInHistory + 1 until originalSize) {
-                val itemToDiscard = editHistory.pop()
-                itemToDiscard.dispose()
-            }
+        while (positionInHistory < editHistory.lastIndex) {
+            val itemToDiscard = editHistory.removeLast()
+            itemToDiscard.edit.dispose()
         }
     }
 
     private fun pruneHistorySize() {
-        while (editHistory.size > maxHistorySize) {
-            val editToRemoveFromHistory = editHistory[0]
-            editToRemoveFromHistory.dispose()
-            editHistory.remove(editToRemoveFromHistory)
-            --positionInHistory
+        while (editHistory.size > maxHistorySize
+                || (editHistory.size > 1 && editHistory.retainedSize > maxHistoryMemory)) {
+            discardOldestEdit()
+        }
+    }
+
+    private fun discardOldestEdit() {
+        if (positionInHistory < 0) {
+            // Every edit has been undone. Newer edits cannot be redone without the oldest
+            // one, so the redo history has to go as well.
+            discardEditsNewerThanCurrentPosition()
+            return
         }
+        val editToRemoveFromHistory = editHistory.removeFirst()
+        editToRemoveFromHistory.edit.dispose()
+        --positionInHistory
     }
 
     internal fun getHistoryItem(itemIndex: Int): GameModelEdit {
-        return editHistory[itemIndex]
+        return editHistory[itemIndex].edit
+    }
+
+    companion object {
+        const val DEFAULT_MAX_HISTORY_SIZE = 50
+        const val DEFAULT_MAX_HISTORY_MEMORY = 32L * 1024 * 1024
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,133 @@
+package codes.nibby.yi.models.editor
+
+import codes.nibby.yi.models.editor.edit.GameModelEdit
+
+/**
+ * Ring buffer storing the edit history for [GameModelUndoSystem]. Index 0 is always the
+ * oldest edit, so that dropping the oldest edit when the history is full is a constant time
+ * operation rather than shifting every remaining item.
+ *
+ * The backing array is grown on demand up to [maxCapacity], which keeps a large history
+ * limit from allocating the entire buffer upfront.
+ *
+ * This class is not thread-safe. [GameModelUndoSystem] only accesses it while holding the
+ * model write lock.
+ */
+internal class UndoHistoryBuffer(maxCapacity: Int) {
+
+    /**
+     * An item in the edit history.
+     *
+     * @param edit The edit to undo or redo.
+     * @param retainedSize Last known estimate of the memory retained by the edit.
+     * @param lastUpdateTime Time (in milliseconds) when this entry last recorded an edit.
+     * Used to decide whether a subsequent edit can be coalesced into this entry.
+     */
+    class Entry(var edit: GameModelEdit, var retainedSize: Long, var lastUpdateTime: Long)
+
+    private var entries = arrayOfNulls<Entry>(minOf(maxCapacity, INITIAL_CAPACITY))
+    private var head = 0
+
+    var maxCapacity = maxCapacity
+        private set
+
+    var size = 0
+        private set
+
+    /**
+     * Sum of [Entry.retainedSize] across all entries in the buffer.
+     */
+    var retainedSize = 0L
+        private set
+
+    val lastIndex: Int
+        get() = size - 1
+
+    fun isEmpty(): Boolean = size == 0
+
+    fun isFull(): Boolean = size >= maxCapacity
+
+    operator fun get(index: Int): Entry {
+        if (index < 0 || index >= size) {
+            throw IndexOutOfBoundsException("Index: $index, size: $size")
+        }
+        return entries[physicalIndex(index)]!!
+    }
+
+    fun last(): Entry? = if (isEmpty()) null else get(lastIndex)
+
+    /**
+     * Appends an entry as the newest item in the buffer. Caller must make room by calling
+     * [removeFirst] if the buffer [isFull].
+     */
+    fun addLast(entry: Entry) {
+        check(!isFull()) { "History buffer is full. Size: $size, capacity: $maxCapacity" }
+        if (size == entries.size) {
+            reallocate(minOf(maxCapacity, maxOf(entries.size * 2, INITIAL_CAPACITY)))
+        }
+        entries[physicalIndex(size)] = entry
+        size++
+        retainedSize += entry.retainedSize
+    }
+
+    fun removeFirst(): Entry {
+        val entry = get(0)
+        entries[head] = null
+        head = (head + 1) % entries.size
+        size--
+        retainedSize -= entry.retainedSize
+        return entry
+    }
+
+    fun removeLast(): Entry {
+        val entry = get(lastIndex)
+        entries[physicalIndex(lastIndex)] = null
+        size--
+        retainedSize -= entry.retainedSize
+        return entry
+    }
+
+    /**
+     * Replaces the retained size estimate of an entry in this buffer.
+     */
+    fun updateRetainedSize(entry: Entry, newRetainedSize: Long) {
+        retainedSize += newRetainedSize - entry.retainedSize
+        entry.retainedSize = newRetainedSize
+    }
+
+    /**
+     * Changes the maximum number of entries this buffer can hold. Caller must remove excess
+     * entries beforehand so that the current items fit within the new capacity.
+     */
+    fun setMaxCapacity(newMaxCapacity: Int) {
+        check(size <= newMaxCapacity) {
+            "Cannot shrink capacity to $newMaxCapacity while holding $size entries"
+        }
+        maxCapacity = newMaxCapacity
+        if (entries.size > newMaxCapacity) {
+            reallocate(newMaxCapacity)
+        }
+    }
+
+    fun clear() {
+        entries.fill(null)
+        head = 0
+        size = 0
+        retainedSize = 0L
+    }
+
+    private fun reallocate(newArraySize: Int) {
+        val newEntries = arrayOfNulls<Entry>(newArraySize)
+        for (i in 0 until size) {
+            newEntries[i] = entries[physicalIndex(i)]
+        }
+        entries = newEntries
+        head = 0
+    }
+
+    private fun physicalIndex(index: Int): Int = (head + index) % entries.size
+
+    companion object {
+        private const val INITIAL_CAPACITY = 64
+    }
+}
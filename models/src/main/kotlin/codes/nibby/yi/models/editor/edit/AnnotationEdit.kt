@@ -28,6 +28,15 @@ class AnnotationEdit(private val nodeToEdit: GameNode,
         }
     }
 
+    override fun canCoalesceWith(previousEdit: GameModelEdit): Boolean {
+        return previousEdit is AnnotationEdit && previousEdit.nodeToEdit == this.nodeToEdit
+    }
+
+    override fun estimateRetainedSize(): Long {
+        val annotationCount = annotationsToAdd.size + annotationsToRemove.size
+        return EditSizeEstimates.EDIT_OVERHEAD + EditSizeEstimates.ANNOTATION * annotationCount
+    }
+
     override fun rollbackChanges(model: GameModel) {
         model.editor.removeAnnotations(nodeToEdit, annotationsToAdd)
         model.editor.addAnnotations(nodeToEdit, annotationsToRemove)
@@ -0,0 +1,57 @@
+package codes.nibby.yi.models.editor.edit
+
+import codes.nibby.yi.models.GameModel
+import java.util.*
+
+/**
+ * A group of edits that are undone and redone together as one action. Created by the
+ * undo system when consecutive edits are coalesced, see [GameModelEdit.canCoalesceWith].
+ *
+ * Edits are rolled back in the reverse order they were applied, since a later edit may
+ * depend on the changes made by an earlier one (for example, a stone edit placed on the
+ * node created by the first stone edit in the group).
+ */
+class CompoundEdit internal constructor(firstEdit: GameModelEdit) : GameModelEdit {
+
+    private val edits = ArrayList<GameModelEdit>()
+
+    init {
+        edits.add(firstEdit)
+    }
+
+    /**
+     * @return The edits in this group, in the order they were applied.
+     */
+    fun getEdits(): List<GameModelEdit> = Collections.unmodifiableList(edits)
+
+    internal fun getLastEdit(): GameModelEdit = edits.last()
+
+    internal fun append(edit: GameModelEdit) {
+        edits.add(edit)
+    }
+
+    override fun rollbackChanges(model: GameModel) {
+        for (i in edits.indices.reversed()) {
+            edits[i].rollbackChanges(model)
+        }
+    }
+
+    override fun performChanges(model: GameModel): Boolean {
+        // Each edit has been applied successfully once already, otherwise it would not
+        // be part of the undo history.
+        edits.forEach { it.performChanges(model) }
+        return true
+    }
+
+    override fun dispose() {
+        edits.forEach { it.dispose() }
+    }
+
+    override fun estimateRetainedSize(): Long {
+        return EditSizeEstimates.EDIT_OVERHEAD + edits.sumOf { it.estimateRetainedSize() }
+    }
+
+    override fun toString(): String {
+        return "CompoundEdit$edits"
+    }
+}
@@ -0,0 +1,45 @@
+package codes.nibby.yi.models.editor.edit
+
+import codes.nibby.yi.models.GameNode
+import codes.nibby.yi.models.GameTree
+
+/**
+ * Rough memory footprint of the data retained by [GameModelEdit] implementations. These are
+ * approximations for a 64-bit JVM with compressed object pointers, and are only meant to
+ * be proportional to the real cost. See [GameModelEdit.estimateRetainedSize].
+ */
+internal object EditSizeEstimates {
+
+    /** Base cost of an edit object and its undo history entry. */
+    const val EDIT_OVERHEAD = 64L
+
+    /** Base cost of a game node, its version and an empty state delta. */
+    const val NODE_OVERHEAD = 320L
+
+    /** Cost of one stone stored in a node, including its hash set entry. */
+    const val STONE = 48L
+
+    /** Cost of one annotation stored in a node, including its hash set entry. */
+    const val ANNOTATION = 64L
+
+    /**
+     * @return Estimated size of the data stored in one node.
+     */
+    fun ofNode(node: GameNode): Long {
+        var size = NODE_OVERHEAD
+        size += STONE * (node.getStoneEdits().size + node.getCapturesThisTurn().size)
+        size += ANNOTATION * node.getAnnotations().size
+        size += 2L * node.getComments().length
+        return size
+    }
+
+    /**
+     * @return Estimated size of all the nodes in the subtree starting from (and including)
+     * the given node.
+     */
+    fun ofSubtree(subtreeRoot: GameNode): Long {
+        var size = 0L
+        GameTree.traverseSubtree(subtreeRoot) { node -> size += ofNode(node) }
+        return size
+    }
+}
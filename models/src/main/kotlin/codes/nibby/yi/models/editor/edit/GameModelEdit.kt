@@ -38,4 +38,34 @@ interface GameModelEdit {
     fun dispose() {
         
     }
+
+    /**
+     * Estimates the amount of memory (in bytes) kept alive by this edit while it remains
+     * in the undo history. This includes any game nodes that are no longer part of the
+     * game tree but are retained so that the edit can be undone or redone.
+     *
+     * The estimate is used by [GameModelUndoSystem][codes.nibby.yi.models.editor.GameModelUndoSystem]
+     * to evict old edits once the history exceeds its memory budget, so it only needs to be
+     * roughly proportional to the actual footprint.
+     *
+     * @return Estimated retained size in bytes.
+     */
+    fun estimateRetainedSize(): Long {
+        return EditSizeEstimates.EDIT_OVERHEAD
+    }
+
+    /**
+     * Determines whether this edit can be coalesced with the edit recorded immediately
+     * before it, if the two are submitted within the coalescing window of the undo system.
+     * Coalesced edits are undone and redone together as one action.
+     *
+     * Unlike [GameModelMergeableEdit], coalescing does not change either edit. The edits
+     * are grouped into a [CompoundEdit] instead.
+     *
+     * @param previousEdit The edit recorded before this one.
+     * @return true if the two edits can be undone as one action.
+     */
+    fun canCoalesceWith(previousEdit: GameModelEdit): Boolean {
+        return false
+    }
 }
\ No newline at end of file
@@ -69,6 +69,11 @@ class MoveEdit private constructor(private val moveX: Int,
         return true
     }
 
+    override fun estimateRetainedSize(): Long {
+        val nodeSize = submittedNode?.let { EditSizeEstimates.ofNode(it) } ?: 0L
+        return EditSizeEstimates.EDIT_OVERHEAD + nodeSize
+    }
+
     private fun appendSubmittedNodeBackToGameTree(model: GameModel) {
         model.editor.addNode(parentOfSubmittedNode!!, submittedNode!!)
     }
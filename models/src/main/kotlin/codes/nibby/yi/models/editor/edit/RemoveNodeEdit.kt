@@ -7,6 +7,7 @@ class RemoveNodeEdit constructor(private val nodeToRemove: GameNode) :
     GameModelEdit {
 
     private var parentOfNodeToRemove: GameNode? = null
+    private var removedSubtreeSize = 0L
 
     init {
         check(!nodeToRemove.isRoot()) { "Cannot remove root node" }
@@ -25,9 +26,15 @@ class RemoveNodeEdit constructor(private val nodeToRemove: GameNode) :
         }
         parentOfNodeToRemove = nodeToRemove.parent!!
         model.editor.removeNode(nodeToRemove)
+        removedSubtreeSize = EditSizeEstimates.ofSubtree(nodeToRemove)
         return true
     }
 
+    override fun estimateRetainedSize(): Long {
+        // The entire subtree is kept alive so that it can be restored on undo
+        return EditSizeEstimates.EDIT_OVERHEAD + removedSubtreeSize
+    }
+
     override fun dispose() {
         nodeToRemove.dispose()
     }
@@ -36,6 +36,19 @@ sealed class StoneEdit(private var nodeToEdit: GameNode?) : GameModelEdit {
         return true
     }
 
+    override fun canCoalesceWith(previousEdit: GameModelEdit): Boolean {
+        // Stones painted in quick succession are placed on the same stone edit node
+        return previousEdit is StoneEdit && nodeToEdit != null && previousEdit.nodeToEdit == nodeToEdit
+    }
+
+    override fun estimateRetainedSize(): Long {
+        var size = EditSizeEstimates.EDIT_OVERHEAD + EditSizeEstimates.STONE
+        if (createNewNode) {
+            size += EditSizeEstimates.NODE_OVERHEAD
+        }
+        return size
+    }
+
     abstract fun rollbackChangesNow(model: GameModel, nodeToEdit: GameNode)
     abstract fun performChangesNow(model: GameModel, nodeToEdit: GameNode)
 
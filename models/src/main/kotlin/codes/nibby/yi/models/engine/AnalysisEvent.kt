@@ -0,0 +1,49 @@
+package codes.nibby.yi.models.engine
+
+import codes.nibby.yi.models.GameNode
+import codes.nibby.yi.models.StoneColor
+import codes.nibby.yi.models.analysis.PositionAnalysis
+
+/**
+ * One analysis update from an engine, see [EngineAnalysisSession.addAnalysisListener].
+ *
+ * @param node Node whose position was analysed.
+ * @param nextTurn Player to move in the analysed position.
+ * @param infos Candidate moves, best first.
+ */
+class AnalysisEvent internal constructor(val node: GameNode,
+                                         val nextTurn: StoneColor,
+                                         val infos: List<AnalysisInfo>,
+                                         internal val positionVersion: Long) {
+
+    /**
+     * @return The candidate the engine considers best, or null if there are no candidates.
+     */
+    fun getBestMove(): AnalysisInfo? = infos.minByOrNull { it.order }
+
+    /**
+     * Summarises the best candidate from the perspective of black. The engine is expected
+     * to report win rates and score leads for the player to move, which is the default
+     * for `kata-analyze`.
+     *
+     * @return Summary of this update that can be stored in an
+     * [codes.nibby.yi.models.analysis.AnalysisCache], or null if there are no candidates.
+     */
+    fun toPositionAnalysis(): PositionAnalysis? {
+        val best = getBestMove() ?: return null
+        val visits = infos.sumOf { it.visits }
+        val winrate = best.winrate.coerceIn(0f, 1f)
+        val scoreLead = best.scoreLead ?: 0f
+
+        return if (nextTurn == StoneColor.BLACK) {
+            PositionAnalysis(winrate, scoreLead, visits)
+        } else {
+            PositionAnalysis(1f - winrate, -scoreLead, visits)
+        }
+    }
+
+    override fun toString(): String {
+        return "candidates: ${infos.size}, best: ${getBestMove()}"
+    }
+}
+
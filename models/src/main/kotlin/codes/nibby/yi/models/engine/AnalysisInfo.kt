@@ -0,0 +1,112 @@
+package codes.nibby.yi.models.engine
+
+/**
+ * One candidate move reported by a GTP engine during analysis, as found in the output of
+ * `kata-analyze`.
+ *
+ * @param move GTP vertex of the candidate move, such as "D4" or "pass".
+ * @param visits Number of times the engine has explored the move.
+ * @param winrate Win rate of the player to move after playing the move, between 0 and 1.
+ * @param scoreLead Points the player to move is estimated to lead by after playing the
+ * move, or null if the engine does not report it.
+ * @param prior Policy value of the move before searching, between 0 and 1.
+ * @param order Rank of the move among the candidates, 0 being the best.
+ * @param principalVariation Expected continuation starting with [move], as GTP vertices.
+ */
+class AnalysisInfo(val move: String,
+                   val visits: Int,
+                   val winrate: Float,
+                   val scoreLead: Float?,
+                   val prior: Float,
+                   val order: Int,
+                   val principalVariation: List<String>) {
+
+    /**
+     * @return Position of the move in the one variable form, or -1 if the move is a pass.
+     */
+    fun getPosition(boardWidth: Int, boardHeight: Int): Int {
+        return GtpCoordinates.toPosition(move, boardWidth, boardHeight)
+    }
+
+    override fun toString(): String {
+        return "$move visits: $visits winrate: $winrate scoreLead: $scoreLead"
+    }
+
+    companion object {
+
+        /**
+         * Parses one line of `kata-analyze` output, which holds every candidate move of
+         * one update:
+         *
+         *     info move D4 visits 120 winrate 0.53 scoreLead 0.8 prior 0.2 order 0 pv D4 Q16 info move ...
+         *
+         * Unknown keys are ignored, and anything after the last principal variation (such
+         * as ownership data) is skipped.
+         *
+         * @return Candidate moves in the order they were reported. Empty if the line holds
+         * no candidates.
+         */
+        @JvmStatic
+        fun parseLine(line: String): List<AnalysisInfo> {
+            val tokens = line.trim().split(WHITESPACE)
+            val infos = ArrayList<AnalysisInfo>()
+            var i = 0
+
+            while (i < tokens.size) {
+                if (tokens[i] != "info") {
+                    i++
+                    continue
+                }
+                i++
+
+                var move: String? = null
+                var visits = 0
+                var winrate = 0f
+                var scoreLead: Float? = null
+                var prior = 0f
+                var order = infos.size
+                val principalVariation = ArrayList<String>()
+
+                while (i < tokens.size && tokens[i] != "info") {
+                    val key = tokens[i]
+                    if (key in LIST_KEYS) {
+                        i++
+                        while (i < tokens.size && tokens[i] != "info" && tokens[i] !in LIST_KEYS
+                                && tokens[i] !in END_OF_LINE_KEYS) {
+                            if (key == "pv") {
+                                principalVariation.add(tokens[i])
+                            }
+                            i++
+                        }
+                        continue
+                    }
+                    if (key in END_OF_LINE_KEYS) {
+                        // Ownership data is not split by candidate and runs to the end of the line
+                        i = tokens.size
+                        break
+                    }
+
+                    val value = tokens.getOrNull(i + 1) ?: break
+                    when (key) {
+                        "move" -> move = value
+                        "visits" -> visits = value.toIntOrNull() ?: visits
+                        "winrate" -> winrate = value.toFloatOrNull() ?: winrate
+                        "scoreLead" -> scoreLead = value.toFloatOrNull()
+                        "prior" -> prior = value.toFloatOrNull() ?: prior
+                        "order" -> order = value.toIntOrNull() ?: order
+                    }
+                    i += 2
+                }
+
+                move?.let { infos.add(AnalysisInfo(it, visits, winrate, scoreLead, prior, order, principalVariation)) }
+            }
+            return infos
+        }
+
+        private val WHITESPACE = Regex("\\s+")
+
+        // Keys followed by a variable number of values
+        private val LIST_KEYS = setOf("pv", "pvVisits", "pvEdgeVisits")
+        private val END_OF_LINE_KEYS = setOf("ownership", "ownershipStdev", "movesOwnership", "movesOwnershipStdev")
+    }
+}
@@ -0,0 +1,355 @@
+package codes.nibby.yi.models.engine
+
+import codes.nibby.yi.models.EventDeliveryPolicy
+import codes.nibby.yi.models.EventHook
+import codes.nibby.yi.models.EventListener
+import codes.nibby.yi.models.GameModel
+import codes.nibby.yi.models.GameNode
+import codes.nibby.yi.models.GameNodeType
+import codes.nibby.yi.models.NodeEvent
+import codes.nibby.yi.models.StoneColor
+import codes.nibby.yi.models.analysis.AnalysisCache
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Executor
+
+/**
+ * Keeps the board of a GTP engine in step with the current node of a [GameModel], and
+ * streams the analysis of the engine for that position.
+ *
+ * Navigating the game tree is translated into the fewest `undo` and `play` commands that
+ * take the engine from its last position to the new one, so stepping through a game does
+ * not resend the whole game each time. The board is only rebuilt with `clear_board` when
+ * the path to the new node goes through a node that cannot be expressed as moves, such as
+ * a node with stone edits. In that case the stones of the nearest such node are placed
+ * directly, and the engine does not know the history before it.
+ *
+ * Commands are queued without waiting for replies, so navigation never blocks on the
+ * engine. Analysis output is delivered to listeners through [addAnalysisListener], which
+ * only ever delivers the latest update for the latest position.
+ *
+ * The replies to the commands that move the engine board are checked once they arrive. If
+ * the engine rejects one, for example because its rules forbid a move the model allows, the
+ * board is rebuilt with `clear_board` and the whole path replayed. Should the replay be
+ * rejected as well, the stones of the position are placed directly. Each rejection is
+ * reported through [onSyncError].
+ *
+ * If an [analysisCache] is set, the latest update for each position is stored in it so that
+ * revisited positions can be shown before the engine has caught up.
+ *
+ * The session does not own the engine, and closing the session leaves the engine running.
+ */
+class EngineAnalysisSession(private val engine: GtpEngine, private val model: GameModel) : AutoCloseable {
+
+    init {
+        if (model.boardWidth > GtpCoordinates.MAX_BOARD_SIZE || model.boardHeight > GtpCoordinates.MAX_BOARD_SIZE) {
+            throw IllegalArgumentException("Board size ${model.boardWidth} x ${model.boardHeight} " +
+                    "is too large for GTP")
+        }
+    }
+
+    private val syncLock = Any()
+
+    // Nodes from the root to the node on the engine board, and the index of the last node
+    // in it whose position was placed directly rather than played.
+    private var syncedPath: List<GameNode> = emptyList()
+    private var syncedBaseIndex = -1
+    private var syncedStateHash = 0L
+
+    // Incremented every time the engine board changes, so that analysis of an earlier
+    // position can be told apart from the current one.
+    @Volatile
+    private var positionVersion = 0L
+
+    // Interval between analysis updates in centiseconds, or -1 if not analysing
+    private var analysisInterval = NOT_ANALYSING
+
+    /**
+     * Cache that receives the latest analysis of every position the engine analyses, or
+     * null to not cache analysis.
+     */
+    @Volatile
+    var analysisCache: AnalysisCache? = null
+
+    private val analysisHook = object : EventHook<AnalysisEvent>() { }
+    private val syncErrorHook = object : EventHook<EngineSyncErrorEvent>() { }
+    private val analysisListeners = ConcurrentHashMap<EventListener<AnalysisEvent>, EventListener<AnalysisEvent>>()
+
+    private val currentNodeChangeListener = object : EventListener<NodeEvent> {
+        override fun onEvent(event: NodeEvent) {
+            synchronizeTo(event.node, SyncMode.INCREMENTAL)
+        }
+    }
+
+    // Stone edits change the current node in place, so its position has to be placed again.
+    // Other data updates, such as comments, leave the position alone.
+    private val currentNodeDataUpdateListener = object : EventListener<NodeEvent> {
+        override fun onEvent(event: NodeEvent) {
+            synchronized(syncLock) {
+                if (event.node.getStateHash() != syncedStateHash) {
+                    synchronizeTo(event.node, SyncMode.REPLAY)
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets up the engine for the game and sends the current position. From then on, the
+     * engine follows the current node of the model.
+     *
+     * @return Completes once the engine has replied to the setup commands.
+     */
+    fun start(): CompletableFuture<Void> {
+        val setupReplies = ArrayList<CompletableFuture<GtpResponse>>()
+        // Lock order is always the session before the model, as listeners take the session
+        // lock and then read the model.
+        synchronized(syncLock) {
+            model.withReadLock {
+                val width = model.boardWidth
+                val height = model.boardHeight
+                setupReplies.add(engine.sendCommand(
+                        if (width == height) "boardsize $width" else "rectangular_boardsize $width $height"))
+                setupReplies.add(engine.sendCommand("komi ${model.info.getKomi()}"))
+
+                model.onCurrentNodeChange().addListener(currentNodeChangeListener)
+                model.onCurrentNodeDataUpdate().addListener(currentNodeDataUpdateListener)
+                synchronizeTo(model.currentNode, SyncMode.REPLAY)
+            }
+        }
+        return CompletableFuture.allOf(*setupReplies.toTypedArray())
+    }
+
+    /**
+     * Starts analysing the current position, and every position navigated to afterwards,
+     * until [stopAnalysis] is called.
+     *
+     * @param intervalCentiseconds Time between analysis updates from the engine.
+     */
+    @JvmOverloads
+    fun startAnalysis(intervalCentiseconds: Int = DEFAULT_ANALYSIS_INTERVAL) {
+        if (intervalCentiseconds < 1) {
+            throw IllegalArgumentException("Analysis interval must be >= 1")
+        }
+        synchronized(syncLock) {
+            analysisInterval = intervalCentiseconds
+            positionVersion++
+            sendAnalyzeCommand()
+        }
+    }
+
+    /**
+     * Stops the analysis started by [startAnalysis]. Updates still in flight are discarded.
+     */
+    fun stopAnalysis() {
+        synchronized(syncLock) {
+            if (analysisInterval == NOT_ANALYSING) {
+                return
+            }
+            analysisInterval = NOT_ANALYSING
+            positionVersion++
+            // Any command ends the analysis stream
+            engine.sendCommand("protocol_version")
+        }
+    }
+
+    fun isAnalysing(): Boolean = synchronized(syncLock) { analysisInterval != NOT_ANALYSING }
+
+    /**
+     * Subscribes a listener to analysis updates. Updates are conflated: if the listener
+     * executor falls behind, only the most recent update is delivered, and updates for a
+     * position the engine has since moved away from are dropped.
+     *
+     * @param executor Executor used to notify the listener, such as the UI thread.
+     */
+    fun addAnalysisListener(listener: EventListener<AnalysisEvent>, executor: Executor) {
+        val latestPositionListener = object : EventListener<AnalysisEvent> {
+            override fun onEvent(event: AnalysisEvent) {
+                if (event.positionVersion == positionVersion) {
+                    listener.onEvent(event)
+                }
+            }
+        }
+        analysisListeners.put(listener, latestPositionListener)?.let { analysisHook.removeListener(it) }
+        analysisHook.addListener(latestPositionListener, executor, EventDeliveryPolicy.LATEST_ONLY)
+    }
+
+    fun removeAnalysisListener(listener: EventListener<AnalysisEvent>) {
+        analysisListeners.remove(listener)?.let { analysisHook.removeListener(it) }
+    }
+
+    /**
+     * Notified on the engine reader thread, unless the listener is added with an executor,
+     * whenever the engine rejects a command that moves its board to the current node.
+     */
+    fun onSyncError(): EventHook<EngineSyncErrorEvent> = syncErrorHook
+
+    /**
+     * Stops following the model and stops any analysis. The engine is left running.
+     */
+    override fun close() {
+        model.onCurrentNodeChange().removeListener(currentNodeChangeListener)
+        model.onCurrentNodeDataUpdate().removeListener(currentNodeDataUpdateListener)
+        stopAnalysis()
+        analysisHook.removeAllListeners()
+        analysisListeners.clear()
+        syncErrorHook.removeAllListeners()
+    }
+
+    /*
+        Events are delivered after the model lock is released, so the node may have been
+        removed by the time it gets here, in which case a later event moves the engine to
+        the new current node. The model is read under its read lock, taken after
+        the session lock, so that the path and the stones placed agree with each other.
+     */
+    private fun synchronizeTo(node: GameNode, mode: SyncMode) {
+        synchronized(syncLock) {
+            model.withReadLock {
+                if (!model.gameTree.isDescendant(node)) {
+                    return@withReadLock
+                }
+
+                val targetPath = ArrayList(node.getMoveHistory())
+                var baseIndex = targetPath.indexOfLast { !isPlayable(it) }
+                val commands = ArrayList<SyncCommand>()
+
+                var commonLength = 0
+                val maxCommonLength = minOf(syncedPath.size, targetPath.size)
+                while (commonLength < maxCommonLength && syncedPath[commonLength] === targetPath[commonLength]) {
+                    commonLength++
+                }
+
+                if (mode == SyncMode.PLACE_POSITION) {
+                    baseIndex = targetPath.lastIndex
+                    sendSyncCommand("clear_board", commands)
+                    placeStones(node, commands)
+                } else if (mode == SyncMode.REPLAY || baseIndex != syncedBaseIndex || commonLength <= baseIndex) {
+                    sendSyncCommand("clear_board", commands)
+                    placeStones(targetPath[baseIndex], commands)
+                    playMoves(targetPath, baseIndex + 1, commands)
+                } else {
+                    repeat(syncedPath.size - commonLength) { sendSyncCommand("undo", commands) }
+                    playMoves(targetPath, commonLength, commands)
+                }
+
+                syncedPath = targetPath
+                syncedBaseIndex = baseIndex
+                syncedStateHash = node.getStateHash()
+                positionVersion++
+                checkSyncReplies(node, mode, positionVersion, commands)
+
+                if (analysisInterval != NOT_ANALYSING) {
+                    sendAnalyzeCommand()
+                }
+            }
+        }
+    }
+
+    private fun sendSyncCommand(command: String, commands: MutableList<SyncCommand>) {
+        commands.add(SyncCommand(command, engine.sendCommand(command)))
+    }
+
+    /*
+        Runs on the engine reader thread once every reply has arrived. If the engine has
+        exited, the replies complete exceptionally and there is nothing left to rebuild.
+     */
+    private fun checkSyncReplies(node: GameNode, mode: SyncMode, version: Long, commands: List<SyncCommand>) {
+        val replies = commands.map { it.reply }.toTypedArray()
+        CompletableFuture.allOf(*replies).thenRun {
+            val rejected = commands.firstOrNull { !it.reply.join().isSuccess } ?: return@thenRun
+
+            synchronized(syncLock) {
+                // Rebuilding is only useful while the engine has not moved on to another node
+                if (version == positionVersion && mode != SyncMode.PLACE_POSITION) {
+                    val fallbackMode = if (mode == SyncMode.INCREMENTAL) SyncMode.REPLAY else SyncMode.PLACE_POSITION
+                    synchronizeTo(node, fallbackMode)
+                }
+            }
+            syncErrorHook.fireEvent(EngineSyncErrorEvent(node, rejected.command, rejected.reply.join()))
+        }
+    }
+
+    private fun isPlayable(node: GameNode): Boolean {
+        // The primary move is stored as a stone edit of its node
+        val stoneEdits = node.getStoneEdits()
+        return when (node.getType()) {
+            GameNodeType.MOVE_PLAYED -> stoneEdits.size == 1 && stoneEdits.contains(node.getPrimaryMove())
+            GameNodeType.PASS -> stoneEdits.isEmpty()
+            else -> false
+        }
+    }
+
+    private fun placeStones(node: GameNode, commands: MutableList<SyncCommand>) {
+        val position = model.getGameState(node).boardPosition
+        // Stones of a legal position can be placed in any order without capturing
+        for (index in 0 until model.getIntersectionCount()) {
+            val color = position.getStoneColorAt(index)
+            if (color != StoneColor.NONE) {
+                val vertex = GtpCoordinates.toVertex(index % model.boardWidth, index / model.boardWidth, model.boardHeight)
+                sendSyncCommand("play ${getColorName(color)} $vertex", commands)
+            }
+        }
+    }
+
+    private fun playMoves(path: List<GameNode>, fromIndex: Int, commands: MutableList<SyncCommand>) {
+        for (i in fromIndex until path.size) {
+            val node = path[i]
+            val move = node.getPrimaryMove()
+            if (move != null) {
+                val vertex = GtpCoordinates.toVertex(move.x, move.y, model.boardHeight)
+                sendSyncCommand("play ${getColorName(move.color)} $vertex", commands)
+            } else {
+                sendSyncCommand("play ${getColorName(getTurnColor(path, i))} ${GtpCoordinates.PASS}", commands)
+            }
+        }
+    }
+
+    private fun sendAnalyzeCommand() {
+        val version = positionVersion
+        val node = syncedPath.last()
+        val nextTurn = getTurnColor(syncedPath, syncedPath.size)
+
+        engine.sendStreamingCommand("kata-analyze ${getColorName(nextTurn)} $analysisInterval") { line ->
+            if (version == positionVersion) {
+                val infos = AnalysisInfo.parseLine(line)
+                if (infos.isNotEmpty()) {
+                    val event = AnalysisEvent(node, nextTurn, infos, version)
+                    analysisCache?.let { cache -> event.toPositionAnalysis()?.let { cache.put(node, nextTurn, it) } }
+                    analysisHook.fireEvent(event)
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Color of the player to move at the given index of the path, following the
+     * turn order of the rules.
+     */
+    private fun getTurnColor(path: List<GameNode>, index: Int): StoneColor {
+        val turnsPlayed = (0 until index).count {
+            val type = path[it].getType()
+            type == GameNodeType.MOVE_PLAYED || type == GameNodeType.PASS
+        }
+        return model.rules.getStoneColorForTurn(turnsPlayed, model.info.getHandicapCount() > 0)
+    }
+
+    private fun getColorName(color: StoneColor): String = if (color == StoneColor.BLACK) "B" else "W"
+
+    /**
+     * How [synchronizeTo] moves the engine board to a node.
+     */
+    private enum class SyncMode {
+        /** Undo and play only the moves that differ from the node on the engine board. */
+        INCREMENTAL,
+        /** Clear the board and play the whole path from the last node with stone edits. */
+        REPLAY,
+        /** Clear the board and place the stones of the node, without its history. */
+        PLACE_POSITION
+    }
+
+    private class SyncCommand(val command: String, val reply: CompletableFuture<GtpResponse>)
+
+    companion object {
+        const val DEFAULT_ANALYSIS_INTERVAL = 50
+        private const val NOT_ANALYSING = -1
+    }
+}
@@ -0,0 +1,16 @@
+package codes.nibby.yi.models.engine
+
+import codes.nibby.yi.models.GameNode
+
+/**
+ * Raised when the engine rejects a command that moves its board to a node, see
+ * [EngineAnalysisSession.onSyncError]. The session rebuilds the engine board on its own
+ * after the error, so the event is only for reporting it.
+ *
+ * @param node Node the engine was being moved to.
+ * @param command Command the engine rejected.
+ * @param response Error reply of the engine.
+ */
+class EngineSyncErrorEvent internal constructor(val node: GameNode,
+                                                val command: String,
+                                                val response: GtpResponse)
@@ -0,0 +1,38 @@
+package codes.nibby.yi.models.engine
+
+/**
+ * Converts between board co-ordinates and GTP vertices such as "D4". GTP columns are
+ * letters from the left, skipping 'I', and rows are numbered from the bottom.
+ */
+internal object GtpCoordinates {
+
+    private const val COLUMNS = "ABCDEFGHJKLMNOPQRSTUVWXYZ"
+    const val PASS = "pass"
+
+    /** Largest board dimension that has a GTP vertex for every column. */
+    const val MAX_BOARD_SIZE = 25
+
+    fun toVertex(x: Int, y: Int, boardHeight: Int): String {
+        if (x < 0 || x >= COLUMNS.length || y < 0 || y >= boardHeight) {
+            throw IllegalArgumentException("No GTP vertex for ($x, $y) on a board of height $boardHeight")
+        }
+        return "${COLUMNS[x]}${boardHeight - y}"
+    }
+
+    /**
+     * @return Position of the vertex in the one variable form, or -1 if the vertex is a
+     * pass or is not on the board.
+     */
+    fun toPosition(vertex: String, boardWidth: Int, boardHeight: Int): Int {
+        if (vertex.length < 2) {
+            return -1
+        }
+        val x = COLUMNS.indexOf(vertex[0].uppercaseChar())
+        val row = vertex.substring(1).toIntOrNull() ?: return -1
+        val y = boardHeight - row
+        if (x < 0 || x >= boardWidth || y < 0 || y >= boardHeight) {
+            return -1
+        }
+        return x + y * boardWidth
+    }
+}
@@ -0,0 +1,256 @@
+package codes.nibby.yi.models.engine
+
+import java.io.BufferedReader
+import java.io.BufferedWriter
+import java.io.IOException
+import java.io.InputStream
+import java.io.InputStreamReader
+import java.io.OutputStream
+import java.io.OutputStreamWriter
+import java.nio.charset.StandardCharsets
+import java.nio.file.Path
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.function.Consumer
+
+/**
+ * A connection to an engine speaking the Go Text Protocol (GTP).
+ *
+ * Commands are pipelined: [sendCommand] queues the command for writing and returns
+ * immediately, so the calling thread (usually the UI thread) never waits on the engine.
+ * Each command is sent with a numeric id and its reply completes the returned future on
+ * the reader thread. GTP engines reply to commands in the order they were received, so
+ * any number of commands may be in flight at once.
+ *
+ * Commands that stream output until the next command is received, such as
+ * `kata-analyze`, are sent with [sendStreamingCommand]. Each line of output is handed to
+ * a listener on the reader thread as it arrives.
+ *
+ * @param input Output of the engine, usually the standard output of its process.
+ * @param output Input of the engine, usually the standard input of its process.
+ * @param process Engine process, which is destroyed when the engine is closed. May be null
+ * if the engine is not a child process.
+ */
+class GtpEngine @JvmOverloads constructor(input: InputStream,
+                                          output: OutputStream,
+                                          private val process: Process? = null) : AutoCloseable {
+
+    private val reader = BufferedReader(InputStreamReader(input, StandardCharsets.UTF_8))
+    private val writer = BufferedWriter(OutputStreamWriter(output, StandardCharsets.UTF_8))
+
+    // Commands that have been queued but whose reply has not been fully read, in the
+    // order they were written.
+    private val pendingCommands = ConcurrentLinkedQueue<PendingCommand>()
+    private val sendLock = Any()
+    private var nextId = 1
+
+    private val writeExecutor: ExecutorService = Executors.newSingleThreadExecutor { runnable ->
+        Thread(runnable, "GTP writer").apply { isDaemon = true }
+    }
+    private val readerThread = Thread(::readReplies, "GTP reader").apply { isDaemon = true }
+
+    @Volatile
+    private var closedCause: GtpEngineException? = null
+
+    init {
+        readerThread.start()
+    }
+
+    /**
+     * @return true if the engine can still accept commands.
+     */
+    fun isAlive(): Boolean = closedCause == null
+
+    /**
+     * Queues a command to be sent to the engine.
+     *
+     * @param command Command and its arguments, without an id.
+     * @return Completes with the reply of the engine, or exceptionally with a
+     * [GtpEngineException] if the engine exits before replying. An error reply from the
+     * engine completes normally with [GtpResponse.isSuccess] set to false.
+     */
+    fun sendCommand(command: String): CompletableFuture<GtpResponse> {
+        return send(command, null)
+    }
+
+    /**
+     * Queues a command whose output is streamed until the engine receives another
+     * command, such as `kata-analyze`.
+     *
+     * @param lineListener Receives each line of output after the initial reply, on the
+     * reader thread.
+     * @return Completes with the initial reply once the stream has ended.
+     */
+    fun sendStreamingCommand(command: String, lineListener: Consumer<String>): CompletableFuture<GtpResponse> {
+        return send(command, lineListener)
+    }
+
+    private fun send(command: String, lineListener: Consumer<String>?): CompletableFuture<GtpResponse> {
+        if (command.isBlank() || command.contains('\n')) {
+            throw IllegalArgumentException("Command must be a single non-empty line: '$command'")
+        }
+
+        val future = CompletableFuture<GtpResponse>()
+        synchronized(sendLock) {
+            closedCause?.let {
+                future.completeExceptionally(it)
+                return future
+            }
+
+            val id = nextId++
+            val pendingCommand = PendingCommand(id, command, future, lineListener)
+            pendingCommands.add(pendingCommand)
+
+            // The writer is single threaded, so commands are written in the order they
+            // were added to pendingCommands.
+            writeExecutor.execute {
+                try {
+                    writer.write("$id $command\n")
+                    writer.flush()
+                } catch (e: IOException) {
+                    shutdown(GtpEngineException("Failed to send command to engine: $command", e))
+                }
+            }
+        }
+        return future
+    }
+
+    private fun readReplies() {
+        var currentCommand: PendingCommand? = null
+        var replyId = 0
+        var replySuccess = false
+        val replyText = StringBuilder()
+
+        try {
+            while (true) {
+                val line = reader.readLine() ?: break
+
+                if (currentCommand == null) {
+                    if (line.isBlank() || line.startsWith("#")) {
+                        continue
+                    }
+                    if (line[0] != '=' && line[0] != '?') {
+                        continue // Diagnostic output some engines print outside of replies
+                    }
+
+                    currentCommand = pendingCommands.poll()
+                            ?: throw GtpEngineException("Received a reply without a command: $line")
+                    replySuccess = line[0] == '='
+
+                    val idEnd = line.indexOfFirst { it.isWhitespace() }.let { if (it < 0) line.length else it }
+                    replyId = line.substring(1, idEnd).toIntOrNull() ?: currentCommand.id
+                    if (replyId != currentCommand.id) {
+                        throw GtpEngineException("Expected reply to command ${currentCommand.id} but got $line")
+                    }
+                    replyText.setLength(0)
+                    replyText.append(line.substring(idEnd).trim())
+                } else if (line.isEmpty()) {
+                    // An empty line ends the reply, including streamed output
+                    currentCommand.future.complete(GtpResponse(replyId, replySuccess, replyText.toString()))
+                    currentCommand = null
+                } else {
+                    val lineListener = currentCommand.lineListener
+                    if (lineListener != null && replySuccess) {
+                        notifyLineListener(lineListener, line)
+                    } else {
+                        if (replyText.isNotEmpty()) {
+                            replyText.append('\n')
+                        }
+                        replyText.append(line)
+                    }
+                }
+            }
+            shutdown(GtpEngineException("Engine closed its output"))
+        } catch (e: IOException) {
+            shutdown(GtpEngineException("Failed to read from engine", e))
+        } catch (e: GtpEngineException) {
+            shutdown(e)
+        } catch (e: RuntimeException) {
+            shutdown(GtpEngineException("Failed to handle engine output", e))
+        } finally {
+            currentCommand?.future?.completeExceptionally(closedCause)
+        }
+    }
+
+    /**
+     * A failing listener is a bug in the caller, not in the engine, so it must not end the
+     * reader loop and shut the engine down with it.
+     */
+    private fun notifyLineListener(lineListener: Consumer<String>, line: String) {
+        try {
+            lineListener.accept(line)
+        } catch (e: RuntimeException) {
+            e.printStackTrace()
+        }
+    }
+
+    /**
+     * Asks the engine to quit, then releases the streams and the engine process. Commands
+     * that have not been replied to complete exceptionally.
+     */
+    override fun close() {
+        if (isAlive()) {
+            try {
+                sendCommand("quit").get(QUIT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
+            } catch (e: Exception) {
+                // The engine is being shut down regardless
+            }
+        }
+        shutdown(GtpEngineException("Engine has been closed"))
+        process?.let {
+            if (!it.waitFor(QUIT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                it.destroy()
+            }
+        }
+    }
+
+    private fun shutdown(cause: GtpEngineException) {
+        synchronized(sendLock) {
+            if (closedCause == null) {
+                closedCause = cause
+            }
+        }
+        writeExecutor.shutdown()
+        try {
+            writer.close()
+        } catch (e: IOException) {
+            // Already closed by the engine
+        }
+
+        while (true) {
+            val command = pendingCommands.poll() ?: break
+            command.future.completeExceptionally(closedCause)
+        }
+    }
+
+    private class PendingCommand(val id: Int,
+                                 val command: String,
+                                 val future: CompletableFuture<GtpResponse>,
+                                 val lineListener: Consumer<String>?)
+
+    companion object {
+        private const val QUIT_TIMEOUT_MILLIS = 2000L
+
+        /**
+         * Starts an engine process and connects to it. Anything the engine writes to its
+         * standard error is discarded.
+         *
+         * @param command Executable of the engine followed by its arguments.
+         * @param workingDirectory Directory to start the engine in, or null for the
+         * current directory.
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun launch(command: List<String>, workingDirectory: Path? = null): GtpEngine {
+            val processBuilder = ProcessBuilder(command)
+                    .redirectError(ProcessBuilder.Redirect.DISCARD)
+            workingDirectory?.let { processBuilder.directory(it.toFile()) }
+
+            val process = processBuilder.start()
+            return GtpEngine(process.inputStream, process.outputStream, process)
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package codes.nibby.yi.models.engine
+
+/**
+ * Thrown when a GTP engine can no longer be communicated with, usually because the engine
+ * process has exited.
+ */
+class GtpEngineException(message: String, cause: Throwable?) : Exception(message, cause) {
+
+    constructor(message: String) : this(message, null)
+
+}
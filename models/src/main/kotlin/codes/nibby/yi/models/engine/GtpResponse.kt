@@ -0,0 +1,16 @@
+package codes.nibby.yi.models.engine
+
+/**
+ * The reply of a GTP engine to one command.
+ *
+ * @param id Id the command was sent with.
+ * @param isSuccess true if the engine replied with '=', false if it replied with '?'.
+ * @param text Text of the reply without the leading status and id. Replies spanning
+ * multiple lines are joined with '\n'.
+ */
+class GtpResponse(val id: Int, val isSuccess: Boolean, val text: String) {
+
+    override fun toString(): String {
+        return (if (isSuccess) "=" else "?") + id + if (text.isEmpty()) "" else " $text"
+    }
+}
@@ -0,0 +1,24 @@
+package codes.nibby.yi.models.rules
+
+class AgaRulesHandler : GameRulesHandler() {
+
+    override fun getDefaultKomi(handicap: Int): Float {
+        return when {
+            handicap >= 1 -> 0.5f
+            else -> 7.5f
+        }
+    }
+
+    override fun allowSuicideMoves(): Boolean {
+        return false
+    }
+
+    override fun getInternalName(): String {
+        return "AGA"
+    }
+
+    override fun getRepetitionPolicy(): RepetitionPolicy {
+        return RepetitionPolicy.SITUATIONAL_SUPERKO
+    }
+
+}
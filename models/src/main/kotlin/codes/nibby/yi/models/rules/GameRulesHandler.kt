@@ -1,6 +1,8 @@
 package codes.nibby.yi.models.rules
 
 import codes.nibby.yi.models.GameModelInfo
+import codes.nibby.yi.models.GameState
+import codes.nibby.yi.models.Stone
 import codes.nibby.yi.models.StoneColor
 
 abstract class GameRulesHandler {
@@ -39,4 +41,32 @@ abstract class GameRulesHandler {
      */
     abstract fun getInternalName(): String
 
+    /**
+     * Returns how points are counted under this ruleset. Defaults to [ScoringMethod.AREA].
+     */
+    open fun getScoringMethod(): ScoringMethod = ScoringMethod.AREA
+
+    /**
+     * Returns which repeated board positions are forbidden under this ruleset. Defaults to
+     * [RepetitionPolicy.POSITIONAL_SUPERKO].
+     */
+    open fun getRepetitionPolicy(): RepetitionPolicy = RepetitionPolicy.POSITIONAL_SUPERKO
+
+    /**
+     * Scores the board position of a game state using the [scoring method][getScoringMethod]
+     * of this ruleset.
+     *
+     * This allocates a new [ScoreCalculator] on each call. When scoring many positions,
+     * re-use a calculator instead.
+     *
+     * @param state Game state to score.
+     * @param komi Points given to white, usually [GameModelInfo.getKomi].
+     * @param deadStones Stones on the board to be treated as dead.
+     */
+    fun computeScore(state: GameState, komi: Float, deadStones: Collection<Stone> = emptyList()): GameScore {
+        val position = state.boardPosition
+        val calculator = ScoreCalculator(position.boardWidth, position.boardHeight)
+        return calculator.score(state, getScoringMethod(), komi, deadStones)
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,85 @@
+package codes.nibby.yi.models.rules
+
+import codes.nibby.yi.models.StoneColor
+import kotlin.math.abs
+
+/**
+ * The outcome of counting a board position. Dead stones have already been removed from
+ * the board counts and added to the opponent's prisoners.
+ *
+ * @param scoringMethod Determines which counts contribute to each player's score.
+ * @param komi Points given to white.
+ * @param blackStones Number of live black stones on the board.
+ * @param whiteStones Number of live white stones on the board.
+ * @param blackTerritory Number of empty intersections surrounded only by black stones.
+ * @param whiteTerritory Number of empty intersections surrounded only by white stones.
+ * @param neutralPoints Number of empty intersections that belong to neither player.
+ * @param blackPrisoners Number of white stones captured by black, including dead stones.
+ * @param whitePrisoners Number of black stones captured by white, including dead stones.
+ */
+class GameScore(val scoringMethod: ScoringMethod,
+                val komi: Float,
+                val blackStones: Int,
+                val whiteStones: Int,
+                val blackTerritory: Int,
+                val whiteTerritory: Int,
+                val neutralPoints: Int,
+                val blackPrisoners: Int,
+                val whitePrisoners: Int) {
+
+    /**
+     * @return Total points scored by black.
+     */
+    fun getBlackScore(): Float {
+        return when (scoringMethod) {
+            ScoringMethod.AREA -> (blackStones + blackTerritory).toFloat()
+            ScoringMethod.TERRITORY -> (blackTerritory + blackPrisoners).toFloat()
+        }
+    }
+
+    /**
+     * @return Total points scored by white, including komi.
+     */
+    fun getWhiteScore(): Float {
+        return when (scoringMethod) {
+            ScoringMethod.AREA -> whiteStones + whiteTerritory + komi
+            ScoringMethod.TERRITORY -> whiteTerritory + whitePrisoners + komi
+        }
+    }
+
+    /**
+     * @return Black score minus white score. Positive values mean black is ahead.
+     */
+    fun getMargin(): Float = getBlackScore() - getWhiteScore()
+
+    /**
+     * @return Color of the player with the higher score, or [StoneColor.NONE] if the
+     * scores are tied.
+     */
+    fun getWinner(): StoneColor {
+        val margin = getMargin()
+        return when {
+            margin > 0 -> StoneColor.BLACK
+            margin < 0 -> StoneColor.WHITE
+            else -> StoneColor.NONE
+        }
+    }
+
+    /**
+     * @return The result in SGF notation, i.e. "B+3.5", "W+0.5" or "0" for a draw.
+     */
+    fun toResultString(): String {
+        val margin = abs(getMargin())
+        val marginText = if (margin % 1f == 0f) margin.toInt().toString() else margin.toString()
+
+        return when (getWinner()) {
+            StoneColor.BLACK -> "B+$marginText"
+            StoneColor.WHITE -> "W+$marginText"
+            StoneColor.NONE -> "0"
+        }
+    }
+
+    override fun toString(): String {
+        return "$scoringMethod black: ${getBlackScore()} white: ${getWhiteScore()} (${toResultString()})"
+    }
+}
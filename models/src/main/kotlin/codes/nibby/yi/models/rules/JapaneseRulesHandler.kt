@@ -0,0 +1,28 @@
+package codes.nibby.yi.models.rules
+
+class JapaneseRulesHandler : GameRulesHandler() {
+
+    override fun getDefaultKomi(handicap: Int): Float {
+        return when {
+            handicap >= 1 -> 0.5f
+            else -> 6.5f
+        }
+    }
+
+    override fun allowSuicideMoves(): Boolean {
+        return false
+    }
+
+    override fun getInternalName(): String {
+        return "Japanese"
+    }
+
+    override fun getScoringMethod(): ScoringMethod {
+        return ScoringMethod.TERRITORY
+    }
+
+    override fun getRepetitionPolicy(): RepetitionPolicy {
+        return RepetitionPolicy.SIMPLE_KO
+    }
+
+}
@@ -17,4 +17,8 @@ class NewZealandRulesHandler : GameRulesHandler() {
         return "New Zealand"
     }
 
+    override fun getRepetitionPolicy(): RepetitionPolicy {
+        return RepetitionPolicy.SITUATIONAL_SUPERKO
+    }
+
 }
\ No newline at end of file
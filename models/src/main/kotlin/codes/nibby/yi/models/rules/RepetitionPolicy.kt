@@ -0,0 +1,24 @@
+package codes.nibby.yi.models.rules
+
+/**
+ * Describes which repeated board positions a ruleset forbids.
+ */
+enum class RepetitionPolicy {
+
+    /**
+     * Only the immediate recapture of a ko is forbidden. Longer cycles such as triple ko
+     * are allowed to be played.
+     */
+    SIMPLE_KO,
+
+    /**
+     * A move may not recreate any board position that has occurred earlier in the game.
+     */
+    POSITIONAL_SUPERKO,
+
+    /**
+     * A move may not recreate an earlier board position that had the same player to move
+     * next. The same arrangement of stones with the other player to move is allowed.
+     */
+    SITUATIONAL_SUPERKO
+}
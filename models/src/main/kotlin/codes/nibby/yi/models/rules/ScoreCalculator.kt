@@ -0,0 +1,170 @@
+package codes.nibby.yi.models.rules
+
+import codes.nibby.yi.models.GamePosition
+import codes.nibby.yi.models.GameState
+import codes.nibby.yi.models.Stone
+import codes.nibby.yi.models.StoneColor
+
+/**
+ * Counts stones and territory on a board using a single flood fill over each empty region,
+ * so the cost of scoring is linear in the number of intersections.
+ *
+ * All scratch space is allocated once per calculator, which makes it cheap to score a large
+ * number of positions of the same size, e.g. when verifying game results in bulk. For the
+ * same reason, instances are not thread-safe. Use one calculator per thread.
+ *
+ * For one-off scoring, [GameRulesHandler.computeScore] is more convenient.
+ */
+class ScoreCalculator(val boardWidth: Int, val boardHeight: Int) {
+
+    init {
+        if (boardWidth < 1 || boardHeight < 1)
+            throw IllegalArgumentException("Invalid board dimensions: $boardWidth x $boardHeight")
+    }
+
+    private val intersectionCount = boardWidth * boardHeight
+
+    // Copy of the board being scored with dead stones removed, surrounded by a border of
+    // EDGE so that adjacent intersections can be found without bounds checks. Empty
+    // intersections are overwritten with VISITED once they have been assigned to a region.
+    private val paddedWidth = boardWidth + 2
+    private val workBoard = ByteArray(paddedWidth * (boardHeight + 2))
+    private val fillStack = IntArray(intersectionCount)
+    private val neighbourOffsets = intArrayOf(-paddedWidth, paddedWidth, -1, 1)
+
+    // Buffers used to convert a GameState to the primitive form
+    private val positionBuffer = ByteArray(intersectionCount)
+    private val deadStoneBuffer = BooleanArray(intersectionCount)
+
+    /**
+     * Scores a board position.
+     *
+     * @param board Stone color [index][StoneColor.index] at each intersection, using the
+     * same position layout as [GamePosition.getStoneColorAt]. See [GamePosition.copyStoneIndices].
+     * @param scoringMethod How points are counted.
+     * @param komi Points given to white.
+     * @param prisonersBlack Number of white stones captured by black during the game.
+     * @param prisonersWhite Number of black stones captured by white during the game.
+     * @param deadStones Optional mask of intersections whose stones are dead. Dead stones are
+     * removed before counting and added to the opponent's prisoners.
+     */
+    fun score(board: ByteArray,
+              scoringMethod: ScoringMethod,
+              komi: Float,
+              prisonersBlack: Int = 0,
+              prisonersWhite: Int = 0,
+              deadStones: BooleanArray? = null): GameScore {
+
+        if (board.size < intersectionCount) {
+            throw IllegalArgumentException("Board size ${board.size} is smaller than $boardWidth x $boardHeight")
+        }
+        if (deadStones != null && deadStones.size < intersectionCount) {
+            throw IllegalArgumentException("Dead stone mask size ${deadStones.size} is smaller than $boardWidth x $boardHeight")
+        }
+
+        var blackStones = 0
+        var whiteStones = 0
+        var deadBlackStones = 0
+        var deadWhiteStones = 0
+
+        workBoard.fill(EDGE)
+        for (y in 0 until boardHeight) {
+            var paddedPosition = (y + 1) * paddedWidth + 1
+            for (position in y * boardWidth until (y + 1) * boardWidth) {
+                var color = board[position]
+                if (color != EMPTY && deadStones != null && deadStones[position]) {
+                    if (color == BLACK) deadBlackStones++ else deadWhiteStones++
+                    color = EMPTY
+                } else if (color == BLACK) {
+                    blackStones++
+                } else if (color == WHITE) {
+                    whiteStones++
+                }
+                workBoard[paddedPosition++] = color
+            }
+        }
+
+        var blackTerritory = 0
+        var whiteTerritory = 0
+        var neutralPoints = 0
+
+        for (position in paddedWidth + 1 until workBoard.size - paddedWidth - 1) {
+            if (workBoard[position] != EMPTY) {
+                continue
+            }
+
+            // Each marker has its own bit, so OR-ing everything that borders the region
+            // tells which players surround it.
+            var borderMarkers = 0
+            var regionSize = 0
+            var stackSize = 0
+            fillStack[stackSize++] = position
+            workBoard[position] = VISITED
+
+            while (stackSize > 0) {
+                val current = fillStack[--stackSize]
+                regionSize++
+
+                for (offset in neighbourOffsets) {
+                    val neighbour = current + offset
+                    val marker = workBoard[neighbour]
+                    if (marker == EMPTY) {
+                        workBoard[neighbour] = VISITED
+                        fillStack[stackSize++] = neighbour
+                    } else {
+                        borderMarkers = borderMarkers or marker.toInt()
+                    }
+                }
+            }
+
+            when (borderMarkers and (BLACK.toInt() or WHITE.toInt())) {
+                BLACK.toInt() -> blackTerritory += regionSize
+                WHITE.toInt() -> whiteTerritory += regionSize
+                else -> neutralPoints += regionSize
+            }
+        }
+
+        return GameScore(scoringMethod, komi,
+                blackStones, whiteStones,
+                blackTerritory, whiteTerritory, neutralPoints,
+                prisonersBlack + deadWhiteStones, prisonersWhite + deadBlackStones)
+    }
+
+    /**
+     * Scores the board position of a [GameState], taking into account the prisoners
+     * captured up to that state.
+     *
+     * @param deadStones Stones on the board to be treated as dead. Only the stone
+     * co-ordinates are considered.
+     */
+    fun score(state: GameState,
+              scoringMethod: ScoringMethod,
+              komi: Float,
+              deadStones: Collection<Stone> = emptyList()): GameScore {
+
+        if (state.boardPosition.intersectionState.size != intersectionCount) {
+            throw IllegalArgumentException("Game state board size does not match $boardWidth x $boardHeight")
+        }
+        state.boardPosition.copyStoneIndices(positionBuffer)
+
+        var deadStoneMask: BooleanArray? = null
+        if (deadStones.isNotEmpty()) {
+            deadStoneBuffer.fill(false)
+            deadStones.forEach { deadStoneBuffer[it.getPosition(boardWidth)] = true }
+            deadStoneMask = deadStoneBuffer
+        }
+
+        return score(positionBuffer, scoringMethod, komi, state.prisonersBlack, state.prisonersWhite, deadStoneMask)
+    }
+
+    private companion object {
+        // Same as the StoneColor indices, duplicated as constants for the inner loops
+        const val EMPTY: Byte = 0
+        const val BLACK: Byte = 1
+        const val WHITE: Byte = 2
+
+        // Markers for the work board, each on a bit not used by the stone colors
+        const val EDGE: Byte = 4
+        const val VISITED: Byte = 8
+    }
+}
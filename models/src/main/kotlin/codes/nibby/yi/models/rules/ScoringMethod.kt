@@ -0,0 +1,19 @@
+package codes.nibby.yi.models.rules
+
+/**
+ * Describes how points are counted at the end of a game.
+ */
+enum class ScoringMethod {
+
+    /**
+     * Each player scores the stones they have on the board plus the empty intersections
+     * surrounded only by their stones. Prisoners do not count.
+     */
+    AREA,
+
+    /**
+     * Each player scores the empty intersections surrounded only by their stones plus the
+     * opponent stones they have captured, including dead stones removed at the end.
+     */
+    TERRITORY
+}
@@ -0,0 +1,24 @@
+package codes.nibby.yi.models.rules
+
+class TrompTaylorRulesHandler : GameRulesHandler() {
+
+    override fun getDefaultKomi(handicap: Int): Float {
+        return when {
+            handicap >= 1 -> 0.5f
+            else -> 7.5f
+        }
+    }
+
+    override fun allowSuicideMoves(): Boolean {
+        return true
+    }
+
+    override fun getInternalName(): String {
+        return "Tromp-Taylor"
+    }
+
+    override fun getRepetitionPolicy(): RepetitionPolicy {
+        return RepetitionPolicy.POSITIONAL_SUPERKO
+    }
+
+}
@@ -0,0 +1,151 @@
+package codes.nibby.yi.models
+
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import java.util.*
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class EventHookTest {
+
+    private class TestEventHook : EventHook<Int>()
+
+    @Test
+    fun `inline listener is notified before fireEvent returns`() {
+        val hook = TestEventHook()
+        val received = ArrayList<Int>()
+
+        hook.addListener(object : EventListener<Int> {
+            override fun onEvent(event: Int) {
+                received.add(event)
+            }
+        })
+
+        hook.fireEvent(1)
+
+        Assertions.assertEquals(listOf(1), received)
+    }
+
+    @Test
+    fun `async ordered listener receives every event in order`() {
+        val hook = TestEventHook()
+        val executor = Executors.newFixedThreadPool(4)
+        val received = Collections.synchronizedList(ArrayList<Int>())
+        val eventCount = 1000
+        val allReceived = CountDownLatch(eventCount)
+
+        hook.addListener(object : EventListener<Int> {
+            override fun onEvent(event: Int) {
+                received.add(event)
+                allReceived.countDown()
+            }
+        }, executor, EventDeliveryPolicy.ASYNC_ORDERED)
+
+        for (i in 0 until eventCount) {
+            hook.fireEvent(i)
+        }
+
+        Assertions.assertTrue(allReceived.await(5, TimeUnit.SECONDS), "Not all events delivered")
+        Assertions.assertEquals((0 until eventCount).toList(), received)
+        executor.shutdown()
+    }
+
+    @Test
+    fun `latest only listener always ends with the last event`() {
+        val hook = TestEventHook()
+        val executor = Executors.newSingleThreadExecutor()
+        val received = Collections.synchronizedList(ArrayList<Int>())
+        val lastEvent = 500
+        val lastReceived = CountDownLatch(1)
+
+        hook.addListener(object : EventListener<Int> {
+            override fun onEvent(event: Int) {
+                received.add(event)
+                if (event == lastEvent) {
+                    lastReceived.countDown()
+                }
+            }
+        }, executor, EventDeliveryPolicy.LATEST_ONLY)
+
+        for (i in 0..lastEvent) {
+            hook.fireEvent(i)
+        }
+
+        Assertions.assertTrue(lastReceived.await(5, TimeUnit.SECONDS), "Last event not delivered")
+        executor.shutdown()
+        executor.awaitTermination(5, TimeUnit.SECONDS)
+
+        Assertions.assertEquals(lastEvent, received.last())
+        Assertions.assertTrue(received.size <= lastEvent + 1)
+        // Delivered events must still be in firing order
+        Assertions.assertEquals(received.sorted(), received)
+    }
+
+    @Test
+    fun `removed async listener does not receive pending events`() {
+        val hook = TestEventHook()
+        val executor = Executors.newSingleThreadExecutor()
+        val blockExecutor = CountDownLatch(1)
+        var eventReceived = false
+
+        executor.execute { blockExecutor.await() }
+
+        val listener = object : EventListener<Int> {
+            override fun onEvent(event: Int) {
+                eventReceived = true
+            }
+        }
+
+        hook.addListener(listener, executor, EventDeliveryPolicy.ASYNC_ORDERED)
+        hook.fireEvent(1)
+        hook.removeListener(listener)
+        blockExecutor.countDown()
+
+        executor.shutdown()
+        executor.awaitTermination(5, TimeUnit.SECONDS)
+        Assertions.assertFalse(eventReceived, "Event delivered after listener removal")
+    }
+
+    @Test
+    fun `listener can be added and removed while events are being fired`() {
+        val hook = TestEventHook()
+        var firingError: Throwable? = null
+        val firingThread = Thread {
+            try {
+                for (i in 0 until 10000) {
+                    hook.fireEvent(i)
+                }
+            } catch (e: Throwable) {
+                firingError = e
+            }
+        }
+
+        firingThread.start()
+
+        val listeners = ArrayList<EventListener<Int>>()
+        for (i in 0 until 200) {
+            val listener = object : EventListener<Int> {
+                override fun onEvent(event: Int) { }
+            }
+            listeners.add(listener)
+            hook.addListener(listener)
+        }
+        listeners.forEach { hook.removeListener(it) }
+
+        firingThread.join()
+        Assertions.assertNull(firingError)
+    }
+
+    @Test
+    fun `async policy without executor is rejected`() {
+        val hook = TestEventHook()
+        val listener = object : EventListener<Int> {
+            override fun onEvent(event: Int) { }
+        }
+
+        Assertions.assertThrows(IllegalArgumentException::class.java) {
+            hook.addListener(listener, null, EventDeliveryPolicy.ASYNC_ORDERED)
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package codes.nibby.yi.models
+
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import java.util.*
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicInteger
+
+class GameModelConcurrencyTest {
+
+    @Test
+    fun `concurrent readers observe consistent positions while the tree is edited`() {
+        val model = GameModel(9, 9, StandardGameRules.CHINESE)
+        val writerFinished = AtomicBoolean(false)
+        val errors = CopyOnWriteArrayList<Throwable>()
+        val positionsRead = AtomicInteger(0)
+
+        val readers = (0 until 4).map { readerIndex ->
+            Thread({
+                val random = Random(readerIndex.toLong())
+                try {
+                    while (!writerFinished.get()) {
+                        model.withReadLock {
+                            val nodes = ArrayList<GameNode>()
+                            GameTree.traverseSubtree(model.getRootNode()) { nodes.add(it) }
+
+                            val node = nodes[random.nextInt(nodes.size)]
+                            assertPositionContainsPrimaryMove(model, node)
+                            assertPositionContainsPrimaryMove(model, model.currentNode)
+                        }
+                        positionsRead.incrementAndGet()
+                    }
+                } catch (e: Throwable) {
+                    errors.add(e)
+                }
+            }, "reader-$readerIndex")
+        }
+
+        readers.forEach { it.start() }
+
+        val random = Random(1234L)
+        try {
+            for (i in 0 until 3000) {
+                val action = random.nextInt(20)
+                when {
+                    action == 0 && model.currentNode.moveNumber > 5 -> {
+                        model.editor.removeNodeSubtree(model.currentNode.parent!!)
+                    }
+                    action < 3 -> model.toPreviousNode(random.nextInt(4) + 1)
+                    else -> model.editor.addMove(random.nextInt(9), random.nextInt(9))
+                }
+            }
+        } finally {
+            writerFinished.set(true)
+            readers.forEach { it.join() }
+        }
+
+        if (errors.isNotEmpty()) {
+            throw AssertionError("Reader failed: ${errors[0]}", errors[0])
+        }
+        Assertions.assertTrue(positionsRead.get() > 0, "Readers did not run")
+    }
+
+    @Test
+    fun `editing while holding the read lock is rejected`() {
+        val model = GameModel(3, 3, StandardGameRules.CHINESE)
+
+        Assertions.assertThrows(IllegalStateException::class.java) {
+            model.withReadLock {
+                model.editor.addMove(0, 0)
+            }
+        }
+    }
+
+    @Test
+    fun `read lock can be acquired while holding the write lock`() {
+        val model = GameModel(3, 3, StandardGameRules.CHINESE)
+
+        val state = model.withWriteLock {
+            model.editor.addMove(0, 0)
+            model.withReadLock { model.getCurrentGameState() }
+        }
+
+        Assertions.assertEquals(StoneColor.BLACK, state.boardPosition.getStoneColorAt(0, 0))
+    }
+
+    @Test
+    fun `listeners are notified after the write lock is released`() {
+        val model = GameModel(3, 3, StandardGameRules.CHINESE)
+        val readerFinished = AtomicBoolean(false)
+
+        // Waiting on another thread that reads the model would deadlock if the write lock were still held
+        model.onNodeAdd().addListener(object : EventListener<NodeEvent> {
+            override fun onEvent(event: NodeEvent) {
+                val reader = Thread { model.withReadLock { model.getGameState(event.node) } }
+                reader.start()
+                reader.join(TimeUnit.SECONDS.toMillis(5))
+                readerFinished.set(!reader.isAlive)
+            }
+        })
+
+        model.editor.addMove(0, 0)
+
+        Assertions.assertTrue(readerFinished.get(), "Listener was notified while the write lock was held")
+    }
+
+    @Test
+    fun `events raised inside withWriteLock are delivered after the outermost lock is released`() {
+        val model = GameModel(3, 3, StandardGameRules.CHINESE)
+        val nodesSeenByListener = ArrayList<Int>()
+
+        model.onNodeAdd().addListener(object : EventListener<NodeEvent> {
+            override fun onEvent(event: NodeEvent) {
+                nodesSeenByListener.add(event.node.moveNumber)
+            }
+        })
+
+        model.withWriteLock {
+            model.editor.addMove(0, 0)
+            model.editor.addMove(1, 0)
+            Assertions.assertTrue(nodesSeenByListener.isEmpty(), "Listener notified before the lock was released")
+        }
+
+        Assertions.assertEquals(listOf(1, 2), nodesSeenByListener)
+    }
+
+    @Test
+    fun `failing listener does not keep later events from being delivered`() {
+        val model = GameModel(3, 3, StandardGameRules.CHINESE)
+        val nodesSeenByListener = ArrayList<Int>()
+
+        model.onNodeAdd().addListener(object : EventListener<NodeEvent> {
+            override fun onEvent(event: NodeEvent) {
+                nodesSeenByListener.add(event.node.moveNumber)
+                throw IllegalStateException("Listener failed on move ${event.node.moveNumber}")
+            }
+        })
+
+        val error = Assertions.assertThrows(IllegalStateException::class.java) {
+            model.withWriteLock {
+                model.editor.addMove(0, 0)
+                model.editor.addMove(1, 0)
+            }
+        }
+
+        Assertions.assertEquals(listOf(1, 2), nodesSeenByListener)
+        Assertions.assertEquals("Listener failed on move 1", error.message)
+        Assertions.assertEquals("Listener failed on move 2", error.suppressed.single().message)
+    }
+
+    private fun assertPositionContainsPrimaryMove(model: GameModel, node: GameNode) {
+        val primaryMove = node.getPrimaryMove() ?: return
+        val position = model.getGameState(node).boardPosition
+        val color = position.getStoneColorAt(primaryMove.x, primaryMove.y)
+
+        Assertions.assertEquals(primaryMove.color, color,
+                "Move ${node.moveNumber} at (${primaryMove.x}, ${primaryMove.y}) missing from position")
+    }
+}
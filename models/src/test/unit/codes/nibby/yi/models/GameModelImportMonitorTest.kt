@@ -0,0 +1,52 @@
+package codes.nibby.yi.models
+
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import java.nio.file.Files
+import java.nio.file.Path
+import java.util.concurrent.CancellationException
+
+class GameModelImportMonitorTest {
+
+    @Test
+    fun `monitor counts every byte of the imported file`() {
+        val file = copyResourceToTempFile("/sgf/1000_nodes.sgf")
+        try {
+            val monitor = GameModelImportMonitor()
+            Assertions.assertEquals(-1.0, monitor.getProgress())
+
+            val model = GameModelImporter.fromFile(file, monitor)
+
+            Assertions.assertEquals(Files.size(file), monitor.totalBytes)
+            Assertions.assertEquals(Files.size(file), monitor.bytesRead)
+            Assertions.assertEquals(1.0, monitor.getProgress())
+            Assertions.assertTrue(model.getRootNode().getChildNodes().isNotEmpty())
+        } finally {
+            Files.delete(file)
+        }
+    }
+
+    @Test
+    fun `cancelled import stops reading the file`() {
+        val file = copyResourceToTempFile("/sgf/1000_nodes.sgf")
+        try {
+            val monitor = GameModelImportMonitor()
+            monitor.cancel()
+
+            Assertions.assertThrows(CancellationException::class.java) {
+                GameModelImporter.fromFile(file, monitor)
+            }
+            Assertions.assertEquals(0L, monitor.bytesRead)
+        } finally {
+            Files.delete(file)
+        }
+    }
+
+    private fun copyResourceToTempFile(resource: String): Path {
+        val file = Files.createTempFile("yi-import", ".sgf")
+        this::class.java.getResourceAsStream(resource)!!.use { input ->
+            Files.newOutputStream(file).use { input.copyTo(it) }
+        }
+        return file
+    }
+}
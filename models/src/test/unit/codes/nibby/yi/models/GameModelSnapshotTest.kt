@@ -0,0 +1,196 @@
+package codes.nibby.yi.models
+
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.atomic.AtomicBoolean
+
+class GameModelSnapshotTest {
+
+    @Test
+    fun `snapshot does not observe moves played afterwards`() {
+        val model = GameModel(9, 9, StandardGameRules.CHINESE)
+        model.beginMoveSequence()
+                .playMove(0, 0)
+                .playMove(1, 1)
+
+        val snapshot = model.snapshot()
+
+        model.beginMoveSequence()
+                .playMove(2, 2)
+                .playMove(3, 3)
+        model.toPreviousNode(3)
+        model.editor.addMove(4, 4)
+
+        Assertions.assertEquals(2, snapshot.currentNode.moveNumber)
+        Assertions.assertTrue(snapshot.currentNode.getChildNodes().isEmpty())
+        Assertions.assertEquals(1, snapshot.rootNode.getChildNodes().size)
+        Assertions.assertEquals(1, snapshot.rootNode.getChildNodeInMainBranch()!!.getChildNodes().size)
+
+        val position = snapshot.getGameState(snapshot.currentNode).boardPosition
+        Assertions.assertEquals(StoneColor.BLACK, position.getStoneColorAt(0, 0))
+        Assertions.assertEquals(StoneColor.WHITE, position.getStoneColorAt(1, 1))
+        Assertions.assertEquals(StoneColor.NONE, position.getStoneColorAt(2, 2))
+        Assertions.assertEquals(StoneColor.BLACK, snapshot.getNextTurnStoneColor(snapshot.currentNode))
+    }
+
+    @Test
+    fun `snapshot does not observe node data edits or removals`() {
+        val model = GameModel(9, 9, StandardGameRules.CHINESE)
+        model.beginMoveSequence().playMove(0, 0).playMove(1, 1)
+        val firstMove = model.getRootNode().getChildNodeInMainBranch()!!
+        model.editor.setComment(firstMove, "Before")
+
+        val snapshot = model.snapshot()
+
+        model.editor.setComment(firstMove, "After")
+        model.editor.addAnnotations(firstMove, listOf(Annotation.Triangle(2, 2)))
+        model.editor.removeNodeSubtree(firstMove)
+
+        val snapshotFirstMove = snapshot.rootNode.getChildNodes()[0]
+        Assertions.assertEquals(firstMove, snapshotFirstMove.gameNode)
+        Assertions.assertEquals("Before", snapshotFirstMove.getComments())
+        Assertions.assertTrue(snapshotFirstMove.getAnnotations().isEmpty())
+        Assertions.assertEquals(1, snapshotFirstMove.getChildNodes().size)
+        Assertions.assertEquals(snapshot.rootNode, snapshotFirstMove.parent)
+
+        Assertions.assertTrue(model.getRootNode().getChildNodes().isEmpty())
+        Assertions.assertEquals("After", firstMove.getComments())
+    }
+
+    @Test
+    fun `only edited nodes keep an older version for the snapshot`() {
+        val model = GameModel(9, 9, StandardGameRules.CHINESE)
+        val moves = model.beginMoveSequence()
+        for (i in 0 until 20) {
+            moves.playMove(i % 9, i / 9)
+        }
+
+        val snapshot = model.snapshot()
+        val editedNode = model.currentNode.parent!!
+        model.editor.setComment(editedNode, "Edited")
+
+        val changedNodes = ArrayList<GameNode>()
+        GameTree.traverseSubtree(model.getRootNode()) { node ->
+            if (node.getVersion(snapshot.epoch) !== node.getVersion(Long.MAX_VALUE)) {
+                changedNodes.add(node)
+            }
+        }
+
+        Assertions.assertEquals(listOf(editedNode), changedNodes)
+    }
+
+    @Test
+    fun `snapshot can be read by another thread while the model is edited`() {
+        val model = GameModel(9, 9, StandardGameRules.CHINESE)
+        val moves = model.beginMoveSequence()
+        for (i in 0 until 30) {
+            moves.playMove(i % 9, i / 9)
+        }
+
+        val snapshot = model.snapshot()
+        val expectedHistory = snapshot.currentNode.getMoveHistory().map { it.getStateHash() }
+        val writerFinished = AtomicBoolean(false)
+        val errors = CopyOnWriteArrayList<Throwable>()
+
+        val reader = Thread {
+            try {
+                while (!writerFinished.get()) {
+                    val history = snapshot.currentNode.getMoveHistory()
+                    Assertions.assertEquals(expectedHistory, history.map { it.getStateHash() })
+                    Assertions.assertEquals(1, snapshot.rootNode.getChildNodes().size)
+                    snapshot.getGameState(snapshot.currentNode)
+                }
+            } catch (e: Throwable) {
+                errors.add(e)
+            }
+        }
+        reader.start()
+
+        try {
+            for (i in 0 until 500) {
+                model.toPreviousNode(i % 7)
+                model.editor.addMove((i * 5) % 9, (i * 7) % 9)
+                model.editor.setComment(model.currentNode, "Comment $i")
+                if (i % 50 == 0) {
+                    model.editor.removeNodeSubtree(model.getRootNode().getChildNodes().last())
+                }
+            }
+        } finally {
+            writerFinished.set(true)
+            reader.join()
+        }
+
+        if (errors.isNotEmpty()) {
+            throw AssertionError("Snapshot reader failed: ${errors[0]}", errors[0])
+        }
+    }
+
+    @Test
+    fun `removed subtree stays readable while its snapshot is open`() {
+        val model = GameModel(9, 9, StandardGameRules.CHINESE)
+        model.beginMoveSequence().playMove(0, 0).playMove(1, 1)
+        val firstMove = model.getRootNode().getChildNodeInMainBranch()!!
+
+        model.snapshot().use { snapshot ->
+            model.editor.removeNodeSubtree(firstMove)
+
+            Assertions.assertEquals(listOf(firstMove), snapshot.rootNode.getChildNodes().map { it.gameNode })
+            Assertions.assertEquals(1, snapshot.rootNode.getChildNodes()[0].getChildNodes().size)
+        }
+    }
+
+    @Test
+    fun `closing the snapshot discards the versions kept for it`() {
+        val model = GameModel(9, 9, StandardGameRules.CHINESE)
+        model.beginMoveSequence().playMove(0, 0).playMove(1, 1)
+        val rootNode = model.getRootNode()
+        val firstMove = rootNode.getChildNodeInMainBranch()!!
+
+        val snapshot = model.snapshot()
+        model.editor.removeNodeSubtree(firstMove)
+        Assertions.assertNotNull(rootNode.getVersion(snapshot.epoch))
+
+        snapshot.close()
+
+        // The root no longer keeps the version that listed the removed node as a child
+        Assertions.assertNull(rootNode.getVersion(snapshot.epoch))
+        Assertions.assertThrows(IllegalStateException::class.java) { snapshot.rootNode.getChildNodes() }
+    }
+
+    @Test
+    fun `closing one snapshot keeps the versions read by another`() {
+        val model = GameModel(9, 9, StandardGameRules.CHINESE)
+        model.beginMoveSequence().playMove(0, 0)
+        val firstMove = model.currentNode
+
+        val olderSnapshot = model.snapshot()
+        model.editor.setComment(firstMove, "First")
+        val newerSnapshot = model.snapshot()
+        model.editor.setComment(firstMove, "Second")
+
+        newerSnapshot.close()
+        Assertions.assertEquals("", olderSnapshot.currentNode.getComments())
+
+        olderSnapshot.close()
+        Assertions.assertNull(firstMove.getVersion(olderSnapshot.epoch))
+        Assertions.assertEquals("Second", firstMove.getComments())
+    }
+
+    @Test
+    fun `open snapshot of one model does not keep versions of another`() {
+        val snapshotModel = GameModel(9, 9, StandardGameRules.CHINESE)
+        val otherModel = GameModel(9, 9, StandardGameRules.CHINESE)
+        otherModel.beginMoveSequence().playMove(0, 0)
+        val otherNode = otherModel.currentNode
+        val versionBeforeEdit = otherNode.getVersion(Long.MAX_VALUE)
+
+        snapshotModel.snapshot().use {
+            otherModel.editor.setComment(otherNode, "Edited")
+
+            // Edited in place, since no snapshot of its own model can read it
+            Assertions.assertSame(versionBeforeEdit, otherNode.getVersion(Long.MAX_VALUE))
+            Assertions.assertNull(otherNode.getVersion(-1L))
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package codes.nibby.yi.models
+
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import java.util.*
+import java.util.concurrent.Executor
+
+class GameStatePrefetcherTest {
+
+    // Runs the prefetch on the thread that changes the current node, so results are deterministic
+    private val directExecutor = Executor { it.run() }
+
+    @Test
+    fun `states around the current node are prefetched`() {
+        val model = GameModel(9, 9, StandardGameRules.CHINESE)
+        for (i in 0 until 40) {
+            model.editor.addMove(i % 9, i / 9)
+        }
+        model.toPreviousNode(20)
+        val current = model.currentNode
+        model.editor.addMove(8, 8)
+        val variation = model.currentNode
+        model.currentNode = current
+        // Playing the moves computed their states already
+        model.invalidateGameStates()
+
+        GameStatePrefetcher(model, 5, directExecutor).use {
+            Assertions.assertTrue(model.isGameStateCached(current))
+            Assertions.assertTrue(model.isGameStateCached(variation))
+
+            var next = current
+            repeat(5) {
+                next = next.getChildNodes()[0]
+                Assertions.assertTrue(model.isGameStateCached(next), "Next node not prefetched")
+            }
+            Assertions.assertFalse(model.isGameStateCached(next.getChildNodes()[0]))
+
+            var previous = current
+            repeat(5) {
+                previous = previous.parent!!
+                Assertions.assertTrue(model.isGameStateCached(previous), "Previous node not prefetched")
+            }
+        }
+    }
+
+    @Test
+    fun `no states are prefetched after closing`() {
+        val model = GameModel(9, 9, StandardGameRules.CHINESE)
+        for (i in 0 until 10) {
+            model.editor.addMove(i % 9, i / 9)
+        }
+        val lastNode = model.currentNode
+        model.invalidateGameStates()
+
+        GameStatePrefetcher(model, 2, directExecutor).close()
+        model.currentNode = model.getRootNode()
+
+        Assertions.assertFalse(model.isGameStateCached(model.getRootNode().getChildNodes()[0]))
+        Assertions.assertTrue(model.isGameStateCached(lastNode))
+    }
+
+    @Test
+    fun `incrementally computed states match states computed from the root`() {
+        val model = GameModel(9, 9, StandardGameRules.CHINESE)
+        val random = Random(49L)
+
+        GameStatePrefetcher(model, 4, directExecutor).use {
+            for (i in 0 until 500) {
+                val action = random.nextInt(10)
+                when {
+                    action == 0 -> model.toPreviousNode(random.nextInt(6) + 1)
+                    action == 1 && !model.currentNode.isRoot() ->
+                        model.editor.addStoneEdit(model.currentNode,
+                                Stone(random.nextInt(9), random.nextInt(9), StoneColor.WHITE))
+                    else -> model.editor.addMove(random.nextInt(9), random.nextInt(9))
+                }
+
+                assertStateMatchesHistory(model, model.currentNode)
+                model.currentNode.parent?.let { assertStateMatchesHistory(model, it) }
+            }
+        }
+    }
+
+    private fun assertStateMatchesHistory(model: GameModel, node: GameNode) {
+        val expected = GamePosition(model.boardWidth, model.boardHeight)
+        var prisonersWhite = 0
+        var prisonersBlack = 0
+        node.getMoveHistory().forEach {
+            expected.apply(it.delta)
+            prisonersWhite += it.getCapturesThisTurn().count { capture -> capture.color == StoneColor.BLACK }
+            prisonersBlack += it.getCapturesThisTurn().count { capture -> capture.color == StoneColor.WHITE }
+        }
+
+        val state = model.getGameState(node)
+        Assertions.assertArrayEquals(expected.intersectionState, state.boardPosition.intersectionState)
+        Assertions.assertEquals(prisonersWhite, state.prisonersWhite)
+        Assertions.assertEquals(prisonersBlack, state.prisonersBlack)
+        Assertions.assertSame(node, state.representedNode)
+    }
+}
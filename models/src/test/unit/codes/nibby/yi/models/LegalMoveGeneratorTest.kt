@@ -0,0 +1,228 @@
+package codes.nibby.yi.models
+
+import codes.nibby.yi.models.TestGameRules.TestingGameRulesNoSuicide
+import codes.nibby.yi.models.TestGameRules.TestingGameRulesSuicideAllowed
+import codes.nibby.yi.models.rules.GameRulesHandler
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import kotlin.random.Random
+
+class LegalMoveGeneratorTest {
+
+    @Test
+    fun `every intersection is legal on an empty board`() {
+        val model = GameModel(5, 4, TestingGameRulesNoSuicide())
+
+        val mask = model.getLegalMoves()
+
+        Assertions.assertEquals(20, mask.getLegalMoveCount())
+        Assertions.assertEquals(StoneColor.BLACK, mask.color)
+        Assertions.assertArrayEquals((0 until 20).toList().toIntArray(), mask.getLegalPositions())
+    }
+
+    @Test
+    fun `occupied intersections are illegal`() {
+        val model = GameModel(3, 3, TestingGameRulesNoSuicide())
+        model.editor.addMove(0, 0)
+        model.editor.addMove(2, 2)
+
+        val mask = model.getLegalMoves()
+
+        Assertions.assertFalse(mask.isLegal(0, 0))
+        Assertions.assertFalse(mask.isLegal(2, 2))
+        Assertions.assertTrue(mask.isLegal(1, 1))
+        Assertions.assertEquals(7, mask.getLegalMoveCount())
+    }
+
+    @Test
+    fun `out of bounds intersections are illegal`() {
+        val mask = GameModel(3, 3, TestingGameRulesNoSuicide()).getLegalMoves()
+
+        Assertions.assertFalse(mask.isLegal(-1, 0))
+        Assertions.assertFalse(mask.isLegal(3, 0))
+        Assertions.assertFalse(mask.isLegal(0, 3))
+    }
+
+    @Test
+    fun `suicide is illegal unless the rules allow it`() {
+        for (rules in listOf(TestingGameRulesNoSuicide(), TestingGameRulesSuicideAllowed())) {
+            val model = GameModel(3, 3, rules)
+            model.editor.addMove(0, 0)  // B
+            model.editor.addMove(1, 0)  // W
+            model.editor.addPass()      // B
+            model.editor.addMove(1, 1)  // W
+            model.editor.addPass()      // B
+            model.editor.addMove(0, 2)  // W
+
+            // Black at (0, 1) removes its own stone at (0, 0)
+            val mask = model.getLegalMoves()
+
+            Assertions.assertEquals(rules.allowSuicideMoves(), mask.isLegal(0, 1))
+        }
+    }
+
+    @Test
+    fun `filling the last liberty is legal if it captures`() {
+        val model = GameModel(3, 3, TestingGameRulesNoSuicide())
+        model.editor.addMove(1, 0)  // B
+        model.editor.addMove(0, 0)  // W
+        model.editor.addPass()      // B
+        model.editor.addMove(1, 1)  // W
+        model.editor.addPass()      // B
+        model.editor.addMove(0, 2)  // W
+
+        // Black at (0, 1) has no liberty of its own but captures white at (0, 0)
+        val mask = model.getLegalMoves()
+
+        Assertions.assertTrue(mask.isLegal(0, 1))
+    }
+
+    @Test
+    fun `ko recapture is illegal`() {
+        val model = createKoPosition(StandardGameRules.JAPANESE)
+
+        val mask = model.getLegalMoves()
+
+        Assertions.assertEquals(StoneColor.WHITE, mask.color)
+        Assertions.assertFalse(mask.isLegal(1, 1))
+    }
+
+    @Test
+    fun `ko can be retaken after passes only under simple ko`() {
+        val japanese = createKoPosition(StandardGameRules.JAPANESE)
+        japanese.editor.addPass()
+        japanese.editor.addPass()
+        val chinese = createKoPosition(StandardGameRules.CHINESE)
+        chinese.editor.addPass()
+        chinese.editor.addPass()
+
+        Assertions.assertTrue(japanese.getLegalMoves().isLegal(1, 1))
+        Assertions.assertFalse(chinese.getLegalMoves().isLegal(1, 1))
+    }
+
+    @Test
+    fun `mask agrees with move submission throughout random games`() {
+        val rulesToTest = listOf(StandardGameRules.CHINESE.rulesHandler, StandardGameRules.JAPANESE.rulesHandler,
+                StandardGameRules.NEW_ZEALAND.rulesHandler, StandardGameRules.TROMP_TAYLOR.rulesHandler)
+
+        for (rules in rulesToTest) {
+            for (seed in 0 until 3) {
+                assertMaskMatchesSubmitter(rules, seed)
+            }
+        }
+    }
+
+    @Test
+    fun `primitive board generation checks ko position`() {
+        val generator = LegalMoveGenerator(4, 3)
+        val board = createBoard(
+            ".BW.",
+            "B.BW",
+            ".BW."
+        )
+
+        val withoutKo = generator.generate(board, StoneColor.WHITE, false)
+        val withKo = generator.generate(board, StoneColor.WHITE, false, 5)
+
+        Assertions.assertTrue(withoutKo.isLegal(1, 1))
+        Assertions.assertFalse(withKo.isLegal(1, 1))
+        Assertions.assertEquals(withoutKo.getLegalMoveCount() - 1, withKo.getLegalMoveCount())
+    }
+
+    @Test
+    fun `destination mask is overwritten`() {
+        val generator = LegalMoveGenerator(3, 3)
+        val mask = LegalMoveMask(3, 3)
+        val board = ByteArray(9)
+
+        generator.generate(board, StoneColor.BLACK, false, destination = mask)
+        board[4] = StoneColor.BLACK.index
+        val result = generator.generate(board, StoneColor.WHITE, false, destination = mask)
+
+        Assertions.assertSame(mask, result)
+        Assertions.assertFalse(mask.isLegal(1, 1))
+        Assertions.assertEquals(8, mask.getLegalMoveCount())
+        Assertions.assertEquals(StoneColor.WHITE, mask.color)
+    }
+
+    @Test
+    fun `mismatched board size is rejected`() {
+        val generator = LegalMoveGenerator(3, 3)
+
+        Assertions.assertThrows(IllegalArgumentException::class.java) {
+            generator.generate(GameModel(4, 4, TestingGameRulesNoSuicide()))
+        }
+        Assertions.assertThrows(IllegalArgumentException::class.java) {
+            generator.generate(ByteArray(9), StoneColor.BLACK, false, destination = LegalMoveMask(4, 3))
+        }
+        Assertions.assertThrows(IllegalArgumentException::class.java) {
+            generator.generate(ByteArray(9), StoneColor.NONE, false)
+        }
+    }
+
+    private fun assertMaskMatchesSubmitter(rules: GameRulesHandler, seed: Int) {
+        val model = GameModel(5, 5, rules)
+        val generator = LegalMoveGenerator(5, 5)
+        val random = Random(seed)
+
+        repeat(120) {
+            val mask = generator.generate(model)
+            val color = model.getNextTurnStoneColor()
+            val legalPositions = ArrayList<Int>()
+
+            for (position in 0 until model.getIntersectionCount()) {
+                val stone = Stone(position % 5, position / 5, color)
+                val result = GameMoveSubmitter.createMoveNode(model, model.currentNode, stone).first
+                Assertions.assertEquals(result == MoveValidationResult.OK, mask.isLegal(position),
+                        "${rules.getInternalName()} seed $seed at $stone: $result")
+                if (result == MoveValidationResult.OK) {
+                    legalPositions.add(position)
+                }
+            }
+
+            if (legalPositions.isEmpty() || random.nextInt(10) == 0) {
+                model.editor.addPass()
+            } else {
+                val position = legalPositions[random.nextInt(legalPositions.size)]
+                model.editor.addMove(position % 5, position / 5)
+            }
+        }
+    }
+
+    /*
+     * Creates the following position with black having just captured at (2, 1),
+     * so that white recapturing at (1, 1) is a ko.
+     *
+     *     . B W .
+     *     B . B W
+     *     . B W .
+     */
+    private fun createKoPosition(rules: StandardGameRules): GameModel {
+        val model = GameModel(4, 3, rules)
+        model.editor.addMove(1, 0) // B
+        model.editor.addMove(2, 0) // W
+        model.editor.addMove(0, 1) // B
+        model.editor.addMove(3, 1) // W
+        model.editor.addMove(1, 2) // B
+        model.editor.addMove(2, 2) // W
+        model.editor.addPass()           // B
+        model.editor.addMove(1, 1) // W
+        model.editor.addMove(2, 1) // B captures (1, 1)
+        return model
+    }
+
+    private fun createBoard(vararg rows: String): ByteArray {
+        val width = rows[0].length
+        val board = ByteArray(width * rows.size)
+        rows.forEachIndexed { y, row ->
+            row.forEachIndexed { x, char ->
+                board[x + y * width] = when (char) {
+                    'B' -> StoneColor.BLACK.index
+                    'W' -> StoneColor.WHITE.index
+                    else -> StoneColor.NONE.index
+                }
+            }
+        }
+        return board
+    }
+}
@@ -0,0 +1,184 @@
+package codes.nibby.yi.models
+
+import codes.nibby.yi.models.TestGameRules.TestingGameRulesNoSuicide
+import codes.nibby.yi.models.TestGameRules.TestingGameRulesSuicideAllowed
+import codes.nibby.yi.models.rules.GameRulesHandler
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import kotlin.random.Random
+
+class MoveBatchTest {
+
+    @Test
+    fun `batch produces the same game tree as playing moves one at a time`() {
+        for (seed in 0 until 5) {
+            assertBatchMatchesSingleMoves(StandardGameRules.CHINESE.rulesHandler, seed)
+        }
+    }
+
+    @Test
+    fun `batch produces the same game tree when suicide is allowed`() {
+        for (seed in 0 until 5) {
+            assertBatchMatchesSingleMoves(TestingGameRulesSuicideAllowed(), seed)
+        }
+    }
+
+    private fun assertBatchMatchesSingleMoves(rules: GameRulesHandler, seed: Int) {
+        // Both models must share the hasher for state hashes to be comparable
+        val hasher = ZobristHasher(5, 5)
+        val expected = GameModel(5, 5, rules, hasher)
+        val encodedMoves = playRandomGame(expected, Random(seed), 250)
+
+        val actual = GameModel(5, 5, rules, hasher)
+        val result = actual.editor.addMoves(encodedMoves)
+
+        Assertions.assertTrue(result.isComplete(), "Batch did not complete: $result")
+        Assertions.assertEquals(encodedMoves.size, result.movesPlayed)
+        Assertions.assertEquals(actual.currentNode, result.lastNode)
+        Assertions.assertEquals(expected.getStateHashHistory(), actual.getStateHashHistory())
+        Assertions.assertEquals(expected.getNextTurnStoneColor(), actual.getNextTurnStoneColor())
+
+        val expectedHistory = expected.currentNode.getMoveHistory()
+        val actualHistory = actual.currentNode.getMoveHistory()
+        Assertions.assertEquals(expectedHistory.size, actualHistory.size)
+
+        for (i in expectedHistory.indices) {
+            val expectedNode = expectedHistory[i]
+            val actualNode = actualHistory[i]
+
+            Assertions.assertEquals(expectedNode.getType(), actualNode.getType())
+            Assertions.assertEquals(expectedNode.getPrimaryMove(), actualNode.getPrimaryMove())
+            Assertions.assertEquals(HashSet(expectedNode.getCapturesThisTurn()), HashSet(actualNode.getCapturesThisTurn()))
+            Assertions.assertEquals(HashSet(expectedNode.getStoneEdits()), HashSet(actualNode.getStoneEdits()))
+            Assertions.assertEquals(expectedNode.moveNumber, actualNode.moveNumber)
+        }
+
+        val expectedPosition = expected.getCurrentGameState().boardPosition.intersectionState
+        val actualPosition = actual.getCurrentGameState().boardPosition.intersectionState
+        Assertions.assertArrayEquals(expectedPosition, actualPosition)
+    }
+
+    @Test
+    fun `batch stops at first illegal move`() {
+        val model = GameModel(3, 3, StandardGameRules.CHINESE)
+        val moves = intArrayOf(
+            MoveSequence.encodeMove(0, 0, 3),
+            MoveSequence.encodeMove(1, 1, 3),
+            MoveSequence.encodeMove(0, 0, 3),
+            MoveSequence.encodeMove(2, 2, 3)
+        )
+
+        val result = model.editor.addMoves(moves)
+
+        Assertions.assertFalse(result.isComplete())
+        Assertions.assertEquals(2, result.movesPlayed)
+        Assertions.assertEquals(MoveValidationResult.OK, result.getValidationResult(1))
+        Assertions.assertEquals(MoveValidationResult.ERROR_NON_EMPTY_INTERSECTION, result.getValidationResult(2))
+        Assertions.assertNull(result.getValidationResult(3))
+        Assertions.assertEquals(MoveBatchResult.NOT_ATTEMPTED, result.validationResults[3])
+        Assertions.assertEquals(2, model.currentNode.moveNumber)
+    }
+
+    @Test
+    fun `batch rejects ko recapture`() {
+        val model = GameModel(3, 3, TestingGameRulesNoSuicide())
+        val moves = intArrayOf(
+            MoveSequence.encodeMove(0, 0, 3),
+            MoveSequence.encodeMove(1, 0, 3),
+            MoveSequence.encodeMove(1, 1, 3),
+            MoveSequence.encodeMove(0, 1, 3), // white captures black at 0,0
+            MoveSequence.encodeMove(2, 0, 3),
+            MoveSequence.PASS,
+            MoveSequence.encodeMove(0, 0, 3), // black captures and starts ko
+            MoveSequence.encodeMove(1, 0, 3)
+        )
+
+        val result = model.editor.addMoves(moves)
+
+        Assertions.assertEquals(7, result.movesPlayed)
+        Assertions.assertEquals(MoveValidationResult.ERROR_KO_RECAPTURE, result.getValidationResult(7))
+    }
+
+    @Test
+    fun `batch rejects out of bounds move`() {
+        val model = GameModel(3, 3, StandardGameRules.CHINESE)
+
+        val result = model.editor.addMoves(intArrayOf(9))
+
+        Assertions.assertEquals(MoveValidationResult.ERROR_POSITION_OUT_OF_BOUNDS, result.getValidationResult(0))
+        Assertions.assertEquals(model.getRootNode(), model.currentNode)
+    }
+
+    @Test
+    fun `batch re-uses existing nodes`() {
+        val model = GameModel(3, 3, StandardGameRules.CHINESE)
+        model.beginMoveSequence().playMove(0, 0).playMove(1, 1).pass()
+        val existingLastNode = model.currentNode
+        model.currentNode = model.getRootNode()
+
+        val result = model.editor.addMoves(intArrayOf(0, 4, MoveSequence.PASS, 8))
+
+        Assertions.assertTrue(result.isComplete())
+        Assertions.assertEquals(existingLastNode, result.lastNode.parent)
+        Assertions.assertEquals(1, model.getRootNode().getChildNodes().size)
+        Assertions.assertEquals(1, existingLastNode.getChildNodes().size)
+    }
+
+    @Test
+    fun `batch emits one event of each type`() {
+        val model = GameModel(9, 9, StandardGameRules.CHINESE)
+        val addedNodes = ArrayList<GameNode>()
+        var currentNodeChanges = 0
+        model.onNodeAdd().addListener(object : EventListener<NodeEvent> {
+            override fun onEvent(event: NodeEvent) {
+                addedNodes.add(event.node)
+            }
+        })
+        model.onCurrentNodeChange().addListener(object : EventListener<NodeEvent> {
+            override fun onEvent(event: NodeEvent) {
+                currentNodeChanges++
+            }
+        })
+
+        model.beginMoveSequence().playMoves(intArrayOf(0, 1, 2, 3, MoveSequence.PASS, 5))
+
+        Assertions.assertEquals(listOf(model.getRootNode().getChildNodeInMainBranch()), addedNodes)
+        Assertions.assertEquals(1, currentNodeChanges)
+        Assertions.assertEquals(6, model.currentNode.moveNumber)
+    }
+
+    @Test
+    fun `move sequence throws on illegal batch move`() {
+        val model = GameModel(3, 3, StandardGameRules.CHINESE)
+
+        Assertions.assertThrows(GameRulesException::class.java) {
+            model.beginMoveSequence().playMoves(intArrayOf(0, 0))
+        }
+        Assertions.assertEquals(1, model.currentNode.moveNumber)
+    }
+
+    /**
+     * Plays random legal moves one at a time through the editor.
+     *
+     * @return The moves played, encoded for use with [GameModelEditor.addMoves].
+     */
+    private fun playRandomGame(model: GameModel, random: Random, moveCount: Int): IntArray {
+        val moves = ArrayList<Int>()
+
+        while (moves.size < moveCount) {
+            if (random.nextInt(30) == 0) {
+                model.editor.addPass()
+                moves.add(MoveSequence.PASS)
+                continue
+            }
+
+            val x = random.nextInt(model.boardWidth)
+            val y = random.nextInt(model.boardHeight)
+            if (model.editor.addMove(x, y).validationResult == MoveValidationResult.OK) {
+                moves.add(MoveSequence.encodeMove(x, y, model.boardWidth))
+            }
+        }
+
+        return moves.toIntArray()
+    }
+}
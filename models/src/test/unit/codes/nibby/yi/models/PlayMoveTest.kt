@@ -190,6 +190,53 @@ class PlayMoveTest {
         Assertions.assertEquals(MoveValidationResult.OK, submitResult.validationResult)
     }
 
+    @Test
+    fun `suicidal stone is absent from game state computed without cached states`() {
+        val model = GameModel(3, 3, TestingGameRulesSuicideAllowed())
+        val suicideNode = playSuicideInCorner(model)
+
+        model.invalidateGameStates()
+        val position = model.getGameState(suicideNode).boardPosition
+
+        Assertions.assertEquals(StoneColor.NONE, position.getStoneColorAt(0, 0))
+        Assertions.assertEquals(StoneColor.NONE, position.getStoneColorAt(1, 0))
+        Assertions.assertEquals(StoneColor.BLACK, position.getStoneColorAt(2, 0))
+        Assertions.assertEquals(StoneColor.BLACK, position.getStoneColorAt(0, 1))
+    }
+
+    @Test
+    fun `suicidal stone is absent from game state computed from a cached ancestor`() {
+        val model = GameModel(3, 3, TestingGameRulesSuicideAllowed())
+        val suicideNode = playSuicideInCorner(model)
+
+        model.invalidateGameStates()
+        model.getGameState(suicideNode.parent!!)
+        Assertions.assertFalse(model.isGameStateCached(suicideNode))
+
+        val position = model.getGameState(suicideNode).boardPosition
+        val nextPosition = model.getGameState(model.currentNode).boardPosition
+
+        Assertions.assertEquals(StoneColor.NONE, position.getStoneColorAt(1, 0))
+        Assertions.assertEquals(StoneColor.NONE, nextPosition.getStoneColorAt(1, 0))
+    }
+
+    // White fills the last liberty of its own corner stone, removing both stones, then black passes.
+    // A single stone suicide would repeat the previous position, so two stones are removed.
+    private fun playSuicideInCorner(model: GameModel): GameNode {
+        model.beginMoveSequence()
+                .playMove(2, 0)
+                .playMove(0, 0)
+                .playMove(1, 1)
+                .pass()
+                .playMove(0, 1)
+
+        val result = model.editor.addMove(1, 0)
+        Assertions.assertEquals(MoveValidationResult.OK, result.validationResult)
+        val suicideNode = model.currentNode
+        model.editor.addPass()
+        return suicideNode
+    }
+
     @Test
     fun `board position repeat is illegal on 1x1`() {
         val model = GameModel(1, 1, TestingGameRulesSuicideAllowed(), TestingFourIntersectionXORHasher())
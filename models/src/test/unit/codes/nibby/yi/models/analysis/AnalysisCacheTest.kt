@@ -0,0 +1,135 @@
+package codes.nibby.yi.models.analysis
+
+import codes.nibby.yi.models.GameModel
+import codes.nibby.yi.models.StandardGameRules
+import codes.nibby.yi.models.StoneColor
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import java.io.IOException
+import java.nio.file.Files
+
+class AnalysisCacheTest {
+
+    @Test
+    fun `analysis is keyed by position and player to move`() {
+        val cache = AnalysisCache()
+        val analysis = PositionAnalysis(0.6f, 2.5f, 100)
+
+        cache.put(42L, StoneColor.BLACK, analysis)
+
+        Assertions.assertSame(analysis, cache.get(42L, StoneColor.BLACK))
+        Assertions.assertNull(cache.get(42L, StoneColor.WHITE))
+        Assertions.assertNull(cache.get(43L, StoneColor.BLACK))
+        Assertions.assertEquals(1, cache.getHitCount())
+        Assertions.assertEquals(2, cache.getMissCount())
+    }
+
+    @Test
+    fun `transposed nodes share an analysis`() {
+        val model = GameModel(9, 9, StandardGameRules.CHINESE)
+        model.editor.addMove(2, 2)
+        model.editor.addMove(6, 6)
+        val firstOrder = model.editor.addMove(2, 6).moveNode!!
+        model.toPreviousNode(3)
+        model.editor.addMove(2, 6)
+        model.editor.addMove(6, 6)
+        val secondOrder = model.editor.addMove(2, 2).moveNode!!
+
+        val cache = AnalysisCache()
+        val analysis = PositionAnalysis(0.3f, -4f, 10)
+        cache.put(firstOrder, StoneColor.WHITE, analysis)
+
+        Assertions.assertSame(analysis, cache.get(secondOrder, StoneColor.WHITE))
+    }
+
+    @Test
+    fun `analysis is shared between game models`() {
+        val first = GameModel(9, 9, StandardGameRules.CHINESE)
+        val second = GameModel(9, 9, StandardGameRules.JAPANESE)
+        val firstNode = first.editor.addMove(4, 4).moveNode!!
+        val secondNode = second.editor.addMove(4, 4).moveNode!!
+
+        val cache = AnalysisCache()
+        val analysis = PositionAnalysis(0.4f, -1f, 5)
+        cache.put(firstNode, StoneColor.WHITE, analysis)
+
+        Assertions.assertSame(analysis, cache.get(secondNode, StoneColor.WHITE))
+    }
+
+    @Test
+    fun `least recently used entry is evicted`() {
+        val cache = AnalysisCache(2)
+        cache.put(1L, StoneColor.BLACK, PositionAnalysis(0.5f, 0f, 1))
+        cache.put(2L, StoneColor.BLACK, PositionAnalysis(0.5f, 0f, 1))
+        cache.get(1L, StoneColor.BLACK)
+
+        cache.put(3L, StoneColor.BLACK, PositionAnalysis(0.5f, 0f, 1))
+
+        Assertions.assertEquals(2, cache.size())
+        Assertions.assertNotNull(cache.get(1L, StoneColor.BLACK))
+        Assertions.assertNull(cache.get(2L, StoneColor.BLACK))
+        Assertions.assertNotNull(cache.get(3L, StoneColor.BLACK))
+    }
+
+    @Test
+    fun `saved cache loads with the same entries and eviction order`() {
+        val cache = AnalysisCache()
+        cache.put(-1L, StoneColor.BLACK, PositionAnalysis(0.25f, -3.5f, 400, floatArrayOf(1f, -1f, 0.5f, 0f)))
+        cache.put(Long.MAX_VALUE, StoneColor.WHITE, PositionAnalysis(0.75f, 1f, 20))
+        cache.put(7L, StoneColor.BLACK, PositionAnalysis(1f, 12f, 0))
+        cache.get(-1L, StoneColor.BLACK)
+
+        val file = Files.createTempFile("analysis", ".cache")
+        try {
+            cache.save(file)
+            val loaded = AnalysisCache.load(file, 2)
+
+            Assertions.assertEquals(2, loaded.size())
+            Assertions.assertNull(loaded.get(Long.MAX_VALUE, StoneColor.WHITE))
+            Assertions.assertEquals(12f, loaded.get(7L, StoneColor.BLACK)!!.blackScoreLead)
+
+            val withOwnership = loaded.get(-1L, StoneColor.BLACK)!!
+            Assertions.assertEquals(0.25f, withOwnership.blackWinRate)
+            Assertions.assertEquals(-3.5f, withOwnership.blackScoreLead)
+            Assertions.assertEquals(400, withOwnership.visits)
+            val ownership = withOwnership.getOwnershipMap()!!
+            Assertions.assertArrayEquals(floatArrayOf(1f, -1f, 0.5f, 0f), ownership, 0.01f)
+            Assertions.assertFalse(loaded.get(7L, StoneColor.BLACK)!!.hasOwnership())
+        } finally {
+            Files.deleteIfExists(file)
+        }
+    }
+
+    @Test
+    fun `invalid cache file is rejected`() {
+        val file = Files.createTempFile("analysis", ".cache")
+        try {
+            Files.write(file, byteArrayOf(1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12))
+            Assertions.assertThrows(IOException::class.java) { AnalysisCache.load(file) }
+
+            val cache = AnalysisCache()
+            cache.put(1L, StoneColor.BLACK, PositionAnalysis(0.5f, 0f, 1, FloatArray(81)))
+            cache.save(file)
+            val truncated = Files.readAllBytes(file).copyOf(40)
+            Files.write(file, truncated)
+            Assertions.assertThrows(IOException::class.java) { AnalysisCache.load(file) }
+        } finally {
+            Files.deleteIfExists(file)
+        }
+    }
+
+    @Test
+    fun `playout result converts to a position analysis`() {
+        val board = ByteArray(8)
+        val result = PlayoutSimulator(4, 1, 1L).simulate(board, 4, 2, StoneColor.BLACK,
+                StandardGameRules.CHINESE.rulesHandler, 0.5f)
+
+        val analysis = result.toPositionAnalysis()
+
+        Assertions.assertEquals(result.getBlackWinRate().toFloat(), analysis.blackWinRate)
+        Assertions.assertEquals(result.getMeanScoreMargin().toFloat(), analysis.blackScoreLead)
+        Assertions.assertEquals(4, analysis.visits)
+        Assertions.assertArrayEquals(result.getOwnershipMap(), analysis.getOwnershipMap())
+        Assertions.assertEquals(1f - analysis.blackWinRate, analysis.getWinRate(StoneColor.WHITE))
+    }
+}
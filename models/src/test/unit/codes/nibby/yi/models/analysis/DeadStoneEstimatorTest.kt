@@ -0,0 +1,176 @@
+package codes.nibby.yi.models.analysis
+
+import codes.nibby.yi.models.GameModel
+import codes.nibby.yi.models.StandardGameRules
+import codes.nibby.yi.models.Stone
+import codes.nibby.yi.models.StoneColor
+import codes.nibby.yi.models.rules.ScoreCalculator
+import codes.nibby.yi.models.rules.ScoringMethod
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import java.util.concurrent.Executors
+
+class DeadStoneEstimatorTest {
+
+    @Test
+    fun `group with two eyes is unconditionally alive`() {
+        val board = createBoard(
+            ".B.B..",
+            "BBBB..",
+            "......",
+            "......"
+        )
+        val estimator = DeadStoneEstimator(playoutCount = 0)
+
+        val estimate = estimator.estimate(board, 6, 4, StoneColor.WHITE)
+
+        Assertions.assertTrue(estimate.deadStones.isEmpty())
+        Assertions.assertTrue(estimate.isUnconditional(1, 0))
+        Assertions.assertTrue(estimate.isUnconditional(3, 1))
+    }
+
+    @Test
+    fun `group with one eye is not unconditionally alive`() {
+        val board = createBoard(
+            ".BB...",
+            "BBB...",
+            "......",
+            "......"
+        )
+        val estimator = DeadStoneEstimator(playoutCount = 0)
+
+        val estimate = estimator.estimate(board, 6, 4, StoneColor.WHITE)
+
+        Assertions.assertFalse(estimate.isUnconditional(1, 0))
+        Assertions.assertTrue(estimate.deadStones.isEmpty())
+        Assertions.assertEquals(0, estimate.playoutsRun)
+    }
+
+    @Test
+    fun `stone inside the eye of an unconditionally alive group is dead`() {
+        val board = createBoard(
+            ".WB.B.",
+            "BBBBB.",
+            "......",
+            "......"
+        )
+        val estimator = DeadStoneEstimator(playoutCount = 0)
+
+        val estimate = estimator.estimate(board, 6, 4, StoneColor.BLACK)
+
+        Assertions.assertEquals(setOf(Stone(1, 0, StoneColor.WHITE)), estimate.deadStones)
+        Assertions.assertTrue(estimate.isUnconditional(1, 0))
+        Assertions.assertTrue(estimate.isDead(1, 0))
+    }
+
+    @Test
+    fun `playouts find invading stone dead in enclosed territory`() {
+        val board = createBoard(
+            "...BW....",
+            "...BW....",
+            "...BW....",
+            "...BW....",
+            ".W.BW....",
+            "...BW....",
+            "...BW....",
+            "...BW....",
+            "...BW...."
+        )
+        val estimator = DeadStoneEstimator(playoutCount = 200, parallelism = 2, seed = 42L)
+
+        val estimate = estimator.estimate(board, 9, 9, StoneColor.BLACK)
+
+        Assertions.assertEquals(setOf(Stone(1, 4, StoneColor.WHITE)), estimate.deadStones)
+        Assertions.assertFalse(estimate.isUnconditional(1, 4))
+        Assertions.assertEquals(200, estimate.playoutsRun)
+        Assertions.assertTrue(estimate.getOwnership(0, 0)!! > 0f)
+        Assertions.assertTrue(estimate.getOwnership(8, 0)!! < 0f)
+    }
+
+    @Test
+    fun `same seed and parallelism give the same estimate on any executor`() {
+        val board = createBoard(
+            ".....BW..",
+            "..B..BW..",
+            ".....BW..",
+            ".....BW.B",
+            "..W..BW..",
+            ".....BW..",
+            ".....BW..",
+            "...W.BW..",
+            ".....BW.."
+        )
+        val executor = Executors.newFixedThreadPool(4)
+        try {
+            val pooled = DeadStoneEstimator(100, 4, 0.5f, 7L, executor)
+            val common = DeadStoneEstimator(100, 4, 0.5f, 7L)
+
+            val first = pooled.estimate(board, 9, 9, StoneColor.BLACK)
+            val second = common.estimate(board, 9, 9, StoneColor.BLACK)
+
+            Assertions.assertEquals(first.deadStones, second.deadStones)
+            for (y in 0 until 9) {
+                for (x in 0 until 9) {
+                    Assertions.assertEquals(first.getOwnership(x, y), second.getOwnership(x, y))
+                }
+            }
+        } finally {
+            executor.shutdown()
+        }
+    }
+
+    @Test
+    fun `dead stone mask can be used for scoring`() {
+        val model = GameModel(6, 4, StandardGameRules.CHINESE)
+        model.editor.addMove(0, 1) // B
+        model.editor.addMove(1, 0) // W
+        model.editor.addMove(1, 1) // B
+        model.editor.addMove(5, 3) // W
+        model.editor.addMove(2, 1) // B
+        model.editor.addPass()
+        model.editor.addMove(2, 0) // B
+        model.editor.addPass()
+        model.editor.addMove(3, 1) // B
+        model.editor.addPass()
+        model.editor.addMove(4, 1) // B
+        model.editor.addPass()
+        model.editor.addMove(4, 0) // B
+
+        val estimate = DeadStoneEstimator(playoutCount = 0).estimate(model)
+        val state = model.getCurrentGameState()
+        val score = ScoreCalculator(6, 4).score(state.boardPosition.copyStoneIndices(),
+                ScoringMethod.AREA, 0f, deadStones = estimate.getDeadStoneMask())
+
+        Assertions.assertEquals(setOf(Stone(1, 0, StoneColor.WHITE)), estimate.deadStones)
+        Assertions.assertEquals(1, score.whiteStones)
+        Assertions.assertEquals(1, score.blackPrisoners)
+    }
+
+    @Test
+    fun `invalid configuration is rejected`() {
+        Assertions.assertThrows(IllegalArgumentException::class.java) {
+            DeadStoneEstimator(playoutCount = -1)
+        }
+        Assertions.assertThrows(IllegalArgumentException::class.java) {
+            DeadStoneEstimator(parallelism = 0)
+        }
+        Assertions.assertThrows(IllegalArgumentException::class.java) {
+            DeadStoneEstimator(deadThreshold = 1f)
+        }
+    }
+
+    private fun createBoard(vararg rows: String): ByteArray {
+        val width = rows[0].length
+        val board = ByteArray(width * rows.size)
+        rows.forEachIndexed { y, row ->
+            row.forEachIndexed { x, char ->
+                board[x + y * width] = when (char) {
+                    'B' -> StoneColor.BLACK.index
+                    'W' -> StoneColor.WHITE.index
+                    else -> StoneColor.NONE.index
+                }
+            }
+        }
+        return board
+    }
+}
@@ -0,0 +1,194 @@
+package codes.nibby.yi.models.analysis
+
+import codes.nibby.yi.models.EventListener
+import codes.nibby.yi.models.GameModel
+import codes.nibby.yi.models.GameNode
+import codes.nibby.yi.models.GameTree
+import codes.nibby.yi.models.NodeEvent
+import codes.nibby.yi.models.StandardGameRules
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import java.util.*
+import java.util.concurrent.CancellationException
+import java.util.concurrent.Executor
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class GameReviewerTest {
+
+    @Test
+    fun `main line review writes analysis to every main line node`() {
+        val model = createGameWithVariation()
+        val reviewer = GameReviewer(playoutsPerPosition = 20, workerCount = 3, batchSize = 2, seed = 1L)
+
+        val review = reviewer.start(model, DIRECT_EXECUTOR)
+        review.getCompletion().get(30, TimeUnit.SECONDS)
+
+        val mainLine = getMainLine(model)
+        Assertions.assertEquals(mainLine.size, review.totalPositions)
+        Assertions.assertEquals(mainLine.size, review.getCompletedPositions())
+        Assertions.assertEquals(1.0, review.getProgress())
+        Assertions.assertTrue(review.isDone())
+        for (node in mainLine) {
+            val winRate = node.getMetadataSingleValue(GameReviewer.METADATA_BLACK_WIN_RATE)!!.toFloat()
+            Assertions.assertTrue(winRate in 0f..1f)
+            Assertions.assertEquals("20", node.getMetadataSingleValue(GameReviewer.METADATA_VISITS))
+            Assertions.assertNotNull(node.getMetadataSingleValue(GameReviewer.METADATA_BLACK_SCORE_LEAD))
+        }
+        val variation = model.getRootNode().getChildNodes()[0].getChildNodes()[1]
+        Assertions.assertTrue(variation.getMetadataKeys().isEmpty())
+        Assertions.assertTrue(model.isModified)
+    }
+
+    @Test
+    fun `all variations review covers every node`() {
+        val model = createGameWithVariation()
+        val updatedNodes = Collections.synchronizedSet(HashSet<GameNode>())
+        model.onNodeDataUpdate().addListener(object : EventListener<NodeEvent> {
+            override fun onEvent(event: NodeEvent) {
+                updatedNodes.add(event.node)
+            }
+        })
+
+        val review = GameReviewer(10, 2, 4, 1L).start(model, DIRECT_EXECUTOR, ReviewScope.ALL_VARIATIONS)
+        review.getCompletion().get(30, TimeUnit.SECONDS)
+
+        Assertions.assertEquals(7, review.totalPositions)
+        Assertions.assertEquals(7, updatedNodes.size)
+        updatedNodes.forEach {
+            Assertions.assertTrue(it.getMetadataKeys().contains(GameReviewer.METADATA_BLACK_WIN_RATE))
+        }
+    }
+
+    @Test
+    fun `results are written and listeners notified on the result executor`() {
+        val model = createGameWithVariation()
+        val resultExecutor = Executors.newSingleThreadExecutor { Thread(it, "Result writer") }
+        val listenerThreads = Collections.synchronizedSet(HashSet<String>())
+        model.onNodeDataUpdate().addListener(object : EventListener<NodeEvent> {
+            override fun onEvent(event: NodeEvent) {
+                listenerThreads.add(Thread.currentThread().name)
+            }
+        })
+
+        try {
+            val review = GameReviewer(10, 3, 1, 1L).start(model, resultExecutor, ReviewScope.ALL_VARIATIONS)
+            review.getCompletion().get(30, TimeUnit.SECONDS)
+
+            // Every result has been written by the time the review completes
+            GameTree.traverseSubtree(model.getRootNode()) {
+                Assertions.assertNotNull(it.getMetadataSingleValue(GameReviewer.METADATA_VISITS))
+            }
+            Assertions.assertEquals(setOf("Result writer"), listenerThreads)
+        } finally {
+            resultExecutor.shutdown()
+        }
+    }
+
+    @Test
+    fun `nodes removed during the review are skipped`() {
+        val model = createGameWithVariation()
+        val variation = model.getRootNode().getChildNodes()[0].getChildNodes()[1]
+        val mainLine = getMainLine(model)
+
+        // The review cannot read the model until the write lock is released, by which time
+        // the variation it collected has been removed
+        val review = model.withWriteLock {
+            val review = GameReviewer(10, 2, 1, 1L).start(model, DIRECT_EXECUTOR, ReviewScope.ALL_VARIATIONS)
+            model.editor.removeNodeSubtree(variation)
+            review
+        }
+        review.getCompletion().get(30, TimeUnit.SECONDS)
+
+        Assertions.assertEquals(7, review.totalPositions)
+        Assertions.assertEquals(5, review.getCompletedPositions())
+        Assertions.assertEquals(2, review.getSkippedPositions())
+        Assertions.assertEquals(1.0, review.getProgress())
+        mainLine.forEach {
+            Assertions.assertNotNull(it.getMetadataSingleValue(GameReviewer.METADATA_VISITS))
+        }
+        Assertions.assertTrue(variation.getMetadataKeys().isEmpty())
+    }
+
+    @Test
+    fun `same seed gives the same review on any number of workers`() {
+        val first = createGameWithVariation()
+        val second = createGameWithVariation()
+
+        GameReviewer(30, 1, 1, 9L).start(first, DIRECT_EXECUTOR).getCompletion().get(30, TimeUnit.SECONDS)
+        GameReviewer(30, 4, 3, 9L).start(second, DIRECT_EXECUTOR).getCompletion().get(30, TimeUnit.SECONDS)
+
+        getMainLine(first).zip(getMainLine(second)).forEach { (a, b) ->
+            Assertions.assertEquals(a.getMetadataSingleValue(GameReviewer.METADATA_BLACK_WIN_RATE),
+                    b.getMetadataSingleValue(GameReviewer.METADATA_BLACK_WIN_RATE))
+        }
+    }
+
+    @Test
+    fun `cached positions are not analysed again`() {
+        val cache = AnalysisCache()
+        val reviewer = GameReviewer(10, 2, 4, 1L, cache)
+
+        val firstReview = reviewer.start(createGameWithVariation(), DIRECT_EXECUTOR)
+        firstReview.getCompletion().get(30, TimeUnit.SECONDS)
+        val secondReview = reviewer.start(createGameWithVariation(), DIRECT_EXECUTOR)
+        secondReview.getCompletion().get(30, TimeUnit.SECONDS)
+
+        Assertions.assertEquals(0, firstReview.getCachedPositions())
+        Assertions.assertEquals(5, cache.size())
+        Assertions.assertEquals(5, secondReview.getCachedPositions())
+    }
+
+    @Test
+    fun `cancelled review stops early`() {
+        val model = GameModel(19, 19, StandardGameRules.CHINESE)
+        for (i in 0 until 100) {
+            model.editor.addMove(i % 19, i / 19)
+        }
+
+        val review = GameReviewer(2000, 1, 1, 1L).start(model, DIRECT_EXECUTOR)
+        review.cancel()
+
+        Assertions.assertThrows(CancellationException::class.java) {
+            review.getCompletion().get(30, TimeUnit.SECONDS)
+        }
+        Assertions.assertTrue(review.getCompletedPositions() < review.totalPositions)
+    }
+
+    @Test
+    fun `invalid configuration is rejected`() {
+        Assertions.assertThrows(IllegalArgumentException::class.java) { GameReviewer(playoutsPerPosition = 0) }
+        Assertions.assertThrows(IllegalArgumentException::class.java) { GameReviewer(workerCount = 0) }
+        Assertions.assertThrows(IllegalArgumentException::class.java) { GameReviewer(batchSize = 0) }
+    }
+
+    /**
+     * Main line of four moves, with a two move variation from the first move.
+     */
+    private fun createGameWithVariation(): GameModel {
+        val model = GameModel(7, 7, StandardGameRules.CHINESE)
+        val firstMove = model.editor.addMove(3, 3).moveNode!!
+        model.editor.addMove(2, 2)
+        model.editor.addMove(4, 4)
+        model.editor.addMove(2, 4)
+        model.currentNode = firstMove
+        model.editor.addMove(4, 2)
+        model.editor.addMove(2, 2)
+        return model
+    }
+
+    private fun getMainLine(model: GameModel): List<GameNode> {
+        val mainLine = ArrayList<GameNode>()
+        var node: GameNode? = model.getRootNode()
+        while (node != null) {
+            mainLine.add(node)
+            node = node.getChildNodeInMainBranch()
+        }
+        return mainLine
+    }
+
+    companion object {
+        // Writes results on the review threads, which is safe as no interface shows these models
+        private val DIRECT_EXECUTOR = Executor { it.run() }
+    }
+}
@@ -0,0 +1,169 @@
+package codes.nibby.yi.models.analysis
+
+import codes.nibby.yi.models.GameModel
+import codes.nibby.yi.models.StandardGameRules
+import codes.nibby.yi.models.StoneColor
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import java.util.concurrent.Executors
+
+class PlayoutSimulatorTest {
+
+    @Test
+    fun `ownership follows the walls dividing the board`() {
+        val board = createBoard(
+            ".....BW..",
+            ".....BW..",
+            ".....BW..",
+            ".....BW..",
+            ".....BW..",
+            ".....BW..",
+            ".....BW..",
+            ".....BW..",
+            ".....BW.."
+        )
+        val simulator = PlayoutSimulator(playoutsPerThread = 50, threadCount = 2, seed = 42L)
+
+        val result = simulator.simulate(board, 9, 9, StoneColor.WHITE, StandardGameRules.CHINESE.rulesHandler, 7.5f)
+
+        Assertions.assertEquals(100, result.playoutCount)
+        Assertions.assertEquals(1.0, result.getBlackWinRate() + result.getWhiteWinRate(), 1e-9)
+        for (y in 0 until 9) {
+            Assertions.assertTrue(result.getOwnership(5, y) > 0f, result.getOwnership(5, y).toString())
+            Assertions.assertTrue(result.getOwnership(6, y) < 0f, result.getOwnership(6, y).toString())
+            Assertions.assertTrue(result.getOwnership(8, y) < 0f, result.getOwnership(8, y).toString())
+        }
+    }
+
+    @Test
+    fun `player with more settled area wins every playout`() {
+        // Both players have two eyes and nowhere else to play, black owns 12 points and white 8
+        val board = createBoard(
+            ".B.BBBW.W.",
+            "BBBBBBWWWW"
+        )
+        val rules = StandardGameRules.CHINESE.rulesHandler
+
+        val result = PlayoutSimulator(10, 2, 5L).simulate(board, 10, 2, StoneColor.WHITE, rules, 0.5f)
+
+        Assertions.assertEquals(1.0, result.getBlackWinRate())
+        Assertions.assertEquals(0.0, result.getWinRate(StoneColor.WHITE))
+        Assertions.assertEquals(3.5, result.getMeanScoreMargin(), 1e-9)
+        Assertions.assertEquals(1f, result.getOwnership(0, 0))
+        Assertions.assertEquals(-1f, result.getOwnership(9, 0))
+    }
+
+    @Test
+    fun `komi decides the winner of an even position`() {
+        // Both players have two eyes, so every playout ends immediately with 8 points each
+        val board = createBoard(
+            ".B.BW.W.",
+            "BBBBWWWW"
+        )
+        val rules = StandardGameRules.CHINESE.rulesHandler
+
+        val noKomi = PlayoutSimulator(20, 1, 1L).simulate(board, 8, 2, StoneColor.BLACK, rules, 0f)
+        val withKomi = PlayoutSimulator(20, 1, 1L).simulate(board, 8, 2, StoneColor.BLACK, rules, 0.5f)
+
+        Assertions.assertEquals(0.5, noKomi.getBlackWinRate())
+        Assertions.assertEquals(0.0, withKomi.getBlackWinRate())
+        Assertions.assertEquals(-0.5, withKomi.getMeanScoreMargin(), 1e-9)
+    }
+
+    @Test
+    fun `same seed and thread count give the same result on any executor`() {
+        val model = GameModel(9, 9, StandardGameRules.CHINESE)
+        model.editor.addMove(2, 2)
+        model.editor.addMove(6, 6)
+        model.editor.addMove(6, 2)
+
+        val executor = Executors.newFixedThreadPool(3)
+        try {
+            val pooled = PlayoutSimulator(30, 3, 7L, executor).simulate(model)
+            val common = PlayoutSimulator(30, 3, 7L).simulate(model)
+
+            Assertions.assertEquals(90, pooled.playoutCount)
+            Assertions.assertEquals(pooled.blackWins, common.blackWins)
+            Assertions.assertEquals(pooled.getMeanScoreMargin(), common.getMeanScoreMargin())
+            Assertions.assertArrayEquals(pooled.getOwnershipMap(), common.getOwnershipMap())
+        } finally {
+            executor.shutdown()
+        }
+    }
+
+    @Test
+    fun `model simulation uses the position and komi at the given node`() {
+        val model = GameModel(5, 5, StandardGameRules.CHINESE)
+        model.info.setKomi(100.5f)
+        val firstMove = model.editor.addMove(2, 2).moveNode!!
+        model.editor.addMove(1, 1)
+
+        val result = PlayoutSimulator(10, 1, 3L).simulate(model, firstMove)
+        val board = ByteArray(25)
+        board[12] = StoneColor.BLACK.index
+        val expected = PlayoutSimulator(10, 1, 3L).simulate(board, 5, 5, StoneColor.WHITE, model.rules, 100.5f)
+
+        Assertions.assertEquals(100.5f, result.komi)
+        Assertions.assertEquals(1.0, result.getWhiteWinRate())
+        Assertions.assertArrayEquals(expected.getOwnershipMap(), result.getOwnershipMap())
+    }
+
+    @Test
+    fun `no playouts gives an even result`() {
+        val result = PlayoutSimulator(playoutsPerThread = 0).simulate(ByteArray(9), 3, 3, StoneColor.BLACK,
+                StandardGameRules.CHINESE.rulesHandler)
+
+        Assertions.assertEquals(0, result.playoutCount)
+        Assertions.assertEquals(0.5, result.getBlackWinRate())
+        Assertions.assertEquals(0f, result.getOwnership(1, 1))
+    }
+
+    @Test
+    fun `compact board only plays suicide when allowed`() {
+        val board = CompactBoard(3, 3)
+        board.load(createBoard(
+            "BW.",
+            ".WW",
+            "W.."
+        ))
+        val suicide = board.toPadded(3)
+
+        Assertions.assertFalse(board.play(suicide, CompactBoard.BLACK))
+
+        board.allowSuicide = true
+        Assertions.assertTrue(board.play(suicide, CompactBoard.BLACK))
+        Assertions.assertEquals(CompactBoard.EMPTY, board.cells[board.toPadded(0)])
+        Assertions.assertEquals(CompactBoard.EMPTY, board.cells[suicide])
+
+        // A single stone suicide would leave the position unchanged
+        Assertions.assertFalse(board.play(board.toPadded(2), CompactBoard.BLACK))
+    }
+
+    @Test
+    fun `invalid configuration is rejected`() {
+        Assertions.assertThrows(IllegalArgumentException::class.java) {
+            PlayoutSimulator(playoutsPerThread = -1)
+        }
+        Assertions.assertThrows(IllegalArgumentException::class.java) {
+            PlayoutSimulator(threadCount = 0)
+        }
+        Assertions.assertThrows(IllegalArgumentException::class.java) {
+            PlayoutSimulator().simulate(ByteArray(9), 3, 3, StoneColor.NONE, StandardGameRules.CHINESE.rulesHandler)
+        }
+    }
+
+    private fun createBoard(vararg rows: String): ByteArray {
+        val width = rows[0].length
+        val board = ByteArray(width * rows.size)
+        rows.forEachIndexed { y, row ->
+            row.forEachIndexed { x, char ->
+                board[x + y * width] = when (char) {
+                    'B' -> StoneColor.BLACK.index
+                    'W' -> StoneColor.WHITE.index
+                    else -> StoneColor.NONE.index
+                }
+            }
+        }
+        return board
+    }
+}
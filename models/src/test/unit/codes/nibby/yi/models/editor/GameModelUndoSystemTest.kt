@@ -4,7 +4,16 @@ import org.junit.jupiter.api.Assertions
 import org.junit.jupiter.api.Test
 import codes.nibby.yi.models.GameModel
 import codes.nibby.yi.models.StandardGameRules
+import codes.nibby.yi.models.Annotation
+import codes.nibby.yi.models.StoneColor
+import codes.nibby.yi.models.editor.edit.AnnotationEdit
+import codes.nibby.yi.models.editor.edit.CompoundEdit
+import codes.nibby.yi.models.editor.edit.EditSizeEstimates
 import codes.nibby.yi.models.editor.edit.GameModelEdit
+import codes.nibby.yi.models.editor.edit.RemoveNodeEdit
+import codes.nibby.yi.models.editor.edit.StoneEdit
+import java.util.concurrent.atomic.AtomicLong
+import java.util.function.LongSupplier
 
 class GameModelUndoSystemTest {
 
@@ -25,6 +34,24 @@ class GameModelUndoSystemTest {
         }
     }
 
+    private class SizedTestEdit(private val retainedSize: Long) : GameModelEdit {
+        var persisted = false
+            private set
+
+        override fun rollbackChanges(model: GameModel) {
+        }
+
+        override fun performChanges(model: GameModel): Boolean {
+            return true
+        }
+
+        override fun dispose() {
+            persisted = true
+        }
+
+        override fun estimateRetainedSize(): Long = retainedSize
+    }
+
     private class UnsuccessfulTestEdit : GameModelEdit {
         var persisted = false
             private set
@@ -88,7 +115,7 @@ class GameModelUndoSystemTest {
 
 
     @Test
-    fun `Edit history cleared after setting new max size`() {
+    fun `Edit history preserved after increasing max size`() {
         val model = GameModel(3, 3, StandardGameRules.CHINESE)
         val editor = model.editor
         val undoSystem = editor.undoSystem
@@ -106,7 +133,164 @@ class GameModelUndoSystemTest {
 
         undoSystem.maxHistorySize = 10
 
-        Assertions.assertEquals(0, undoSystem.getEditHistorySize())
+        Assertions.assertEquals(3, undoSystem.getEditHistorySize())
+        Assertions.assertEquals(2, undoSystem.positionInHistory)
+        Assertions.assertEquals(item1, undoSystem.getHistoryItem(0))
+        Assertions.assertEquals(item3, undoSystem.getHistoryItem(2))
+    }
+
+    @Test
+    fun `Oldest edits discarded after decreasing max size`() {
+        val model = GameModel(3, 3, StandardGameRules.CHINESE)
+        val editor = model.editor
+        val undoSystem = editor.undoSystem
+        undoSystem.maxHistorySize = 5
+
+        val edits = List(5) { TestEdit() }
+        edits.forEach { editor.recordAndApplyUndoable(it) }
+
+        // Method under test
+        undoSystem.maxHistorySize = 2
+
+        Assertions.assertEquals(2, undoSystem.getEditHistorySize())
+        Assertions.assertEquals(1, undoSystem.positionInHistory)
+        Assertions.assertEquals(edits[3], undoSystem.getHistoryItem(0))
+        Assertions.assertEquals(edits[4], undoSystem.getHistoryItem(1))
+        Assertions.assertTrue(edits.take(3).all { it.persisted })
+        Assertions.assertFalse(edits[3].persisted || edits[4].persisted)
+    }
+
+    @Test
+    fun `History wraps around the ring buffer many times`() {
+        val model = GameModel(3, 3, StandardGameRules.CHINESE)
+        val editor = model.editor
+        val undoSystem = editor.undoSystem
+        undoSystem.maxHistorySize = 7
+
+        val edits = List(100) { TestEdit() }
+        edits.forEachIndexed { index, edit ->
+            editor.recordAndApplyUndoable(edit)
+            if (index % 10 == 0) {
+                undoSystem.performUndo()
+                undoSystem.performRedo()
+            }
+        }
+
+        Assertions.assertEquals(7, undoSystem.getEditHistorySize())
+        for (i in 0 until 7) {
+            Assertions.assertEquals(edits[93 + i], undoSystem.getHistoryItem(i))
+        }
+        Assertions.assertEquals(93, edits.count { it.persisted })
+    }
+
+    @Test
+    fun `Oldest edits discarded once memory budget is exceeded`() {
+        val model = GameModel(3, 3, StandardGameRules.CHINESE)
+        val editor = model.editor
+        val undoSystem = editor.undoSystem
+        undoSystem.maxHistorySize = 10
+
+        val edits = List(4) { SizedTestEdit(1000) }
+        edits.forEach { editor.recordAndApplyUndoable(it) }
+        Assertions.assertEquals(4000L, undoSystem.getEditHistoryRetainedSize())
+
+        // Method under test
+        undoSystem.maxHistoryMemory = 2500
+
+        Assertions.assertEquals(2, undoSystem.getEditHistorySize())
+        Assertions.assertEquals(2000L, undoSystem.getEditHistoryRetainedSize())
+        Assertions.assertTrue(edits[0].persisted && edits[1].persisted)
+
+        editor.recordAndApplyUndoable(SizedTestEdit(5000))
+
+        // The latest edit is kept even though it exceeds the budget alone
+        Assertions.assertEquals(1, undoSystem.getEditHistorySize())
+        Assertions.assertTrue(undoSystem.canUndo())
+    }
+
+    @Test
+    fun `Removed subtree counts towards retained history size`() {
+        val model = GameModel(3, 3, StandardGameRules.CHINESE)
+        val editor = model.editor
+        val undoSystem = editor.undoSystem
+        model.beginMoveSequence()
+            .playMove(0, 0)
+            .playMove(1, 1)
+            .playMove(2, 2)
+            .playMove(0, 1)
+        val sizeBeforeRemoval = undoSystem.getEditHistoryRetainedSize()
+
+        editor.recordAndApplyUndoable(RemoveNodeEdit(model.getRootNode().getChildNodeInMainBranch()!!))
+
+        val sizeOfRemoval = undoSystem.getEditHistoryRetainedSize() - sizeBeforeRemoval
+        Assertions.assertTrue(sizeOfRemoval >= 4 * EditSizeEstimates.NODE_OVERHEAD,
+            "Retained size of removed subtree is underestimated: $sizeOfRemoval")
+    }
+
+    @Test
+    fun `Stone edits within coalescing window are undone together`() {
+        val model = GameModel(3, 3, StandardGameRules.CHINESE)
+        val editor = model.editor
+        val undoSystem = editor.undoSystem
+        val clock = AtomicLong(0)
+        undoSystem.timeSource = LongSupplier { clock.get() }
+        undoSystem.coalescingWindowMillis = 300
+
+        editor.recordAndApplyUndoable(StoneEdit.Add(null, 0, 0, StoneColor.BLACK))
+        val stoneEditNode = model.currentNode
+        clock.addAndGet(100)
+        editor.recordAndApplyUndoable(StoneEdit.Add(stoneEditNode, 1, 0, StoneColor.BLACK))
+        clock.addAndGet(100)
+        editor.recordAndApplyUndoable(StoneEdit.Add(stoneEditNode, 2, 0, StoneColor.WHITE))
+        clock.addAndGet(1000)
+        editor.recordAndApplyUndoable(StoneEdit.Add(stoneEditNode, 0, 2, StoneColor.WHITE))
+
+        Assertions.assertEquals(2, undoSystem.getEditHistorySize())
+        Assertions.assertEquals(3, (undoSystem.getHistoryItem(0) as CompoundEdit).getEdits().size)
+        Assertions.assertEquals(4, stoneEditNode.getStoneEdits().size)
+
+        undoSystem.performUndo()
+        Assertions.assertEquals(3, stoneEditNode.getStoneEdits().size)
+
+        undoSystem.performUndo()
+        Assertions.assertTrue(model.getRootNode().getChildNodes().isEmpty())
+        Assertions.assertEquals(model.getRootNode(), model.currentNode)
+
+        undoSystem.performRedo()
+        Assertions.assertEquals(stoneEditNode, model.currentNode)
+        Assertions.assertEquals(3, stoneEditNode.getStoneEdits().size)
+    }
+
+    @Test
+    fun `Edits are not coalesced unless window is enabled`() {
+        val model = GameModel(3, 3, StandardGameRules.CHINESE)
+        val editor = model.editor
+        val undoSystem = editor.undoSystem
+        undoSystem.timeSource = LongSupplier { 0L }
+
+        editor.recordAndApplyUndoable(StoneEdit.Add(null, 0, 0, StoneColor.BLACK))
+        editor.recordAndApplyUndoable(StoneEdit.Add(model.currentNode, 1, 0, StoneColor.BLACK))
+
+        Assertions.assertEquals(2, undoSystem.getEditHistorySize())
+    }
+
+    @Test
+    fun `Annotations on different nodes are not coalesced`() {
+        val model = GameModel(3, 3, StandardGameRules.CHINESE)
+        val editor = model.editor
+        val undoSystem = editor.undoSystem
+        undoSystem.timeSource = LongSupplier { 0L }
+        undoSystem.coalescingWindowMillis = 300
+        model.beginMoveSequence().playMove(0, 0)
+        val firstNode = model.currentNode
+        val rootNode = model.getRootNode()
+        val historySizeBefore = undoSystem.getEditHistorySize()
+
+        editor.recordAndApplyUndoable(AnnotationEdit.forNew(firstNode, Annotation.Circle(1, 1), 1L))
+        editor.recordAndApplyUndoable(AnnotationEdit.forNew(firstNode, Annotation.Square(2, 2), 2L))
+        editor.recordAndApplyUndoable(AnnotationEdit.forNew(rootNode, Annotation.Square(2, 2), 3L))
+
+        Assertions.assertEquals(historySizeBefore + 2, undoSystem.getEditHistorySize())
     }
 
     @Test
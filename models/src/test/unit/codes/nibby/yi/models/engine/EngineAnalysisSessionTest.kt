@@ -0,0 +1,247 @@
+package codes.nibby.yi.models.engine
+
+import codes.nibby.yi.models.EventListener
+import codes.nibby.yi.models.GameModel
+import codes.nibby.yi.models.StandardGameRules
+import codes.nibby.yi.models.Stone
+import codes.nibby.yi.models.StoneColor
+import codes.nibby.yi.models.analysis.AnalysisCache
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import java.util.*
+import java.util.concurrent.Executor
+import java.util.concurrent.LinkedBlockingDeque
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.TimeUnit
+
+class EngineAnalysisSessionTest {
+
+    @Test
+    fun `start sends the game setup and current position`() {
+        val model = GameModel(9, 9, StandardGameRules.CHINESE)
+        model.info.setKomi(6.5f)
+        model.editor.addMove(2, 6)
+        model.editor.addMove(6, 2)
+
+        FakeGtpEngine.connect().use { engine ->
+            EngineAnalysisSession(engine, model).use { session ->
+                session.start().get(5, TimeUnit.SECONDS)
+
+                Assertions.assertEquals(listOf("B C3", "W G7"), getMoves(engine))
+                Assertions.assertEquals(listOf("boardsize 9", "komi 6.5", "clear_board"), getHistory(engine).take(3))
+            }
+        }
+    }
+
+    @Test
+    fun `navigation sends only the moves that changed`() {
+        val model = GameModel(9, 9, StandardGameRules.CHINESE)
+        model.editor.addMove(2, 2)
+        model.editor.addMove(6, 6)
+        model.editor.addMove(2, 6)
+
+        FakeGtpEngine.connect().use { engine ->
+            EngineAnalysisSession(engine, model).use { session ->
+                session.start()
+
+                model.toPreviousNode(2)
+                model.editor.addMove(6, 2)
+
+                Assertions.assertEquals(listOf("B C7", "W G7"), getMoves(engine))
+                val history = getHistory(engine)
+                Assertions.assertEquals(1, history.count { it == "clear_board" })
+                Assertions.assertEquals(2, history.count { it == "undo" })
+                Assertions.assertEquals(4, history.count { it.startsWith("play") })
+            }
+        }
+    }
+
+    @Test
+    fun `pass is played for the player whose turn it is`() {
+        val model = GameModel(9, 9, StandardGameRules.CHINESE)
+        model.editor.addMove(4, 4)
+
+        FakeGtpEngine.connect().use { engine ->
+            EngineAnalysisSession(engine, model).use { session ->
+                session.start()
+                model.editor.addPass()
+
+                Assertions.assertEquals(listOf("B E5", "W pass"), getMoves(engine))
+            }
+        }
+    }
+
+    @Test
+    fun `stone edits rebuild the engine board`() {
+        val model = GameModel(9, 9, StandardGameRules.CHINESE)
+        model.editor.addMove(4, 4)
+
+        FakeGtpEngine.connect().use { engine ->
+            EngineAnalysisSession(engine, model).use { session ->
+                session.start()
+
+                model.editor.addStoneEditNode()
+                model.editor.addStoneEditToCurrentNode(Stone(0, 0, StoneColor.WHITE))
+                model.editor.setCommentOnCurrentNode("Comments do not change the position")
+                model.editor.addMove(8, 8)
+
+                Assertions.assertEquals(listOf("W A9", "B E5", "W J1"), getMoves(engine))
+                Assertions.assertEquals(3, getHistory(engine).count { it == "clear_board" })
+            }
+        }
+    }
+
+    @Test
+    fun `rejected move replays the path and reports the error`() {
+        val model = GameModel(9, 9, StandardGameRules.CHINESE)
+        model.editor.addMove(2, 2)
+        model.editor.addMove(6, 6)
+        val errors = LinkedBlockingQueue<EngineSyncErrorEvent>()
+
+        FakeGtpEngine.connect().use { engine ->
+            EngineAnalysisSession(engine, model).use { session ->
+                session.onSyncError().addListener(object : EventListener<EngineSyncErrorEvent> {
+                    override fun onEvent(event: EngineSyncErrorEvent) {
+                        errors.add(event)
+                    }
+                })
+                session.start().get(5, TimeUnit.SECONDS)
+
+                engine.sendCommand("reject_next_play")
+                val rejectedMove = model.editor.addMove(2, 6).moveNode!!
+
+                // Reported once the replay has been sent, so it is on the board before the moves are read
+                val error = errors.poll(5, TimeUnit.SECONDS)!!
+                Assertions.assertSame(rejectedMove, error.node)
+                Assertions.assertEquals("play B C3", error.command)
+                Assertions.assertFalse(error.response.isSuccess)
+
+                Assertions.assertEquals(listOf("B C7", "W G3", "B C3"), getMoves(engine))
+                Assertions.assertEquals(2, getHistory(engine).count { it == "clear_board" })
+                Assertions.assertTrue(errors.isEmpty())
+            }
+        }
+    }
+
+    @Test
+    fun `analysis is delivered only for the latest position`() {
+        val model = GameModel(9, 9, StandardGameRules.CHINESE)
+        val executor = ManualExecutor()
+        val received = Collections.synchronizedList(ArrayList<AnalysisEvent>())
+
+        FakeGtpEngine.connect().use { engine ->
+            engine.sendCommand("analysis_lines 5")
+
+            EngineAnalysisSession(engine, model).use { session ->
+                session.addAnalysisListener(object : EventListener<AnalysisEvent> {
+                    override fun onEvent(event: AnalysisEvent) {
+                        received.add(event)
+                    }
+                }, executor)
+                session.start()
+                session.startAnalysis(1)
+                executor.awaitTask()
+
+                // Updates for the empty board are still queued when the position changes
+                val firstMove = model.editor.addMove(3, 3).moveNode!!
+                // Ends the stream once the engine has written all lines for the new position
+                engine.sendCommand("name").get(5, TimeUnit.SECONDS)
+                executor.runAll()
+
+                // Updates that arrive while the executor is busy are conflated into the latest
+                Assertions.assertEquals(1, received.size)
+                val event = received[0]
+                Assertions.assertSame(firstMove, event.node)
+                Assertions.assertEquals(1f, event.getBestMove()!!.scoreLead)
+                Assertions.assertEquals(5, event.getBestMove()!!.visits)
+
+                session.stopAnalysis()
+                Assertions.assertFalse(session.isAnalysing())
+                engine.sendCommand("name").get(5, TimeUnit.SECONDS)
+                executor.runAll()
+                Assertions.assertEquals(1, received.size)
+            }
+        }
+    }
+
+    @Test
+    fun `analysis is stored in the cache from the perspective of black`() {
+        val model = GameModel(9, 9, StandardGameRules.CHINESE)
+        val firstMove = model.editor.addMove(4, 4).moveNode!!
+        val cache = AnalysisCache()
+
+        FakeGtpEngine.connect().use { engine ->
+            engine.sendCommand("analysis_lines 1")
+
+            EngineAnalysisSession(engine, model).use { session ->
+                session.analysisCache = cache
+                session.start()
+                session.startAnalysis(1)
+                engine.sendCommand("name").get(5, TimeUnit.SECONDS)
+            }
+        }
+
+        // The fake engine reports a lead of 1 point for white, the player to move
+        val analysis = cache.get(firstMove, StoneColor.WHITE)!!
+        Assertions.assertEquals(0.5f, analysis.blackWinRate)
+        Assertions.assertEquals(-1f, analysis.blackScoreLead)
+        // One visit to each of the two candidates in the only update
+        Assertions.assertEquals(2, analysis.visits)
+    }
+
+    @Test
+    fun `closed session stops following the model`() {
+        val model = GameModel(9, 9, StandardGameRules.CHINESE)
+
+        FakeGtpEngine.connect().use { engine ->
+            val session = EngineAnalysisSession(engine, model)
+            session.start()
+            model.editor.addMove(0, 0)
+            session.close()
+            model.editor.addMove(1, 1)
+
+            Assertions.assertEquals(listOf("B A9"), getMoves(engine))
+            Assertions.assertTrue(engine.isAlive())
+        }
+    }
+
+    @Test
+    fun `boards too large for GTP are rejected`() {
+        FakeGtpEngine.connect().use { engine ->
+            Assertions.assertThrows(IllegalArgumentException::class.java) {
+                EngineAnalysisSession(engine, GameModel(26, 19, StandardGameRules.CHINESE))
+            }
+        }
+    }
+
+    private fun getMoves(engine: GtpEngine): List<String> {
+        return engine.sendCommand("moves").get(5, TimeUnit.SECONDS).text.lines().filter { it.isNotEmpty() }
+    }
+
+    private fun getHistory(engine: GtpEngine): List<String> {
+        return engine.sendCommand("history").get(5, TimeUnit.SECONDS).text.lines()
+    }
+
+    /**
+     * Runs tasks only when asked to, standing in for a busy UI thread.
+     */
+    private class ManualExecutor : Executor {
+        private val tasks = LinkedBlockingDeque<Runnable>()
+
+        override fun execute(command: Runnable) {
+            tasks.add(command)
+        }
+
+        fun awaitTask() {
+            val task = tasks.poll(5, TimeUnit.SECONDS) ?: Assertions.fail<Runnable>("No task was scheduled")
+            tasks.addFirst(task)
+        }
+
+        fun runAll() {
+            while (true) {
+                val task = tasks.poll() ?: break
+                task.run()
+            }
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package codes.nibby.yi.models.engine
+
+import java.io.BufferedReader
+import java.io.InputStream
+import java.io.InputStreamReader
+import java.io.OutputStream
+import java.io.PrintStream
+import java.nio.channels.Channels
+import java.nio.channels.Pipe
+import java.util.*
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+/**
+ * A scripted GTP engine for tests. It keeps a move stack for `play`, `undo` and
+ * `clear_board`, and answers `kata-analyze` with one update every few milliseconds
+ * until the next command arrives. Each update reports the move stack size as its
+ * score lead and its number in the stream as its visits, so that tests can tell which
+ * position was analysed and which update they received.
+ *
+ * Extra commands:
+ * - `moves` replies with the move stack, one move per line
+ * - `history` replies with every command received so far, one per line
+ * - `fail` replies with an error
+ * - `reject_next_play` makes the next `play` reply with an error without playing the move
+ * - `analysis_lines <count>` makes every later `kata-analyze` write exactly that many updates
+ *   and then wait for the next command, so that tests do not depend on timing
+ * - `hang_up` closes the output without replying
+ */
+class FakeGtpEngine(input: InputStream, output: OutputStream) {
+
+    private val reader = BufferedReader(InputStreamReader(input))
+    private val writer = PrintStream(output, false)
+    private val writeLock = Any()
+
+    private val moves = ArrayList<String>()
+    private val history = Collections.synchronizedList(ArrayList<String>())
+    private var rejectNextPlay = false
+    private var scriptedAnalysisLines = -1
+
+    private var analysisThread: Thread? = null
+    private var analysisStopSignal = CountDownLatch(0)
+
+    fun run() {
+        while (true) {
+            val line = reader.readLine() ?: break
+            if (line.isBlank()) {
+                continue
+            }
+            stopAnalysis()
+
+            val parts = line.trim().split(" ")
+            val id = parts[0]
+            val command = parts[1]
+            val args = parts.drop(2)
+            history.add(parts.drop(1).joinToString(" "))
+
+            when (command) {
+                "play" -> {
+                    if (rejectNextPlay) {
+                        rejectNextPlay = false
+                        error(id, "illegal move")
+                    } else {
+                        moves.add("${args[0]} ${args[1]}")
+                        reply(id, "")
+                    }
+                }
+                "undo" -> {
+                    if (moves.isEmpty()) {
+                        error(id, "cannot undo")
+                    } else {
+                        moves.removeAt(moves.size - 1)
+                        reply(id, "")
+                    }
+                }
+                "clear_board" -> {
+                    moves.clear()
+                    reply(id, "")
+                }
+                "boardsize", "rectangular_boardsize", "komi" -> reply(id, "")
+                "name" -> reply(id, "Fake")
+                "protocol_version" -> reply(id, "2")
+                "moves" -> reply(id, moves.joinToString("\n"))
+                "history" -> reply(id, history.joinToString("\n"))
+                "fail" -> error(id, "failed on purpose")
+                "reject_next_play" -> {
+                    rejectNextPlay = true
+                    reply(id, "")
+                }
+                "analysis_lines" -> {
+                    scriptedAnalysisLines = args[0].toInt()
+                    reply(id, "")
+                }
+                "kata-analyze" -> startAnalysis(id, args.last().toLong() * 10)
+                "hang_up" -> {
+                    writer.close()
+                    return
+                }
+                "quit" -> {
+                    reply(id, "")
+                    writer.close()
+                    return
+                }
+                else -> error(id, "unknown command")
+            }
+        }
+        writer.close()
+    }
+
+    private fun startAnalysis(id: String, intervalMillis: Long) {
+        val scoreLead = moves.size
+        val lineCount = scriptedAnalysisLines
+        write("=$id\n")
+
+        // Not interrupted to stop, because interrupting a thread writing to a channel closes it
+        val stopSignal = CountDownLatch(1)
+        analysisStopSignal = stopSignal
+        analysisThread = Thread {
+            var visits = 1
+            if (lineCount >= 0) {
+                // The stream is ended by the next command, after all lines have been written
+                while (visits <= lineCount) {
+                    writeAnalysisLine(visits++, scoreLead)
+                }
+            } else {
+                do {
+                    writeAnalysisLine(visits++, scoreLead)
+                } while (!stopSignal.await(intervalMillis, TimeUnit.MILLISECONDS))
+            }
+        }.apply {
+            isDaemon = true
+            start()
+        }
+    }
+
+    private fun writeAnalysisLine(visits: Int, scoreLead: Int) {
+        write("info move A1 visits $visits winrate 0.5 scoreLead $scoreLead prior 0.1 order 0 pv A1 B1 " +
+                "info move B1 visits 1 winrate 0.4 scoreLead 0 prior 0.1 order 1 pv B1\n")
+    }
+
+    private fun stopAnalysis() {
+        analysisThread?.let {
+            analysisStopSignal.countDown()
+            it.join()
+            write("\n")
+        }
+        analysisThread = null
+    }
+
+    private fun reply(id: String, text: String) {
+        write(if (text.isEmpty()) "=$id\n\n" else "=$id $text\n\n")
+    }
+
+    private fun error(id: String, text: String) {
+        write("?$id $text\n\n")
+    }
+
+    private fun write(text: String) {
+        synchronized(writeLock) {
+            writer.print(text)
+            writer.flush()
+        }
+    }
+
+    companion object {
+
+        /**
+         * Starts a fake engine on a background thread and returns a [GtpEngine] connected
+         * to it.
+         */
+        fun connect(): GtpEngine {
+            val toEngine = Pipe.open()
+            val fromEngine = Pipe.open()
+            val fake = FakeGtpEngine(Channels.newInputStream(toEngine.source()),
+                    Channels.newOutputStream(fromEngine.sink()))
+
+            Thread(fake::run, "Fake GTP engine").apply {
+                isDaemon = true
+                start()
+            }
+            return GtpEngine(Channels.newInputStream(fromEngine.source()), Channels.newOutputStream(toEngine.sink()))
+        }
+
+        /**
+         * Runs the fake engine on standard input and output, for tests that launch it as
+         * a separate process.
+         */
+        @JvmStatic
+        fun main(args: Array<String>) {
+            FakeGtpEngine(System.`in`, System.out).run()
+        }
+    }
+}
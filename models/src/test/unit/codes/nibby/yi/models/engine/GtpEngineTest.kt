@@ -0,0 +1,171 @@
+package codes.nibby.yi.models.engine
+
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import java.nio.file.Paths
+import java.util.*
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.TimeUnit
+
+class GtpEngineTest {
+
+    @Test
+    fun `pipelined commands are answered in order`() {
+        FakeGtpEngine.connect().use { engine ->
+            val replies = (0 until 20).map { engine.sendCommand("play B A${it % 19 + 1}") }
+            val moves = engine.sendCommand("moves")
+
+            replies.forEachIndexed { index, reply ->
+                val response = reply.get(5, TimeUnit.SECONDS)
+                Assertions.assertTrue(response.isSuccess)
+                Assertions.assertEquals(index + 1, response.id)
+            }
+            Assertions.assertEquals(20, moves.get(5, TimeUnit.SECONDS).text.lines().size)
+        }
+    }
+
+    @Test
+    fun `error reply completes normally with failure`() {
+        FakeGtpEngine.connect().use { engine ->
+            val failed = engine.sendCommand("fail").get(5, TimeUnit.SECONDS)
+            val next = engine.sendCommand("name").get(5, TimeUnit.SECONDS)
+
+            Assertions.assertFalse(failed.isSuccess)
+            Assertions.assertEquals("failed on purpose", failed.text)
+            Assertions.assertTrue(next.isSuccess)
+            Assertions.assertEquals("Fake", next.text)
+        }
+    }
+
+    @Test
+    fun `multi-line reply is read in full`() {
+        FakeGtpEngine.connect().use { engine ->
+            engine.sendCommand("play B D4")
+            engine.sendCommand("play W Q16")
+
+            val moves = engine.sendCommand("moves").get(5, TimeUnit.SECONDS)
+
+            Assertions.assertEquals("B D4\nW Q16", moves.text)
+        }
+    }
+
+    @Test
+    fun `streaming output ends when the next command is sent`() {
+        FakeGtpEngine.connect().use { engine ->
+            val lines = Collections.synchronizedList(ArrayList<String>())
+            val received = CountDownLatch(3)
+
+            val analysis = engine.sendStreamingCommand("kata-analyze B 1") { line ->
+                lines.add(line)
+                received.countDown()
+            }
+            Assertions.assertTrue(received.await(5, TimeUnit.SECONDS))
+            Assertions.assertFalse(analysis.isDone)
+
+            val name = engine.sendCommand("name").get(5, TimeUnit.SECONDS)
+
+            Assertions.assertTrue(analysis.isDone)
+            Assertions.assertTrue(analysis.get().isSuccess)
+            Assertions.assertEquals("Fake", name.text)
+            Assertions.assertTrue(lines.all { it.startsWith("info move") })
+        }
+    }
+
+    @Test
+    fun `failing line listener does not shut down the engine`() {
+        FakeGtpEngine.connect().use { engine ->
+            val received = CountDownLatch(2)
+
+            val analysis = engine.sendStreamingCommand("kata-analyze B 1") {
+                received.countDown()
+                throw IllegalStateException("Listener failed on purpose")
+            }
+            Assertions.assertTrue(received.await(5, TimeUnit.SECONDS))
+
+            val name = engine.sendCommand("name").get(5, TimeUnit.SECONDS)
+
+            Assertions.assertTrue(analysis.get().isSuccess)
+            Assertions.assertEquals("Fake", name.text)
+            Assertions.assertTrue(engine.isAlive())
+        }
+    }
+
+    @Test
+    fun `pending commands fail when the engine closes its output`() {
+        val engine = FakeGtpEngine.connect()
+        engine.sendCommand("hang_up")
+        val pending = engine.sendCommand("name")
+
+        val error = Assertions.assertThrows(ExecutionException::class.java) {
+            pending.get(5, TimeUnit.SECONDS)
+        }
+        Assertions.assertTrue(error.cause is GtpEngineException)
+        Assertions.assertFalse(engine.isAlive())
+        Assertions.assertTrue(engine.sendCommand("name").isCompletedExceptionally)
+        engine.close()
+    }
+
+    @Test
+    fun `engine process can be launched and closed`() {
+        val java = Paths.get(System.getProperty("java.home"), "bin", "java").toString()
+        val engine = GtpEngine.launch(listOf(java, "-cp", System.getProperty("java.class.path"),
+                FakeGtpEngine::class.java.name))
+
+        val name = engine.sendCommand("name").get(30, TimeUnit.SECONDS)
+        engine.close()
+
+        Assertions.assertEquals("Fake", name.text)
+        Assertions.assertFalse(engine.isAlive())
+    }
+
+    @Test
+    fun `multi-line commands are rejected`() {
+        FakeGtpEngine.connect().use { engine ->
+            Assertions.assertThrows(IllegalArgumentException::class.java) {
+                engine.sendCommand("play B D4\nplay W Q16")
+            }
+            Assertions.assertThrows(IllegalArgumentException::class.java) {
+                engine.sendCommand(" ")
+            }
+        }
+    }
+
+    @Test
+    fun `analysis line is parsed into candidates`() {
+        val line = "info move D4 visits 120 utility 0.1 winrate 0.53 scoreMean 0.9 scoreLead 0.8 prior 0.2 " +
+                "lcb 0.5 order 0 pv D4 Q16 D16 pvVisits 120 60 20 " +
+                "info move pass visits 3 winrate 0.1 prior 0.001 order 1 pv pass " +
+                "ownership 0.1 -0.2 0.3"
+
+        val infos = AnalysisInfo.parseLine(line)
+
+        Assertions.assertEquals(2, infos.size)
+        val best = infos[0]
+        Assertions.assertEquals("D4", best.move)
+        Assertions.assertEquals(120, best.visits)
+        Assertions.assertEquals(0.53f, best.winrate)
+        Assertions.assertEquals(0.8f, best.scoreLead)
+        Assertions.assertEquals(0.2f, best.prior)
+        Assertions.assertEquals(listOf("D4", "Q16", "D16"), best.principalVariation)
+        Assertions.assertEquals(3 + 15 * 19, best.getPosition(19, 19))
+
+        val pass = infos[1]
+        Assertions.assertEquals(1, pass.order)
+        Assertions.assertNull(pass.scoreLead)
+        Assertions.assertEquals(listOf("pass"), pass.principalVariation)
+        Assertions.assertEquals(-1, pass.getPosition(19, 19))
+
+        Assertions.assertTrue(AnalysisInfo.parseLine("").isEmpty())
+    }
+
+    @Test
+    fun `vertex conversion skips the letter I`() {
+        Assertions.assertEquals("A1", GtpCoordinates.toVertex(0, 18, 19))
+        Assertions.assertEquals("T19", GtpCoordinates.toVertex(18, 0, 19))
+        Assertions.assertEquals("J10", GtpCoordinates.toVertex(8, 9, 19))
+        Assertions.assertEquals(8 + 9 * 19, GtpCoordinates.toPosition("j10", 19, 19))
+        Assertions.assertEquals(-1, GtpCoordinates.toPosition("I5", 19, 19))
+        Assertions.assertEquals(-1, GtpCoordinates.toPosition("A20", 19, 19))
+    }
+}
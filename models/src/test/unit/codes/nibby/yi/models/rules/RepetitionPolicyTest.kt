@@ -0,0 +1,138 @@
+package codes.nibby.yi.models.rules
+
+import codes.nibby.yi.models.GameModel
+import codes.nibby.yi.models.MoveValidationResult
+import codes.nibby.yi.models.PositionHistory
+import codes.nibby.yi.models.StandardGameRules
+import codes.nibby.yi.models.StoneColor
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+
+class RepetitionPolicyTest {
+
+    @Test
+    fun `immediate ko recapture is illegal under every policy`() {
+        for (rules in StandardGameRules.values()) {
+            val model = createKoPosition(rules)
+
+            val result = model.editor.addMove(1, 1)
+
+            Assertions.assertEquals(MoveValidationResult.ERROR_KO_RECAPTURE, result.validationResult, rules.name)
+        }
+    }
+
+    @Test
+    fun `ko can be retaken after passes under simple ko`() {
+        val model = createKoPosition(StandardGameRules.JAPANESE)
+        model.editor.addPass() // W
+        model.editor.addPass() // B
+
+        val result = model.editor.addMove(1, 1)
+
+        Assertions.assertEquals(MoveValidationResult.OK, result.validationResult)
+    }
+
+    @Test
+    fun `ko cannot be retaken after passes under superko`() {
+        for (rules in listOf(StandardGameRules.CHINESE, StandardGameRules.NEW_ZEALAND,
+                StandardGameRules.AGA, StandardGameRules.TROMP_TAYLOR)) {
+            val model = createKoPosition(rules)
+            model.editor.addPass() // W
+            model.editor.addPass() // B
+
+            val result = model.editor.addMove(1, 1)
+
+            Assertions.assertEquals(MoveValidationResult.ERROR_POSITION_REPEAT, result.validationResult, rules.name)
+        }
+    }
+
+    @Test
+    fun `situational superko allows same position with the other player to move`() {
+        val history = PositionHistory()
+        history.addMove(100L, StoneColor.WHITE)
+        history.addMove(200L, StoneColor.BLACK)
+        history.addMove(300L, StoneColor.WHITE)
+
+        Assertions.assertEquals(MoveValidationResult.OK,
+                history.checkRepetition(RepetitionPolicy.SITUATIONAL_SUPERKO, 100L, StoneColor.BLACK) { false })
+        Assertions.assertEquals(MoveValidationResult.ERROR_POSITION_REPEAT,
+                history.checkRepetition(RepetitionPolicy.SITUATIONAL_SUPERKO, 100L, StoneColor.WHITE) { false })
+        Assertions.assertEquals(MoveValidationResult.ERROR_POSITION_REPEAT,
+                history.checkRepetition(RepetitionPolicy.POSITIONAL_SUPERKO, 100L, StoneColor.BLACK) { false })
+        Assertions.assertEquals(MoveValidationResult.OK,
+                history.checkRepetition(RepetitionPolicy.SIMPLE_KO, 100L, StoneColor.WHITE) { false })
+    }
+
+    @Test
+    fun `pass hands the position to the other player under situational superko`() {
+        val history = PositionHistory()
+        history.addMove(100L, StoneColor.WHITE)
+        history.addPass(100L, StoneColor.BLACK)
+
+        Assertions.assertEquals(MoveValidationResult.ERROR_POSITION_REPEAT,
+                history.checkRepetition(RepetitionPolicy.SITUATIONAL_SUPERKO, 100L, StoneColor.BLACK) { false })
+    }
+
+    @Test
+    fun `ko shape is only checked when the position before the last move repeats`() {
+        val history = PositionHistory()
+        history.addMove(100L, StoneColor.WHITE)
+        history.addMove(200L, StoneColor.BLACK)
+        history.addMove(300L, StoneColor.WHITE)
+
+        Assertions.assertEquals(MoveValidationResult.ERROR_KO_RECAPTURE,
+                history.checkRepetition(RepetitionPolicy.SIMPLE_KO, 200L, StoneColor.BLACK) { true })
+        Assertions.assertEquals(MoveValidationResult.ERROR_POSITION_REPEAT,
+                history.checkRepetition(RepetitionPolicy.POSITIONAL_SUPERKO, 100L, StoneColor.BLACK) {
+                    Assertions.fail<Boolean>("Ko shape should not be evaluated")
+                })
+    }
+
+    @Test
+    fun `history copy is independent of the original`() {
+        val history = PositionHistory()
+        history.addMove(100L, StoneColor.WHITE)
+
+        val copy = history.copy()
+        copy.addMove(200L, StoneColor.BLACK)
+
+        Assertions.assertEquals(1, history.size)
+        Assertions.assertEquals(listOf(100L, 200L), copy.getPositionHashes())
+    }
+
+    @Test
+    fun `rulesets are parsed from their sgf names`() {
+        Assertions.assertEquals(StandardGameRules.JAPANESE, StandardGameRules.parse("Japanese").get())
+        Assertions.assertEquals(StandardGameRules.AGA, StandardGameRules.parse("AGA").get())
+        Assertions.assertEquals(StandardGameRules.TROMP_TAYLOR, StandardGameRules.parse("Tromp-Taylor").get())
+
+        for (rules in StandardGameRules.values()) {
+            val internalName = rules.rulesHandler.getInternalName()
+            Assertions.assertEquals(rules, StandardGameRules.parse(internalName).get(), internalName)
+        }
+    }
+
+    /*
+     * Creates the following position with black having just captured at (2, 1),
+     * so that white recapturing at (1, 1) re-creates the position before black's move.
+     *
+     *     . B W .
+     *     B . B W
+     *     . B W .
+     */
+    private fun createKoPosition(rules: StandardGameRules): GameModel {
+        val model = GameModel(4, 3, rules)
+        model.editor.addMove(1, 0) // B
+        model.editor.addMove(2, 0) // W
+        model.editor.addMove(0, 1) // B
+        model.editor.addMove(3, 1) // W
+        model.editor.addMove(1, 2) // B
+        model.editor.addMove(2, 2) // W
+        model.editor.addPass()           // B
+        model.editor.addMove(1, 1) // W
+        val capture = model.editor.addMove(2, 1) // B captures (1, 1)
+
+        Assertions.assertEquals(1, capture.moveNode!!.getCapturesThisTurn().size)
+        return model
+    }
+}
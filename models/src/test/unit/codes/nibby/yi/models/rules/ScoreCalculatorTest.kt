@@ -0,0 +1,169 @@
+package codes.nibby.yi.models.rules
+
+import codes.nibby.yi.models.GameModel
+import codes.nibby.yi.models.StandardGameRules
+import codes.nibby.yi.models.Stone
+import codes.nibby.yi.models.StoneColor
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+
+class ScoreCalculatorTest {
+
+    @Test
+    fun `empty board has no territory and white wins by komi`() {
+        val calculator = ScoreCalculator(5, 5)
+
+        val score = calculator.score(ByteArray(25), ScoringMethod.AREA, 6.5f)
+
+        Assertions.assertEquals(0, score.blackTerritory)
+        Assertions.assertEquals(0, score.whiteTerritory)
+        Assertions.assertEquals(25, score.neutralPoints)
+        Assertions.assertEquals(StoneColor.WHITE, score.getWinner())
+        Assertions.assertEquals("W+6.5", score.toResultString())
+    }
+
+    @Test
+    fun `area scoring counts stones and surrounded regions`() {
+        val board = createBoard(
+            "..BW.",
+            "..BW.",
+            "..BW.",
+            "..BW.",
+            "..BW."
+        )
+        val calculator = ScoreCalculator(5, 5)
+
+        val score = calculator.score(board, ScoringMethod.AREA, 0.5f)
+
+        Assertions.assertEquals(5, score.blackStones)
+        Assertions.assertEquals(5, score.whiteStones)
+        Assertions.assertEquals(10, score.blackTerritory)
+        Assertions.assertEquals(5, score.whiteTerritory)
+        Assertions.assertEquals(0, score.neutralPoints)
+        Assertions.assertEquals(15f, score.getBlackScore())
+        Assertions.assertEquals(10.5f, score.getWhiteScore())
+        Assertions.assertEquals("B+4.5", score.toResultString())
+    }
+
+    @Test
+    fun `region bordering both colors is neutral`() {
+        val board = createBoard(
+            "B.W",
+            "B.W",
+            "B.W"
+        )
+        val calculator = ScoreCalculator(3, 3)
+
+        val score = calculator.score(board, ScoringMethod.AREA, 0f)
+
+        Assertions.assertEquals(0, score.blackTerritory)
+        Assertions.assertEquals(0, score.whiteTerritory)
+        Assertions.assertEquals(3, score.neutralPoints)
+        Assertions.assertEquals(StoneColor.NONE, score.getWinner())
+        Assertions.assertEquals("0", score.toResultString())
+    }
+
+    @Test
+    fun `dead stones are removed and counted for the opponent`() {
+        val board = createBoard(
+            ".W.B.",
+            "..B..",
+            "BB...",
+            ".....",
+            "....."
+        )
+        val deadStones = BooleanArray(25)
+        deadStones[1] = true
+        val calculator = ScoreCalculator(5, 5)
+
+        val score = calculator.score(board, ScoringMethod.TERRITORY, 0f, deadStones = deadStones)
+
+        Assertions.assertEquals(0, score.whiteStones)
+        Assertions.assertEquals(1, score.blackPrisoners)
+        // The dead stone's intersection becomes part of black's territory
+        Assertions.assertEquals(21, score.blackTerritory)
+        Assertions.assertEquals(22f, score.getBlackScore())
+    }
+
+    @Test
+    fun `territory scoring counts prisoners but not stones`() {
+        val board = createBoard(
+            "..BW.",
+            "..BW.",
+            "..BW."
+        )
+        val calculator = ScoreCalculator(5, 3)
+
+        val score = calculator.score(board, ScoringMethod.TERRITORY, 6.5f, prisonersBlack = 2, prisonersWhite = 4)
+
+        Assertions.assertEquals(8f, score.getBlackScore())
+        Assertions.assertEquals(13.5f, score.getWhiteScore())
+        Assertions.assertEquals("W+5.5", score.toResultString())
+    }
+
+    @Test
+    fun `calculator can be re-used across positions`() {
+        val calculator = ScoreCalculator(3, 3)
+        val blackBoard = createBoard(
+            ".B.",
+            "BB.",
+            "..."
+        )
+        val whiteBoard = createBoard(
+            "...",
+            ".W.",
+            "..."
+        )
+
+        calculator.score(blackBoard, ScoringMethod.AREA, 0f)
+        val score = calculator.score(whiteBoard, ScoringMethod.AREA, 0f)
+
+        Assertions.assertEquals(9f, score.getWhiteScore())
+        Assertions.assertEquals(0f, score.getBlackScore())
+    }
+
+    @Test
+    fun `rules handler scores game state with prisoners and dead stones`() {
+        val model = GameModel(5, 5, StandardGameRules.CHINESE)
+        model.editor.addMove(2, 0) // B
+        model.editor.addMove(0, 0) // W
+        model.editor.addMove(2, 1) // B
+        model.editor.addMove(1, 0) // W
+        model.editor.addMove(0, 1) // B
+        model.editor.addMove(4, 4) // W
+        model.editor.addMove(1, 1) // B captures (0, 0) and (1, 0)
+
+        val state = model.getCurrentGameState()
+        val score = model.rules.computeScore(state, 7.5f, listOf(Stone(4, 4, StoneColor.WHITE)))
+
+        Assertions.assertEquals(ScoringMethod.AREA, score.scoringMethod)
+        Assertions.assertEquals(2 + 1, score.blackPrisoners)
+        Assertions.assertEquals(4, score.blackStones)
+        Assertions.assertEquals(25 - 4, score.blackTerritory)
+        Assertions.assertEquals("B+17.5", score.toResultString())
+    }
+
+    @Test
+    fun `board smaller than calculator size is rejected`() {
+        val calculator = ScoreCalculator(9, 9)
+
+        Assertions.assertThrows(IllegalArgumentException::class.java) {
+            calculator.score(ByteArray(25), ScoringMethod.AREA, 0f)
+        }
+    }
+
+    private fun createBoard(vararg rows: String): ByteArray {
+        val width = rows[0].length
+        val board = ByteArray(width * rows.size)
+        rows.forEachIndexed { y, row ->
+            row.forEachIndexed { x, char ->
+                board[x + y * width] = when (char) {
+                    'B' -> StoneColor.BLACK.index
+                    'W' -> StoneColor.WHITE.index
+                    else -> StoneColor.NONE.index
+                }
+            }
+        }
+        return board
+    }
+}